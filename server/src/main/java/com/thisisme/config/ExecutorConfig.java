@@ -0,0 +1,141 @@
+package com.thisisme.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bounded thread pools for background work that must not run on request threads
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${app.renditions.threads:2}")
+    private int renditionThreads;
+
+    @Value("${app.renditions.queue-capacity:200}")
+    private int renditionQueueCapacity;
+
+    @Value("${app.ocr.worker.threads:2}")
+    private int ocrThreads;
+
+    @Value("${app.webhook.worker.threads:2}")
+    private int inboundEmailThreads;
+
+    @Value("${app.webhook.attachment-threads:4}")
+    private int attachmentThreads;
+
+    @Value("${app.export.prefetch-threads:4}")
+    private int exportPrefetchThreads;
+
+    @Value("${app.export.worker.threads:2}")
+    private int exportThreads;
+
+    /**
+     * Runs OCR jobs. OcrJobWorker only claims as many jobs as there are idle threads,
+     * so the queue is just slack for the claim/submit race.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ocrExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ocrThreads);
+        executor.setMaxPoolSize(ocrThreads);
+        executor.setQueueCapacity(ocrThreads);
+        executor.setThreadNamePrefix("ocr-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Image decoding is CPU and memory heavy, so keep this pool small.
+     * Rejected tasks are picked up again by the rendition backfill sweep.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor renditionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(renditionThreads);
+        executor.setMaxPoolSize(renditionThreads);
+        executor.setQueueCapacity(renditionQueueCapacity);
+        executor.setThreadNamePrefix("rendition-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Processes queued inbound emails. Like the OCR pool, InboundEmailWorker only claims
+     * as many jobs as there are idle threads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor inboundEmailExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(inboundEmailThreads);
+        executor.setMaxPoolSize(inboundEmailThreads);
+        executor.setQueueCapacity(inboundEmailThreads);
+        executor.setThreadNamePrefix("inbound-email-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Streams inbound email attachments from spool files into storage in parallel.
+     * When saturated the inbound email worker thread uploads the attachment itself.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor inboundAttachmentExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(attachmentThreads);
+        executor.setMaxPoolSize(attachmentThreads);
+        executor.setQueueCapacity(attachmentThreads * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("inbound-attachment-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Renders queued exports. Like the OCR pool, ExportJobWorker only claims as many
+     * jobs as there are idle threads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor exportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(exportThreads);
+        executor.setMaxPoolSize(exportThreads);
+        executor.setQueueCapacity(exportThreads);
+        executor.setThreadNamePrefix("export-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Fetches document files from storage ahead of the archive export writing them.
+     * Each export only has a few fetches outstanding; when saturated the export thread
+     * fetches the file itself.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor exportPrefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(exportPrefetchThreads);
+        executor.setMaxPoolSize(exportPrefetchThreads);
+        executor.setQueueCapacity(exportPrefetchThreads * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("export-prefetch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
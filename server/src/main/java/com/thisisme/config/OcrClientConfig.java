@@ -0,0 +1,64 @@
+package com.thisisme.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Dedicated HTTP client for the OCR microservice: pooled keep-alive connections and
+ * hard timeouts, so a slow OCR container can't tie up threads indefinitely.
+ */
+@Configuration
+public class OcrClientConfig {
+
+    @Value("${app.ocr.client.max-connections:8}")
+    private int maxConnections;
+
+    @Value("${app.ocr.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.ocr.client.read-timeout-ms:60000}")
+    private long readTimeoutMs; // PaddleOCR on CPU can take tens of seconds per page
+
+    @Value("${app.ocr.client.pool-timeout-ms:5000}")
+    private long poolTimeoutMs;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient ocrHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                .build())
+            .build();
+
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build())
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .evictExpiredConnections()
+            .build();
+    }
+
+    @Bean
+    public RestTemplate ocrRestTemplate(@Qualifier("ocrHttpClient") CloseableHttpClient ocrHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(ocrHttpClient));
+    }
+}
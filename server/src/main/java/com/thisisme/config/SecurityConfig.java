@@ -40,6 +40,7 @@ public class SecurityConfig {
 
                 // Webhook endpoints (authenticate via webhook secret)
                 .requestMatchers(HttpMethod.POST, "/api/v2/passports/*/correspondence/inbound").permitAll()
+                .requestMatchers("/api/v2/passports/correspondence/inbound/dead-letters/**").permitAll()
 
                 // Privacy notices (public)
                 .requestMatchers(HttpMethod.GET, "/api/privacy-notice/**").permitAll()
@@ -0,0 +1,42 @@
+package com.thisisme.config;
+
+import com.thisisme.service.CachingStorageService;
+import com.thisisme.service.S3StorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Local disk read-through cache in front of S3 - only loaded when
+ * app.storage.type=s3 and app.storage.cache.enabled=true. StorageConfig layers
+ * encryption on top of it.
+ */
+@Configuration
+@ConditionalOnExpression("${app.storage.cache.enabled:false} and '${app.storage.type:local}' == 's3'")
+public class StorageCacheConfig {
+
+    @Value("${app.storage.cache.path:./storage-cache}")
+    private String cachePath;
+
+    @Value("${app.storage.cache.max-size-bytes:1073741824}")
+    private long maxSizeBytes; // 1GB default
+
+    @Value("${app.storage.cache.max-entry-bytes:52428800}")
+    private long maxEntryBytes; // 50MB default
+
+    @Bean
+    public CachingStorageService cachingStorageService(S3StorageService s3StorageService,
+                                                       MeterRegistry meterRegistry) {
+        return new CachingStorageService(
+            s3StorageService,
+            Paths.get(cachePath),
+            maxSizeBytes,
+            maxEntryBytes,
+            meterRegistry
+        );
+    }
+}
@@ -0,0 +1,49 @@
+package com.thisisme.config;
+
+import com.thisisme.service.CachingStorageService;
+import com.thisisme.service.EncryptingStorageService;
+import com.thisisme.service.LocalStorageService;
+import com.thisisme.service.PassportKeyService;
+import com.thisisme.service.S3StorageService;
+import com.thisisme.service.StorageKeyRing;
+import com.thisisme.service.StorageService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * The StorageService the rest of the app uses: envelope encryption on top of the
+ * disk cache if enabled, otherwise directly on top of the configured backend.
+ * The cache sits below encryption so it only ever holds ciphertext.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Value("${app.storage.encryption.enabled:false}")
+    private boolean encryptionEnabled;
+
+    @Value("${app.storage.encryption.chunk-size:65536}")
+    private int chunkSize; // 64KB default
+
+    @Bean
+    @Primary
+    public EncryptingStorageService storageService(ObjectProvider<CachingStorageService> cachingStorageService,
+                                                   ObjectProvider<S3StorageService> s3StorageService,
+                                                   ObjectProvider<LocalStorageService> localStorageService,
+                                                   StorageKeyRing keyRing,
+                                                   PassportKeyService passportKeyService) {
+        StorageService backend = cachingStorageService.getIfAvailable();
+        if (backend == null) {
+            backend = s3StorageService.getIfAvailable();
+        }
+        if (backend == null) {
+            backend = localStorageService.getIfAvailable();
+        }
+        if (backend == null) {
+            throw new IllegalStateException("No storage backend configured for app.storage.type");
+        }
+        return new EncryptingStorageService(backend, keyRing, passportKeyService, encryptionEnabled, chunkSize);
+    }
+}
@@ -2,18 +2,28 @@ package com.thisisme.controller;
 
 import com.thisisme.model.dto.DocumentDTO.*;
 import com.thisisme.model.entity.Document;
+import com.thisisme.model.enums.DocumentSort;
+import com.thisisme.model.enums.RenditionSize;
 import com.thisisme.security.UserPrincipal;
 import com.thisisme.service.DocumentService;
+import com.thisisme.service.ImageRenditionService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -48,12 +58,28 @@ public class DocumentController {
     @GetMapping
     public ResponseEntity<DocumentListResponse> getDocuments(
             @PathVariable UUID passportId,
+            @RequestParam(required = false) String mimeType,
+            @RequestParam(required = false) UUID timelineEntryId,
+            @RequestParam(defaultValue = "uploadedAt") String sort,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
             @AuthenticationPrincipal UserPrincipal principal,
             HttpServletRequest httpRequest) {
 
+        DocumentFilterRequest filter = new DocumentFilterRequest(
+            mimeType,
+            timelineEntryId,
+            DocumentSort.fromParam(sort),
+            Sort.Direction.fromString(direction),
+            cursor,
+            size
+        );
+
         DocumentListResponse response = documentService.getDocuments(
             passportId,
             principal.id(),
+            filter,
             getClientIp(httpRequest)
         );
 
@@ -93,19 +119,51 @@ public class DocumentController {
     }
 
     @GetMapping("/{documentId}/file")
-    public ResponseEntity<byte[]> downloadFile(
+    public ResponseEntity<Resource> downloadFile(
             @PathVariable UUID passportId,
             @PathVariable UUID documentId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
             @AuthenticationPrincipal UserPrincipal principal,
             HttpServletRequest httpRequest) throws IOException {
 
         return documentService.downloadFile(
             documentId,
             principal.id(),
+            range,
             getClientIp(httpRequest)
         );
     }
 
+    /**
+     * Serve a downscaled rendition. Renditions never change once generated, so browsers
+     * may cache them for a year; "private" keeps shared proxies from storing them.
+     */
+    @GetMapping("/{documentId}/renditions/{size}")
+    public ResponseEntity<byte[]> getRendition(
+            @PathVariable UUID passportId,
+            @PathVariable UUID documentId,
+            @PathVariable String size,
+            @AuthenticationPrincipal UserPrincipal principal,
+            WebRequest webRequest) throws IOException {
+
+        RenditionSize renditionSize = RenditionSize.fromPathSegment(size);
+        Document document = documentService.getRenditionDocument(documentId, principal.id());
+
+        String etag = "\"" + documentId + "-" + renditionSize.getPathSegment() + "-" +
+            document.getRenditionsGeneratedAt().toEpochMilli() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        byte[] bytes = documentService.downloadRendition(document, renditionSize);
+
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+            .eTag(etag)
+            .contentType(MediaType.parseMediaType(ImageRenditionService.RENDITION_CONTENT_TYPE))
+            .body(bytes);
+    }
+
     @DeleteMapping("/{documentId}")
     public ResponseEntity<Void> deleteDocument(
             @PathVariable UUID passportId,
@@ -160,6 +218,8 @@ public class DocumentController {
             doc.getMimeType(),
             doc.getFileSize(),
             null, // URL generated on-demand
+            ImageRenditionService.renditionUrl(doc, RenditionSize.THUMBNAIL),
+            ImageRenditionService.renditionUrl(doc, RenditionSize.PREVIEW),
             doc.getOcrText() != null,
             doc.getOcrError(),
             doc.getUploadedAt(),
@@ -1,102 +1,132 @@
 package com.thisisme.controller;
 
+import com.thisisme.model.dto.ExportDTO.ExportJobResponse;
+import com.thisisme.model.enums.ExportFormat;
 import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.ExportCache;
+import com.thisisme.service.ExportJobService;
 import com.thisisme.service.ExportService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Locale;
 import java.util.UUID;
 
+/**
+ * Passport exports. Access is checked before the response starts; the export itself is
+ * streamed to the client as it's generated.
+ */
 @RestController
 @RequestMapping("/api/v1/passports/{passportId}/export")
 public class ExportController {
 
     private final ExportService exportService;
+    private final ExportJobService exportJobService;
 
-    public ExportController(ExportService exportService) {
+    public ExportController(ExportService exportService, ExportJobService exportJobService) {
         this.exportService = exportService;
+        this.exportJobService = exportJobService;
     }
 
-    @GetMapping("/json")
-    public ResponseEntity<byte[]> exportJson(
+    /**
+     * Queue a background export; poll /api/v1/exports/{jobId} for progress
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ExportJobResponse> requestExport(
             @PathVariable UUID passportId,
+            @RequestParam(defaultValue = "json") String format,
             @AuthenticationPrincipal UserPrincipal principal,
             HttpServletRequest httpRequest) {
 
-        String json = exportService.exportAsJson(
-            passportId,
-            principal.id(),
-            getClientIp(httpRequest)
-        );
+        ExportJobResponse job = exportJobService.requestPassportExport(
+            passportId, principal.id(), ExportFormat.valueOf(format.toUpperCase(Locale.ROOT)), getClientIp(httpRequest));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
 
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".json\"")
-            .contentType(MediaType.APPLICATION_JSON)
-            .body(json.getBytes(StandardCharsets.UTF_8));
+    @GetMapping("/json")
+    public ResponseEntity<StreamingResponseBody> exportJson(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest,
+            WebRequest webRequest) {
+        return cachedExport(passportId, ExportFormat.JSON, principal, httpRequest, webRequest);
     }
 
     @GetMapping("/csv")
-    public ResponseEntity<byte[]> exportCsv(
+    public ResponseEntity<StreamingResponseBody> exportCsv(
             @PathVariable UUID passportId,
             @AuthenticationPrincipal UserPrincipal principal,
-            HttpServletRequest httpRequest) {
+            HttpServletRequest httpRequest,
+            WebRequest webRequest) {
+        return cachedExport(passportId, ExportFormat.CSV, principal, httpRequest, webRequest);
+    }
 
-        String csv = exportService.exportAsCsv(
-            passportId,
-            principal.id(),
-            getClientIp(httpRequest)
-        );
+    @GetMapping("/markdown")
+    public ResponseEntity<StreamingResponseBody> exportMarkdown(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest,
+            WebRequest webRequest) {
+        return cachedExport(passportId, ExportFormat.MARKDOWN, principal, httpRequest, webRequest);
+    }
 
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".csv\"")
-            .contentType(MediaType.parseMediaType("text/csv"))
-            .body(csv.getBytes(StandardCharsets.UTF_8));
+    @GetMapping("/html")
+    public ResponseEntity<StreamingResponseBody> exportHtml(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest,
+            WebRequest webRequest) {
+        return cachedExport(passportId, ExportFormat.HTML, principal, httpRequest, webRequest);
     }
 
-    @GetMapping("/markdown")
-    public ResponseEntity<byte[]> exportMarkdown(
+    @GetMapping("/zip")
+    public ResponseEntity<StreamingResponseBody> exportZip(
             @PathVariable UUID passportId,
             @AuthenticationPrincipal UserPrincipal principal,
             HttpServletRequest httpRequest) {
 
-        String markdown = exportService.exportAsMarkdown(
-            passportId,
-            principal.id(),
-            getClientIp(httpRequest)
-        );
+        exportService.checkAccess(passportId, principal.id(), ExportFormat.ZIP);
+        String ipAddress = getClientIp(httpRequest);
 
         return ResponseEntity.ok()
             .header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".md\"")
-            .contentType(MediaType.parseMediaType("text/markdown"))
-            .body(markdown.getBytes(StandardCharsets.UTF_8));
+                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".zip\"")
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .body(out -> exportService.exportAsZip(passportId, principal.id(), ipAddress, out));
     }
 
-    @GetMapping("/html")
-    public ResponseEntity<byte[]> exportHtml(
-            @PathVariable UUID passportId,
-            @AuthenticationPrincipal UserPrincipal principal,
-            HttpServletRequest httpRequest) {
-
-        String html = exportService.exportAsHtml(
-            passportId,
-            principal.id(),
-            getClientIp(httpRequest)
-        );
+    /**
+     * Text exports carry an ETag derived from the passport's content version, so an
+     * unchanged passport revalidates with a 304; otherwise the body comes from the
+     * rendered export cache when possible.
+     */
+    private ResponseEntity<StreamingResponseBody> cachedExport(UUID passportId, ExportFormat format,
+            UserPrincipal principal, HttpServletRequest httpRequest, WebRequest webRequest) {
+
+        exportService.checkAccess(passportId, principal.id());
+        ExportCache.Key key = exportService.cacheKey(passportId, principal.id(), format);
+        if (webRequest.checkNotModified(key.etag())) {
+            return null;
+        }
+        String ipAddress = getClientIp(httpRequest);
 
         return ResponseEntity.ok()
             .header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".html\"")
-            .contentType(MediaType.TEXT_HTML)
-            .body(html.getBytes(StandardCharsets.UTF_8));
+                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + "."
+                    + format.getExtension() + "\"")
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .eTag(key.etag())
+            .contentType(MediaType.parseMediaType(format.getContentType()))
+            .body(out -> exportService.exportCached(key, principal.id(), ipAddress, out));
     }
 
     private String getClientIp(HttpServletRequest request) {
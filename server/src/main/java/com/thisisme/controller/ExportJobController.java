@@ -0,0 +1,68 @@
+package com.thisisme.controller;
+
+import com.thisisme.model.dto.ExportDTO.ExportJobResponse;
+import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.ExportJobService;
+import com.thisisme.service.ExportJobService.ExportArtifact;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Status and download of background exports queued through the passport export and
+ * privacy endpoints
+ */
+@RestController
+@RequestMapping("/api/v1/exports")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    public ExportJobController(ExportJobService exportJobService) {
+        this.exportJobService = exportJobService;
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportJobResponse> getJob(
+            @PathVariable UUID jobId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(exportJobService.getJob(jobId, principal.id()));
+    }
+
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<Resource> download(
+            @PathVariable UUID jobId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) throws IOException {
+
+        ExportArtifact artifact = exportJobService.openArtifact(jobId, principal.id(), getClientIp(httpRequest));
+        String name = artifact.passportId() != null
+            ? "passport-" + artifact.passportId()
+            : "thisisme-export";
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + name + "-" + jobId + "." + artifact.format().getExtension() + "\"")
+            .contentType(MediaType.parseMediaType(artifact.format().getContentType()));
+        if (artifact.size() != null) {
+            response.contentLength(artifact.size());
+        }
+        return response.body(new InputStreamResource(artifact.content()));
+    }
+
+    private String getClientIp(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
+    }
+}
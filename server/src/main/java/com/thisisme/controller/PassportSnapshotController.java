@@ -0,0 +1,70 @@
+package com.thisisme.controller;
+
+import com.thisisme.model.dto.SnapshotDTO.ImportResult;
+import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.PassportSnapshotFormat;
+import com.thisisme.service.PassportSnapshotService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Binary passport snapshots for backup and migration between environments
+ */
+@RestController
+@RequestMapping("/api/v1/passports")
+public class PassportSnapshotController {
+
+    private final PassportSnapshotService snapshotService;
+
+    public PassportSnapshotController(PassportSnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    @GetMapping("/{passportId}/snapshot")
+    public ResponseEntity<StreamingResponseBody> exportSnapshot(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+
+        snapshotService.checkAccess(passportId, principal.id());
+        String ipAddress = getClientIp(httpRequest);
+
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"passport-" + passportId + "-" + LocalDate.now() + ".cbor\"")
+            .contentType(MediaType.parseMediaType(PassportSnapshotFormat.CONTENT_TYPE))
+            .body(out -> snapshotService.exportSnapshot(passportId, principal.id(), ipAddress, out));
+    }
+
+    /**
+     * Load a snapshot as a new passport owned by the caller. The request body is the
+     * snapshot itself and is read as it arrives.
+     */
+    @PostMapping(value = "/import", consumes = PassportSnapshotFormat.CONTENT_TYPE)
+    public ResponseEntity<ImportResult> importSnapshot(
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) throws IOException {
+
+        ImportResult result = snapshotService.importSnapshot(
+            httpRequest.getInputStream(), principal.id(), getClientIp(httpRequest));
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
+    private String getClientIp(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
+    }
+}
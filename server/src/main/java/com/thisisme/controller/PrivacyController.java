@@ -1,18 +1,25 @@
 package com.thisisme.controller;
 
+import com.thisisme.model.dto.ExportDTO.ExportJobResponse;
 import com.thisisme.model.entity.DataRequest;
 import com.thisisme.model.enums.DataRequestType;
+import com.thisisme.model.enums.ExportFormat;
 import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.ExportJobService;
 import com.thisisme.service.PrivacyRightsService;
+import com.thisisme.service.SubjectAccessExportService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 /**
@@ -23,9 +30,16 @@ import java.util.UUID;
 public class PrivacyController {
 
     private final PrivacyRightsService privacyRightsService;
+    private final SubjectAccessExportService subjectAccessExportService;
+    private final ExportJobService exportJobService;
 
-    public PrivacyController(PrivacyRightsService privacyRightsService) {
+    public PrivacyController(
+            PrivacyRightsService privacyRightsService,
+            SubjectAccessExportService subjectAccessExportService,
+            ExportJobService exportJobService) {
         this.privacyRightsService = privacyRightsService;
+        this.subjectAccessExportService = subjectAccessExportService;
+        this.exportJobService = exportJobService;
     }
 
     /**
@@ -87,31 +101,67 @@ public class PrivacyController {
     }
 
     /**
-     * Export my data as JSON
+     * Export my data as JSON, streamed as it's read
      */
     @GetMapping("/export/json")
-    public ResponseEntity<String> exportJson(
-            @AuthenticationPrincipal UserPrincipal principal) {
-        String json = privacyRightsService.exportAsJson(principal.id());
+    public ResponseEntity<StreamingResponseBody> exportJson(
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+        String ipAddress = getClientIp(httpRequest);
         return ResponseEntity.ok()
             .contentType(MediaType.APPLICATION_JSON)
             .header(HttpHeaders.CONTENT_DISPOSITION,
                 "attachment; filename=\"thisisme-export-" + Instant.now() + ".json\"")
-            .body(json);
+            .body(out -> subjectAccessExportService.writeJson(principal.id(), ipAddress, out));
+    }
+
+    /**
+     * Export my data as newline-delimited JSON, one record per line
+     */
+    @GetMapping("/export/ndjson")
+    public ResponseEntity<StreamingResponseBody> exportNdjson(
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+        String ipAddress = getClientIp(httpRequest);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"thisisme-export-" + Instant.now() + ".ndjson\"")
+            .body(out -> subjectAccessExportService.writeNdjson(principal.id(), ipAddress, out));
     }
 
     /**
-     * Export my data as CSV
+     * Export my passport sections and timeline entries as CSV, streamed as it's read
      */
     @GetMapping("/export/csv")
-    public ResponseEntity<String> exportCsv(
-            @AuthenticationPrincipal UserPrincipal principal) {
-        String csv = privacyRightsService.exportAsCsv(principal.id());
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+        String ipAddress = getClientIp(httpRequest);
         return ResponseEntity.ok()
             .contentType(MediaType.parseMediaType("text/csv"))
             .header(HttpHeaders.CONTENT_DISPOSITION,
                 "attachment; filename=\"thisisme-export-" + Instant.now() + ".csv\"")
-            .body(csv);
+            .body(out -> subjectAccessExportService.writeCsv(principal.id(), ipAddress, out));
+    }
+
+    /**
+     * Queue an export of my data ("json", "ndjson" or "csv"); poll /api/v1/exports/{jobId} for progress
+     */
+    @PostMapping("/export/jobs")
+    public ResponseEntity<ExportJobResponse> requestExport(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @RequestParam(defaultValue = "json") String format,
+            HttpServletRequest httpRequest) {
+        ExportFormat exportFormat = switch (format.toLowerCase(Locale.ROOT)) {
+            case "json" -> ExportFormat.DATA_SUBJECT_JSON;
+            case "ndjson" -> ExportFormat.DATA_SUBJECT_NDJSON;
+            case "csv" -> ExportFormat.DATA_SUBJECT_CSV;
+            default -> throw new IllegalArgumentException("Unsupported export format: " + format);
+        };
+        ExportJobResponse job = exportJobService.requestDataSubjectExport(
+            principal.id(), exportFormat, getClientIp(httpRequest));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
     private DataRequestResponse toResponse(DataRequest request) {
@@ -0,0 +1,72 @@
+package com.thisisme.controller;
+
+import com.thisisme.model.dto.SearchDTO.CrossPassportSearchResponse;
+import com.thisisme.model.dto.SearchDTO.SearchResponse;
+import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.PassportSearchService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * Search across timeline entries and documents, of one passport or of all the caller's
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class SearchController {
+
+    private final PassportSearchService searchService;
+
+    public SearchController(PassportSearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    @GetMapping("/passports/{passportId}/search")
+    public ResponseEntity<SearchResponse> search(
+            @PathVariable UUID passportId,
+            @RequestParam("q") String text,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+
+        SearchResponse response = searchService.search(
+            passportId,
+            principal.id(),
+            text,
+            limit,
+            getClientIp(httpRequest)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CrossPassportSearchResponse> searchAll(
+            @RequestParam("q") String text,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+
+        CrossPassportSearchResponse response = searchService.searchAll(
+            principal.id(),
+            text,
+            limit,
+            cursor,
+            getClientIp(httpRequest)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    private String getClientIp(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
+    }
+}
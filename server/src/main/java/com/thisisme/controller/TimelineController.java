@@ -3,6 +3,7 @@ package com.thisisme.controller;
 import com.thisisme.model.dto.TimelineDTO.*;
 import com.thisisme.model.enums.EntryType;
 import com.thisisme.security.UserPrincipal;
+import com.thisisme.service.TimelineImportService;
 import com.thisisme.service.TimelineService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -10,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -19,9 +21,11 @@ import java.util.UUID;
 public class TimelineController {
 
     private final TimelineService timelineService;
+    private final TimelineImportService timelineImportService;
 
-    public TimelineController(TimelineService timelineService) {
+    public TimelineController(TimelineService timelineService, TimelineImportService timelineImportService) {
         this.timelineService = timelineService;
+        this.timelineImportService = timelineImportService;
     }
 
     @PostMapping
@@ -85,6 +89,29 @@ public class TimelineController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<TimelineSearchResponse> search(
+            @PathVariable UUID passportId,
+            @RequestParam("q") String text,
+            @RequestParam(required = false) Set<EntryType> types,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) {
+
+        TimelineSearchResponse response = timelineService.search(
+            passportId,
+            principal.id(),
+            text,
+            types,
+            tags,
+            limit,
+            getClientIp(httpRequest)
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{entryId}")
     public ResponseEntity<TimelineEntryResponse> getEntry(
             @PathVariable UUID passportId,
@@ -212,6 +239,29 @@ public class TimelineController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Bulk import; the request body is the CSV file and is read as it arrives
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<TimelineImportResult> importCsv(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) throws IOException {
+
+        return ResponseEntity.ok(timelineImportService.importCsv(
+            passportId, principal.id(), httpRequest.getInputStream(), getClientIp(httpRequest)));
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<TimelineImportResult> importNdjson(
+            @PathVariable UUID passportId,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest httpRequest) throws IOException {
+
+        return ResponseEntity.ok(timelineImportService.importNdjson(
+            passportId, principal.id(), httpRequest.getInputStream(), getClientIp(httpRequest)));
+    }
+
     private String getClientIp(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
@@ -5,14 +5,13 @@ import com.thisisme.model.dto.CorrespondenceDTO.*;
 import com.thisisme.model.dto.PassportDTO.*;
 import com.thisisme.model.dto.TimelineDTO.*;
 import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.InboundEmailJob;
 import com.thisisme.model.entity.PassportSection;
 import com.thisisme.model.entity.TimelineEntry;
 import com.thisisme.repository.TimelineEntryRepository;
-import com.thisisme.repository.UserRepository;
 import com.thisisme.security.UserPrincipal;
-import com.thisisme.service.DocumentService;
+import com.thisisme.service.InboundEmailJobService;
 import com.thisisme.service.PassportService;
-import com.thisisme.service.TimelineService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
@@ -21,8 +20,8 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,25 +30,19 @@ import java.util.UUID;
 public class V2PassportController {
 
     private final PassportService passportService;
-    private final TimelineService timelineService;
-    private final DocumentService documentService;
+    private final InboundEmailJobService inboundEmailJobService;
     private final WebhookConfig webhookConfig;
     private final TimelineEntryRepository timelineRepository;
-    private final UserRepository userRepository;
 
     public V2PassportController(
             PassportService passportService,
-            TimelineService timelineService,
-            DocumentService documentService,
+            InboundEmailJobService inboundEmailJobService,
             WebhookConfig webhookConfig,
-            TimelineEntryRepository timelineRepository,
-            UserRepository userRepository) {
+            TimelineEntryRepository timelineRepository) {
         this.passportService = passportService;
-        this.timelineService = timelineService;
-        this.documentService = documentService;
+        this.inboundEmailJobService = inboundEmailJobService;
         this.webhookConfig = webhookConfig;
         this.timelineRepository = timelineRepository;
-        this.userRepository = userRepository;
     }
 
     @GetMapping("/{passportId}/sections/{sectionId}/history")
@@ -100,89 +93,52 @@ public class V2PassportController {
     }
 
     /**
-     * Webhook endpoint for inbound email from Cloudflare worker
+     * Webhook endpoint for inbound email from Cloudflare worker. The payload is stored
+     * and queued, and 202 returned straight away; InboundEmailWorker processes it.
      */
     @PostMapping("/{passportId}/correspondence/inbound")
     public ResponseEntity<?> handleInboundEmail(
             @PathVariable UUID passportId,
             @RequestHeader(value = "X-Webhook-Secret", required = false) String webhookSecret,
-            @Valid @RequestBody InboundEmailWebhookRequest request,
-            HttpServletRequest httpRequest) {
+            HttpServletRequest httpRequest) throws IOException {
 
-        // Authenticate webhook
+        // Authenticate webhook before reading the body
         if (!webhookConfig.validateWebhookSecret(webhookSecret)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new ErrorResponse("Invalid webhook secret"));
         }
 
-        try {
-            // Find a system user or the first owner to create the entry
-            var owners = userRepository.findAll().stream()
-                .filter(u -> u.getEmail().equals(request.from()))
-                .findFirst()
-                .or(() -> userRepository.findAll().stream().findFirst());
-
-            if (owners.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
-                    .body(new ErrorResponse("No user found to create entry"));
-            }
-
-            UUID userId = owners.get().getId();
-
-            // Create correspondence entry
-            TimelineEntryResponse entry = timelineService.createCorrespondenceEntry(
-                passportId,
-                userId,
-                request.from(),
-                request.to(),
-                request.subject(),
-                request.body(),
-                request.date(),
-                "WEBHOOK",
-                com.thisisme.model.enums.VisibilityLevel.OWNERS_ONLY,
-                null,
-                null,
-                getClientIp(httpRequest)
-            );
-
-            // Handle attachments if present
-            if (request.attachments() != null && !request.attachments().isEmpty()) {
-                for (AttachmentData attachment : request.attachments()) {
-                    try {
-                        byte[] fileBytes = Base64.getDecoder().decode(attachment.content());
-                        documentService.saveEmailAttachment(
-                            passportId,
-                            userId,
-                            entry.id(),
-                            attachment.filename(),
-                            attachment.contentType(),
-                            fileBytes
-                        );
-                    } catch (Exception e) {
-                        // Log error but don't fail the whole request
-                        System.err.println("Failed to save attachment '" + attachment.filename() + "': " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-            return ResponseEntity.ok(new CorrespondenceResponse(
-                entry.id(),
-                request.from(),
-                request.to(),
-                request.subject(),
-                request.date(),
-                "WEBHOOK",
-                request.attachments() != null ? request.attachments().size() : 0
-            ));
-
-        } catch (SecurityException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                .body(new ErrorResponse(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
-                .body(new ErrorResponse("Failed to process email: " + e.getMessage()));
+        InboundEmailJob job = inboundEmailJobService.accept(
+            passportId, httpRequest.getInputStream(), getClientIp(httpRequest));
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(new InboundEmailAccepted(job.getId(), job.getStatus().name()));
+    }
+
+    /**
+     * Dead-lettered inbound emails, for the same operators that hold the webhook secret
+     */
+    @GetMapping("/correspondence/inbound/dead-letters")
+    public ResponseEntity<?> getInboundDeadLetters(
+            @RequestHeader(value = "X-Webhook-Secret", required = false) String webhookSecret,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (!webhookConfig.validateWebhookSecret(webhookSecret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(new ErrorResponse("Invalid webhook secret"));
+        }
+        return ResponseEntity.ok(inboundEmailJobService.getDeadLetters(limit));
+    }
+
+    @PostMapping("/correspondence/inbound/dead-letters/{jobId}/retry")
+    public ResponseEntity<?> retryInboundDeadLetter(
+            @PathVariable UUID jobId,
+            @RequestHeader(value = "X-Webhook-Secret", required = false) String webhookSecret) {
+
+        if (!webhookConfig.validateWebhookSecret(webhookSecret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(new ErrorResponse("Invalid webhook secret"));
         }
+        return ResponseEntity.ok(inboundEmailJobService.requeue(jobId));
     }
 
     private String getClientIp(HttpServletRequest request) {
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Set;
@@ -61,4 +62,26 @@ public class CorrespondenceDTO {
         String source,
         int attachmentCount
     ) {}
+
+    /**
+     * Webhook acknowledgement; the email is processed asynchronously
+     */
+    public record InboundEmailAccepted(
+        UUID jobId,
+        String status
+    ) {}
+
+    /**
+     * Queued inbound email, as shown in the dead-letter view
+     */
+    public record InboundEmailJobResponse(
+        UUID id,
+        UUID passportId,
+        String status,
+        int attempts,
+        String lastError,
+        long payloadSize,
+        Instant createdAt,
+        Instant completedAt
+    ) {}
 }
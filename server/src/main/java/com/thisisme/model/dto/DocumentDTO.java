@@ -1,5 +1,8 @@
 package com.thisisme.model.dto;
 
+import com.thisisme.model.enums.DocumentSort;
+import org.springframework.data.domain.Sort;
+
 import java.time.Instant;
 import java.util.UUID;
 
@@ -14,6 +17,8 @@ public class DocumentDTO {
         String mimeType,
         long fileSize,
         String downloadUrl,
+        String thumbnailUrl,
+        String previewUrl,
         boolean hasOcrText,
         String ocrError,
         Instant uploadedAt,
@@ -32,9 +37,30 @@ public class DocumentDTO {
         long maxFileSize
     ) {}
 
+    /**
+     * Keyset-paginated listing. "cursor" is the opaque nextCursor of the previous page
+     * and must be used with the same sort and direction.
+     */
+    public record DocumentFilterRequest(
+        String mimeType,
+        UUID timelineEntryId,
+        DocumentSort sort,
+        Sort.Direction direction,
+        String cursor,
+        int size
+    ) {
+        public DocumentFilterRequest {
+            if (sort == null) sort = DocumentSort.UPLOADED_AT;
+            if (direction == null) direction = Sort.Direction.DESC;
+            if (size <= 0 || size > 100) size = 50;
+        }
+    }
+
     public record DocumentListResponse(
         java.util.List<DocumentResponse> documents,
         long totalStorageBytes,
-        long storageQuotaBytes
+        long storageQuotaBytes,
+        String nextCursor,
+        boolean hasMore
     ) {}
 }
@@ -0,0 +1,74 @@
+package com.thisisme.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.VisibilityLevel;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+public class ExportDTO {
+
+    /**
+     * Timeline entry fields an export needs. Streamed as a projection rather than as
+     * entities, so the persistence context doesn't grow with the size of the history.
+     */
+    public record TimelineExportRow(
+        UUID id,
+        EntryType entryType,
+        String title,
+        String content,
+        LocalDate entryDate,
+        VisibilityLevel visibilityLevel,
+        boolean pinned,
+        Instant createdAt
+    ) {}
+
+    /**
+     * Last-change markers for everything a passport export contains. Counts catch
+     * deletions that don't leave a timestamp behind.
+     */
+    public record ContentVersion(
+        Instant passportUpdatedAt,
+        long sections,
+        Instant sectionsUpdatedAt,
+        long entries,
+        Instant entriesUpdatedAt,
+        Instant entriesDeletedAt,
+        long documents,
+        Instant documentsUploadedAt,
+        Instant documentsDeletedAt,
+        Instant documentsOcrProcessedAt
+    ) {}
+
+    /**
+     * Status of a background export. bytesWritten grows while the job runs.
+     */
+    public record ExportJobResponse(
+        UUID id,
+        UUID passportId,
+        String format,
+        String status,
+        long bytesWritten,
+        Long artifactSize,
+        String lastError,
+        Instant createdAt,
+        Instant completedAt,
+        Instant expiresAt
+    ) {}
+
+    /**
+     * Document metadata an export needs. storagePath is only used to fetch the file for
+     * the archive export and is never written out.
+     */
+    public record DocumentExportRow(
+        UUID id,
+        String originalFileName,
+        String mimeType,
+        long fileSize,
+        boolean hasOcrText,
+        Instant uploadedAt,
+        @JsonIgnore String storagePath
+    ) {}
+}
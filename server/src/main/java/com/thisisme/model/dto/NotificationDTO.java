@@ -80,6 +80,7 @@ public class NotificationDTO {
             case PERMISSION_GRANTED -> "Access granted";
             case PERMISSION_REVOKED -> "Access revoked";
             case DOCUMENT_OCR_COMPLETE -> "Document processing complete";
+            case EXPORT_READY -> "Exports ready";
         };
     }
 
@@ -92,6 +93,7 @@ public class NotificationDTO {
             case PERMISSION_GRANTED -> "When someone shares a passport with you";
             case PERMISSION_REVOKED -> "When your access to a passport is removed";
             case DOCUMENT_OCR_COMPLETE -> "When document text extraction finishes";
+            case EXPORT_READY -> "When an export you requested is ready to download";
         };
     }
 }
@@ -0,0 +1,52 @@
+package com.thisisme.model.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ranked hits across a passport's timeline entries and documents
+ */
+public class SearchDTO {
+
+    public enum HitType { TIMELINE_ENTRY, DOCUMENT }
+
+    /**
+     * One hit. For entries, detail is the entry type and date the entry date; for documents,
+     * the MIME type and upload date. The snippet is the best matching fragment as
+     * HTML-escaped text, with the matched words in <b> tags.
+     */
+    public record SearchHit(
+        HitType type,
+        UUID id,
+        UUID passportId,
+        String title,
+        String detail,
+        LocalDate date,
+        String snippet,
+        double rank
+    ) {}
+
+    public record SearchResponse(
+        List<SearchHit> hits
+    ) {}
+
+    /**
+     * A child's hits on one page of a cross-passport search, best first
+     */
+    public record ChildHits(
+        UUID passportId,
+        String childFirstName,
+        List<SearchHit> hits
+    ) {}
+
+    /**
+     * One page of hits across every passport the caller can view, grouped by child. Groups
+     * are ordered by their best hit on the page, so a child can appear again on later pages.
+     */
+    public record CrossPassportSearchResponse(
+        List<ChildHits> children,
+        String nextCursor,
+        boolean hasNext
+    ) {}
+}
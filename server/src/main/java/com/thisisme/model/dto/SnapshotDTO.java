@@ -0,0 +1,157 @@
+package com.thisisme.model.dto;
+
+import com.thisisme.model.entity.SectionRevision.ChangeType;
+import com.thisisme.model.enums.ContentStatus;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.ReactionType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.model.enums.SectionType;
+import com.thisisme.model.enums.VisibilityLevel;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records of a binary passport snapshot. Ids are the source environment's; users are
+ * referenced by id and listed once in the snapshot's user directory, which an import
+ * only uses for author names. Most are read straight from the database as projections.
+ */
+public class SnapshotDTO {
+
+    public record UserRef(UUID id, String email, String name) {}
+
+    public record PassportData(
+        UUID id,
+        String childFirstName,
+        LocalDate childDateOfBirth,
+        boolean childViewShowHates,
+        boolean wizardComplete,
+        UUID createdBy,
+        Instant createdAt
+    ) {}
+
+    /**
+     * grants lists the enabled passport_permissions capability columns (can_view_passport, ...)
+     */
+    public record PermissionData(
+        UUID userId,
+        Role role,
+        Set<String> grants,
+        UUID grantedBy,
+        Instant grantedAt,
+        String notes
+    ) {}
+
+    public record SectionData(
+        UUID id,
+        SectionType type,
+        String content,
+        String remedialSuggestion,
+        boolean published,
+        VisibilityLevel visibilityLevel,
+        int displayOrder,
+        ContentStatus status,
+        boolean childModeContribution,
+        UUID createdBy,
+        UUID lastEditedBy,
+        Instant createdAt,
+        Instant updatedAt
+    ) {}
+
+    public record RevisionData(
+        UUID id,
+        UUID sectionId,
+        String content,
+        String remedialSuggestion,
+        ChangeType changeType,
+        UUID authorId,
+        String authorName,
+        Instant createdAt
+    ) {}
+
+    public record EntryData(
+        UUID id,
+        UUID authorId,
+        EntryType entryType,
+        String title,
+        String content,
+        LocalDate entryDate,
+        VisibilityLevel visibilityLevel,
+        Map<String, Object> metadata,
+        ContentStatus status,
+        boolean childModeContribution,
+        boolean pinned,
+        boolean flaggedForFollowup,
+        LocalDate followupDueDate,
+        Instant createdAt,
+        Instant updatedAt,
+        Set<String> tags,
+        Set<Role> visibleToRoles,
+        Set<UUID> mentionedUserIds
+    ) {
+        public EntryData(UUID id, UUID authorId, EntryType entryType, String title, String content,
+                         LocalDate entryDate, VisibilityLevel visibilityLevel, Map<String, Object> metadata,
+                         ContentStatus status, boolean childModeContribution, boolean pinned,
+                         boolean flaggedForFollowup, LocalDate followupDueDate, Instant createdAt,
+                         Instant updatedAt) {
+            this(id, authorId, entryType, title, content, entryDate, visibilityLevel, metadata, status,
+                childModeContribution, pinned, flaggedForFollowup, followupDueDate, createdAt, updatedAt,
+                Set.of(), Set.of(), Set.of());
+        }
+
+        public EntryData withCollections(Set<String> tags, Set<Role> visibleToRoles, Set<UUID> mentionedUserIds) {
+            return new EntryData(id, authorId, entryType, title, content, entryDate, visibilityLevel, metadata,
+                status, childModeContribution, pinned, flaggedForFollowup, followupDueDate, createdAt, updatedAt,
+                tags, visibleToRoles, mentionedUserIds);
+        }
+    }
+
+    public record CommentData(
+        UUID id,
+        UUID entryId,
+        UUID authorId,
+        String content,
+        Instant createdAt,
+        Instant updatedAt,
+        Set<UUID> mentionedUserIds
+    ) {
+        public CommentData(UUID id, UUID entryId, UUID authorId, String content, Instant createdAt,
+                           Instant updatedAt) {
+            this(id, entryId, authorId, content, createdAt, updatedAt, Set.of());
+        }
+
+        public CommentData withMentions(Set<UUID> mentionedUserIds) {
+            return new CommentData(id, entryId, authorId, content, createdAt, updatedAt, mentionedUserIds);
+        }
+    }
+
+    public record ReactionData(UUID entryId, UUID userId, ReactionType reactionType, Instant createdAt) {}
+
+    /**
+     * Metadata only; the files stay in the source environment's storage
+     */
+    public record DocumentRef(
+        UUID id,
+        UUID timelineEntryId,
+        String originalFileName,
+        String mimeType,
+        long fileSize,
+        String contentHash,
+        Instant uploadedAt
+    ) {}
+
+    /**
+     * Outcome of a snapshot import
+     */
+    public record ImportResult(
+        UUID passportId,
+        int sections,
+        int revisions,
+        int entries,
+        int comments,
+        int documentsSkipped
+    ) {}
+}
@@ -0,0 +1,118 @@
+package com.thisisme.model.dto;
+
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.NotificationType;
+import com.thisisme.model.enums.ReactionType;
+import com.thisisme.model.enums.SectionType;
+import com.thisisme.model.enums.VisibilityLevel;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Rows of a data subject access export. Each category is read a page at a time as
+ * projections, keyed on id, so neither the heap nor a transaction grows with the size
+ * of the user's history.
+ */
+public class SubjectAccessDTO {
+
+    public record PassportRow(
+        UUID id,
+        String childFirstName,
+        LocalDate childDateOfBirth,
+        Instant createdAt,
+        Instant updatedAt,
+        List<SectionRow> sections
+    ) {
+        public PassportRow(UUID id, String childFirstName, LocalDate childDateOfBirth,
+                           Instant createdAt, Instant updatedAt) {
+            this(id, childFirstName, childDateOfBirth, createdAt, updatedAt, List.of());
+        }
+
+        public PassportRow withSections(List<SectionRow> sections) {
+            return new PassportRow(id, childFirstName, childDateOfBirth, createdAt, updatedAt, sections);
+        }
+    }
+
+    public record SectionRow(
+        UUID passportId,
+        SectionType type,
+        String content,
+        String remedialSuggestion,
+        Instant createdAt,
+        Instant updatedAt
+    ) {}
+
+    public record TimelineRow(
+        UUID id,
+        UUID passportId,
+        EntryType entryType,
+        String title,
+        String content,
+        LocalDate entryDate,
+        VisibilityLevel visibilityLevel,
+        Instant createdAt,
+        Instant updatedAt,
+        List<String> tags
+    ) {
+        public TimelineRow(UUID id, UUID passportId, EntryType entryType, String title, String content,
+                           LocalDate entryDate, VisibilityLevel visibilityLevel, Instant createdAt,
+                           Instant updatedAt) {
+            this(id, passportId, entryType, title, content, entryDate, visibilityLevel, createdAt, updatedAt,
+                List.of());
+        }
+
+        public TimelineRow withTags(List<String> tags) {
+            return new TimelineRow(id, passportId, entryType, title, content, entryDate, visibilityLevel,
+                createdAt, updatedAt, tags);
+        }
+    }
+
+    public record DocumentRow(
+        UUID id,
+        UUID passportId,
+        String originalFileName,
+        String mimeType,
+        long fileSize,
+        Instant uploadedAt
+    ) {}
+
+    public record CommentRow(
+        UUID id,
+        UUID entryId,
+        String content,
+        Instant createdAt,
+        Instant updatedAt
+    ) {}
+
+    public record ReactionRow(
+        UUID id,
+        UUID entryId,
+        ReactionType reactionType,
+        Instant createdAt
+    ) {}
+
+    public record NotificationRow(
+        UUID id,
+        NotificationType type,
+        String title,
+        String message,
+        UUID passportId,
+        Instant createdAt,
+        Instant readAt
+    ) {}
+
+    public record AuditRow(
+        UUID id,
+        AuditAction action,
+        UUID passportId,
+        String entityType,
+        UUID entityId,
+        String description,
+        String ipAddress,
+        Instant timestamp
+    ) {}
+}
@@ -107,4 +107,30 @@ public class TimelineDTO {
         boolean hasNext,
         boolean hasPrevious
     ) {}
+
+    /**
+     * Ranked search hits with counts of every visible match per entry type and tag,
+     * before the type and tag restrictions
+     */
+    public record TimelineSearchResponse(
+        List<TimelineEntryResponse> entries,
+        long totalHits,
+        Map<EntryType, Long> entryTypeCounts,
+        Map<String, Long> tagCounts
+    ) {}
+
+    /**
+     * Outcome of a bulk timeline import. Rows with errors are skipped and the first of them
+     * listed: CSV rows are numbered from the one after the header, NDJSON rows by line.
+     */
+    public record TimelineImportResult(
+        int imported,
+        int failed,
+        List<ImportRowError> errors
+    ) {}
+
+    public record ImportRowError(
+        long row,
+        String message
+    ) {}
 }
@@ -16,7 +16,7 @@ import java.util.UUID;
  */
 @Entity
 @Table(name = "audit_logs", indexes = {
-    @Index(name = "idx_audit_user", columnList = "user_id"),
+    @Index(name = "idx_audit_user_id", columnList = "user_id, id"),
     @Index(name = "idx_audit_passport", columnList = "passport_id"),
     @Index(name = "idx_audit_action", columnList = "action"),
     @Index(name = "idx_audit_timestamp", columnList = "timestamp"),
@@ -10,7 +10,8 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "documents", indexes = {
-    @Index(name = "idx_documents_passport", columnList = "passport_id"),
+    @Index(name = "idx_documents_passport_id", columnList = "passport_id, id"),
+    @Index(name = "idx_documents_passport_listing", columnList = "passport_id, deleted_at, uploaded_at, id"),
     @Index(name = "idx_documents_timeline", columnList = "timeline_entry_id"),
     @Index(name = "idx_documents_uploaded_by", columnList = "uploaded_by_id")
 })
@@ -78,6 +79,15 @@ public class Document {
     @Column
     private String ocrError;
 
+    /**
+     * When thumbnail/preview renditions were written (images only)
+     */
+    @Column
+    private Instant renditionsGeneratedAt;
+
+    @Column
+    private String renditionError;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "uploaded_by_id", nullable = false)
     private User uploadedBy;
@@ -142,6 +152,10 @@ public class Document {
         this.ocrProcessedAt = Instant.now();
     }
 
+    public Instant getRenditionsGeneratedAt() { return renditionsGeneratedAt; }
+    public String getRenditionError() { return renditionError; }
+    public boolean hasRenditions() { return renditionsGeneratedAt != null; }
+
     public User getUploadedBy() { return uploadedBy; }
     public Instant getUploadedAt() { return uploadedAt; }
 
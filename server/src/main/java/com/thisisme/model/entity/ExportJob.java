@@ -0,0 +1,152 @@
+package com.thisisme.model.entity;
+
+import com.thisisme.model.enums.ExportFormat;
+import com.thisisme.model.enums.ExportJobStatus;
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Queued export. Workers render it into storage at artifactPath; see
+ * ExportJobRepository.lockDueJobIds. Jobs are shared by every request with the same
+ * dedupKey, so requestedBy is only the first requester.
+ */
+@Entity
+@Table(name = "export_jobs")
+@EntityListeners(AuditingEntityListener.class)
+public class ExportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "requested_by", nullable = false)
+    private UUID requestedBy;
+
+    @Column(name = "passport_id")
+    private UUID passportId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ExportFormat format;
+
+    @Column(length = 64)
+    private String contentVersion;
+
+    @Column(nullable = false, length = 200)
+    private String dedupKey;
+
+    @Column(length = 45)
+    private String clientIp;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ExportJobStatus status = ExportJobStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(length = 100)
+    private String lockedBy;
+
+    @Column
+    private Instant lockedAt;
+
+    @Column(nullable = false)
+    private long bytesWritten;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(length = 500)
+    private String artifactPath;
+
+    @Column
+    private Long artifactSize;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column
+    private Instant startedAt;
+
+    @Column
+    private Instant completedAt;
+
+    @Column
+    private Instant expiresAt;
+
+    protected ExportJob() {}
+
+    public boolean isClaimedBy(String workerId) {
+        return status == ExportJobStatus.RUNNING && workerId.equals(lockedBy);
+    }
+
+    public boolean isDataSubjectExport() {
+        return passportId == null;
+    }
+
+    public void complete(String artifactPath, long artifactSize, Instant expiresAt) {
+        this.status = ExportJobStatus.COMPLETED;
+        this.artifactPath = artifactPath;
+        this.artifactSize = artifactSize;
+        this.bytesWritten = artifactSize;
+        this.completedAt = Instant.now();
+        this.expiresAt = expiresAt;
+        this.lastError = null;
+        release();
+    }
+
+    public void retryAt(Instant nextAttemptAt, String error) {
+        this.status = ExportJobStatus.PENDING;
+        this.nextAttemptAt = nextAttemptAt;
+        this.bytesWritten = 0;
+        this.lastError = error;
+        release();
+    }
+
+    /**
+     * Failed jobs are kept until expiresAt so the requester can see why
+     */
+    public void fail(String error, Instant expiresAt) {
+        this.status = ExportJobStatus.FAILED;
+        this.completedAt = Instant.now();
+        this.expiresAt = expiresAt;
+        this.lastError = error;
+        release();
+    }
+
+    private void release() {
+        this.lockedBy = null;
+        this.lockedAt = null;
+    }
+
+    // Getters
+    public UUID getId() { return id; }
+    public UUID getRequestedBy() { return requestedBy; }
+    public UUID getPassportId() { return passportId; }
+    public ExportFormat getFormat() { return format; }
+    public String getContentVersion() { return contentVersion; }
+    public String getDedupKey() { return dedupKey; }
+    public String getClientIp() { return clientIp; }
+    public ExportJobStatus getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLockedBy() { return lockedBy; }
+    public Instant getLockedAt() { return lockedAt; }
+    public long getBytesWritten() { return bytesWritten; }
+    public String getLastError() { return lastError; }
+    public String getArtifactPath() { return artifactPath; }
+    public Long getArtifactSize() { return artifactSize; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getCompletedAt() { return completedAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
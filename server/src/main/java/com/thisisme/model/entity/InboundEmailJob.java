@@ -0,0 +1,139 @@
+package com.thisisme.model.entity;
+
+import com.thisisme.model.enums.InboundEmailJobStatus;
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Queued inbound email delivery. The raw webhook payload lives in storage at payloadPath.
+ * Claimed by workers with row locks; see InboundEmailJobRepository.lockDueJobIds.
+ */
+@Entity
+@Table(name = "inbound_email_jobs")
+@EntityListeners(AuditingEntityListener.class)
+public class InboundEmailJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    /**
+     * Arrival order, assigned by the database; jobs for a passport are processed in this order
+     */
+    @Column(insertable = false, updatable = false)
+    private Long seq;
+
+    @Column(name = "passport_id", nullable = false)
+    private UUID passportId;
+
+    @Column(nullable = false, length = 500)
+    private String payloadPath;
+
+    @Column(nullable = false)
+    private long payloadSize;
+
+    @Column(length = 45)
+    private String clientIp;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private InboundEmailJobStatus status = InboundEmailJobStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(length = 100)
+    private String lockedBy;
+
+    @Column
+    private Instant lockedAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column
+    private UUID entryId;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column
+    private Instant completedAt;
+
+    protected InboundEmailJob() {}
+
+    public InboundEmailJob(UUID passportId, String payloadPath, long payloadSize, String clientIp) {
+        this.passportId = passportId;
+        this.payloadPath = payloadPath;
+        this.payloadSize = payloadSize;
+        this.clientIp = clientIp;
+        this.nextAttemptAt = Instant.now();
+    }
+
+    public boolean isClaimedBy(String workerId) {
+        return status == InboundEmailJobStatus.RUNNING && workerId.equals(lockedBy);
+    }
+
+    public void complete(UUID entryId) {
+        this.status = InboundEmailJobStatus.COMPLETED;
+        this.entryId = entryId;
+        this.completedAt = Instant.now();
+        this.lastError = null;
+        release();
+    }
+
+    public void retryAt(Instant nextAttemptAt, String error) {
+        this.status = InboundEmailJobStatus.PENDING;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = error;
+        release();
+    }
+
+    public void fail(String error) {
+        this.status = InboundEmailJobStatus.FAILED;
+        this.completedAt = Instant.now();
+        this.lastError = error;
+        release();
+    }
+
+    /**
+     * Put a dead-lettered job back on the queue with a fresh set of attempts
+     */
+    public void requeue() {
+        this.status = InboundEmailJobStatus.PENDING;
+        this.attempts = 0;
+        this.nextAttemptAt = Instant.now();
+        this.completedAt = null;
+        release();
+    }
+
+    private void release() {
+        this.lockedBy = null;
+        this.lockedAt = null;
+    }
+
+    // Getters
+    public UUID getId() { return id; }
+    public Long getSeq() { return seq; }
+    public UUID getPassportId() { return passportId; }
+    public String getPayloadPath() { return payloadPath; }
+    public long getPayloadSize() { return payloadSize; }
+    public String getClientIp() { return clientIp; }
+    public InboundEmailJobStatus getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLockedBy() { return lockedBy; }
+    public Instant getLockedAt() { return lockedAt; }
+    public String getLastError() { return lastError; }
+    public UUID getEntryId() { return entryId; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getCompletedAt() { return completedAt; }
+}
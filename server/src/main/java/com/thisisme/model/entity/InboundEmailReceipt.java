@@ -0,0 +1,52 @@
+package com.thisisme.model.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Record of an inbound email delivery, used to make webhook retries idempotent.
+ * completedAt and attachmentCount are null while the delivery is in progress; entryId is
+ * set as soon as its timeline entry exists, so a retry after a crash can resume it.
+ */
+@Entity
+@Table(name = "inbound_email_receipts",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"passport_id", "dedup_key"}))
+public class InboundEmailReceipt {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "passport_id", nullable = false)
+    private UUID passportId;
+
+    @Column(name = "dedup_key", nullable = false, length = 80)
+    private String dedupKey;
+
+    @Column(nullable = false)
+    private Instant claimedAt;
+
+    @Column
+    private Instant completedAt;
+
+    @Column
+    private UUID entryId;
+
+    @Column
+    private Integer attachmentCount;
+
+    protected InboundEmailReceipt() {}
+
+    public UUID getId() { return id; }
+    public UUID getPassportId() { return passportId; }
+    public String getDedupKey() { return dedupKey; }
+    public Instant getClaimedAt() { return claimedAt; }
+    public Instant getCompletedAt() { return completedAt; }
+    public UUID getEntryId() { return entryId; }
+    public Integer getAttachmentCount() { return attachmentCount; }
+
+    public boolean isCompleted() {
+        return completedAt != null;
+    }
+}
@@ -10,7 +10,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "notifications", indexes = {
-    @Index(name = "idx_notifications_recipient", columnList = "recipient_id"),
+    @Index(name = "idx_notifications_recipient_id", columnList = "recipient_id, id"),
     @Index(name = "idx_notifications_recipient_read", columnList = "recipient_id, read_at"),
     @Index(name = "idx_notifications_created_at", columnList = "created_at DESC")
 })
@@ -0,0 +1,137 @@
+package com.thisisme.model.entity;
+
+import com.thisisme.model.enums.OcrJobStatus;
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Queued OCR work for a single document.
+ * Claimed by workers with row locks; see OcrJobRepository.lockDueJobIds.
+ */
+@Entity
+@Table(name = "ocr_jobs", indexes = {
+    @Index(name = "idx_ocr_jobs_document", columnList = "document_id", unique = true)
+})
+@EntityListeners(AuditingEntityListener.class)
+public class OcrJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_id", nullable = false, unique = true)
+    private Document document;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OcrJobStatus status = OcrJobStatus.PENDING;
+
+    /**
+     * Create a timeline entry from the result (only when the upload wasn't attached to one)
+     */
+    @Column(nullable = false)
+    private boolean autoCreateTimeline;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    /**
+     * This PDF's text layer has been read and saved; only its scanned pages are left
+     */
+    @Column(nullable = false)
+    private boolean textLayerExtracted;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(length = 100)
+    private String lockedBy;
+
+    @Column
+    private Instant lockedAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column
+    private Instant completedAt;
+
+    protected OcrJob() {}
+
+    public OcrJob(Document document, boolean autoCreateTimeline) {
+        this.document = document;
+        this.autoCreateTimeline = autoCreateTimeline;
+        this.nextAttemptAt = Instant.now();
+    }
+
+    public boolean isClaimedBy(String workerId) {
+        return status == OcrJobStatus.RUNNING && workerId.equals(lockedBy);
+    }
+
+    public void complete() {
+        this.status = OcrJobStatus.COMPLETED;
+        this.completedAt = Instant.now();
+        this.lastError = null;
+        release();
+    }
+
+    public void retryAt(Instant nextAttemptAt, String error) {
+        this.status = OcrJobStatus.PENDING;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = error;
+        release();
+    }
+
+    /**
+     * Leave only the OCR of scanned pages to do, once the text layer has been saved
+     */
+    public void markTextLayerExtracted() {
+        this.textLayerExtracted = true;
+    }
+
+    /**
+     * Back on the queue straight away, without counting the claim as an attempt
+     */
+    public void requeue(String reason) {
+        this.status = OcrJobStatus.PENDING;
+        this.attempts = Math.max(attempts - 1, 0);
+        this.nextAttemptAt = Instant.now();
+        this.lastError = reason;
+        release();
+    }
+
+    public void fail(String error) {
+        this.status = OcrJobStatus.FAILED;
+        this.completedAt = Instant.now();
+        this.lastError = error;
+        release();
+    }
+
+    private void release() {
+        this.lockedBy = null;
+        this.lockedAt = null;
+    }
+
+    // Getters
+    public UUID getId() { return id; }
+    public Document getDocument() { return document; }
+    public OcrJobStatus getStatus() { return status; }
+    public boolean isAutoCreateTimeline() { return autoCreateTimeline; }
+    public int getAttempts() { return attempts; }
+    public boolean isTextLayerExtracted() { return textLayerExtracted; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLockedBy() { return lockedBy; }
+    public Instant getLockedAt() { return lockedAt; }
+    public String getLastError() { return lastError; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getCompletedAt() { return completedAt; }
+}
@@ -0,0 +1,57 @@
+package com.thisisme.model.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Parsed OCR result for a given file content hash, as JSON
+ */
+@Entity
+@Table(name = "ocr_result_cache", indexes = {
+    @Index(name = "idx_ocr_result_cache_expires", columnList = "expires_at")
+})
+public class OcrResultCacheEntry {
+
+    /**
+     * SHA-256 of the file content (same encoding as Document.contentHash)
+     */
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+
+    /**
+     * OCR service version that produced the result; null if unknown at the time
+     */
+    @Column(length = 50)
+    private String modelVersion;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String resultJson;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    protected OcrResultCacheEntry() {}
+
+    public OcrResultCacheEntry(String contentHash, String modelVersion, String resultJson, Instant expiresAt) {
+        this.contentHash = contentHash;
+        this.modelVersion = modelVersion;
+        this.resultJson = resultJson;
+        this.createdAt = Instant.now();
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    public String getContentHash() { return contentHash; }
+    public String getModelVersion() { return modelVersion; }
+    public String getResultJson() { return resultJson; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
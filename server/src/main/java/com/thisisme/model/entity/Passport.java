@@ -17,7 +17,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "passports", indexes = {
-    @Index(name = "idx_passports_created_by", columnList = "created_by_id")
+    @Index(name = "idx_passports_created_by_id", columnList = "created_by_id, id")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class Passport {
@@ -90,6 +90,11 @@ public class Passport {
     @Column
     private Instant scheduledForDeletionAt;
 
+    // Set by bulk imports so every node's search index reindexes the passport; written
+    // only by PassportRepository.requestSearchReindex, never by entity updates
+    @Column(insertable = false, updatable = false)
+    private Instant searchReindexRequestedAt;
+
     protected Passport() {}
 
     public Passport(String childFirstName, User createdBy) {
@@ -0,0 +1,43 @@
+package com.thisisme.model.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A passport's document encryption key, wrapped with a storage key-encryption key.
+ * wrappedKey is null once the key has been shredded.
+ */
+@Entity
+@Table(name = "passport_keys")
+public class PassportKey {
+
+    @Id
+    @Column(name = "passport_id")
+    private UUID passportId;
+
+    @Column(length = 255)
+    private String kekId;
+
+    @Column
+    private byte[] wrappedKey;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column
+    private Instant shreddedAt;
+
+    protected PassportKey() {}
+
+    public UUID getPassportId() { return passportId; }
+    public String getKekId() { return kekId; }
+    public byte[] getWrappedKey() { return wrappedKey; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getShreddedAt() { return shreddedAt; }
+
+    public boolean isShredded() {
+        return shreddedAt != null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.thisisme.model.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Cluster-wide lock for a scheduled job; see SchedulerLeaseRepository.tryAcquire
+ */
+@Entity
+@Table(name = "scheduler_leases")
+public class SchedulerLease {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant lockedUntil;
+
+    @Column(nullable = false)
+    private Instant acquiredAt;
+
+    protected SchedulerLease() {}
+
+    public String getName() { return name; }
+    public String getOwner() { return owner; }
+    public Instant getLockedUntil() { return lockedUntil; }
+    public Instant getAcquiredAt() { return acquiredAt; }
+}
@@ -156,6 +156,13 @@ public class ShareLink {
         this.revokedAt = Instant.now();
     }
 
+    /**
+     * Deactivate once past its expiry (unlike revoke, not a user action)
+     */
+    public void deactivate() {
+        this.active = false;
+    }
+
     public void recordAccess() {
         this.accessCount++;
         this.lastAccessedAt = Instant.now();
@@ -0,0 +1,50 @@
+package com.thisisme.model.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Running total of live (not soft-deleted) document bytes for a passport.
+ * Only changed through the atomic updates in StorageUsageRepository.
+ */
+@Entity
+@Table(name = "storage_usage")
+public class StorageUsage {
+
+    @Id
+    @Column(name = "passport_id")
+    private UUID passportId;
+
+    @Column(nullable = false)
+    private long bytesUsed;
+
+    @Column(nullable = false)
+    private int documentCount;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    private Instant reconciledAt;
+
+    protected StorageUsage() {}
+
+    public StorageUsage(UUID passportId) {
+        this.passportId = passportId;
+        this.updatedAt = Instant.now();
+    }
+
+    public void reconcile(long bytesUsed, int documentCount, Instant now) {
+        this.bytesUsed = bytesUsed;
+        this.documentCount = documentCount;
+        this.updatedAt = now;
+        this.reconciledAt = now;
+    }
+
+    public UUID getPassportId() { return passportId; }
+    public long getBytesUsed() { return bytesUsed; }
+    public int getDocumentCount() { return documentCount; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public Instant getReconciledAt() { return reconciledAt; }
+}
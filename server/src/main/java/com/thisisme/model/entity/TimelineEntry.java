@@ -24,7 +24,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "timeline_entries", indexes = {
-    @Index(name = "idx_timeline_passport", columnList = "passport_id"),
+    @Index(name = "idx_timeline_passport_id", columnList = "passport_id, id"),
     @Index(name = "idx_timeline_author", columnList = "author_id"),
     @Index(name = "idx_timeline_type", columnList = "entry_type"),
     @Index(name = "idx_timeline_date", columnList = "entry_date"),
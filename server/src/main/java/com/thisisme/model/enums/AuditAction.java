@@ -15,6 +15,8 @@ public enum AuditAction {
     PASSPORT_VIEWED,
     PASSPORT_UPDATED,
     PASSPORT_DELETED,
+    PASSPORT_IMPORTED,
+    PASSPORT_SEARCHED,
 
     // Section operations
     SECTION_CREATED,
@@ -26,6 +28,7 @@ public enum AuditAction {
     TIMELINE_ENTRY_VIEWED,
     TIMELINE_ENTRY_UPDATED,
     TIMELINE_ENTRY_DELETED,
+    TIMELINE_ENTRIES_IMPORTED,
 
     // Document operations
     DOCUMENT_UPLOADED,
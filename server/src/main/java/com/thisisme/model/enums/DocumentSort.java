@@ -0,0 +1,42 @@
+package com.thisisme.model.enums;
+
+/**
+ * Orderings offered by the paginated document list.
+ * Each is paired with the document id as a tiebreaker so keyset cursors are unique.
+ */
+public enum DocumentSort {
+    UPLOADED_AT("uploadedAt", "uploadedAt"),
+    NAME("name", "originalFileName"),
+    SIZE("size", "fileSize");
+
+    private final String paramName;
+    private final String property;
+
+    DocumentSort(String paramName, String property) {
+        this.paramName = paramName;
+        this.property = property;
+    }
+
+    /**
+     * Value accepted in the "sort" query parameter
+     */
+    public String getParamName() {
+        return paramName;
+    }
+
+    /**
+     * Document entity property ordered on
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    public static DocumentSort fromParam(String value) {
+        for (DocumentSort sort : values()) {
+            if (sort.paramName.equalsIgnoreCase(value) || sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort: " + value);
+    }
+}
@@ -0,0 +1,36 @@
+package com.thisisme.model.enums;
+
+/**
+ * Formats an export job can render. The DATA_SUBJECT_ formats are a user's UK GDPR
+ * access/portability bundle rather than a single passport.
+ */
+public enum ExportFormat {
+    JSON("application/json", "json"),
+    CSV("text/csv", "csv"),
+    MARKDOWN("text/markdown", "md"),
+    HTML("text/html", "html"),
+    ZIP("application/zip", "zip"),
+    DATA_SUBJECT_JSON("application/json", "json"),
+    DATA_SUBJECT_NDJSON("application/x-ndjson", "ndjson"),
+    DATA_SUBJECT_CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public boolean isDataSubjectExport() {
+        return this == DATA_SUBJECT_JSON || this == DATA_SUBJECT_NDJSON || this == DATA_SUBJECT_CSV;
+    }
+}
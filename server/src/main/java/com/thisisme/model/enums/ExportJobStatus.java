@@ -0,0 +1,8 @@
+package com.thisisme.model.enums;
+
+public enum ExportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,  // Artifact is in storage until expiresAt
+    FAILED
+}
@@ -0,0 +1,8 @@
+package com.thisisme.model.enums;
+
+public enum InboundEmailJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED      // Dead letter: out of attempts or not retryable
+}
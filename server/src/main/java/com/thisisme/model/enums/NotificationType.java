@@ -7,5 +7,6 @@ public enum NotificationType {
     REACTION_ON_YOUR_ENTRY,   // Reaction on your entry
     PERMISSION_GRANTED,       // Someone shares passport with you
     PERMISSION_REVOKED,       // Access removed
-    DOCUMENT_OCR_COMPLETE     // OCR processing finished
+    DOCUMENT_OCR_COMPLETE,    // OCR processing finished
+    EXPORT_READY              // A requested export can be downloaded
 }
@@ -0,0 +1,8 @@
+package com.thisisme.model.enums;
+
+public enum OcrJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,38 @@
+package com.thisisme.model.enums;
+
+import java.util.Locale;
+
+/**
+ * Downscaled image renditions generated for uploaded photos.
+ * Each size is bounded on its longest edge and stored as a JPEG next to the original.
+ */
+public enum RenditionSize {
+    THUMBNAIL(256),
+    PREVIEW(1280);
+
+    private final int maxDimension;
+
+    RenditionSize(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Lower-case name used in URLs and storage keys
+     */
+    public String getPathSegment() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static RenditionSize fromPathSegment(String value) {
+        for (RenditionSize size : values()) {
+            if (size.getPathSegment().equalsIgnoreCase(value)) {
+                return size;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rendition size: " + value);
+    }
+}
@@ -1,5 +1,6 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SubjectAccessDTO.AuditRow;
 import com.thisisme.model.entity.AuditLog;
 import com.thisisme.model.enums.AuditAction;
 import org.springframework.data.domain.Page;
@@ -20,6 +21,15 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, UUID> {
 
     Page<AuditLog> findByPassportId(UUID passportId, Pageable pageable);
 
+    /**
+     * A page of the user's own audit entries after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$AuditRow(" +
+           "a.id, a.action, a.passportId, a.entityType, a.entityId, a.description, a.ipAddress, a.timestamp) " +
+           "FROM AuditLog a WHERE a.userId = :userId AND a.id > :afterId ORDER BY a.id")
+    List<AuditRow> findByUserPageAfter(@Param("userId") UUID userId, @Param("afterId") UUID afterId,
+                                       Pageable pageable);
+
     @Query("SELECT a FROM AuditLog a WHERE a.userId = :userId " +
            "AND a.timestamp BETWEEN :start AND :end ORDER BY a.timestamp DESC")
     List<AuditLog> findByUserIdAndTimeRange(
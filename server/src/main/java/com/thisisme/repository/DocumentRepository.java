@@ -1,17 +1,32 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.ExportDTO.DocumentExportRow;
+import com.thisisme.model.dto.SnapshotDTO.DocumentRef;
+import com.thisisme.model.dto.SubjectAccessDTO.DocumentRow;
 import com.thisisme.model.entity.Document;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<Document, UUID> {
+public interface DocumentRepository extends JpaRepository<Document, UUID>, JpaSpecificationExecutor<Document> {
 
     @Query("SELECT d FROM Document d " +
            "JOIN FETCH d.uploadedBy " +
@@ -19,22 +34,144 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
            "AND d.deletedAt IS NULL ORDER BY d.uploadedAt DESC")
     List<Document> findByPassportId(@Param("passportId") UUID passportId);
 
+    /**
+     * Live document metadata of a passport, newest first, for exports. Must be consumed
+     * (and closed) inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.ExportDTO$DocumentExportRow(" +
+           "d.id, d.originalFileName, d.mimeType, d.fileSize, " +
+           "CASE WHEN d.ocrText IS NOT NULL THEN true ELSE false END, d.uploadedAt, d.storagePath) " +
+           "FROM Document d WHERE d.passport.id = :passportId AND d.deletedAt IS NULL " +
+           "ORDER BY d.uploadedAt DESC, d.id")
+    Stream<DocumentExportRow> streamForExport(@Param("passportId") UUID passportId);
+
+    /**
+     * A page of a passport's live document metadata after the given id, for subject
+     * access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$DocumentRow(" +
+           "d.id, d.passport.id, d.originalFileName, d.mimeType, d.fileSize, d.uploadedAt) " +
+           "FROM Document d WHERE d.passport.id = :passportId AND d.deletedAt IS NULL AND d.id > :afterId " +
+           "ORDER BY d.id")
+    List<DocumentRow> findPageAfter(@Param("passportId") UUID passportId, @Param("afterId") UUID afterId,
+                                    Pageable pageable);
+
+    /**
+     * A page of metadata of the user's live uploads to passports they did not create,
+     * after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$DocumentRow(" +
+           "d.id, d.passport.id, d.originalFileName, d.mimeType, d.fileSize, d.uploadedAt) " +
+           "FROM Document d WHERE d.uploadedBy.id = :userId AND d.passport.createdBy.id <> :userId " +
+           "AND d.deletedAt IS NULL AND d.id > :afterId ORDER BY d.id")
+    List<DocumentRow> findByUploaderOnOtherPassportsPageAfter(@Param("userId") UUID userId,
+                                                              @Param("afterId") UUID afterId, Pageable pageable);
+
+    /**
+     * Live document metadata of a passport, for snapshots. Must be consumed (and closed)
+     * inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$DocumentRef(" +
+           "d.id, entry.id, d.originalFileName, d.mimeType, d.fileSize, d.contentHash, d.uploadedAt) " +
+           "FROM Document d LEFT JOIN d.timelineEntry entry " +
+           "WHERE d.passport.id = :passportId AND d.deletedAt IS NULL ORDER BY d.id")
+    Stream<DocumentRef> streamForSnapshot(@Param("passportId") UUID passportId);
+
     @Query("SELECT d FROM Document d " +
            "JOIN FETCH d.uploadedBy " +
            "WHERE d.timelineEntry.id = :entryId " +
            "AND d.deletedAt IS NULL")
     List<Document> findByTimelineEntryId(@Param("entryId") UUID entryId);
 
+    /**
+     * (entry id, original file name, OCR text) of the live documents attached to a batch of entries
+     */
+    @Query("SELECT d.timelineEntry.id, d.originalFileName, d.ocrText FROM Document d " +
+           "WHERE d.timelineEntry.id IN :entryIds AND d.deletedAt IS NULL")
+    List<Object[]> findTextByTimelineEntryIds(@Param("entryIds") Collection<UUID> entryIds);
+
+    /**
+     * Ids of entries whose attachments were uploaded, OCR'd or deleted after the given instant
+     */
+    @Query("SELECT DISTINCT d.timelineEntry.id FROM Document d WHERE d.timelineEntry IS NOT NULL " +
+           "AND (d.uploadedAt > :since OR d.ocrProcessedAt > :since OR d.deletedAt > :since)")
+    List<UUID> findEntryIdsWithDocumentsChangedSince(@Param("since") Instant since);
+
     @Query("SELECT d FROM Document d WHERE d.ocrText IS NULL " +
            "AND d.ocrError IS NULL AND d.deletedAt IS NULL " +
            "AND (d.mimeType LIKE 'image/%' OR d.mimeType = 'application/pdf')")
     List<Document> findPendingOcr();
 
-    @Query("SELECT d FROM Document d WHERE d.expiresAt IS NOT NULL " +
-           "AND d.expiresAt <= :now AND d.deletedAt IS NULL")
-    List<Document> findExpired(@Param("now") Instant now);
+    @Query("SELECT d.id FROM Document d WHERE d.renditionsGeneratedAt IS NULL " +
+           "AND d.renditionError IS NULL AND d.deletedAt IS NULL " +
+           "AND d.mimeType IN :mimeTypes AND d.uploadedAt < :uploadedBefore " +
+           "ORDER BY d.uploadedAt")
+    List<UUID> findPendingRenditions(@Param("mimeTypes") List<String> mimeTypes,
+                                     @Param("uploadedBefore") Instant uploadedBefore,
+                                     Pageable pageable);
+
+    // Targeted updates so rendition workers never overwrite OCR results on the same row
+    @Transactional
+    @Modifying
+    @Query("UPDATE Document d SET d.renditionsGeneratedAt = :generatedAt, d.renditionError = NULL " +
+           "WHERE d.id = :id")
+    int markRenditionsGenerated(@Param("id") UUID id, @Param("generatedAt") Instant generatedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Document d SET d.renditionError = :error WHERE d.id = :id")
+    int markRenditionError(@Param("id") UUID id, @Param("error") String error);
+
+    /**
+     * Soft delete every document of an erased passport and drop its extracted text
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.ocrText = NULL, " +
+           "d.deletedAt = COALESCE(d.deletedAt, :now) WHERE d.passport.id = :passportId")
+    int eraseByPassport(@Param("passportId") UUID passportId, @Param("now") Instant now);
+
+    @Query("SELECT d FROM Document d JOIN FETCH d.passport WHERE d.expiresAt IS NOT NULL " +
+           "AND d.expiresAt <= :now AND d.deletedAt IS NULL ORDER BY d.expiresAt")
+    List<Document> findExpired(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Soft-deleted documents whose retention period has passed, oldest first.
+     * Documents of erased passports are unreadable already and don't wait out the period.
+     */
+    @Query("SELECT d FROM Document d JOIN FETCH d.passport p WHERE d.deletedAt IS NOT NULL " +
+           "AND (d.deletedAt <= :deletedBefore OR p.deletedAt IS NOT NULL) ORDER BY d.deletedAt")
+    List<Document> findDeletedBefore(@Param("deletedBefore") Instant deletedBefore, Pageable pageable);
 
     @Query("SELECT SUM(d.fileSize) FROM Document d WHERE d.passport.id = :passportId " +
            "AND d.deletedAt IS NULL")
     Long getTotalStorageByPassport(@Param("passportId") UUID passportId);
+
+    @Query("SELECT COUNT(d) FROM Document d WHERE d.passport.id = :passportId " +
+           "AND d.deletedAt IS NULL")
+    long countActiveByPassport(@Param("passportId") UUID passportId);
+
+    /**
+     * Live documents of a passport for the paginated listing. A mime type ending in
+     * "/*" matches the whole family (e.g. "image/*").
+     */
+    static Specification<Document> listing(UUID passportId, String mimeType, UUID timelineEntryId) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("passport").get("id"), passportId));
+            predicates.add(cb.isNull(root.get("deletedAt")));
+            if (mimeType != null && !mimeType.isBlank()) {
+                if (mimeType.endsWith("/*")) {
+                    predicates.add(cb.like(root.get("mimeType"), mimeType.substring(0, mimeType.length() - 1) + "%"));
+                } else {
+                    predicates.add(cb.equal(root.get("mimeType"), mimeType));
+                }
+            }
+            if (timelineEntryId != null) {
+                predicates.add(cb.equal(root.get("timelineEntry").get("id"), timelineEntryId));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
 }
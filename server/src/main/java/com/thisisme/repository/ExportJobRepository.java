@@ -0,0 +1,105 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.ExportJob;
+import com.thisisme.model.enums.ExportJobStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ExportJobRepository extends JpaRepository<ExportJob, UUID> {
+
+    /**
+     * Queue a job unless one with the same key is already pending or running.
+     * Returns 0 when an open job exists; a concurrent insert of the same key waits for
+     * the other transaction and then does nothing.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO export_jobs (id, requested_by, passport_id, format, content_version, " +
+                   "dedup_key, client_ip, status, attempts, next_attempt_at, bytes_written, created_at) " +
+                   "VALUES (:id, :requestedBy, :passportId, :format, :contentVersion, :dedupKey, :clientIp, " +
+                   "'PENDING', 0, :now, 0, :now) " +
+                   "ON CONFLICT (dedup_key) WHERE status IN ('PENDING', 'RUNNING') DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("requestedBy") UUID requestedBy,
+                       @Param("passportId") UUID passportId, @Param("format") String format,
+                       @Param("contentVersion") String contentVersion, @Param("dedupKey") String dedupKey,
+                       @Param("clientIp") String clientIp, @Param("now") Instant now);
+
+    @Query("SELECT j FROM ExportJob j WHERE j.dedupKey = :dedupKey AND j.status IN ('PENDING', 'RUNNING')")
+    Optional<ExportJob> findOpenByDedupKey(@Param("dedupKey") String dedupKey);
+
+    /**
+     * Most recent finished artifact for the key that hasn't expired yet
+     */
+    @Query("SELECT j FROM ExportJob j WHERE j.dedupKey = :dedupKey AND j.status = 'COMPLETED' " +
+           "AND j.expiresAt > :now ORDER BY j.completedAt DESC LIMIT 1")
+    Optional<ExportJob> findReusable(@Param("dedupKey") String dedupKey, @Param("now") Instant now);
+
+    /**
+     * Lock due jobs for the current transaction. SKIP LOCKED lets concurrent workers take
+     * disjoint batches without blocking.
+     */
+    @Query(value = "SELECT j.id FROM export_jobs j " +
+                   "WHERE j.status = 'PENDING' AND j.next_attempt_at <= :now " +
+                   "ORDER BY j.created_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockDueJobIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE ExportJob j SET j.status = :status, j.lockedBy = :workerId, j.lockedAt = :now, " +
+           "j.startedAt = :now, j.bytesWritten = 0, j.attempts = j.attempts + 1 WHERE j.id IN :ids")
+    int markClaimed(@Param("ids") List<UUID> ids, @Param("workerId") String workerId,
+                    @Param("now") Instant now, @Param("status") ExportJobStatus status);
+
+    /**
+     * Record progress; doubles as the worker's heartbeat so long exports aren't treated as stale
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ExportJob j SET j.bytesWritten = :bytesWritten, j.lockedAt = :now " +
+           "WHERE j.id = :id AND j.status = 'RUNNING' AND j.lockedBy = :workerId")
+    int recordProgress(@Param("id") UUID id, @Param("workerId") String workerId,
+                       @Param("bytesWritten") long bytesWritten, @Param("now") Instant now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM ExportJob j WHERE j.id = :id")
+    Optional<ExportJob> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Return jobs whose worker stopped heartbeating to the queue
+     */
+    @Modifying
+    @Query("UPDATE ExportJob j SET j.status = 'PENDING', j.lockedBy = NULL, j.lockedAt = NULL, " +
+           "j.nextAttemptAt = :now WHERE j.status = 'RUNNING' AND j.lockedAt < :lockedBefore")
+    int releaseStale(@Param("lockedBefore") Instant lockedBefore, @Param("now") Instant now);
+
+    /**
+     * Lock a batch of expired jobs (finished ones past their artifact expiry, and failed
+     * ones kept for the same period) for cleanup
+     */
+    @Query(value = "SELECT j.id FROM export_jobs j WHERE j.expires_at <= :now " +
+                   "ORDER BY j.expires_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockExpiredJobIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Query("SELECT j.artifactPath FROM ExportJob j WHERE j.id IN :ids AND j.artifactPath IS NOT NULL")
+    List<String> findArtifactPaths(@Param("ids") List<UUID> ids);
+
+    @Modifying
+    @Query("DELETE FROM ExportJob j WHERE j.id IN :ids")
+    int deleteByIds(@Param("ids") List<UUID> ids);
+
+    long countByStatus(ExportJobStatus status);
+}
@@ -0,0 +1,57 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.InboundEmailJob;
+import com.thisisme.model.enums.InboundEmailJobStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InboundEmailJobRepository extends JpaRepository<InboundEmailJob, UUID> {
+
+    /**
+     * Lock due jobs for the current transaction, skipping any passport that still has an
+     * earlier job pending or running so each passport's emails are processed in order.
+     * SKIP LOCKED lets concurrent workers take disjoint batches without blocking.
+     */
+    @Query(value = "SELECT j.id FROM inbound_email_jobs j " +
+                   "WHERE j.status = 'PENDING' AND j.next_attempt_at <= :now " +
+                   "AND NOT EXISTS (SELECT 1 FROM inbound_email_jobs e WHERE e.passport_id = j.passport_id " +
+                   "AND e.seq < j.seq AND e.status IN ('PENDING', 'RUNNING')) " +
+                   "ORDER BY j.seq LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockDueJobIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE InboundEmailJob j SET j.status = :status, j.lockedBy = :workerId, j.lockedAt = :now, " +
+           "j.attempts = j.attempts + 1 WHERE j.id IN :ids")
+    int markClaimed(@Param("ids") List<UUID> ids, @Param("workerId") String workerId,
+                    @Param("now") Instant now, @Param("status") InboundEmailJobStatus status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM InboundEmailJob j WHERE j.id = :id")
+    Optional<InboundEmailJob> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Return jobs whose worker died mid-flight to the queue
+     */
+    @Modifying
+    @Query("UPDATE InboundEmailJob j SET j.status = 'PENDING', j.lockedBy = NULL, j.lockedAt = NULL, " +
+           "j.nextAttemptAt = :now WHERE j.status = 'RUNNING' AND j.lockedAt < :lockedBefore")
+    int releaseStale(@Param("lockedBefore") Instant lockedBefore, @Param("now") Instant now);
+
+    @Query("SELECT j FROM InboundEmailJob j WHERE j.status = 'FAILED' ORDER BY j.completedAt DESC")
+    List<InboundEmailJob> findFailed(Pageable pageable);
+
+    long countByStatus(InboundEmailJobStatus status);
+}
@@ -0,0 +1,65 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.InboundEmailReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InboundEmailReceiptRepository extends JpaRepository<InboundEmailReceipt, UUID> {
+
+    Optional<InboundEmailReceipt> findByPassportIdAndDedupKey(UUID passportId, String dedupKey);
+
+    /**
+     * Claim a delivery for processing. Succeeds (returns 1) for a new key, or for an
+     * uncompleted claim older than staleBefore whose owner presumably died.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO inbound_email_receipts (id, passport_id, dedup_key, claimed_at) " +
+                   "VALUES (:id, :passportId, :dedupKey, :now) " +
+                   "ON CONFLICT (passport_id, dedup_key) DO UPDATE SET claimed_at = EXCLUDED.claimed_at " +
+                   "WHERE inbound_email_receipts.completed_at IS NULL " +
+                   "AND inbound_email_receipts.claimed_at < :staleBefore",
+           nativeQuery = true)
+    int claim(@Param("id") UUID id, @Param("passportId") UUID passportId, @Param("dedupKey") String dedupKey,
+              @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    /**
+     * Record the entry created for a claimed delivery before its attachments are saved,
+     * so a retry that takes over the claim resumes that entry
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboundEmailReceipt r SET r.entryId = :entryId " +
+           "WHERE r.passportId = :passportId AND r.dedupKey = :dedupKey AND r.completedAt IS NULL")
+    int recordEntry(@Param("passportId") UUID passportId, @Param("dedupKey") String dedupKey,
+                    @Param("entryId") UUID entryId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboundEmailReceipt r SET r.completedAt = :now, r.entryId = :entryId, " +
+           "r.attachmentCount = :attachmentCount " +
+           "WHERE r.passportId = :passportId AND r.dedupKey = :dedupKey")
+    int complete(@Param("passportId") UUID passportId, @Param("dedupKey") String dedupKey,
+                 @Param("entryId") UUID entryId, @Param("attachmentCount") int attachmentCount,
+                 @Param("now") Instant now);
+
+    /**
+     * Give up an uncompleted claim by backdating it, so the sender's retry takes it over
+     * straight away. An entry already recorded on it is kept for the retry to resume.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboundEmailReceipt r SET r.claimedAt = :releasedAt WHERE r.passportId = :passportId " +
+           "AND r.dedupKey = :dedupKey AND r.completedAt IS NULL")
+    int release(@Param("passportId") UUID passportId, @Param("dedupKey") String dedupKey,
+                @Param("releasedAt") Instant releasedAt);
+}
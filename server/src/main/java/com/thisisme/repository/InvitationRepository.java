@@ -2,6 +2,7 @@ package com.thisisme.repository;
 
 import com.thisisme.model.entity.Invitation;
 import com.thisisme.model.enums.InvitationStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -40,4 +41,8 @@ public interface InvitationRepository extends JpaRepository<Invitation, UUID> {
         @Param("passportId") UUID passportId,
         @Param("email") String email,
         @Param("now") Instant now);
+
+    @Query("SELECT i FROM Invitation i WHERE i.status = 'PENDING' AND i.expiresAt <= :now " +
+           "ORDER BY i.expiresAt")
+    List<Invitation> findExpiredPending(@Param("now") Instant now, Pageable pageable);
 }
@@ -1,11 +1,13 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SubjectAccessDTO.NotificationRow;
 import com.thisisme.model.entity.Notification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -23,7 +25,17 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
     @Query("SELECT n FROM Notification n WHERE n.recipient.id = :userId AND n.readAt IS NULL AND n.deletedAt IS NULL ORDER BY n.createdAt DESC")
     List<Notification> findRecentUnreadByRecipientId(UUID userId, Pageable pageable);
 
+    /**
+     * A page of the user's notifications after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$NotificationRow(" +
+           "n.id, n.notificationType, n.title, n.message, n.passportId, n.createdAt, n.readAt) " +
+           "FROM Notification n WHERE n.recipient.id = :userId AND n.deletedAt IS NULL AND n.id > :afterId " +
+           "ORDER BY n.id")
+    List<NotificationRow> findByRecipientPageAfter(@Param("userId") UUID userId, @Param("afterId") UUID afterId,
+                                                   Pageable pageable);
+
     @Modifying
-    @Query("UPDATE Notification n SET n.readAt = CURRENT_TIMESTAMP WHERE n.recipient.id = :userId AND n.readAt IS NULL AND n.deletedAt IS NULL")
+    @Query("UPDATE Notification n SET n.readAt = CURRENT_INSTANT WHERE n.recipient.id = :userId AND n.readAt IS NULL AND n.deletedAt IS NULL")
     int markAllAsReadByRecipientId(UUID userId);
 }
@@ -0,0 +1,62 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.OcrJob;
+import com.thisisme.model.enums.OcrJobStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface OcrJobRepository extends JpaRepository<OcrJob, UUID> {
+
+    boolean existsByDocumentId(UUID documentId);
+
+    /**
+     * Lock due jobs for the current transaction. SKIP LOCKED lets concurrent workers
+     * (threads or instances) each take a disjoint batch without blocking each other.
+     */
+    @Query(value = "SELECT id FROM ocr_jobs WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockDueJobIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * As lockDueJobIds, but only PDFs whose text layer hasn't been read: the work that
+     * needs no OCR service
+     */
+    @Query(value = "SELECT j.id FROM ocr_jobs j WHERE j.status = 'PENDING' AND j.next_attempt_at <= :now " +
+                   "AND NOT j.text_layer_extracted AND EXISTS (SELECT 1 FROM documents d " +
+                   "WHERE d.id = j.document_id AND d.mime_type = 'application/pdf') " +
+                   "ORDER BY j.next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockDueTextLayerJobIds(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OcrJob j SET j.status = :status, j.lockedBy = :workerId, j.lockedAt = :now, " +
+           "j.attempts = j.attempts + 1 WHERE j.id IN :ids")
+    int markClaimed(@Param("ids") List<UUID> ids, @Param("workerId") String workerId,
+                    @Param("now") Instant now, @Param("status") OcrJobStatus status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM OcrJob j JOIN FETCH j.document WHERE j.id = :id")
+    Optional<OcrJob> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Return jobs whose worker died mid-flight to the queue
+     */
+    @Modifying
+    @Query("UPDATE OcrJob j SET j.status = 'PENDING', j.lockedBy = NULL, j.lockedAt = NULL, " +
+           "j.nextAttemptAt = :now WHERE j.status = 'RUNNING' AND j.lockedAt < :lockedBefore")
+    int releaseStale(@Param("lockedBefore") Instant lockedBefore, @Param("now") Instant now);
+
+    long countByStatus(OcrJobStatus status);
+}
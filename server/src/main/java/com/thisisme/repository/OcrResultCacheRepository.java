@@ -0,0 +1,34 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.OcrResultCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Repository
+public interface OcrResultCacheRepository extends JpaRepository<OcrResultCacheEntry, String> {
+
+    @Modifying
+    @Query("DELETE FROM OcrResultCacheEntry e WHERE e.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+
+    @Modifying
+    @Query("DELETE FROM OcrResultCacheEntry e WHERE e.modelVersion IS NULL OR e.modelVersion <> :modelVersion")
+    int deleteOtherModelVersions(@Param("modelVersion") String modelVersion);
+
+    /**
+     * Drop the cached text of an erased passport's documents, except for content another
+     * passport still holds in a live document
+     */
+    @Modifying
+    @Query("DELETE FROM OcrResultCacheEntry e WHERE e.contentHash IN " +
+           "(SELECT d.contentHash FROM Document d WHERE d.passport.id = :passportId) " +
+           "AND NOT EXISTS (SELECT 1 FROM Document o WHERE o.contentHash = e.contentHash " +
+           "AND o.passport.id <> :passportId AND o.deletedAt IS NULL)")
+    int deleteForErasedPassport(@Param("passportId") UUID passportId);
+}
@@ -0,0 +1,41 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.PassportKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Repository
+public interface PassportKeyRepository extends JpaRepository<PassportKey, UUID> {
+
+    /**
+     * Store a new key unless the passport already has one (or a tombstone). Commits on its
+     * own: blobs are encrypted under the key before the caller's transaction ends, so the
+     * key must survive a rollback of that transaction.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "INSERT INTO passport_keys (passport_id, kek_id, wrapped_key, created_at) " +
+                   "VALUES (:passportId, :kekId, :wrappedKey, :now) ON CONFLICT (passport_id) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("passportId") UUID passportId, @Param("kekId") String kekId,
+                       @Param("wrappedKey") byte[] wrappedKey, @Param("now") Instant now);
+
+    /**
+     * Destroy the passport's key, leaving a tombstone even if it never had one
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO passport_keys (passport_id, created_at, shredded_at) " +
+                   "VALUES (:passportId, :now, :now) ON CONFLICT (passport_id) DO UPDATE " +
+                   "SET wrapped_key = NULL, kek_id = NULL, " +
+                   "shredded_at = COALESCE(passport_keys.shredded_at, EXCLUDED.shredded_at)",
+           nativeQuery = true)
+    int shred(@Param("passportId") UUID passportId, @Param("now") Instant now);
+}
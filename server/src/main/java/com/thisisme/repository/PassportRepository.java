@@ -1,12 +1,19 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.ExportDTO.ContentVersion;
+import com.thisisme.model.dto.SubjectAccessDTO.PassportRow;
+import com.thisisme.model.dto.SnapshotDTO.SectionData;
+import com.thisisme.model.dto.SubjectAccessDTO.SectionRow;
 import com.thisisme.model.entity.Passport;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,9 +31,63 @@ public interface PassportRepository extends JpaRepository<Passport, UUID> {
     @Query("SELECT p FROM Passport p WHERE p.createdBy.id = :userId AND p.active = true")
     List<Passport> findAllByCreator(@Param("userId") UUID userId);
 
+    /**
+     * A page of the user's passports after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$PassportRow(" +
+           "p.id, p.childFirstName, p.childDateOfBirth, p.createdAt, p.updatedAt) " +
+           "FROM Passport p WHERE p.createdBy.id = :userId AND p.active = true AND p.id > :afterId " +
+           "ORDER BY p.id")
+    List<PassportRow> findCreatedPageAfter(@Param("userId") UUID userId, @Param("afterId") UUID afterId,
+                                           Pageable pageable);
+
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$SectionRow(" +
+           "s.passport.id, s.type, s.content, s.remedialSuggestion, s.createdAt, s.updatedAt) " +
+           "FROM PassportSection s WHERE s.passport.id IN :passportIds ORDER BY s.displayOrder, s.createdAt")
+    List<SectionRow> findSectionRows(@Param("passportIds") Collection<UUID> passportIds);
+
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$SectionData(" +
+           "s.id, s.type, s.content, s.remedialSuggestion, s.published, s.visibilityLevel, s.displayOrder, " +
+           "s.status, s.childModeContribution, s.createdBy.id, editor.id, s.createdAt, s.updatedAt) " +
+           "FROM PassportSection s LEFT JOIN s.lastEditedBy editor WHERE s.passport.id = :passportId " +
+           "ORDER BY s.displayOrder, s.createdAt")
+    List<SectionData> findSectionsForSnapshot(@Param("passportId") UUID passportId);
+
     @Query("SELECT p FROM Passport p WHERE p.scheduledForDeletionAt IS NOT NULL " +
-           "AND p.scheduledForDeletionAt <= :now")
-    List<Passport> findScheduledForDeletion(@Param("now") Instant now);
+           "AND p.scheduledForDeletionAt <= :now AND p.deletedAt IS NULL " +
+           "ORDER BY p.scheduledForDeletionAt")
+    List<Passport> findScheduledForDeletion(@Param("now") Instant now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Passport p SET p.active = false, p.deletedAt = :now WHERE p.id = :id")
+    int markDeleted(@Param("id") UUID id, @Param("now") Instant now);
+
+    /**
+     * Ask every search index to reindex the passport's entries. Native, because the column
+     * is not written through the entity.
+     */
+    @Modifying
+    @Query(value = "UPDATE passports SET search_reindex_requested_at = :now WHERE id = :id", nativeQuery = true)
+    int requestSearchReindex(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Query("SELECT p.id FROM Passport p WHERE p.searchReindexRequestedAt > :since")
+    List<UUID> findIdsWithSearchReindexRequestedSince(@Param("since") Instant since);
+
+    /**
+     * Change markers for a passport's exportable content, in one round trip
+     */
+    @Query("SELECT new com.thisisme.model.dto.ExportDTO$ContentVersion(p.updatedAt, " +
+           "(SELECT COUNT(s) FROM PassportSection s WHERE s.passport.id = p.id), " +
+           "(SELECT MAX(s.updatedAt) FROM PassportSection s WHERE s.passport.id = p.id), " +
+           "(SELECT COUNT(t) FROM TimelineEntry t WHERE t.passport.id = p.id AND t.deletedAt IS NULL), " +
+           "(SELECT MAX(t.updatedAt) FROM TimelineEntry t WHERE t.passport.id = p.id), " +
+           "(SELECT MAX(t.deletedAt) FROM TimelineEntry t WHERE t.passport.id = p.id), " +
+           "(SELECT COUNT(d) FROM Document d WHERE d.passport.id = p.id AND d.deletedAt IS NULL), " +
+           "(SELECT MAX(d.uploadedAt) FROM Document d WHERE d.passport.id = p.id), " +
+           "(SELECT MAX(d.deletedAt) FROM Document d WHERE d.passport.id = p.id), " +
+           "(SELECT MAX(d.ocrProcessedAt) FROM Document d WHERE d.passport.id = p.id)) " +
+           "FROM Passport p WHERE p.id = :id")
+    Optional<ContentVersion> findContentVersion(@Param("id") UUID id);
 
     @Query("SELECT p FROM Passport p WHERE p.subjectUser.id = :userId AND p.active = true")
     Optional<Passport> findBySubjectUserId(@Param("userId") UUID userId);
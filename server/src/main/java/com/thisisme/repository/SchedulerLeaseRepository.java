@@ -0,0 +1,35 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    /**
+     * Take the lease if nobody holds it, it has lapsed, or we already hold it.
+     * Returns 1 when acquired. The single upsert makes concurrent attempts race safely.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_leases (name, owner, locked_until, acquired_at) " +
+                   "VALUES (:name, :owner, :lockedUntil, :now) " +
+                   "ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, " +
+                   "locked_until = EXCLUDED.locked_until, acquired_at = EXCLUDED.acquired_at " +
+                   "WHERE scheduler_leases.locked_until <= :now OR scheduler_leases.owner = :owner",
+           nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner,
+                   @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLease l SET l.lockedUntil = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+}
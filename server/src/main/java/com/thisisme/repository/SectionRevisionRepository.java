@@ -1,13 +1,18 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SnapshotDTO.RevisionData;
 import com.thisisme.model.entity.SectionRevision;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface SectionRevisionRepository extends JpaRepository<SectionRevision, UUID> {
@@ -17,4 +22,15 @@ public interface SectionRevisionRepository extends JpaRepository<SectionRevision
 
     @Query("SELECT COUNT(sr) FROM SectionRevision sr WHERE sr.section.id = :sectionId")
     long countBySectionId(@Param("sectionId") UUID sectionId);
+
+    /**
+     * Every revision of a passport's sections, oldest first, for snapshots. Must be
+     * consumed (and closed) inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$RevisionData(" +
+           "sr.id, sr.section.id, sr.content, sr.remedialSuggestion, sr.changeType, sr.author.id, " +
+           "sr.authorName, sr.createdAt) " +
+           "FROM SectionRevision sr WHERE sr.passport.id = :passportId ORDER BY sr.createdAt, sr.id")
+    Stream<RevisionData> streamForSnapshot(@Param("passportId") UUID passportId);
 }
@@ -1,6 +1,7 @@
 package com.thisisme.repository;
 
 import com.thisisme.model.entity.ShareLink;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -29,6 +30,6 @@ public interface ShareLinkRepository extends JpaRepository<ShareLink, UUID> {
     List<ShareLink> findAllByPassportId(@Param("passportId") UUID passportId);
 
     @Query("SELECT s FROM ShareLink s WHERE s.expiresAt IS NOT NULL " +
-           "AND s.expiresAt <= :now AND s.active = true")
-    List<ShareLink> findExpired(@Param("now") Instant now);
+           "AND s.expiresAt <= :now AND s.active = true ORDER BY s.expiresAt")
+    List<ShareLink> findExpired(@Param("now") Instant now, Pageable pageable);
 }
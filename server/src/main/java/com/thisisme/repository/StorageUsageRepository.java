@@ -0,0 +1,71 @@
+package com.thisisme.repository;
+
+import com.thisisme.model.entity.StorageUsage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, UUID> {
+
+    /**
+     * Create the counter row for a passport if it doesn't exist yet
+     */
+    @Modifying
+    @Query(value = "INSERT INTO storage_usage (passport_id, bytes_used, document_count, updated_at) " +
+                   "VALUES (:passportId, 0, 0, NOW()) ON CONFLICT (passport_id) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("passportId") UUID passportId);
+
+    /**
+     * Add a document's bytes only if the result stays within the quota.
+     * Returns 0 when the quota would be exceeded. The row lock taken by the update
+     * serialises concurrent uploads to the same passport until commit.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageUsage u SET u.bytesUsed = u.bytesUsed + :bytes, " +
+           "u.documentCount = u.documentCount + 1, u.updatedAt = :now " +
+           "WHERE u.passportId = :passportId AND u.bytesUsed + :bytes <= :quota")
+    int addWithinQuota(@Param("passportId") UUID passportId, @Param("bytes") long bytes,
+                       @Param("quota") long quota, @Param("now") Instant now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageUsage u SET u.bytesUsed = u.bytesUsed + :bytes, " +
+           "u.documentCount = u.documentCount + 1, u.updatedAt = :now " +
+           "WHERE u.passportId = :passportId")
+    int add(@Param("passportId") UUID passportId, @Param("bytes") long bytes, @Param("now") Instant now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageUsage u SET u.bytesUsed = GREATEST(u.bytesUsed - :bytes, 0), " +
+           "u.documentCount = GREATEST(u.documentCount - 1, 0), u.updatedAt = :now " +
+           "WHERE u.passportId = :passportId")
+    int subtract(@Param("passportId") UUID passportId, @Param("bytes") long bytes, @Param("now") Instant now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageUsage u SET u.bytesUsed = 0, u.documentCount = 0, u.updatedAt = :now " +
+           "WHERE u.passportId = :passportId")
+    int reset(@Param("passportId") UUID passportId, @Param("now") Instant now);
+
+    @Query("SELECT u.bytesUsed FROM StorageUsage u WHERE u.passportId = :passportId")
+    Optional<Long> findBytesUsed(@Param("passportId") UUID passportId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM StorageUsage u WHERE u.passportId = :passportId")
+    Optional<StorageUsage> findByIdForUpdate(@Param("passportId") UUID passportId);
+
+    /**
+     * Keyset page of passports for the reconciliation sweep
+     */
+    @Query("SELECT p.id FROM Passport p WHERE p.id > :after ORDER BY p.id")
+    List<UUID> findPassportIdsAfter(@Param("after") UUID after, Pageable pageable);
+}
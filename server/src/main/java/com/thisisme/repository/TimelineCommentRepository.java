@@ -1,12 +1,21 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SnapshotDTO.CommentData;
+import com.thisisme.model.dto.SubjectAccessDTO.CommentRow;
 import com.thisisme.model.entity.TimelineComment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface TimelineCommentRepository extends JpaRepository<TimelineComment, UUID> {
@@ -16,4 +25,31 @@ public interface TimelineCommentRepository extends JpaRepository<TimelineComment
 
     @Query("SELECT COUNT(c) FROM TimelineComment c WHERE c.entry.id = :entryId AND c.deletedAt IS NULL")
     long countByEntryId(UUID entryId);
+
+    /**
+     * A page of the user's live comments after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$CommentRow(" +
+           "c.id, c.entry.id, c.content, c.createdAt, c.updatedAt) " +
+           "FROM TimelineComment c WHERE c.author.id = :userId AND c.deletedAt IS NULL AND c.id > :afterId " +
+           "ORDER BY c.id")
+    List<CommentRow> findByAuthorPageAfter(@Param("userId") UUID userId, @Param("afterId") UUID afterId,
+                                           Pageable pageable);
+
+    /**
+     * Live comments on a passport's live entries, for snapshots. Must be consumed (and
+     * closed) inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$CommentData(" +
+           "c.id, c.entry.id, c.author.id, c.content, c.createdAt, c.updatedAt) " +
+           "FROM TimelineComment c WHERE c.entry.passport.id = :passportId AND c.deletedAt IS NULL " +
+           "AND c.entry.deletedAt IS NULL ORDER BY c.id")
+    Stream<CommentData> streamForSnapshot(@Param("passportId") UUID passportId);
+
+    /**
+     * (comment id, mentioned user id) pairs for a batch of comments
+     */
+    @Query("SELECT c.id, mention FROM TimelineComment c JOIN c.mentionedUserIds mention WHERE c.id IN :ids")
+    List<Object[]> findMentionsByCommentIds(@Param("ids") Collection<UUID> ids);
 }
@@ -1,19 +1,29 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.ExportDTO.TimelineExportRow;
+import com.thisisme.model.dto.SnapshotDTO.EntryData;
+import com.thisisme.model.dto.SubjectAccessDTO.TimelineRow;
 import com.thisisme.model.entity.TimelineEntry;
 import com.thisisme.model.enums.ContentStatus;
 import com.thisisme.model.enums.EntryType;
 import com.thisisme.model.enums.VisibilityLevel;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, UUID> {
@@ -22,6 +32,80 @@ public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, UU
            "AND t.deletedAt IS NULL ORDER BY t.entryDate DESC, t.createdAt DESC")
     Page<TimelineEntry> findByPassportId(@Param("passportId") UUID passportId, Pageable pageable);
 
+    /**
+     * Every live entry of a passport, newest first, for exports. Must be consumed (and
+     * closed) inside a transaction; rows are fetched from the cursor in batches.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.ExportDTO$TimelineExportRow(" +
+           "t.id, t.entryType, t.title, t.content, t.entryDate, t.visibilityLevel, t.pinned, t.createdAt) " +
+           "FROM TimelineEntry t WHERE t.passport.id = :passportId AND t.deletedAt IS NULL " +
+           "ORDER BY t.entryDate DESC, t.createdAt DESC, t.id")
+    Stream<TimelineExportRow> streamForExport(@Param("passportId") UUID passportId);
+
+    /**
+     * As streamForExport, grouped by entry type
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.ExportDTO$TimelineExportRow(" +
+           "t.id, t.entryType, t.title, t.content, t.entryDate, t.visibilityLevel, t.pinned, t.createdAt) " +
+           "FROM TimelineEntry t WHERE t.passport.id = :passportId AND t.deletedAt IS NULL " +
+           "ORDER BY t.entryType, t.entryDate DESC, t.createdAt DESC, t.id")
+    Stream<TimelineExportRow> streamForExportByType(@Param("passportId") UUID passportId);
+
+    /**
+     * A page of a passport's live entries after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$TimelineRow(" +
+           "t.id, t.passport.id, t.entryType, t.title, t.content, t.entryDate, t.visibilityLevel, " +
+           "t.createdAt, t.updatedAt) " +
+           "FROM TimelineEntry t WHERE t.passport.id = :passportId AND t.deletedAt IS NULL AND t.id > :afterId " +
+           "ORDER BY t.id")
+    List<TimelineRow> findPageAfter(@Param("passportId") UUID passportId, @Param("afterId") UUID afterId,
+                                    Pageable pageable);
+
+    /**
+     * A page of the user's live entries on passports they did not create, after the given
+     * id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$TimelineRow(" +
+           "t.id, t.passport.id, t.entryType, t.title, t.content, t.entryDate, t.visibilityLevel, " +
+           "t.createdAt, t.updatedAt) " +
+           "FROM TimelineEntry t WHERE t.author.id = :userId AND t.passport.createdBy.id <> :userId " +
+           "AND t.deletedAt IS NULL AND t.id > :afterId ORDER BY t.id")
+    List<TimelineRow> findByAuthorOnOtherPassportsPageAfter(@Param("userId") UUID userId,
+                                                            @Param("afterId") UUID afterId, Pageable pageable);
+
+    /**
+     * (entry id, tag) pairs for a batch of entries
+     */
+    @Query("SELECT t.id, tag FROM TimelineEntry t JOIN t.tags tag WHERE t.id IN :ids")
+    List<Object[]> findTagsByEntryIds(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Every live entry of a passport with all of its scalar fields, for snapshots. Must be
+     * consumed (and closed) inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$EntryData(" +
+           "t.id, t.author.id, t.entryType, t.title, t.content, t.entryDate, t.visibilityLevel, t.metadata, " +
+           "t.status, t.childModeContribution, t.pinned, t.flaggedForFollowup, t.followupDueDate, " +
+           "t.createdAt, t.updatedAt) " +
+           "FROM TimelineEntry t WHERE t.passport.id = :passportId AND t.deletedAt IS NULL ORDER BY t.id")
+    Stream<EntryData> streamForSnapshot(@Param("passportId") UUID passportId);
+
+    /**
+     * (entry id, role) pairs for a batch of entries
+     */
+    @Query("SELECT t.id, role FROM TimelineEntry t JOIN t.visibleToRoles role WHERE t.id IN :ids")
+    List<Object[]> findVisibleRolesByEntryIds(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * (entry id, mentioned user id) pairs for a batch of entries
+     */
+    @Query("SELECT t.id, mention FROM TimelineEntry t JOIN t.mentionedUserIds mention WHERE t.id IN :ids")
+    List<Object[]> findMentionsByEntryIds(@Param("ids") Collection<UUID> ids);
+
     @Query("SELECT t FROM TimelineEntry t WHERE t.passport.id = :passportId " +
            "AND t.entryType = :type AND t.deletedAt IS NULL " +
            "ORDER BY t.entryDate DESC")
@@ -58,12 +142,51 @@ public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, UU
            "ORDER BY t.followupDueDate ASC NULLS LAST, t.entryDate DESC")
     List<TimelineEntry> findFlaggedByPassportId(@Param("passportId") UUID passportId);
 
-    @Query(value = "SELECT * FROM timeline_entries WHERE passport_id = :passportId " +
-                   "AND deleted_at IS NULL " +
-                   "AND content_search_vector @@ to_tsquery('english', :query) " +
-                   "ORDER BY ts_rank(content_search_vector, to_tsquery('english', :query)) DESC",
+    /**
+     * Whether entry t is visible to role v.role, as TimelineEntry.isVisibleTo
+     */
+    String VISIBLE_TO_ROLE =
+        "(t.visibility_level = 'ALL' " +
+        " OR (t.visibility_level = 'OWNERS_ONLY' AND v.role IN ('OWNER', 'CO_OWNER')) " +
+        " OR (t.visibility_level = 'PROFESSIONALS' AND v.role IN ('OWNER', 'CO_OWNER', 'PROFESSIONAL')) " +
+        " OR (t.visibility_level = 'CUSTOM' AND EXISTS (SELECT 1 FROM timeline_entry_visible_roles r " +
+        "     WHERE r.entry_id = t.id AND r.role = v.role))) ";
+
+    /**
+     * (id, entry type) of the live entries matching a tsquery that the role can see, best first
+     */
+    @Query(value = "SELECT t.id, t.entry_type FROM timeline_entries t " +
+                   "CROSS JOIN (SELECT CAST(:role AS VARCHAR) AS role) v " +
+                   "WHERE t.passport_id = :passportId AND t.deleted_at IS NULL " +
+                   "AND t.content_search_vector @@ to_tsquery('english', :query) " +
+                   "AND " + VISIBLE_TO_ROLE +
+                   "ORDER BY ts_rank(t.content_search_vector, to_tsquery('english', :query)) DESC, " +
+                   "t.entry_date DESC",
            nativeQuery = true)
-    List<TimelineEntry> searchByPassportId(@Param("passportId") UUID passportId, @Param("query") String query);
+    List<Object[]> searchVisibleMatches(@Param("passportId") UUID passportId, @Param("query") String query,
+                                        @Param("role") String role);
+
+    /**
+     * Entries with their tags and visible roles, for search indexing
+     */
+    @Query("SELECT DISTINCT t FROM TimelineEntry t JOIN FETCH t.passport LEFT JOIN FETCH t.tags " +
+           "WHERE t.id IN :ids")
+    List<TimelineEntry> findForIndexing(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT t.id FROM TimelineEntry t WHERE t.passport.id = :passportId AND t.deletedAt IS NULL")
+    List<UUID> findLiveIdsByPassportId(@Param("passportId") UUID passportId);
+
+    /**
+     * Ids of entries written or deleted after the given instant, for incremental indexing
+     */
+    @Query("SELECT t.id FROM TimelineEntry t WHERE t.updatedAt > :since OR t.deletedAt > :since")
+    List<UUID> findIdsChangedSince(@Param("since") Instant since);
+
+    /**
+     * A page of live entry ids after the given id, for index rebuilds
+     */
+    @Query("SELECT t.id FROM TimelineEntry t WHERE t.deletedAt IS NULL AND t.id > :afterId ORDER BY t.id")
+    List<UUID> findLiveIdsAfter(@Param("afterId") UUID afterId, Pageable pageable);
 
     @Query("SELECT t FROM TimelineEntry t WHERE t.passport.id = :passportId " +
            "AND t.status = :status AND t.deletedAt IS NULL " +
@@ -71,4 +194,33 @@ public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, UU
     List<TimelineEntry> findByPassportIdAndStatus(
         @Param("passportId") UUID passportId,
         @Param("status") ContentStatus status);
+
+    /**
+     * Soft delete every entry of an erased passport and drop its free text
+     */
+    @Modifying
+    @Query("UPDATE TimelineEntry t SET t.content = NULL, " +
+           "t.deletedAt = COALESCE(t.deletedAt, :now) WHERE t.passport.id = :passportId")
+    int eraseByPassport(@Param("passportId") UUID passportId, @Param("now") Instant now);
+
+    /**
+     * Switch the per-row search vector triggers off for the rest of the transaction.
+     * Bulk writers call refreshMissingSearchVectors before committing.
+     */
+    @Query(value = "SELECT set_config('thisisme.defer_search_vector', 'on', true)", nativeQuery = true)
+    String deferSearchVectors();
+
+    /**
+     * One set-based pass over a passport's entries written while search vectors were deferred
+     */
+    @Modifying
+    @Query(value = "UPDATE timeline_entries t SET content_search_vector = " +
+                   "timeline_search_vector(t.title, t.content, g.tags) " +
+                   "FROM (SELECT e.id, string_agg(tg.tag, ' ') AS tags FROM timeline_entries e " +
+                   "      LEFT JOIN timeline_entry_tags tg ON tg.entry_id = e.id " +
+                   "      WHERE e.passport_id = :passportId AND e.content_search_vector IS NULL " +
+                   "      GROUP BY e.id) g " +
+                   "WHERE t.id = g.id",
+           nativeQuery = true)
+    int refreshMissingSearchVectors(@Param("passportId") UUID passportId);
 }
@@ -1,14 +1,22 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SnapshotDTO.ReactionData;
+import com.thisisme.model.dto.SubjectAccessDTO.ReactionRow;
 import com.thisisme.model.entity.TimelineReaction;
 import com.thisisme.model.enums.ReactionType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface TimelineReactionRepository extends JpaRepository<TimelineReaction, UUID> {
@@ -21,5 +29,25 @@ public interface TimelineReactionRepository extends JpaRepository<TimelineReacti
     @Query("SELECT r.reactionType, COUNT(r) FROM TimelineReaction r WHERE r.entry.id = :entryId GROUP BY r.reactionType")
     List<Object[]> countByEntryIdGroupByType(UUID entryId);
 
+    /**
+     * A page of the user's reactions after the given id, for subject access exports
+     */
+    @Query("SELECT new com.thisisme.model.dto.SubjectAccessDTO$ReactionRow(" +
+           "r.id, r.entry.id, r.reactionType, r.createdAt) " +
+           "FROM TimelineReaction r WHERE r.user.id = :userId AND r.id > :afterId ORDER BY r.id")
+    List<ReactionRow> findByUserPageAfter(@Param("userId") UUID userId, @Param("afterId") UUID afterId,
+                                          Pageable pageable);
+
+    /**
+     * Reactions on a passport's live entries, for snapshots. Must be consumed (and closed)
+     * inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$ReactionData(" +
+           "r.entry.id, r.user.id, r.reactionType, r.createdAt) " +
+           "FROM TimelineReaction r WHERE r.entry.passport.id = :passportId AND r.entry.deletedAt IS NULL " +
+           "ORDER BY r.id")
+    Stream<ReactionData> streamForSnapshot(@Param("passportId") UUID passportId);
+
     void deleteByEntryIdAndUserIdAndReactionType(UUID entryId, UUID userId, ReactionType reactionType);
 }
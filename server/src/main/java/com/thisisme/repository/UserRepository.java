@@ -1,9 +1,13 @@
 package com.thisisme.repository;
 
+import com.thisisme.model.dto.SnapshotDTO.UserRef;
 import com.thisisme.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +19,18 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     boolean existsByEmail(String email);
 
     Optional<User> findByEmailAndActiveTrue(String email);
+
+    /**
+     * Everyone a passport snapshot refers to: the creator, collaborators and the authors
+     * of its content
+     */
+    @Query("SELECT new com.thisisme.model.dto.SnapshotDTO$UserRef(u.id, u.email, u.name) FROM User u " +
+           "WHERE u.id IN (SELECT p.createdBy.id FROM Passport p WHERE p.id = :passportId) " +
+           "OR u.id IN (SELECT perm.user.id FROM PassportPermission perm WHERE perm.passport.id = :passportId) " +
+           "OR u.id IN (SELECT s.createdBy.id FROM PassportSection s WHERE s.passport.id = :passportId) " +
+           "OR u.id IN (SELECT sr.author.id FROM SectionRevision sr WHERE sr.passport.id = :passportId) " +
+           "OR u.id IN (SELECT t.author.id FROM TimelineEntry t WHERE t.passport.id = :passportId) " +
+           "OR u.id IN (SELECT c.author.id FROM TimelineComment c WHERE c.entry.passport.id = :passportId) " +
+           "OR u.id IN (SELECT r.user.id FROM TimelineReaction r WHERE r.entry.passport.id = :passportId)")
+    List<UserRef> findSnapshotUsers(@Param("passportId") UUID passportId);
 }
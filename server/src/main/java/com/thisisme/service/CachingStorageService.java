@@ -0,0 +1,569 @@
+package com.thisisme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Read-through LRU cache on local disk in front of another storage backend.
+ * Stored objects are immutable once written, so entries are only invalidated on delete.
+ * A delete also bumps the key's generation, and a fill that began under an earlier
+ * generation is dropped rather than published, so a read racing a delete can't bring
+ * the deleted object back into the cache. Concurrent misses for the same key share a single backend download. Streamed uploads
+ * and reads pass straight through to the backend and fill the cache file as the data
+ * goes by; ranged reads are served from the cache when the object is there.
+ */
+public class CachingStorageService implements StorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStorageService.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int GENERATION_SLOTS = 4096;
+
+    private final StorageService delegate;
+    private final Path cacheDir;
+    private final long maxSizeBytes;
+    private final long maxEntryBytes;
+
+    // Cache file name -> size in bytes, in access order (eldest first). Guarded by "this".
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentSizeBytes;
+
+    // Delete count per slot of cache names, guarded by "this". Names sharing a slot only
+    // cost each other a skipped fill, and the table doesn't grow with every key deleted.
+    private final long[] generations = new long[GENERATION_SLOTS];
+
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    public CachingStorageService(StorageService delegate, Path cacheDir, long maxSizeBytes,
+                                 long maxEntryBytes, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cacheDir = cacheDir.toAbsolutePath().normalize();
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxSizeBytes);
+
+        this.hits = Counter.builder("storage.cache.requests").tag("result", "hit")
+            .description("Downloads served from the local disk cache").register(meterRegistry);
+        this.misses = Counter.builder("storage.cache.requests").tag("result", "miss")
+            .description("Downloads fetched from the backing store").register(meterRegistry);
+        this.coalesced = Counter.builder("storage.cache.requests").tag("result", "coalesced")
+            .description("Downloads that waited on an in-flight fetch of the same key").register(meterRegistry);
+        this.evictions = Counter.builder("storage.cache.evictions")
+            .description("Entries evicted to stay under the size cap").register(meterRegistry);
+        Gauge.builder("storage.cache.size", this, CachingStorageService::getCurrentSizeBytes)
+            .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("storage.cache.entries", this, CachingStorageService::getEntryCount)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Rebuild the LRU index from whatever is already on disk, oldest first.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(cacheDir);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(cacheDir)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+
+        List<Path> cached = new ArrayList<>();
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                // Leftover from an interrupted fill
+                Files.deleteIfExists(file);
+            } else {
+                cached.add(file);
+            }
+        }
+        cached.sort((a, b) -> lastModified(a).compareTo(lastModified(b)));
+
+        synchronized (this) {
+            for (Path file : cached) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                currentSizeBytes += size;
+            }
+            evictIfNeeded();
+        }
+
+        logger.info("Storage cache initialized at: {} ({} entries, {} bytes, cap {} bytes)",
+            cacheDir, getEntryCount(), getCurrentSizeBytes(), maxSizeBytes);
+    }
+
+    @Override
+    public void upload(String key, byte[] data, String contentType) throws IOException {
+        String name = cacheName(key);
+        long generation = generation(name);
+        delegate.upload(key, data, contentType);
+        // Write-through: freshly uploaded documents are the most likely to be viewed next
+        store(name, data, generation);
+    }
+
+    @Override
+    public void upload(String key, InputStream data, long contentLength, String contentType) throws IOException {
+        if (contentLength > maxEntryBytes) {
+            delegate.upload(key, data, contentLength, contentType);
+            return;
+        }
+
+        String name = cacheName(key);
+        CacheFill fill = new CacheFill(name, generation(name), data);
+        try {
+            delegate.upload(key, fill, contentLength, contentType);
+            // The backend may stop at contentLength without reading to end of stream
+            if (fill.written == contentLength) {
+                fill.publish();
+            }
+        } finally {
+            fill.discard();
+        }
+    }
+
+    @Override
+    public byte[] download(String key) throws IOException {
+        String name = cacheName(key);
+
+        byte[] cached = readCached(name);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<byte[]> fill = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(name, fill);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, key);
+        }
+
+        misses.increment();
+        try {
+            long generation = generation(name);
+            byte[] data = delegate.download(key);
+            store(name, data, generation);
+            fill.complete(data);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            fill.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(name, fill);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        String name = cacheName(key);
+
+        InputStream cached = openCached(name, 0);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        // Streamed misses aren't coalesced: each reader gets its own backend stream,
+        // and whichever reaches the end first fills the cache
+        misses.increment();
+        long generation = generation(name);
+        return new CacheFill(name, generation, delegate.openStream(key));
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        InputStream cached = openCached(cacheName(key), offset);
+        if (cached != null) {
+            hits.increment();
+            return new BoundedInputStream(cached, length);
+        }
+
+        // A range isn't the whole object, so it can't fill the cache
+        misses.increment();
+        return delegate.openRange(key, offset, length);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        delegate.delete(key);
+        invalidate(cacheName(key));
+        logger.debug("Invalidated cached copy of: {}", key);
+    }
+
+    @Override
+    public List<String> deleteAll(Collection<String> keys) {
+        List<String> failed = delegate.deleteAll(keys);
+        Set<String> kept = new HashSet<>(failed);
+        for (String key : keys) {
+            if (kept.contains(key)) {
+                continue;
+            }
+            try {
+                invalidate(cacheName(key));
+            } catch (IOException e) {
+                logger.warn("Failed to invalidate cached copy of {}: {}", key, e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public String getDownloadUrl(String key, String originalFilename) {
+        return delegate.getDownloadUrl(key, originalFilename);
+    }
+
+    @Override
+    public boolean supportsDirectDownload() {
+        // Serve through the API so repeat downloads hit the cache instead of S3
+        return false;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        synchronized (this) {
+            if (entries.containsKey(cacheName(key))) {
+                return true;
+            }
+        }
+        return delegate.exists(key);
+    }
+
+    public synchronized long getCurrentSizeBytes() {
+        return currentSizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    // Helper methods
+
+    private byte[] readCached(String name) throws IOException {
+        synchronized (this) {
+            // get() also moves the entry to the most-recently-used end
+            if (entries.get(name) == null) {
+                return null;
+            }
+        }
+        try {
+            return Files.readAllBytes(cacheDir.resolve(name));
+        } catch (NoSuchFileException e) {
+            // Evicted between the index lookup and the read
+            forget(name);
+            return null;
+        }
+    }
+
+    /**
+     * Open a cached entry at offset, or null if it isn't cached
+     */
+    private InputStream openCached(String name, long offset) throws IOException {
+        synchronized (this) {
+            // get() also moves the entry to the most-recently-used end
+            if (entries.get(name) == null) {
+                return null;
+            }
+        }
+        SeekableByteChannel channel;
+        try {
+            // An open file stays readable even if it's evicted meanwhile
+            channel = Files.newByteChannel(cacheDir.resolve(name));
+        } catch (NoSuchFileException e) {
+            forget(name);
+            return null;
+        }
+        channel.position(offset);
+        return Channels.newInputStream(channel);
+    }
+
+    private void store(String name, byte[] data, long generation) {
+        if (data.length > maxEntryBytes) {
+            return;
+        }
+
+        Path temp = tempFile(name);
+        try {
+            Files.write(temp, data);
+        } catch (IOException e) {
+            logger.warn("Failed to write storage cache entry {}: {}", name, e.getMessage());
+            deleteTemp(temp);
+            return;
+        }
+        publish(name, temp, data.length, generation);
+    }
+
+    private Path tempFile(String name) {
+        return cacheDir.resolve(name + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Publish a filled temp file with an atomic rename, so readers never observe a
+     * partially written entry. The file is discarded instead if the key was deleted since
+     * the fill began; checking and renaming under the lock keeps a delete from slipping in
+     * between.
+     */
+    private void publish(String name, Path temp, long size, long generation) {
+        synchronized (this) {
+            if (generation(name) != generation) {
+                logger.debug("Discarding storage cache fill of {}: deleted meanwhile", name);
+                deleteTemp(temp);
+                return;
+            }
+            try {
+                Files.move(temp, cacheDir.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.warn("Failed to write storage cache entry {}: {}", name, e.getMessage());
+                deleteTemp(temp);
+                return;
+            }
+
+            Long previous = entries.put(name, size);
+            if (previous != null) {
+                currentSizeBytes -= previous;
+            }
+            currentSizeBytes += size;
+            evictIfNeeded();
+        }
+    }
+
+    private static void deleteTemp(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+            // Swept on next startup
+        }
+    }
+
+    private void invalidate(String name) throws IOException {
+        synchronized (this) {
+            generations[slot(name)]++;
+            forget(name);
+        }
+        Files.deleteIfExists(cacheDir.resolve(name));
+    }
+
+    private synchronized long generation(String name) {
+        return generations[slot(name)];
+    }
+
+    private static int slot(String name) {
+        return Math.floorMod(name.hashCode(), GENERATION_SLOTS);
+    }
+
+    private synchronized void forget(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            currentSizeBytes -= size;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (currentSizeBytes > maxSizeBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            currentSizeBytes -= entry.getValue();
+            evictions.increment();
+            try {
+                Files.deleteIfExists(cacheDir.resolve(entry.getKey()));
+            } catch (IOException e) {
+                logger.warn("Failed to evict storage cache entry {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private byte[] await(CompletableFuture<byte[]> fill, String key) throws IOException {
+        try {
+            return fill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for download of " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Failed to download " + key, cause);
+        }
+    }
+
+    /**
+     * Copies what is read through it into a temp file, and publishes that as the cache
+     * entry once the end of the stream is reached. The fill is dropped if the object
+     * turns out larger than maxEntryBytes, the key is deleted meanwhile, the stream is
+     * skipped or closed early, or the temp file can't be written; reading carries on
+     * regardless.
+     */
+    private final class CacheFill extends FilterInputStream {
+
+        private final String name;
+        private final long generation;
+        private final Path temp;
+        private OutputStream out;
+        private long written;
+
+        CacheFill(String name, long generation, InputStream in) {
+            super(in);
+            this.name = name;
+            this.generation = generation;
+            this.temp = tempFile(name);
+            try {
+                this.out = Files.newOutputStream(temp);
+            } catch (IOException e) {
+                logger.warn("Failed to write storage cache entry {}: {}", name, e.getMessage());
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                publish();
+            } else if (fits(1)) {
+                try {
+                    out.write(b);
+                    written++;
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = in.read(buffer, offset, length);
+            if (count == -1) {
+                publish();
+            } else if (count > 0 && fits(count)) {
+                try {
+                    out.write(buffer, offset, count);
+                    written += count;
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            discard();
+            return in.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        private boolean fits(long count) {
+            if (out != null && written + count > maxEntryBytes) {
+                discard();
+            }
+            return out != null;
+        }
+
+        void publish() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                abandon(e);
+                return;
+            }
+            out = null;
+            CachingStorageService.this.publish(name, temp, written, generation);
+        }
+
+        void discard() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // The temp file is deleted either way
+            }
+            out = null;
+            deleteTemp(temp);
+        }
+
+        private void abandon(IOException e) {
+            logger.warn("Failed to write storage cache entry {}: {}", name, e.getMessage());
+            discard();
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Storage keys contain slashes and user-supplied extensions, so cache files are named by key hash
+     */
+    private static String cacheName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.thisisme.service;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Blob format for envelope-encrypted storage: a header followed by AES-256-GCM chunks.
+ *
+ * <pre>
+ * header  = MAGIC(8) | version(1) | chunkSize(4) | plaintextLength(8)
+ *           | keyIdLength(1) | keyId | wrappedKeyLength(2) | wrappedKey
+ * chunk i = AES-GCM(dataKey, nonce(i, last), aad = header) over plaintext[i * chunkSize, ...)
+ * </pre>
+ *
+ * Every chunk is authenticated on its own, so a reader can decrypt any run of chunks
+ * without reading the rest of the blob and never holds more than one chunk in memory.
+ * The nonce carries the chunk index and a final-chunk flag, so chunks can't be
+ * reordered and the blob can't be truncated or extended without detection.
+ */
+final class ChunkedEncryption {
+
+    static final byte[] MAGIC = {(byte) 0x89, 'T', 'M', 'E', 'N', 'C', '\r', '\n'};
+    static final int VERSION = 1;
+    static final int TAG_BYTES = 16;
+    static final int MIN_CHUNK_SIZE = 4096;
+    static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAX_WRAPPED_KEY_BYTES = 512;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+
+    /**
+     * Upper bound on the encoded header size, for reading it with a ranged request
+     */
+    static final int MAX_HEADER_BYTES = MAGIC.length + 1 + 4 + 8 + 1 + 255 + 2 + MAX_WRAPPED_KEY_BYTES;
+
+    private ChunkedEncryption() {}
+
+    /**
+     * Parsed blob header. "encoded" is the exact header bytes, used as associated data for every chunk.
+     */
+    record Header(int chunkSize, long plaintextLength, String keyId, byte[] wrappedKey, byte[] encoded) {
+
+        static Header create(int chunkSize, long plaintextLength, String keyId, byte[] wrappedKey) {
+            byte[] keyIdBytes = keyId.getBytes(StandardCharsets.UTF_8);
+            if (keyIdBytes.length == 0 || keyIdBytes.length > 255) {
+                throw new IllegalArgumentException("Key id must be 1-255 bytes: " + keyId);
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(chunkSize);
+                out.writeLong(plaintextLength);
+                out.writeByte(keyIdBytes.length);
+                out.write(keyIdBytes);
+                out.writeShort(wrappedKey.length);
+                out.write(wrappedKey);
+                return new Header(chunkSize, plaintextLength, keyId, wrappedKey, bytes.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        long chunkCount() {
+            // An empty blob still has one (empty) final chunk so truncation to the header is detected
+            return Math.max(1, (plaintextLength + chunkSize - 1) / chunkSize);
+        }
+
+        int plaintextChunkLength(long index) {
+            return (int) Math.min(chunkSize, plaintextLength - index * chunkSize);
+        }
+
+        /**
+         * Offset of chunk "index" in the stored blob
+         */
+        long chunkOffset(long index) {
+            return encoded.length + index * ((long) chunkSize + TAG_BYTES);
+        }
+
+        long ciphertextLength() {
+            return encoded.length + plaintextLength + chunkCount() * TAG_BYTES;
+        }
+    }
+
+    /**
+     * Read a header from the start of a blob.
+     *
+     * @return null if the blob doesn't start with MAGIC (stored before encryption was enabled);
+     *         the bytes read are pushed back so the stream still yields the whole blob
+     */
+    static Header readHeader(PushbackInputStream in) throws IOException {
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            in.unread(magic);
+            return null;
+        }
+
+        DataInputStream data = new DataInputStream(in);
+        try {
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported encryption format version: " + version);
+            }
+            int chunkSize = data.readInt();
+            long plaintextLength = data.readLong();
+            byte[] keyId = data.readNBytes(data.readUnsignedByte());
+            int wrappedKeyLength = data.readUnsignedShort();
+            if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE || plaintextLength < 0
+                    || keyId.length == 0 || wrappedKeyLength == 0 || wrappedKeyLength > MAX_WRAPPED_KEY_BYTES) {
+                throw new IOException("Corrupt encryption header");
+            }
+            byte[] wrappedKey = data.readNBytes(wrappedKeyLength);
+            if (wrappedKey.length != wrappedKeyLength) {
+                throw new IOException("Truncated encryption header");
+            }
+            return Header.create(chunkSize, plaintextLength, new String(keyId, StandardCharsets.UTF_8), wrappedKey);
+        } catch (EOFException e) {
+            throw new IOException("Truncated encryption header", e);
+        }
+    }
+
+    static byte[] nonce(long chunkIndex, boolean last) {
+        return ByteBuffer.allocate(12).position(3).putLong(chunkIndex).put((byte) (last ? 1 : 0)).array();
+    }
+
+    /**
+     * Pulls plaintext from the source as it is read, emitting the header and then one
+     * encrypted chunk at a time.
+     */
+    static final class EncryptingInputStream extends InputStream {
+
+        private final InputStream plaintext;
+        private final Header header;
+        private final SecretKey dataKey;
+        private final Cipher cipher;
+
+        private byte[] current;
+        private int position;
+        private long nextChunk = -1; // -1 = header not emitted yet
+
+        EncryptingInputStream(InputStream plaintext, Header header, SecretKey dataKey) {
+            this.plaintext = plaintext;
+            this.header = header;
+            this.dataKey = dataKey;
+            this.cipher = newCipher();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            plaintext.close();
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (current == null || position == current.length) {
+                if (nextChunk == -1) {
+                    current = header.encoded();
+                    nextChunk = 0;
+                } else if (nextChunk < header.chunkCount()) {
+                    current = encryptChunk(nextChunk++);
+                } else {
+                    return false;
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        private byte[] encryptChunk(long index) throws IOException {
+            int length = header.plaintextChunkLength(index);
+            byte[] chunk = plaintext.readNBytes(length);
+            if (chunk.length != length) {
+                throw new IOException("Plaintext shorter than declared length " + header.plaintextLength());
+            }
+            boolean last = index == header.chunkCount() - 1;
+            if (last && plaintext.read() != -1) {
+                throw new IOException("Plaintext longer than declared length " + header.plaintextLength());
+            }
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(TAG_BYTES * 8, nonce(index, last)));
+                cipher.updateAAD(header.encoded());
+                return cipher.doFinal(chunk);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Failed to encrypt chunk " + index, e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts chunks [firstChunk, endChunk) from a stream positioned at the start of firstChunk
+     */
+    static final class DecryptingInputStream extends InputStream {
+
+        private final InputStream ciphertext;
+        private final Header header;
+        private final SecretKey dataKey;
+        private final long endChunk;
+        private final Cipher cipher;
+
+        private long nextChunk;
+        private byte[] current;
+        private int position;
+
+        DecryptingInputStream(InputStream ciphertext, Header header, SecretKey dataKey, long firstChunk, long endChunk) {
+            this.ciphertext = ciphertext;
+            this.header = header;
+            this.dataKey = dataKey;
+            this.nextChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.cipher = newCipher();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ciphertext.close();
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (current == null || position == current.length) {
+                if (nextChunk >= endChunk) {
+                    return false;
+                }
+                current = decryptChunk(nextChunk++);
+                position = 0;
+            }
+            return true;
+        }
+
+        private byte[] decryptChunk(long index) throws IOException {
+            int length = header.plaintextChunkLength(index) + TAG_BYTES;
+            byte[] chunk = ciphertext.readNBytes(length);
+            if (chunk.length != length) {
+                throw new IOException("Encrypted blob is truncated at chunk " + index);
+            }
+            boolean last = index == header.chunkCount() - 1;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, dataKey, new GCMParameterSpec(TAG_BYTES * 8, nonce(index, last)));
+                cipher.updateAAD(header.encoded());
+                return cipher.doFinal(chunk);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Encrypted chunk " + index + " failed authentication", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Failed to decrypt chunk " + index, e);
+            }
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(CIPHER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(CIPHER + " not available", e);
+        }
+    }
+}
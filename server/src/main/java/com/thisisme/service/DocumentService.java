@@ -7,27 +7,48 @@ import com.thisisme.model.entity.Passport;
 import com.thisisme.model.entity.TimelineEntry;
 import com.thisisme.model.entity.User;
 import com.thisisme.model.enums.AuditAction;
-import com.thisisme.model.enums.EntryType;
-import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.model.enums.DocumentSort;
+import com.thisisme.model.enums.RenditionSize;
 import com.thisisme.repository.DocumentRepository;
 import com.thisisme.repository.PassportRepository;
 import com.thisisme.repository.TimelineEntryRepository;
 import com.thisisme.repository.UserRepository;
 import com.thisisme.security.PermissionEvaluator;
+import com.thisisme.service.OcrJobService.OcrCompletion;
 import com.thisisme.service.OcrService.OcrResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -50,7 +71,10 @@ public class DocumentService {
     private final PermissionEvaluator permissionEvaluator;
     private final AuditService auditService;
     private final StorageService storageService;
-    private final OcrService ocrService;
+    private final OcrJobService ocrJobService;
+    private final OcrResultCache ocrResultCache;
+    private final ImageRenditionService renditionService;
+    private final StorageUsageService storageUsageService;
     private final NotificationService notificationService;
 
     @Value("${app.storage.encryption-key-id:default-key}")
@@ -62,9 +86,6 @@ public class DocumentService {
     @Value("${app.storage.quota-per-passport:524288000}")
     private long storageQuotaPerPassport; // 500MB default
 
-    @Value("${app.ocr.auto-timeline:true}")
-    private boolean autoCreateTimelineFromOcr;
-
     public DocumentService(
             DocumentRepository documentRepository,
             PassportRepository passportRepository,
@@ -73,7 +94,10 @@ public class DocumentService {
             PermissionEvaluator permissionEvaluator,
             AuditService auditService,
             StorageService storageService,
-            OcrService ocrService,
+            OcrJobService ocrJobService,
+            OcrResultCache ocrResultCache,
+            ImageRenditionService renditionService,
+            StorageUsageService storageUsageService,
             NotificationService notificationService) {
         this.documentRepository = documentRepository;
         this.passportRepository = passportRepository;
@@ -82,7 +106,10 @@ public class DocumentService {
         this.permissionEvaluator = permissionEvaluator;
         this.auditService = auditService;
         this.storageService = storageService;
-        this.ocrService = ocrService;
+        this.ocrJobService = ocrJobService;
+        this.ocrResultCache = ocrResultCache;
+        this.renditionService = renditionService;
+        this.storageUsageService = storageUsageService;
         this.notificationService = notificationService;
     }
 
@@ -109,10 +136,22 @@ public class DocumentService {
         String storagePath = generateStoragePath(passportId, file.getOriginalFilename());
 
         // Calculate content hash
-        String contentHash = calculateHash(file.getBytes());
+        String contentHash;
+        try (InputStream in = file.getInputStream()) {
+            contentHash = calculateHash(in);
+        }
+
+        // Upload to storage, streaming so large files aren't buffered in memory
+        try (InputStream in = file.getInputStream()) {
+            storageService.upload(storagePath, in, file.getSize(), file.getContentType());
+        }
 
-        // Upload to storage
-        storageService.upload(storagePath, file.getBytes(), file.getContentType());
+        // Claim quota only after the (slow) storage upload, so the usage row lock this
+        // takes is held just until commit rather than for the whole transfer
+        if (!storageUsageService.tryReserve(passportId, file.getSize(), storageQuotaPerPassport)) {
+            deleteQuietly(storagePath);
+            throw new IllegalStateException("Storage quota exceeded");
+        }
 
         // Create document record
         Document document = new Document(
@@ -127,61 +166,41 @@ public class DocumentService {
             uploader
         );
 
-        // Process with OCR if it's an image
-        OcrResult ocrResult = null;
-        boolean ocrCompleted = false;
-        if (isImageFile(file.getContentType())) {
-            ocrResult = ocrService.processImage(file.getBytes(), file.getOriginalFilename(), file.getContentType());
-            if (ocrResult != null && ocrResult.success()) {
-                document.setOcrText(ocrResult.rawTextOrError());
-                ocrCompleted = true;
-                logger.info("OCR extracted {} fields from {}",
-                    ocrResult.formFields() != null ? ocrResult.formFields().size() : 0,
-                    file.getOriginalFilename());
-            } else if (ocrResult != null) {
-                document.setOcrError(ocrResult.rawTextOrError());
-            }
-        }
-
-        // Link to timeline entry if provided, or create one from OCR
-        TimelineEntry linkedEntry = null;
+        // Link to timeline entry if provided
         if (timelineEntryId != null) {
-            linkedEntry = timelineRepository.findById(timelineEntryId)
+            TimelineEntry linkedEntry = timelineRepository.findById(timelineEntryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Timeline entry not found"));
 
             if (!linkedEntry.getPassport().getId().equals(passportId)) {
                 throw new IllegalArgumentException("Timeline entry doesn't belong to this passport");
             }
-        } else if (autoCreateTimelineFromOcr && ocrResult != null && ocrResult.success()) {
-            // Auto-create timeline entry from OCR result
-            linkedEntry = createTimelineEntryFromOcr(passport, uploader, ocrResult, file.getOriginalFilename());
-            logger.info("Created timeline entry from OCR: {}", linkedEntry.getTitle());
-        }
 
-        if (linkedEntry != null) {
             linkedEntry.addAttachment(document);
         }
 
         Document saved = documentRepository.save(document);
 
+        // OCR runs on the job queue after commit; it creates a timeline entry from
+        // the result only when the upload wasn't attached to one. Files we've seen
+        // before reuse the cached result and skip the OCR service entirely.
+        if (ocrJobService.supports(saved.getMimeType())) {
+            Optional<OcrResult> cachedOcr = ocrResultCache.lookup(contentHash);
+            if (cachedOcr.isPresent()) {
+                OcrCompletion completion = ocrJobService.applyCachedResult(saved, cachedOcr.get(), timelineEntryId == null);
+                notifyOcrCompleteAfterCommit(completion);
+            } else {
+                ocrJobService.enqueue(saved, timelineEntryId == null);
+            }
+        }
+
         auditService.log(AuditAction.DOCUMENT_UPLOADED, userId, uploader.getName(), ipAddress)
             .withPassport(passport)
             .withEntity("Document", saved.getId())
             .withDescription("Uploaded document: " + file.getOriginalFilename())
             .withDataCategories("DOCUMENTS");
 
-        // Send notification when OCR completes
-        if (ocrCompleted) {
-            try {
-                notificationService.notifyDocumentOcrComplete(
-                    userId,
-                    passportId,
-                    saved.getId(),
-                    file.getOriginalFilename()
-                );
-            } catch (Exception e) {
-                logger.warn("Failed to send OCR complete notification: {}", e.getMessage());
-            }
+        if (renditionService.supports(saved.getMimeType())) {
+            renditionService.scheduleAfterCommit(saved.getId());
         }
 
         logger.info("Document uploaded: {} for passport {}", saved.getId(), passportId);
@@ -190,25 +209,39 @@ public class DocumentService {
     }
 
     /**
-     * Get all documents for a passport
+     * Get one page of documents for a passport
      */
     @Transactional(readOnly = true)
-    public DocumentListResponse getDocuments(UUID passportId, UUID userId, String ipAddress) {
+    public DocumentListResponse getDocuments(UUID passportId, UUID userId,
+                                             DocumentFilterRequest filter, String ipAddress) {
         if (!permissionEvaluator.canViewDocuments(passportId, userId)) {
             throw new SecurityException("You don't have permission to view documents");
         }
 
-        List<Document> documents = documentRepository.findByPassportId(passportId);
-        Long totalStorage = documentRepository.getTotalStorageByPassport(passportId);
+        DocumentSort sort = filter.sort();
+        Sort order = Sort.by(filter.direction(), sort.getProperty(), "id");
+        ScrollPosition position = filter.cursor() != null && !filter.cursor().isBlank()
+            ? decodeCursor(filter.cursor(), sort, filter.direction())
+            : ScrollPosition.keyset();
+
+        Window<Document> window = documentRepository.findBy(
+            DocumentRepository.listing(passportId, filter.mimeType(), filter.timelineEntryId()),
+            query -> query.sortBy(order).limit(filter.size()).project("uploadedBy").scroll(position));
 
-        List<DocumentResponse> responses = documents.stream()
+        List<DocumentResponse> responses = window.getContent().stream()
             .map(doc -> toResponse(doc))
             .collect(Collectors.toList());
 
+        String nextCursor = window.hasNext() && !window.isEmpty()
+            ? encodeCursor(window.getContent().get(window.size() - 1), sort, filter.direction())
+            : null;
+
         return new DocumentListResponse(
             responses,
-            totalStorage != null ? totalStorage : 0L,
-            storageQuotaPerPassport
+            storageUsageService.getBytesUsed(passportId),
+            storageQuotaPerPassport,
+            nextCursor,
+            window.hasNext()
         );
     }
 
@@ -260,8 +293,8 @@ public class DocumentService {
             .withEntity("Document", documentId)
             .withDescription("Downloaded document: " + document.getOriginalFileName());
 
-        // For local storage, return API endpoint URL instead of relative path
-        if (storageService instanceof LocalStorageService) {
+        // Local storage, the disk cache and encrypted blobs are all served through the API
+        if (!storageService.supportsDirectDownload()) {
             return "/api/v1/passports/" + passportId + "/documents/" + documentId + "/file";
         }
 
@@ -269,10 +302,12 @@ public class DocumentService {
     }
 
     /**
-     * Download file bytes with proper headers
+     * Stream a file with proper headers. A single byte range ("Range: bytes=a-b") is
+     * answered with 206 and only that part of the file; anything else gets the whole file.
      */
     @Transactional(readOnly = true)
-    public org.springframework.http.ResponseEntity<byte[]> downloadFile(UUID documentId, UUID userId, String ipAddress) throws IOException {
+    public ResponseEntity<Resource> downloadFile(UUID documentId, UUID userId, String rangeHeader,
+                                                 String ipAddress) throws IOException {
         Document document = getDocument(documentId, userId, ipAddress);
 
         UUID passportId = document.getPassport().getId();
@@ -288,12 +323,76 @@ public class DocumentService {
             .withEntity("Document", documentId)
             .withDescription("Downloaded document: " + document.getOriginalFileName());
 
-        byte[] fileBytes = storageService.download(document.getStoragePath());
+        long fileSize = document.getFileSize();
+        ResponseEntity.BodyBuilder response;
+        InputStream body;
+
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            response = ResponseEntity.ok();
+            body = storageService.openStream(document.getStoragePath());
+        } else {
+            // Only single ranges are served; Spring would otherwise try to slice the
+            // stream itself, which means reading it twice
+            long start;
+            long end;
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() != 1) {
+                    throw new IllegalArgumentException("Multiple ranges not supported");
+                }
+                start = ranges.get(0).getRangeStart(fileSize);
+                end = ranges.get(0).getRangeEnd(fileSize);
+                if (start >= fileSize) {
+                    throw new IllegalArgumentException("Range starts past end of file");
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize)
+                    .build();
+            }
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+            fileSize = end - start + 1;
+            body = storageService.openRange(document.getStoragePath(), start, fileSize);
+        }
+
+        return response
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + document.getOriginalFileName() + "\"")
+            .header(HttpHeaders.CONTENT_TYPE, document.getMimeType())
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .contentLength(fileSize)
+            .body(new InputStreamResource(body));
+    }
+
+    /**
+     * Look up a document whose rendition is being requested. Not audited: renditions
+     * back list and timeline views, which are not audited either.
+     */
+    @Transactional(readOnly = true)
+    public Document getRenditionDocument(UUID documentId, UUID userId) {
+        Document document = documentRepository.findById(documentId)
+            .orElseThrow(() -> new ResourceNotFoundException("Document not found"));
+
+        if (document.isDeleted()) {
+            throw new ResourceNotFoundException("Document not found");
+        }
+
+        if (!permissionEvaluator.canViewDocuments(document.getPassport().getId(), userId)) {
+            throw new SecurityException("You don't have permission to view this document");
+        }
+
+        if (!document.hasRenditions()) {
+            throw new ResourceNotFoundException("Rendition not available");
+        }
+
+        return document;
+    }
 
-        return org.springframework.http.ResponseEntity.ok()
-            .header("Content-Disposition", "attachment; filename=\"" + document.getOriginalFileName() + "\"")
-            .header("Content-Type", document.getMimeType())
-            .body(fileBytes);
+    /**
+     * Read rendition bytes for a document returned by {@link #getRenditionDocument}
+     */
+    public byte[] downloadRendition(Document document, RenditionSize size) throws IOException {
+        return storageService.download(ImageRenditionService.renditionPath(document.getStoragePath(), size));
     }
 
     /**
@@ -315,11 +414,14 @@ public class DocumentService {
             throw new SecurityException("You don't have permission to delete this document");
         }
 
-        document.setDeletedAt(Instant.now());
-        documentRepository.save(document);
+        if (!document.isDeleted()) {
+            document.setDeletedAt(Instant.now());
+            documentRepository.save(document);
+            storageUsageService.release(passportId, document.getFileSize());
+        }
 
         // Note: We don't delete from S3 immediately for compliance/recovery
-        // A background job handles permanent deletion after retention period
+        // RetentionReaper handles permanent deletion after retention period
 
         auditService.log(AuditAction.DOCUMENT_DELETED, userId, user.getName(), ipAddress)
             .withPassport(document.getPassport())
@@ -343,6 +445,39 @@ public class DocumentService {
         return documentRepository.findByTimelineEntryId(entryId);
     }
 
+    /**
+     * Email attachment blob already in storage, waiting for its document record
+     */
+    public record StoredAttachment(String storagePath, String filename, String contentType,
+                                   long size, String contentHash) {}
+
+    /**
+     * Stream an email attachment from a local file into storage. Touches no database
+     * state, so several can run in parallel; saveEmailAttachment records each one.
+     */
+    public StoredAttachment storeEmailAttachment(UUID passportId, String filename, String contentType,
+                                                 Path file) throws IOException {
+        // Sanitize filename to prevent path traversal
+        String sanitizedFilename = sanitizeFilename(filename);
+        String storagePath = generateStoragePath(passportId, sanitizedFilename);
+        long size = Files.size(file);
+
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            storageService.upload(storagePath, in, size, contentType);
+        }
+
+        return new StoredAttachment(storagePath, sanitizedFilename, contentType, size,
+            Base64.getEncoder().encodeToString(digest.digest()));
+    }
+
+    /**
+     * Remove a stored attachment whose document record couldn't be saved
+     */
+    public void discardStoredAttachment(StoredAttachment attachment) {
+        deleteQuietly(attachment.storagePath());
+    }
+
     /**
      * Save email attachment from webhook (bypasses normal file validation)
      */
@@ -351,9 +486,7 @@ public class DocumentService {
             UUID passportId,
             UUID userId,
             UUID timelineEntryId,
-            String filename,
-            String contentType,
-            byte[] fileBytes) throws IOException {
+            StoredAttachment attachment) {
 
         Passport passport = passportRepository.findActiveById(passportId)
             .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
@@ -364,30 +497,18 @@ public class DocumentService {
         TimelineEntry timelineEntry = timelineRepository.findById(timelineEntryId)
             .orElseThrow(() -> new ResourceNotFoundException("Timeline entry not found"));
 
-        // Sanitize filename to prevent path traversal
-        String sanitizedFilename = sanitizeFilename(filename);
-        logger.info("Sanitized filename '{}' to '{}'", filename, sanitizedFilename);
-
-        // Generate storage path
-        String storagePath = generateStoragePath(passportId, sanitizedFilename);
-        logger.info("Generated storage path: {}", storagePath);
-
-        // Calculate content hash
-        String contentHash = calculateHash(fileBytes);
-
-        // Upload to storage
-        storageService.upload(storagePath, fileBytes, contentType);
+        String storagePath = attachment.storagePath();
 
         // Create document record
         Document document = new Document(
             passport,
             storagePath.substring(storagePath.lastIndexOf('/') + 1),
-            sanitizedFilename,
-            contentType,
-            (long) fileBytes.length,
+            attachment.filename(),
+            attachment.contentType(),
+            attachment.size(),
             storagePath,
             encryptionKeyId,
-            contentHash,
+            attachment.contentHash(),
             uploader
         );
 
@@ -396,13 +517,18 @@ public class DocumentService {
 
         Document saved = documentRepository.save(document);
         timelineRepository.save(timelineEntry);
+        storageUsageService.record(passportId, saved.getFileSize());
 
         auditService.log(AuditAction.DOCUMENT_UPLOADED, userId, uploader.getName(), "webhook")
             .withPassport(passport)
             .withEntity("Document", saved.getId())
-            .withDescription("Email attachment uploaded: " + sanitizedFilename)
+            .withDescription("Email attachment uploaded: " + attachment.filename())
             .withDataCategories("CORRESPONDENCE");
 
+        if (renditionService.supports(saved.getMimeType())) {
+            renditionService.scheduleAfterCommit(saved.getId());
+        }
+
         logger.info("Email attachment saved: {} for passport {}", saved.getId(), passportId);
 
         return saved;
@@ -423,13 +549,85 @@ public class DocumentService {
             throw new IllegalArgumentException("File type not allowed: " + file.getContentType());
         }
 
-        // Check storage quota
-        Long currentUsage = documentRepository.getTotalStorageByPassport(passportId);
-        if (currentUsage != null && (currentUsage + file.getSize()) > storageQuotaPerPassport) {
+        // Fail fast before uploading; the authoritative check is the reservation in uploadDocument
+        if (storageUsageService.getBytesUsed(passportId) + file.getSize() > storageQuotaPerPassport) {
             throw new IllegalStateException("Storage quota exceeded");
         }
     }
 
+    /**
+     * Cursor = sort, direction, the last row's sort value and its id; opaque to clients
+     */
+    static String encodeCursor(Document last, DocumentSort sort, Sort.Direction direction) {
+        String value = switch (sort) {
+            case UPLOADED_AT -> last.getUploadedAt().toString();
+            case NAME -> last.getOriginalFileName();
+            case SIZE -> Long.toString(last.getFileSize());
+        };
+        String raw = sort.name() + "|" + direction.name() + "|" + last.getId() + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ScrollPosition decodeCursor(String cursor, DocumentSort sort, Sort.Direction direction) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // The sort value goes last because file names may contain the separator
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !parts[0].equals(sort.name()) || !parts[1].equals(direction.name())) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort");
+            }
+            Object value = switch (sort) {
+                case UPLOADED_AT -> Instant.parse(parts[3]);
+                case NAME -> parts[3];
+                case SIZE -> Long.parseLong(parts[3]);
+            };
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put(sort.getProperty(), value);
+            keys.put("id", UUID.fromString(parts[2]));
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private void deleteQuietly(String storagePath) {
+        try {
+            storageService.delete(storagePath);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to remove rejected upload {}: {}", storagePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Tell the uploader their cached OCR result is in, as OcrJobWorker does for queued
+     * jobs, once the document it refers to is committed
+     */
+    private void notifyOcrCompleteAfterCommit(OcrCompletion completion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyOcrComplete(completion);
+                }
+            });
+        } else {
+            notifyOcrComplete(completion);
+        }
+    }
+
+    private void notifyOcrComplete(OcrCompletion completion) {
+        try {
+            notificationService.notifyDocumentOcrComplete(
+                completion.uploaderId(),
+                completion.passportId(),
+                completion.documentId(),
+                completion.fileName()
+            );
+        } catch (Exception e) {
+            logger.warn("Failed to send OCR complete notification: {}", e.getMessage());
+        }
+    }
+
     private String generateStoragePath(UUID passportId, String originalFilename) {
         String extension = "";
         if (originalFilename != null && originalFilename.contains(".")) {
@@ -441,11 +639,19 @@ public class DocumentService {
             extension);
     }
 
-    private String calculateHash(byte[] data) {
+    private String calculateHash(InputStream data) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    static MessageDigest sha256() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data);
-            return Base64.getEncoder().encodeToString(hash);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("SHA-256 not available", e);
         }
@@ -461,6 +667,8 @@ public class DocumentService {
             doc.getMimeType(),
             doc.getFileSize(),
             null, // URL generated on-demand
+            ImageRenditionService.renditionUrl(doc, RenditionSize.THUMBNAIL),
+            ImageRenditionService.renditionUrl(doc, RenditionSize.PREVIEW),
             doc.getOcrText() != null,
             doc.getOcrError(),
             doc.getUploadedAt(),
@@ -468,10 +676,6 @@ public class DocumentService {
         );
     }
 
-    private boolean isImageFile(String mimeType) {
-        return mimeType != null && mimeType.startsWith("image/");
-    }
-
     /**
      * Sanitize filename to prevent path traversal and other security issues
      */
@@ -501,62 +705,4 @@ public class DocumentService {
 
         return sanitized;
     }
-
-    /**
-     * Create a timeline entry from OCR results.
-     * Maps document types to appropriate EntryTypes.
-     */
-    private TimelineEntry createTimelineEntryFromOcr(
-            Passport passport, User author, OcrResult ocrResult, String fileName) {
-
-        EntryType entryType = mapDocumentTypeToEntryType(ocrResult.documentType());
-
-        TimelineEntry entry = new TimelineEntry(
-            passport,
-            author,
-            entryType,
-            ocrResult.getTitle(),
-            ocrResult.getContent(),
-            java.time.LocalDate.now()
-        );
-
-        entry.setVisibilityLevel(VisibilityLevel.PROFESSIONALS);
-        entry.addTag("scanned");
-        entry.addTag("ocr");
-
-        if (ocrResult.documentType() != null) {
-            entry.addTag(ocrResult.documentType().toLowerCase().replace(" ", "-"));
-        }
-
-        return timelineRepository.save(entry);
-    }
-
-    /**
-     * Map OCR document classification to timeline entry type.
-     */
-    private EntryType mapDocumentTypeToEntryType(String documentType) {
-        if (documentType == null) {
-            return EntryType.NOTE;
-        }
-
-        String type = documentType.toLowerCase();
-
-        if (type.contains("medical") || type.contains("health") || type.contains("prescription")) {
-            return EntryType.MEDICAL;
-        }
-        if (type.contains("school") || type.contains("report") || type.contains("assessment")) {
-            return EntryType.SCHOOL_REPORT;
-        }
-        if (type.contains("therapy") || type.contains("speech") || type.contains("occupational")) {
-            return EntryType.THERAPY;
-        }
-        if (type.contains("iep") || type.contains("education") || type.contains("learning")) {
-            return EntryType.EDUCATIONAL;
-        }
-        if (type.contains("behavior") || type.contains("incident")) {
-            return EntryType.BEHAVIOR;
-        }
-
-        return EntryType.NOTE;
-    }
 }
@@ -0,0 +1,214 @@
+package com.thisisme.service;
+
+import com.thisisme.service.ChunkedEncryption.DecryptingInputStream;
+import com.thisisme.service.ChunkedEncryption.EncryptingInputStream;
+import com.thisisme.service.ChunkedEncryption.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Envelope encryption in front of another storage backend. Each blob is encrypted
+ * with its own data key in fixed-size authenticated chunks (see {@link ChunkedEncryption}),
+ * so uploads and downloads stream through one chunk at a time and ranged reads only
+ * fetch and decrypt the chunks they cover.
+ *
+ * Blobs stored under "passports/{id}/" have their data key wrapped with that passport's
+ * key (see {@link PassportKeyService}), so shredding the passport key makes them all
+ * unreadable at once. Anything else is wrapped with the configured storage key.
+ *
+ * Reads recognise unencrypted blobs by their missing header and pass them through,
+ * so documents stored before encryption was enabled stay readable.
+ */
+public class EncryptingStorageService implements StorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EncryptingStorageService.class);
+
+    private static final String PASSPORT_PREFIX = "passports/";
+    private static final String PASSPORT_KEY_ID_PREFIX = "passport:";
+
+    private final StorageService delegate;
+    private final StorageKeyRing keyRing;
+    private final PassportKeyService passportKeyService;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    public EncryptingStorageService(StorageService delegate, StorageKeyRing keyRing,
+                                    PassportKeyService passportKeyService, boolean enabled, int chunkSize) {
+        if (chunkSize < ChunkedEncryption.MIN_CHUNK_SIZE || chunkSize > ChunkedEncryption.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Encryption chunk size must be between "
+                + ChunkedEncryption.MIN_CHUNK_SIZE + " and " + ChunkedEncryption.MAX_CHUNK_SIZE);
+        }
+        if (enabled && !keyRing.hasKey(keyRing.getCurrentKeyId())) {
+            throw new IllegalStateException(
+                "Storage encryption is enabled but key " + keyRing.getCurrentKeyId() + " is not configured");
+        }
+        this.delegate = delegate;
+        this.keyRing = keyRing;
+        this.passportKeyService = passportKeyService;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        logger.info("Storage encryption {} (chunk size {} bytes)", enabled ? "enabled" : "disabled", chunkSize);
+    }
+
+    @Override
+    public void upload(String key, byte[] data, String contentType) throws IOException {
+        upload(key, new ByteArrayInputStream(data), data.length, contentType);
+    }
+
+    @Override
+    public void upload(String key, InputStream data, long contentLength, String contentType) throws IOException {
+        if (!enabled) {
+            delegate.upload(key, data, contentLength, contentType);
+            return;
+        }
+
+        SecretKey dataKey = keyRing.generateDataKey();
+        UUID passportId = passportId(key);
+        Header header;
+        if (passportId != null) {
+            String keyId = PASSPORT_KEY_ID_PREFIX + passportId;
+            SecretKey passportKey = passportKeyService.getOrCreateKey(passportId);
+            header = Header.create(chunkSize, contentLength, keyId, StorageKeyRing.wrap(passportKey, keyId, dataKey));
+        } else {
+            header = Header.create(chunkSize, contentLength, keyRing.getCurrentKeyId(), keyRing.wrap(dataKey));
+        }
+        try (InputStream encrypted = new EncryptingInputStream(data, header, dataKey)) {
+            delegate.upload(key, encrypted, header.ciphertextLength(), contentType);
+        }
+    }
+
+    @Override
+    public byte[] download(String key) throws IOException {
+        try (InputStream in = openStream(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(delegate.openStream(key), ChunkedEncryption.MAGIC.length);
+        try {
+            Header header = ChunkedEncryption.readHeader(in);
+            if (header == null) {
+                return in;
+            }
+            return new DecryptingInputStream(in, header, dataKey(header), 0, header.chunkCount());
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        Header header;
+        try (PushbackInputStream in = new PushbackInputStream(
+                delegate.openRange(key, 0, ChunkedEncryption.MAX_HEADER_BYTES), ChunkedEncryption.MAGIC.length)) {
+            header = ChunkedEncryption.readHeader(in);
+        }
+        if (header == null) {
+            return delegate.openRange(key, offset, length);
+        }
+
+        long end = Math.min(header.plaintextLength(), offset + length);
+        if (offset >= end) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        // Fetch just the chunks covering [offset, end), then drop the leading bytes
+        // of the first chunk and the trailing bytes of the last. The blob's own chunk
+        // size is used, which may differ from the one currently configured.
+        long blobChunkSize = header.chunkSize();
+        long firstChunk = offset / blobChunkSize;
+        long lastChunk = (end - 1) / blobChunkSize;
+        long from = header.chunkOffset(firstChunk);
+        long to = lastChunk == header.chunkCount() - 1
+            ? header.ciphertextLength()
+            : header.chunkOffset(lastChunk + 1);
+
+        InputStream ciphertext = delegate.openRange(key, from, to - from);
+        try {
+            InputStream plaintext = new DecryptingInputStream(
+                ciphertext, header, dataKey(header), firstChunk, lastChunk + 1);
+            plaintext.skipNBytes(offset - firstChunk * blobChunkSize);
+            return new BoundedInputStream(plaintext, end - offset);
+        } catch (IOException | RuntimeException e) {
+            ciphertext.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        delegate.delete(key);
+    }
+
+    @Override
+    public List<String> deleteAll(Collection<String> keys) {
+        return delegate.deleteAll(keys);
+    }
+
+    @Override
+    public String getDownloadUrl(String key, String originalFilename) {
+        return delegate.getDownloadUrl(key, originalFilename);
+    }
+
+    @Override
+    public boolean supportsDirectDownload() {
+        // A pre-signed URL would hand out ciphertext, so serve through the API instead
+        return !enabled && delegate.supportsDirectDownload();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return delegate.exists(key);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Helper methods
+
+    private SecretKey dataKey(Header header) throws IOException {
+        try {
+            if (header.keyId().startsWith(PASSPORT_KEY_ID_PREFIX)) {
+                UUID passportId = UUID.fromString(header.keyId().substring(PASSPORT_KEY_ID_PREFIX.length()));
+                SecretKey passportKey = passportKeyService.findKey(passportId).orElseThrow(() ->
+                    new GeneralSecurityException("Encryption key for passport " + passportId + " is not available"));
+                return StorageKeyRing.unwrap(passportKey, header.keyId(), header.wrappedKey());
+            }
+            return keyRing.unwrap(header.keyId(), header.wrappedKey());
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Failed to unwrap data key (key id " + header.keyId() + ")", e);
+        }
+    }
+
+    /**
+     * Passport a storage key belongs to, from its "passports/{id}/..." prefix
+     */
+    static UUID passportId(String key) {
+        if (!key.startsWith(PASSPORT_PREFIX)) {
+            return null;
+        }
+        int end = key.indexOf('/', PASSPORT_PREFIX.length());
+        if (end < 0) {
+            return null;
+        }
+        try {
+            return UUID.fromString(key.substring(PASSPORT_PREFIX.length(), end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
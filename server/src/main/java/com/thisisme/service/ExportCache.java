@@ -0,0 +1,134 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.ExportFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-memory LRU cache of rendered passport exports, capped by total bytes. Keys include
+ * the passport's content version, so an edit makes every older entry unreachable; those
+ * are dropped as soon as a newer version of the same passport is cached, or aged out.
+ */
+@Component
+public class ExportCache {
+
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentSizeBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Value("${app.export.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.export.cache.max-size-bytes:67108864}")
+    private long maxSizeBytes; // 64MB default
+
+    @Value("${app.export.cache.max-entry-bytes:4194304}")
+    private long maxEntryBytes; // 4MB default
+
+    public ExportCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("export.cache.requests").tag("result", "hit")
+            .description("Exports served from the rendered export cache").register(meterRegistry);
+        this.misses = Counter.builder("export.cache.requests").tag("result", "miss")
+            .description("Exports that had to be rendered").register(meterRegistry);
+        this.evictions = Counter.builder("export.cache.evictions")
+            .description("Entries evicted to stay under the size cap").register(meterRegistry);
+        Gauge.builder("export.cache.size", this, ExportCache::getCurrentSizeBytes).baseUnit("bytes")
+            .description("Bytes held by the rendered export cache").register(meterRegistry);
+    }
+
+    /**
+     * What a rendered export depends on. The viewer's role is part of the key so exports
+     * can differ by role without sharing entries.
+     */
+    public record Key(UUID passportId, ExportFormat format, String contentVersion, String viewerRole) {
+
+        /**
+         * Strong ETag for this rendering; the same on every instance
+         */
+        public String etag() {
+            return "\"" + contentVersion + "-" + format.getExtension() + "-" + viewerRole.toLowerCase() + "\"";
+        }
+    }
+
+    public Optional<byte[]> get(Key key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        byte[] content;
+        synchronized (this) {
+            content = entries.get(key);
+        }
+        if (content != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return Optional.ofNullable(content);
+    }
+
+    /**
+     * Cache a rendered export, dropping entries for older versions of the same passport.
+     * Exports over the entry size cap are not cached.
+     */
+    public void put(Key key, byte[] content) {
+        if (!enabled || content.length > getMaxEntryBytes()) {
+            return;
+        }
+        synchronized (this) {
+            Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, byte[]> entry = it.next();
+                Key existing = entry.getKey();
+                if (existing.passportId().equals(key.passportId())
+                        && !existing.contentVersion().equals(key.contentVersion())) {
+                    it.remove();
+                    currentSizeBytes -= entry.getValue().length;
+                }
+            }
+
+            byte[] previous = entries.put(key, content);
+            if (previous != null) {
+                currentSizeBytes -= previous.length;
+            }
+            currentSizeBytes += content.length;
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Largest export that will be cached; renderers stop capturing past it
+     */
+    public long getMaxEntryBytes() {
+        return enabled ? Math.min(maxEntryBytes, maxSizeBytes) : 0;
+    }
+
+    public synchronized long getCurrentSizeBytes() {
+        return currentSizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, byte[]>> eldest = entries.entrySet().iterator();
+        while (currentSizeBytes > maxSizeBytes && eldest.hasNext()) {
+            Map.Entry<Key, byte[]> entry = eldest.next();
+            eldest.remove();
+            currentSizeBytes -= entry.getValue().length;
+            evictions.increment();
+        }
+    }
+}
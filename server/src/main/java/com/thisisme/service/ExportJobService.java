@@ -0,0 +1,403 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.ExportDTO.ExportJobResponse;
+import com.thisisme.model.entity.ExportJob;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.ExportFormat;
+import com.thisisme.model.enums.ExportJobStatus;
+import com.thisisme.repository.ExportJobRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Background exports. A request queues a job (or joins an identical one already queued,
+ * or reuses a finished artifact for the same content version); ExportJobWorker renders
+ * it into storage and the client polls the job or waits for the EXPORT_READY notification.
+ * As with InboundEmailJobService, each queue method is a short transaction and the
+ * rendering runs between them.
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    private final ExportJobRepository jobRepository;
+    private final ExportService exportService;
+    private final UserRepository userRepository;
+    private final PermissionEvaluator permissionEvaluator;
+    private final StorageService storageService;
+    private final NotificationService notificationService;
+    private final AuditService auditService;
+
+    @Value("${app.export.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.export.jobs.base-backoff-ms:30000}")
+    private long baseBackoffMs;
+
+    @Value("${app.export.jobs.max-backoff-ms:600000}")
+    private long maxBackoffMs; // 10 minutes
+
+    @Value("${app.export.jobs.stale-after-ms:300000}")
+    private long staleAfterMs; // 5 minutes without a progress heartbeat
+
+    @Value("${app.export.jobs.artifact-ttl-hours:24}")
+    private long artifactTtlHours;
+
+    public ExportJobService(
+            ExportJobRepository jobRepository,
+            ExportService exportService,
+            UserRepository userRepository,
+            PermissionEvaluator permissionEvaluator,
+            StorageService storageService,
+            NotificationService notificationService,
+            AuditService auditService) {
+        this.jobRepository = jobRepository;
+        this.exportService = exportService;
+        this.userRepository = userRepository;
+        this.permissionEvaluator = permissionEvaluator;
+        this.storageService = storageService;
+        this.notificationService = notificationService;
+        this.auditService = auditService;
+    }
+
+    /**
+     * Queue an export of a passport. Requests for the same passport, format, role and
+     * content version share one job, and a finished artifact is reused until it expires.
+     *
+     * @throws IllegalArgumentException if the format is a data subject export
+     */
+    public ExportJobResponse requestPassportExport(UUID passportId, UUID userId, ExportFormat format, String ipAddress) {
+        if (format.isDataSubjectExport()) {
+            throw new IllegalArgumentException("Unsupported passport export format: " + format);
+        }
+        exportService.checkAccess(passportId, userId, format);
+        String version = exportService.contentVersion(passportId);
+        String dedupKey = passportDedupPrefix(passportId, userId, format) + version;
+
+        ExportJob job = findOrQueue(dedupKey, userId, passportId, format, version, ipAddress);
+        logRequest(job, userId, ipAddress);
+        return toResponse(job);
+    }
+
+    /**
+     * Queue a user's data subject export. Only a pending or running job is shared;
+     * each finished request gets a fresh bundle.
+     *
+     * @throws IllegalArgumentException if the format isn't a data subject export
+     */
+    public ExportJobResponse requestDataSubjectExport(UUID userId, ExportFormat format, String ipAddress) {
+        if (!format.isDataSubjectExport()) {
+            throw new IllegalArgumentException("Unsupported data subject export format: " + format);
+        }
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new IllegalArgumentException("User not found");
+        }
+        String dedupKey = "user:" + userId + ":" + format;
+
+        ExportJob job = findOrQueue(dedupKey, userId, null, format, null, ipAddress);
+        logRequest(job, userId, ipAddress);
+        return toResponse(job);
+    }
+
+    private ExportJob findOrQueue(String dedupKey, UUID userId, UUID passportId, ExportFormat format,
+                                  String version, String ipAddress) {
+        // A job can finish between the insert conflicting and the lookup; one more pass
+        // then finds its artifact
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Instant now = Instant.now();
+            if (version != null) {
+                Optional<ExportJob> reusable = jobRepository.findReusable(dedupKey, now);
+                if (reusable.isPresent()) {
+                    return reusable.get();
+                }
+            }
+
+            UUID id = UUID.randomUUID();
+            if (jobRepository.insertIfAbsent(id, userId, passportId, format.name(), version, dedupKey,
+                    ipAddress, now) == 1) {
+                logger.debug("Queued {} export job {} ({})", format, id, dedupKey);
+                return jobRepository.findById(id)
+                    .orElseThrow(() -> new IllegalStateException("Export job disappeared after insert"));
+            }
+
+            Optional<ExportJob> open = jobRepository.findOpenByDedupKey(dedupKey);
+            if (open.isPresent()) {
+                return open.get();
+            }
+        }
+        throw new IllegalStateException("Export is being updated, please try again");
+    }
+
+    /**
+     * Job status for a user allowed to see it: anyone with the same role on the passport
+     * it was requested with (who can also download documents, for a ZIP), or the
+     * requester for a data subject export
+     */
+    @Transactional(readOnly = true)
+    public ExportJobResponse getJob(UUID jobId, UUID userId) {
+        return toResponse(findAccessible(jobId, userId));
+    }
+
+    /**
+     * Open a finished job's artifact for download
+     *
+     * @throws IllegalStateException if the job hasn't finished
+     */
+    public ExportArtifact openArtifact(UUID jobId, UUID userId, String ipAddress) throws IOException {
+        // Checks document download access again for a ZIP, as of now rather than when requested
+        ExportJob job = findAccessible(jobId, userId);
+        if (job.getStatus() != ExportJobStatus.COMPLETED || job.getArtifactPath() == null) {
+            throw new IllegalStateException("Export is not ready");
+        }
+        if (job.getExpiresAt() != null && !job.getExpiresAt().isAfter(Instant.now())) {
+            throw new ResourceNotFoundException("Export has expired");
+        }
+
+        InputStream content = storageService.openStream(job.getArtifactPath());
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        auditService.log(AuditAction.DATA_EXPORT_COMPLETED, userId, user.getName(), ipAddress)
+            .withPassport(job.getPassportId())
+            .withEntity("ExportJob", job.getId())
+            .withDescription("Downloaded " + job.getFormat() + " export")
+            .save();
+
+        return new ExportArtifact(content, job.getArtifactSize(), job.getFormat(), job.getPassportId());
+    }
+
+    private ExportJob findAccessible(UUID jobId, UUID userId) {
+        ExportJob job = jobRepository.findById(jobId)
+            .orElseThrow(() -> new ResourceNotFoundException("Export job not found"));
+        boolean allowed = job.isDataSubjectExport()
+            ? job.getRequestedBy().equals(userId)
+            : canAccessPassportJob(job, userId);
+        if (!allowed) {
+            // Don't reveal other users' jobs
+            throw new ResourceNotFoundException("Export job not found");
+        }
+        return job;
+    }
+
+    private boolean canAccessPassportJob(ExportJob job, UUID userId) {
+        UUID passportId = job.getPassportId();
+        if (!permissionEvaluator.canView(passportId, userId)) {
+            return false;
+        }
+        if (job.getFormat() == ExportFormat.ZIP && !permissionEvaluator.canDownloadDocuments(passportId, userId)) {
+            return false;
+        }
+        // An artifact is only shared with callers who'd get the same export
+        return job.getDedupKey().startsWith(passportDedupPrefix(passportId, userId, job.getFormat()));
+    }
+
+    /**
+     * What an export contains depends on the caller's role, so it's part of the key
+     */
+    private String passportDedupPrefix(UUID passportId, UUID userId, ExportFormat format) {
+        return "passport:" + passportId + ":" + format + ":" + exportService.viewerRole(passportId, userId) + ":";
+    }
+
+    /**
+     * Claim up to {@code limit} due jobs for a worker
+     */
+    @Transactional
+    public List<UUID> claimBatch(String workerId, int limit) {
+        Instant now = Instant.now();
+        List<UUID> ids = jobRepository.lockDueJobIds(now, limit);
+        if (!ids.isEmpty()) {
+            jobRepository.markClaimed(ids, workerId, now, ExportJobStatus.RUNNING);
+        }
+        return ids;
+    }
+
+    /**
+     * What a claimed job needs to render, or empty if it's no longer claimed by this worker
+     */
+    @Transactional(readOnly = true)
+    public Optional<ExportWork> startWork(UUID jobId, String workerId) {
+        return jobRepository.findById(jobId)
+            .filter(job -> job.isClaimedBy(workerId))
+            .map(job -> new ExportWork(job.getId(), job.getRequestedBy(), job.getPassportId(),
+                job.getFormat(), job.getClientIp()));
+    }
+
+    /**
+     * Record bytes rendered so far. Returns false once the job is no longer claimed by
+     * this worker, so it can stop early.
+     */
+    public boolean recordProgress(UUID jobId, String workerId, long bytesWritten) {
+        return jobRepository.recordProgress(jobId, workerId, bytesWritten, Instant.now()) == 1;
+    }
+
+    /**
+     * Mark a job done and notify the requester. Returns false if the job was reclaimed
+     * by another worker meanwhile, in which case the caller should delete its artifact.
+     */
+    @Transactional
+    public boolean complete(UUID jobId, String workerId, String artifactPath, long artifactSize) {
+        ExportJob job = jobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            logger.warn("Export job {} is no longer claimed by {}", jobId, workerId);
+            return false;
+        }
+        job.complete(artifactPath, artifactSize, Instant.now().plus(Duration.ofHours(artifactTtlHours)));
+
+        try {
+            notificationService.notifyExportReady(job.getRequestedBy(), job.getPassportId(),
+                job.getId(), job.getFormat().name());
+        } catch (RuntimeException e) {
+            // The artifact is still there to poll for
+            logger.warn("Failed to notify user {} about export job {}: {}",
+                job.getRequestedBy(), jobId, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Schedule a retry with exponential backoff, or fail the job
+     */
+    @Transactional
+    public void recordFailure(UUID jobId, String workerId, String error, boolean retryable) {
+        ExportJob job = jobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            return;
+        }
+
+        if (retryable && job.getAttempts() < maxAttempts) {
+            Instant nextAttempt = Instant.now().plus(backoff(job.getAttempts()));
+            job.retryAt(nextAttempt, error);
+            logger.info("Export job {} failed (attempt {}/{}), retrying at {}: {}",
+                jobId, job.getAttempts(), maxAttempts, nextAttempt, error);
+            return;
+        }
+
+        job.fail(error, Instant.now().plus(Duration.ofHours(artifactTtlHours)));
+        logger.warn("Export job {} ({}) failed after {} attempts: {}",
+            jobId, job.getDedupKey(), job.getAttempts(), error);
+    }
+
+    /**
+     * Requeue jobs whose worker stopped sending progress
+     */
+    @Transactional
+    public int releaseStaleJobs() {
+        Instant now = Instant.now();
+        int released = jobRepository.releaseStale(now.minusMillis(staleAfterMs), now);
+        if (released > 0) {
+            logger.warn("Released {} stale export jobs back to the queue", released);
+        }
+        return released;
+    }
+
+    /**
+     * Delete a batch of expired jobs
+     *
+     * @return artifact paths to delete from storage once this has committed
+     */
+    @Transactional
+    public List<String> purgeExpired(int limit) {
+        List<UUID> ids = jobRepository.lockExpiredJobIds(Instant.now(), limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<String> paths = jobRepository.findArtifactPaths(ids);
+        jobRepository.deleteByIds(ids);
+        return paths;
+    }
+
+    @Transactional(readOnly = true)
+    public long countByStatus(ExportJobStatus status) {
+        return jobRepository.countByStatus(status);
+    }
+
+    /**
+     * base * 2^(attempts-1), capped, with up to 20% jitter
+     */
+    Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        long delay = Math.min(baseBackoffMs << exponent, maxBackoffMs);
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    /**
+     * Remove an artifact from storage. Passport artifacts left behind are encrypted under
+     * the passport key and shredded with it.
+     */
+    public void deleteArtifact(String artifactPath) {
+        try {
+            storageService.delete(artifactPath);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to delete export artifact {}: {}", artifactPath, e.getMessage());
+        }
+    }
+
+    // Helper methods
+
+    private void logRequest(ExportJob job, UUID userId, String ipAddress) {
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        auditService.log(AuditAction.DATA_EXPORT_REQUESTED, userId, user.getName(), ipAddress)
+            .withPassport(job.getPassportId())
+            .withEntity("ExportJob", job.getId())
+            .withDescription("Requested " + job.getFormat() + " export")
+            .save();
+    }
+
+    private static ExportJobResponse toResponse(ExportJob job) {
+        return new ExportJobResponse(
+            job.getId(),
+            job.getPassportId(),
+            job.getFormat().name(),
+            job.getStatus().name(),
+            job.getBytesWritten(),
+            job.getArtifactSize(),
+            job.getLastError(),
+            job.getCreatedAt(),
+            job.getCompletedAt(),
+            job.getExpiresAt()
+        );
+    }
+
+    /**
+     * What a worker needs to render a job outside a transaction
+     */
+    public record ExportWork(
+        UUID jobId,
+        UUID requestedBy,
+        UUID passportId,
+        ExportFormat format,
+        String clientIp
+    ) {
+
+        /**
+         * Passport artifacts go under the passport's prefix so they're encrypted with its key
+         */
+        public String artifactPath() {
+            String prefix = passportId != null ? "passports/" + passportId : "users/" + requestedBy;
+            return prefix + "/exports/" + jobId + "." + format.getExtension();
+        }
+    }
+
+    /**
+     * An artifact opened for download; the caller closes the stream
+     */
+    public record ExportArtifact(InputStream content, Long size, ExportFormat format, UUID passportId) {}
+}
@@ -0,0 +1,261 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.enums.ExportJobStatus;
+import com.thisisme.service.ExportJobService.ExportWork;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the export queue and renders claimed jobs on the export pool. Each export is
+ * written to a local spool file (storage needs the length up front) and then uploaded.
+ * Progress is reported while rendering and doubles as the job's heartbeat.
+ */
+@Component
+public class ExportJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobWorker.class);
+
+    private static final int SPOOL_BUFFER_BYTES = 64 * 1024;
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    private final ExportJobService jobService;
+    private final ExportService exportService;
+    private final SubjectAccessExportService subjectAccessExportService;
+    private final StorageService storageService;
+    private final Executor executor;
+
+    private final String workerId;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Queue depth across all instances, refreshed periodically rather than queried per scrape
+    private final AtomicLong pendingJobs = new AtomicLong();
+    private final AtomicLong runningJobs = new AtomicLong();
+
+    @Value("${app.export.worker.threads:2}")
+    private int concurrency;
+
+    @Value("${app.export.spool-dir:#{systemProperties['java.io.tmpdir']}}")
+    private String spoolDir;
+
+    @Value("${app.export.jobs.progress-interval-ms:5000}")
+    private long progressIntervalMs;
+
+    public ExportJobWorker(
+            ExportJobService jobService,
+            ExportService exportService,
+            SubjectAccessExportService subjectAccessExportService,
+            StorageService storageService,
+            @Qualifier("exportExecutor") Executor executor,
+            MeterRegistry meterRegistry) {
+        this.jobService = jobService;
+        this.exportService = exportService;
+        this.subjectAccessExportService = subjectAccessExportService;
+        this.storageService = storageService;
+        this.executor = executor;
+        // pid@host plus a random suffix, so restarts never inherit a previous run's claims
+        String runtime = ManagementFactory.getRuntimeMXBean().getName();
+        String id = runtime + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.workerId = id.length() > 100 ? id.substring(id.length() - 100) : id;
+
+        Gauge.builder("export.jobs.queued", pendingJobs, AtomicLong::get).tag("status", "pending")
+            .description("Exports waiting to be rendered").register(meterRegistry);
+        Gauge.builder("export.jobs.queued", runningJobs, AtomicLong::get).tag("status", "running")
+            .description("Exports claimed by a worker").register(meterRegistry);
+        Gauge.builder("export.worker.busy", inFlight, AtomicInteger::get)
+            .description("Exports being rendered on this instance").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(spoolDir));
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.worker.poll-interval-ms:2000}")
+    public void poll() {
+        int idle = concurrency - inFlight.get();
+        if (idle <= 0) {
+            return;
+        }
+
+        List<UUID> claimed = jobService.claimBatch(workerId, idle);
+        for (UUID jobId : claimed) {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        process(jobId);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // Left RUNNING; releaseStaleJobs puts it back on the queue
+                inFlight.decrementAndGet();
+                logger.warn("Export pool rejected job {}: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.worker.stale-check-interval-ms:60000}")
+    public void releaseStaleJobs() {
+        jobService.releaseStaleJobs();
+    }
+
+    /**
+     * Delete expired jobs and their artifacts
+     */
+    @Scheduled(fixedDelayString = "${app.export.worker.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        List<String> paths;
+        do {
+            paths = jobService.purgeExpired(PURGE_BATCH_SIZE);
+            paths.forEach(jobService::deleteArtifact);
+        } while (paths.size() == PURGE_BATCH_SIZE);
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.worker.metrics-interval-ms:30000}")
+    public void refreshQueueMetrics() {
+        pendingJobs.set(jobService.countByStatus(ExportJobStatus.PENDING));
+        runningJobs.set(jobService.countByStatus(ExportJobStatus.RUNNING));
+    }
+
+    /**
+     * Render one claimed job and upload it. Access and not-found failures (the user lost
+     * access, the passport was deleted) fail the job straight away; anything else is retried.
+     */
+    void process(UUID jobId) {
+        try {
+            Optional<ExportWork> claimed = jobService.startWork(jobId, workerId);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            ExportWork work = claimed.get();
+
+            Path spool = Files.createTempFile(Paths.get(spoolDir), "export-", "." + work.format().getExtension());
+            try {
+                long size;
+                try (ProgressOutputStream out = new ProgressOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(spool), SPOOL_BUFFER_BYTES), jobId)) {
+                    render(work, out);
+                    size = out.written;
+                } catch (SecurityException | ResourceNotFoundException | IllegalArgumentException e) {
+                    jobService.recordFailure(jobId, workerId, e.getMessage(), false);
+                    return;
+                } catch (JobReclaimedException e) {
+                    logger.info("Export job {} was reclaimed while rendering; abandoning", jobId);
+                    return;
+                }
+
+                String artifactPath = work.artifactPath();
+                try (InputStream in = Files.newInputStream(spool)) {
+                    storageService.upload(artifactPath, in, size, work.format().getContentType());
+                }
+                if (!jobService.complete(jobId, workerId, artifactPath, size)) {
+                    jobService.deleteArtifact(artifactPath);
+                }
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Export job {} failed: {}", jobId, e.getMessage(), e);
+            try {
+                jobService.recordFailure(jobId, workerId, e.getMessage(), true);
+            } catch (RuntimeException recordError) {
+                logger.error("Failed to record export job {} failure: {}", jobId, recordError.getMessage());
+            }
+        }
+    }
+
+    private void render(ExportWork work, OutputStream out) throws IOException {
+        UUID passportId = work.passportId();
+        UUID userId = work.requestedBy();
+        String ip = work.clientIp();
+        switch (work.format()) {
+            case JSON -> exportService.exportAsJson(passportId, userId, ip, out);
+            case CSV -> exportService.exportAsCsv(passportId, userId, ip, out);
+            case MARKDOWN -> exportService.exportAsMarkdown(passportId, userId, ip, out);
+            case HTML -> exportService.exportAsHtml(passportId, userId, ip, out);
+            case ZIP -> exportService.exportAsZip(passportId, userId, ip, out);
+            case DATA_SUBJECT_JSON -> subjectAccessExportService.writeJson(userId, ip, out);
+            case DATA_SUBJECT_NDJSON -> subjectAccessExportService.writeNdjson(userId, ip, out);
+            case DATA_SUBJECT_CSV -> subjectAccessExportService.writeCsv(userId, ip, out);
+        }
+    }
+
+    String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Thrown when a progress update finds the job has been claimed by another worker
+     */
+    private static final class JobReclaimedException extends IOException {
+
+        JobReclaimedException() {
+            super("Export job was reclaimed by another worker");
+        }
+    }
+
+    /**
+     * Counts bytes written and reports progress at most every progressIntervalMs
+     */
+    private final class ProgressOutputStream extends FilterOutputStream {
+
+        private final UUID jobId;
+        private long written;
+        private long lastReport = System.currentTimeMillis();
+
+        ProgressOutputStream(OutputStream out, UUID jobId) {
+            super(out);
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            advance(1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            advance(length);
+        }
+
+        private void advance(int n) throws IOException {
+            written += n;
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= progressIntervalMs) {
+                lastReport = now;
+                if (!jobService.recordProgress(jobId, workerId, written)) {
+                    throw new JobReclaimedException();
+                }
+            }
+        }
+    }
+}
@@ -1,66 +1,317 @@
 package com.thisisme.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.ExportDTO.ContentVersion;
+import com.thisisme.model.dto.ExportDTO.DocumentExportRow;
+import com.thisisme.model.dto.ExportDTO.TimelineExportRow;
 import com.thisisme.model.entity.*;
 import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.ExportFormat;
 import com.thisisme.repository.*;
 import com.thisisme.security.PermissionEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Passport exports. Every format is written incrementally to the caller's stream, with
+ * timeline entries and documents read from database cursors as projections, so memory
+ * use stays flat however long the history is. The write methods run in a read-only
+ * transaction for the duration of the stream.
+ */
 @Service
 public class ExportService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    // Timeline rows per tag lookup in the JSON export
+    private static final int TAG_BATCH_SIZE = 500;
+
+    private static final int ZIP_BUFFER_BYTES = 64 * 1024;
+
     private final PassportRepository passportRepository;
     private final TimelineEntryRepository timelineRepository;
     private final DocumentRepository documentRepository;
     private final UserRepository userRepository;
     private final PermissionEvaluator permissionEvaluator;
     private final AuditService auditService;
+    private final PassportPermissionRepository permissionRepository;
+    private final StorageService storageService;
+    private final ExportCache exportCache;
+    private final Executor prefetchExecutor;
     private final ObjectMapper objectMapper;
 
+    @Value("${app.export.prefetch-window:4}")
+    private int prefetchWindow;
+
+    @Value("${app.export.prefetch-max-bytes:8388608}")
+    private long prefetchMaxBytes; // 8MB default
+
     public ExportService(
             PassportRepository passportRepository,
             TimelineEntryRepository timelineRepository,
             DocumentRepository documentRepository,
             UserRepository userRepository,
             PermissionEvaluator permissionEvaluator,
-            AuditService auditService) {
+            AuditService auditService,
+            PassportPermissionRepository permissionRepository,
+            StorageService storageService,
+            ExportCache exportCache,
+            @Qualifier("exportPrefetchExecutor") Executor prefetchExecutor) {
         this.passportRepository = passportRepository;
         this.timelineRepository = timelineRepository;
         this.documentRepository = documentRepository;
         this.userRepository = userRepository;
         this.permissionEvaluator = permissionEvaluator;
         this.auditService = auditService;
+        this.permissionRepository = permissionRepository;
+        this.storageService = storageService;
+        this.exportCache = exportCache;
+        this.prefetchExecutor = prefetchExecutor;
 
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        // Entries are written one by one; let the buffered response decide when to flush
+        this.objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Fail fast, before any of the response is written, if the export can't be produced
+     */
+    @Transactional(readOnly = true)
+    public void checkAccess(UUID passportId, UUID userId) {
+        checkAccess(passportId, userId, ExportFormat.JSON);
+    }
+
+    /**
+     * As above, for a given format: a ZIP carries every document file, so it also needs
+     * permission to download documents
+     */
+    @Transactional(readOnly = true)
+    public void checkAccess(UUID passportId, UUID userId, ExportFormat format) {
+        validateAccess(passportId, userId, format);
+        if (passportRepository.findActiveById(passportId).isEmpty()) {
+            throw new ResourceNotFoundException("Passport not found");
+        }
+    }
+
+    /**
+     * Opaque version of everything an export of the passport contains; changes whenever
+     * a section, entry or document is added, edited or removed
+     */
+    @Transactional(readOnly = true)
+    public String contentVersion(UUID passportId) {
+        ContentVersion version = passportRepository.findContentVersion(passportId)
+            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
+        byte[] hash = DocumentService.sha256().digest(version.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash, 0, 16);
+    }
+
+    /**
+     * Cache key for the export this user would get right now
+     */
+    @Transactional(readOnly = true)
+    public ExportCache.Key cacheKey(UUID passportId, UUID userId, ExportFormat format) {
+        return new ExportCache.Key(passportId, format, contentVersion(passportId), viewerRole(passportId, userId));
+    }
+
+    /**
+     * The user's role on the passport, which decides what an export of it contains
+     */
+    @Transactional(readOnly = true)
+    public String viewerRole(UUID passportId, UUID userId) {
+        return permissionRepository.findActivePermission(passportId, userId)
+            .map(permission -> permission.getRole().name())
+            .orElse("NONE");
+    }
+
+    /**
+     * Write a JSON, CSV, Markdown or HTML export from the rendered export cache, or
+     * render it and cache the result if it's small enough
+     */
+    @Transactional(readOnly = true)
+    public void exportCached(ExportCache.Key key, UUID userId, String ipAddress, OutputStream out) throws IOException {
+        UUID passportId = key.passportId();
+        Optional<byte[]> cached = exportCache.get(key);
+        if (cached.isPresent()) {
+            validateAccess(passportId, userId);
+            out.write(cached.get());
+            logExport(passportId, userId, key.format().name(), ipAddress);
+            return;
+        }
+
+        CapturingOutputStream capture = new CapturingOutputStream(out, exportCache.getMaxEntryBytes());
+        switch (key.format()) {
+            case JSON -> exportAsJson(passportId, userId, ipAddress, capture);
+            case CSV -> exportAsCsv(passportId, userId, ipAddress, capture);
+            case MARKDOWN -> exportAsMarkdown(passportId, userId, ipAddress, capture);
+            case HTML -> exportAsHtml(passportId, userId, ipAddress, capture);
+            default -> throw new IllegalArgumentException("Format is not cacheable: " + key.format());
+        }
+        capture.captured().ifPresent(content -> exportCache.put(key, content));
     }
 
     /**
      * Export passport as JSON
      */
     @Transactional(readOnly = true)
-    public String exportAsJson(UUID passportId, UUID userId, String ipAddress) {
+    public void exportAsJson(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
         validateAccess(passportId, userId);
 
-        Map<String, Object> export = buildExportData(passportId, userId, ipAddress);
+        Passport passport = passportRepository.findActiveById(passportId)
+            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
 
-        try {
-            return objectMapper.writeValueAsString(export);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate JSON export", e);
+        writeJson(passport, out);
+
+        logExport(passportId, userId, "JSON", ipAddress);
+    }
+
+    /**
+     * Export the whole passport, including every document file, as a ZIP archive:
+     * passport.json (as the JSON export), documents/ with the files themselves, and a
+     * manifest.json listing each file with its SHA-256. Files are fetched from storage a
+     * few ahead of the one being compressed, so storage latency overlaps with compression.
+     * A file that can't be read is recorded in the manifest rather than failing the archive.
+     */
+    @Transactional(readOnly = true)
+    public void exportAsZip(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
+        validateAccess(passportId, userId, ExportFormat.ZIP);
+
+        Passport passport = passportRepository.findActiveById(passportId)
+            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, ZIP_BUFFER_BYTES));
+
+        zip.putNextEntry(new ZipEntry("passport.json"));
+        writeJson(passport, zip);
+        zip.closeEntry();
+
+        List<Map<String, Object>> files = new ArrayList<>();
+        Deque<PrefetchedFile> window = new ArrayDeque<>();
+        try (Stream<DocumentExportRow> rows = documentRepository.streamForExport(passportId)) {
+            Iterator<DocumentExportRow> it = rows.iterator();
+            while (it.hasNext() || !window.isEmpty()) {
+                while (window.size() < prefetchWindow && it.hasNext()) {
+                    window.add(prefetch(it.next()));
+                }
+                files.add(writeFile(zip, window.poll()));
+            }
+        } finally {
+            // Client went away mid-archive; release anything still in flight
+            window.forEach(PrefetchedFile::discard);
+        }
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("exportType", "THISISME_PASSPORT_ARCHIVE");
+        manifest.put("exportVersion", "1.0");
+        manifest.put("exportDate", Instant.now().toString());
+        manifest.put("passportId", passportId);
+        manifest.put("files", files);
+        zip.putNextEntry(new ZipEntry("manifest.json"));
+        objectMapper.writeValue(new NonClosingOutputStream(zip), manifest);
+        zip.closeEntry();
+
+        zip.finish();
+        zip.flush();
+
+        logExport(passportId, userId, "ZIP", ipAddress);
+    }
+
+    private void writeJson(Passport passport, OutputStream out) throws IOException {
+        UUID passportId = passport.getId();
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("exportType", "THISISME_PASSPORT_EXPORT");
+            json.writeStringField("exportVersion", "1.0");
+            json.writeStringField("exportDate", Instant.now().toString());
+
+            // Passport data
+            Map<String, Object> passportData = new LinkedHashMap<>();
+            passportData.put("id", passport.getId());
+            passportData.put("childFirstName", passport.getChildFirstName());
+            passportData.put("childDateOfBirth", passport.getChildDateOfBirth());
+            passportData.put("createdAt", passport.getCreatedAt());
+            passportData.put("sections", passport.getSections().stream()
+                .map(s -> {
+                    Map<String, Object> section = new LinkedHashMap<>();
+                    section.put("type", s.getType().name());
+                    section.put("content", s.getContent());
+                    section.put("visibilityLevel", s.getVisibilityLevel().name());
+                    return section;
+                })
+                .toList());
+            json.writeFieldName("passport");
+            objectMapper.writeValue(json, passportData);
+
+            // Timeline entries, with their tags looked up a batch at a time
+            json.writeArrayFieldStart("timeline");
+            try (Stream<TimelineExportRow> rows = timelineRepository.streamForExport(passportId)) {
+                Iterator<TimelineExportRow> it = rows.iterator();
+                List<TimelineExportRow> batch = new ArrayList<>(TAG_BATCH_SIZE);
+                while (it.hasNext()) {
+                    batch.add(it.next());
+                    if (batch.size() == TAG_BATCH_SIZE || !it.hasNext()) {
+                        writeTimelineBatch(json, batch);
+                        batch.clear();
+                    }
+                }
+            }
+            json.writeEndArray();
+
+            // Documents (metadata)
+            json.writeArrayFieldStart("documents");
+            try (Stream<DocumentExportRow> rows = documentRepository.streamForExport(passportId)) {
+                for (Iterator<DocumentExportRow> it = rows.iterator(); it.hasNext(); ) {
+                    DocumentExportRow d = it.next();
+                    Map<String, Object> doc = new LinkedHashMap<>();
+                    doc.put("id", d.id());
+                    doc.put("fileName", d.originalFileName());
+                    doc.put("mimeType", d.mimeType());
+                    doc.put("fileSize", d.fileSize());
+                    doc.put("hasOcrText", d.hasOcrText());
+                    doc.put("uploadedAt", d.uploadedAt());
+                    objectMapper.writeValue(json, doc);
+                }
+            }
+            json.writeEndArray();
+
+            json.writeEndObject();
         }
     }
 
@@ -68,13 +319,13 @@ public class ExportService {
      * Export passport as CSV
      */
     @Transactional(readOnly = true)
-    public String exportAsCsv(UUID passportId, UUID userId, String ipAddress) {
+    public void exportAsCsv(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
         validateAccess(passportId, userId);
 
         Passport passport = passportRepository.findActiveById(passportId)
             .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
 
-        StringBuilder csv = new StringBuilder();
+        Writer csv = writer(out);
 
         // Header
         csv.append("Section,Type,Date,Title,Content\n");
@@ -104,51 +355,52 @@ public class ExportService {
         }
 
         // Timeline entries
-        List<TimelineEntry> entries = timelineRepository.findByPassportId(passportId,
-            org.springframework.data.domain.PageRequest.of(0, 1000)).getContent();
-
-        for (TimelineEntry entry : entries) {
-            csv.append("\"Timeline\",\"")
-                .append(entry.getEntryType().name())
-                .append("\",\"")
-                .append(entry.getEntryDate().toString())
-                .append("\",\"")
-                .append(escapeCSV(entry.getTitle()))
-                .append("\",\"")
-                .append(escapeCSV(entry.getContent()))
-                .append("\"\n");
+        try (Stream<TimelineExportRow> rows = timelineRepository.streamForExport(passportId)) {
+            for (Iterator<TimelineExportRow> it = rows.iterator(); it.hasNext(); ) {
+                TimelineExportRow entry = it.next();
+                csv.append("\"Timeline\",\"")
+                    .append(entry.entryType().name())
+                    .append("\",\"")
+                    .append(entry.entryDate().toString())
+                    .append("\",\"")
+                    .append(escapeCSV(entry.title()))
+                    .append("\",\"")
+                    .append(escapeCSV(entry.content()))
+                    .append("\"\n");
+            }
         }
 
         // Documents (metadata only)
-        List<Document> documents = documentRepository.findByPassportId(passportId);
-        for (Document doc : documents) {
-            csv.append("\"Document\",\"")
-                .append(doc.getMimeType())
-                .append("\",\"")
-                .append(doc.getUploadedAt() != null ? doc.getUploadedAt().toString() : "")
-                .append("\",\"")
-                .append(escapeCSV(doc.getOriginalFileName()))
-                .append("\",\"")
-                .append(doc.getFileSize() + " bytes")
-                .append("\"\n");
+        try (Stream<DocumentExportRow> rows = documentRepository.streamForExport(passportId)) {
+            for (Iterator<DocumentExportRow> it = rows.iterator(); it.hasNext(); ) {
+                DocumentExportRow doc = it.next();
+                csv.append("\"Document\",\"")
+                    .append(doc.mimeType())
+                    .append("\",\"")
+                    .append(doc.uploadedAt() != null ? doc.uploadedAt().toString() : "")
+                    .append("\",\"")
+                    .append(escapeCSV(doc.originalFileName()))
+                    .append("\",\"")
+                    .append(doc.fileSize() + " bytes")
+                    .append("\"\n");
+            }
         }
 
+        csv.flush();
         logExport(passportId, userId, "CSV", ipAddress);
-
-        return csv.toString();
     }
 
     /**
      * Export passport as Markdown
      */
     @Transactional(readOnly = true)
-    public String exportAsMarkdown(UUID passportId, UUID userId, String ipAddress) {
+    public void exportAsMarkdown(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
         validateAccess(passportId, userId);
 
         Passport passport = passportRepository.findActiveById(passportId)
             .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
 
-        StringBuilder md = new StringBuilder();
+        Writer md = writer(out);
 
         // Title
         md.append("# Passport for ").append(passport.getChildFirstName()).append("\n\n");
@@ -160,7 +412,7 @@ public class ExportService {
         md.append("|-------|-------|\n");
         md.append("| Name | ").append(passport.getChildFirstName()).append(" |\n");
         if (passport.getChildDateOfBirth() != null) {
-            md.append("| Date of Birth | ").append(passport.getChildDateOfBirth()).append(" |\n");
+            md.append("| Date of Birth | ").append(String.valueOf(passport.getChildDateOfBirth())).append(" |\n");
         }
         md.append("\n");
 
@@ -173,65 +425,66 @@ public class ExportService {
             }
         }
 
-        // Timeline
-        List<TimelineEntry> entries = timelineRepository.findByPassportId(passportId,
-            org.springframework.data.domain.PageRequest.of(0, 100)).getContent();
-
-        if (!entries.isEmpty()) {
-            md.append("## Timeline\n\n");
-
-            // Group by type
-            Map<String, List<TimelineEntry>> byType = entries.stream()
-                .collect(Collectors.groupingBy(e -> e.getEntryType().name()));
-
-            for (Map.Entry<String, List<TimelineEntry>> group : byType.entrySet()) {
-                md.append("### ").append(formatSectionType(group.getKey())).append("s\n\n");
-
-                for (TimelineEntry entry : group.getValue()) {
-                    md.append("#### ").append(entry.getTitle()).append("\n");
-                    md.append("*").append(entry.getEntryDate()).append("*\n\n");
-                    md.append(entry.getContent()).append("\n\n");
+        // Timeline, grouped by type; the rows arrive ordered by type so each group
+        // is written as soon as it's read
+        try (Stream<TimelineExportRow> rows = timelineRepository.streamForExportByType(passportId)) {
+            EntryType currentType = null;
+            for (Iterator<TimelineExportRow> it = rows.iterator(); it.hasNext(); ) {
+                TimelineExportRow entry = it.next();
+                if (currentType == null) {
+                    md.append("## Timeline\n\n");
                 }
+                if (entry.entryType() != currentType) {
+                    currentType = entry.entryType();
+                    md.append("### ").append(formatSectionType(currentType.name())).append("s\n\n");
+                }
+                md.append("#### ").append(entry.title()).append("\n");
+                md.append("*").append(String.valueOf(entry.entryDate())).append("*\n\n");
+                md.append(entry.content()).append("\n\n");
             }
         }
 
         // Documents
-        List<Document> documents = documentRepository.findByPassportId(passportId);
-        if (!documents.isEmpty()) {
-            md.append("## Documents\n\n");
-            md.append("| File Name | Type | Size | Uploaded |\n");
-            md.append("|-----------|------|------|----------|\n");
-
-            for (Document doc : documents) {
-                md.append("| ").append(doc.getOriginalFileName())
-                    .append(" | ").append(doc.getMimeType())
-                    .append(" | ").append(formatFileSize(doc.getFileSize()))
-                    .append(" | ").append(formatDate(doc.getUploadedAt()))
+        try (Stream<DocumentExportRow> rows = documentRepository.streamForExport(passportId)) {
+            boolean first = true;
+            for (Iterator<DocumentExportRow> it = rows.iterator(); it.hasNext(); ) {
+                DocumentExportRow doc = it.next();
+                if (first) {
+                    md.append("## Documents\n\n");
+                    md.append("| File Name | Type | Size | Uploaded |\n");
+                    md.append("|-----------|------|------|----------|\n");
+                    first = false;
+                }
+                md.append("| ").append(doc.originalFileName())
+                    .append(" | ").append(doc.mimeType())
+                    .append(" | ").append(formatFileSize(doc.fileSize()))
+                    .append(" | ").append(formatDate(doc.uploadedAt()))
                     .append(" |\n");
             }
-            md.append("\n");
+            if (!first) {
+                md.append("\n");
+            }
         }
 
         // Footer
         md.append("---\n");
         md.append("*Generated by ThisIsMe - Care Coordination Platform*\n");
 
+        md.flush();
         logExport(passportId, userId, "Markdown", ipAddress);
-
-        return md.toString();
     }
 
     /**
      * Export passport as printable HTML
      */
     @Transactional(readOnly = true)
-    public String exportAsHtml(UUID passportId, UUID userId, String ipAddress) {
+    public void exportAsHtml(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
         validateAccess(passportId, userId);
 
         Passport passport = passportRepository.findActiveById(passportId)
             .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
 
-        StringBuilder html = new StringBuilder();
+        Writer html = writer(out);
 
         html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n");
         html.append("<meta charset=\"UTF-8\">\n");
@@ -257,7 +510,8 @@ public class ExportService {
         html.append("<table>\n");
         html.append("<tr><th>Name</th><td>").append(escapeHtml(passport.getChildFirstName())).append("</td></tr>\n");
         if (passport.getChildDateOfBirth() != null) {
-            html.append("<tr><th>Date of Birth</th><td>").append(passport.getChildDateOfBirth()).append("</td></tr>\n");
+            html.append("<tr><th>Date of Birth</th><td>").append(String.valueOf(passport.getChildDateOfBirth()))
+                .append("</td></tr>\n");
         }
         html.append("</table>\n");
 
@@ -273,28 +527,30 @@ public class ExportService {
         }
 
         // Timeline
-        List<TimelineEntry> entries = timelineRepository.findByPassportId(passportId,
-            org.springframework.data.domain.PageRequest.of(0, 50)).getContent();
-
-        if (!entries.isEmpty()) {
-            html.append("<h2>Recent Timeline</h2>\n");
-            for (TimelineEntry entry : entries) {
+        try (Stream<TimelineExportRow> rows = timelineRepository.streamForExport(passportId)) {
+            boolean first = true;
+            for (Iterator<TimelineExportRow> it = rows.iterator(); it.hasNext(); ) {
+                TimelineExportRow entry = it.next();
+                if (first) {
+                    html.append("<h2>Timeline</h2>\n");
+                    first = false;
+                }
                 html.append("<div class=\"timeline-entry\">\n");
-                html.append("<h4>").append(escapeHtml(entry.getTitle())).append("</h4>\n");
-                html.append("<p class=\"date\">").append(entry.getEntryDate()).append(" - ")
-                    .append(formatSectionType(entry.getEntryType().name())).append("</p>\n");
-                html.append("<p>").append(escapeHtml(entry.getContent())).append("</p>\n");
+                html.append("<h4>").append(escapeHtml(entry.title())).append("</h4>\n");
+                html.append("<p class=\"date\">").append(String.valueOf(entry.entryDate())).append(" - ")
+                    .append(formatSectionType(entry.entryType().name())).append("</p>\n");
+                html.append("<p>").append(escapeHtml(entry.content())).append("</p>\n");
                 html.append("</div>\n");
             }
         }
 
         html.append("<hr>\n");
-        html.append("<p class=\"no-print\"><em>Generated by ThisIsMe on ").append(LocalDate.now()).append("</em></p>\n");
+        html.append("<p class=\"no-print\"><em>Generated by ThisIsMe on ").append(String.valueOf(LocalDate.now()))
+            .append("</em></p>\n");
         html.append("</body>\n</html>");
 
+        html.flush();
         logExport(passportId, userId, "HTML", ipAddress);
-
-        return html.toString();
     }
 
     // Helper methods
@@ -305,76 +561,187 @@ public class ExportService {
         }
     }
 
-    private Map<String, Object> buildExportData(UUID passportId, UUID userId, String ipAddress) {
-        Passport passport = passportRepository.findActiveById(passportId)
-            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
+    private void validateAccess(UUID passportId, UUID userId, ExportFormat format) {
+        validateAccess(passportId, userId);
+        if (format == ExportFormat.ZIP && !permissionEvaluator.canDownloadDocuments(passportId, userId)) {
+            throw new SecurityException("You don't have permission to download documents");
+        }
+    }
 
-        Map<String, Object> export = new LinkedHashMap<>();
-        export.put("exportType", "THISISME_PASSPORT_EXPORT");
-        export.put("exportVersion", "1.0");
-        export.put("exportDate", Instant.now().toString());
+    private void writeTimelineBatch(JsonGenerator json, List<TimelineExportRow> batch) throws IOException {
+        Map<UUID, List<String>> tags = new HashMap<>();
+        for (Object[] row : timelineRepository.findTagsByEntryIds(batch.stream().map(TimelineExportRow::id).toList())) {
+            tags.computeIfAbsent((UUID) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
 
-        // Passport data
-        Map<String, Object> passportData = new LinkedHashMap<>();
-        passportData.put("id", passport.getId());
-        passportData.put("childFirstName", passport.getChildFirstName());
-        passportData.put("childDateOfBirth", passport.getChildDateOfBirth());
-        passportData.put("createdAt", passport.getCreatedAt());
+        for (TimelineExportRow e : batch) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", e.id());
+            entry.put("entryType", e.entryType().name());
+            entry.put("title", e.title());
+            entry.put("content", e.content());
+            entry.put("entryDate", e.entryDate());
+            entry.put("visibilityLevel", e.visibilityLevel().name());
+            entry.put("tags", tags.getOrDefault(e.id(), List.of()));
+            entry.put("pinned", e.pinned());
+            entry.put("createdAt", e.createdAt());
+            objectMapper.writeValue(json, entry);
+        }
+    }
 
-        // Sections
-        List<Map<String, Object>> sections = passport.getSections().stream()
-            .map(s -> {
-                Map<String, Object> section = new LinkedHashMap<>();
-                section.put("type", s.getType().name());
-                section.put("content", s.getContent());
-                section.put("visibilityLevel", s.getVisibilityLevel().name());
-                return section;
-            })
-            .collect(Collectors.toList());
-        passportData.put("sections", sections);
-
-        export.put("passport", passportData);
+    /**
+     * Start reading a document file on the prefetch pool. Small files are read fully so
+     * decryption happens off the archive thread too; larger ones are just opened, to
+     * bound the memory held by the prefetch window.
+     */
+    private PrefetchedFile prefetch(DocumentExportRow doc) {
+        CompletableFuture<InputStream> content = CompletableFuture.supplyAsync(() -> {
+            try {
+                if (doc.fileSize() <= prefetchMaxBytes) {
+                    try (InputStream in = storageService.openStream(doc.storagePath())) {
+                        return new ByteArrayInputStream(in.readAllBytes());
+                    }
+                }
+                return storageService.openStream(doc.storagePath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, prefetchExecutor);
+        return new PrefetchedFile(doc, content);
+    }
 
-        // Timeline entries
-        List<TimelineEntry> entries = timelineRepository.findByPassportId(passportId,
-            org.springframework.data.domain.PageRequest.of(0, 1000)).getContent();
-
-        List<Map<String, Object>> timelineData = entries.stream()
-            .map(e -> {
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("id", e.getId());
-                entry.put("entryType", e.getEntryType().name());
-                entry.put("title", e.getTitle());
-                entry.put("content", e.getContent());
-                entry.put("entryDate", e.getEntryDate());
-                entry.put("visibilityLevel", e.getVisibilityLevel().name());
-                entry.put("tags", e.getTags());
-                entry.put("pinned", e.isPinned());
-                entry.put("createdAt", e.getCreatedAt());
-                return entry;
-            })
-            .collect(Collectors.toList());
-        export.put("timeline", timelineData);
-
-        // Documents (metadata)
-        List<Document> documents = documentRepository.findByPassportId(passportId);
-        List<Map<String, Object>> documentsData = documents.stream()
-            .map(d -> {
-                Map<String, Object> doc = new LinkedHashMap<>();
-                doc.put("id", d.getId());
-                doc.put("fileName", d.getOriginalFileName());
-                doc.put("mimeType", d.getMimeType());
-                doc.put("fileSize", d.getFileSize());
-                doc.put("hasOcrText", d.getOcrText() != null);
-                doc.put("uploadedAt", d.getUploadedAt());
-                return doc;
-            })
-            .collect(Collectors.toList());
-        export.put("documents", documentsData);
+    private Map<String, Object> writeFile(ZipOutputStream zip, PrefetchedFile file) throws IOException {
+        DocumentExportRow doc = file.doc();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", doc.id());
+        entry.put("fileName", doc.originalFileName());
+        entry.put("mimeType", doc.mimeType());
+        entry.put("fileSize", doc.fileSize());
+        entry.put("uploadedAt", doc.uploadedAt());
 
-        logExport(passportId, userId, "JSON", ipAddress);
+        InputStream in;
+        try {
+            in = file.content().join();
+        } catch (CompletionException e) {
+            logger.warn("Skipping document {} in archive export: {}", doc.id(), e.getCause().getMessage());
+            entry.put("error", "File could not be read from storage");
+            return entry;
+        }
+
+        String path = "documents/" + doc.id() + "-" + archiveName(doc.originalFileName());
+        zip.setLevel(isCompressed(doc.mimeType()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(new ZipEntry(path));
+        MessageDigest digest = DocumentService.sha256();
+        try (in) {
+            byte[] buffer = new byte[ZIP_BUFFER_BYTES];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+                zip.write(buffer, 0, n);
+            }
+        }
+        zip.closeEntry();
+        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+
+        entry.put("path", path);
+        entry.put("sha256", HexFormat.of().formatHex(digest.digest()));
+        return entry;
+    }
+
+    /**
+     * Images and office/zip formats are already compressed; deflating them again only costs CPU
+     */
+    private static boolean isCompressed(String mimeType) {
+        return mimeType != null && (mimeType.startsWith("image/")
+            || mimeType.startsWith("application/vnd.openxmlformats-officedocument."));
+    }
+
+    static String archiveName(String fileName) {
+        String name = fileName == null || fileName.isBlank() ? "file" : fileName;
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.length() > 100 ? name.substring(name.length() - 100) : name;
+    }
+
+    private record PrefetchedFile(DocumentExportRow doc, CompletableFuture<InputStream> content) {
+
+        void discard() {
+            content.thenAccept(in -> {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Nothing else to release
+                }
+            });
+        }
+    }
 
-        return export;
+    /**
+     * Writes through to the response while keeping a copy, until the copy would exceed
+     * "limit" bytes
+     */
+    private static final class CapturingOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            if (copy != null) {
+                if (copy.size() + (long) length > limit) {
+                    copy = null;
+                } else {
+                    copy.write(buffer, offset, length);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        Optional<byte[]> captured() {
+            return Optional.ofNullable(copy).map(ByteArrayOutputStream::toByteArray);
+        }
+    }
+
+    /**
+     * Lets ObjectMapper.writeValue target a ZIP entry without closing the archive
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Buffered UTF-8 writer over the response. Not closed by the export methods; the
+     * caller owns the underlying stream.
+     */
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
     }
 
     private void logExport(UUID passportId, UUID userId, String format, String ipAddress) {
@@ -383,7 +750,8 @@ public class ExportService {
 
         auditService.log(AuditAction.DATA_EXPORT_COMPLETED, userId, user.getName(), ipAddress)
             .withPassport(passportId)
-            .withDescription("Exported passport as " + format);
+            .withDescription("Exported passport as " + format)
+            .save();
     }
 
     private String escapeCSV(String value) {
@@ -0,0 +1,403 @@
+package com.thisisme.service;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataException;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.enums.RenditionSize;
+import com.thisisme.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Generates downscaled JPEG renditions of uploaded images in the background.
+ * Renditions are stored next to the original, honour EXIF orientation and carry no metadata.
+ */
+@Service
+public class ImageRenditionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageRenditionService.class);
+
+    // Formats with a built-in ImageIO decoder; WebP uploads are served as originals
+    static final List<String> SUPPORTED_MIME_TYPES = List.of("image/jpeg", "image/png", "image/gif");
+
+    public static final String RENDITION_CONTENT_TYPE = "image/jpeg";
+
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final DocumentRepository documentRepository;
+    private final StorageService storageService;
+    private final Executor executor;
+
+    @Value("${app.renditions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.renditions.max-source-pixels:100000000}")
+    private long maxSourcePixels; // Refuse decompression bombs before decoding
+
+    @Value("${app.renditions.backfill-batch-size:50}")
+    private int backfillBatchSize;
+
+    public ImageRenditionService(
+            DocumentRepository documentRepository,
+            StorageService storageService,
+            @Qualifier("renditionExecutor") Executor executor) {
+        this.documentRepository = documentRepository;
+        this.storageService = storageService;
+        this.executor = executor;
+    }
+
+    public boolean supports(String mimeType) {
+        return mimeType != null && SUPPORTED_MIME_TYPES.contains(mimeType);
+    }
+
+    /**
+     * Storage key for a rendition, derived from the original's key
+     */
+    public static String renditionPath(String storagePath, RenditionSize size) {
+        int slash = storagePath.lastIndexOf('/');
+        int dot = storagePath.lastIndexOf('.');
+        String base = dot > slash ? storagePath.substring(0, dot) : storagePath;
+        return base + "." + size.getPathSegment() + ".jpg";
+    }
+
+    /**
+     * API URL for a rendition, or null until renditions have been generated
+     */
+    public static String renditionUrl(Document document, RenditionSize size) {
+        if (!document.hasRenditions()) {
+            return null;
+        }
+        return "/api/v1/passports/" + document.getPassport().getId() + "/documents/" +
+            document.getId() + "/renditions/" + size.getPathSegment();
+    }
+
+    /**
+     * Queue rendition generation once the current transaction commits, so the
+     * worker never races the insert of the document row.
+     */
+    public void scheduleAfterCommit(UUID documentId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(documentId);
+                }
+            });
+        } else {
+            submit(documentId);
+        }
+    }
+
+    /**
+     * Pick up images whose renditions were never generated: uploads from before this
+     * feature, tasks rejected by a full queue, or work lost to a restart.
+     */
+    @Scheduled(fixedDelayString = "${app.renditions.backfill-interval-ms:300000}",
+               initialDelayString = "${app.renditions.backfill-initial-delay-ms:60000}")
+    public void backfillMissingRenditions() {
+        if (!enabled) {
+            return;
+        }
+
+        // Leave recent uploads to their after-commit task
+        Instant uploadedBefore = Instant.now().minus(Duration.ofMinutes(5));
+        List<UUID> pending = documentRepository.findPendingRenditions(
+            SUPPORTED_MIME_TYPES, uploadedBefore, PageRequest.of(0, backfillBatchSize));
+
+        if (!pending.isEmpty()) {
+            logger.info("Backfilling renditions for {} documents", pending.size());
+            pending.forEach(this::submit);
+        }
+    }
+
+    /**
+     * Generate and store every rendition size for a document
+     */
+    public void generateRenditions(UUID documentId) {
+        Document document = documentRepository.findById(documentId).orElse(null);
+        if (document == null || document.isDeleted() || document.hasRenditions()
+                || !supports(document.getMimeType())) {
+            return;
+        }
+
+        byte[] source;
+        try {
+            source = storageService.download(document.getStoragePath());
+        } catch (IOException e) {
+            // Storage may be temporarily unavailable; the backfill sweep retries
+            logger.warn("Failed to read original for renditions of document {}: {}", documentId, e.getMessage());
+            return;
+        }
+
+        Map<RenditionSize, byte[]> renditions;
+        try {
+            renditions = render(source);
+        } catch (IOException | RuntimeException e) {
+            // Undecodable or oversized image - retrying will not help
+            logger.warn("Failed to render document {}: {}", documentId, e.getMessage());
+            documentRepository.markRenditionError(documentId, truncate(describe(e)));
+            return;
+        }
+
+        try {
+            for (Map.Entry<RenditionSize, byte[]> rendition : renditions.entrySet()) {
+                storageService.upload(
+                    renditionPath(document.getStoragePath(), rendition.getKey()),
+                    rendition.getValue(),
+                    RENDITION_CONTENT_TYPE
+                );
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to store renditions for document {}: {}", documentId, e.getMessage());
+            return;
+        }
+
+        documentRepository.markRenditionsGenerated(documentId, Instant.now());
+        logger.info("Generated renditions for document {} ({} bytes original)", documentId, source.length);
+    }
+
+    /**
+     * Decode once, then derive each size from the previous (largest first)
+     */
+    Map<RenditionSize, byte[]> render(byte[] source) throws IOException {
+        int orientation = readOrientation(source);
+        int largest = 0;
+        for (RenditionSize size : RenditionSize.values()) {
+            largest = Math.max(largest, size.getMaxDimension());
+        }
+
+        BufferedImage current = decode(source, largest);
+
+        List<RenditionSize> sizes = new ArrayList<>(List.of(RenditionSize.values()));
+        sizes.sort((a, b) -> Integer.compare(b.getMaxDimension(), a.getMaxDimension()));
+
+        Map<RenditionSize, byte[]> renditions = new EnumMap<>(RenditionSize.class);
+        for (RenditionSize size : sizes) {
+            current = scaleToFit(current, size.getMaxDimension());
+            renditions.put(size, encodeJpeg(applyOrientation(current, orientation)));
+        }
+        return renditions;
+    }
+
+    // Helper methods
+
+    private void submit(UUID documentId) {
+        try {
+            executor.execute(() -> generateRenditions(documentId));
+        } catch (TaskRejectedException e) {
+            logger.debug("Rendition queue full, deferring document {} to backfill", documentId);
+        }
+    }
+
+    private BufferedImage decode(byte[] source, int targetMaxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                // Metadata is read separately for orientation and never copied to the output
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    throw new IOException("Image too large to render: " + width + "x" + height);
+                }
+
+                // Subsample huge sources while decoding to bound memory, keeping 2x headroom
+                // over the largest rendition for a clean final downscale
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (targetMaxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                BufferedImage image = reader.read(0, param);
+                if (image == null) {
+                    throw new IOException("Image could not be decoded");
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * EXIF orientation (1-8), defaulting to 1 when absent or unreadable
+     */
+    private int readOrientation(byte[] source) {
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(source));
+            ExifIFD0Directory exif = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                return exif.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+        } catch (ImageProcessingException | MetadataException | IOException e) {
+            logger.debug("No readable EXIF orientation: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    /**
+     * Downscale to fit within maxDimension on the longest edge, never upscaling.
+     * Halves in steps so bilinear filtering doesn't skip source pixels on large reductions.
+     */
+    static BufferedImage scaleToFit(BufferedImage source, int maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        int currentWidth = width;
+        int currentHeight = height;
+        do {
+            currentWidth = Math.max(currentWidth / 2, targetWidth);
+            currentHeight = Math.max(currentHeight / 2, targetHeight);
+            current = draw(current, currentWidth, currentHeight);
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha channel, so flatten transparency onto white
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Rotate/flip pixels so the rendition displays upright without relying on EXIF
+     */
+    static BufferedImage applyOrientation(BufferedImage source, int orientation) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        AffineTransform transform = new AffineTransform();
+
+        switch (orientation) {
+            case 2 -> { // Mirror horizontal
+                transform.scale(-1, 1);
+                transform.translate(-width, 0);
+            }
+            case 3 -> { // Rotate 180
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+            }
+            case 4 -> { // Mirror vertical
+                transform.scale(1, -1);
+                transform.translate(0, -height);
+            }
+            case 5 -> { // Transpose
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1, 1);
+            }
+            case 6 -> { // Rotate 90 clockwise
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+            }
+            case 7 -> { // Transverse
+                transform.scale(-1, 1);
+                transform.translate(-height, 0);
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+            case 8 -> { // Rotate 90 counter-clockwise
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+            default -> {
+                return source;
+            }
+        }
+
+        boolean swapsAxes = orientation >= 5;
+        BufferedImage target = new BufferedImage(
+            swapsAxes ? height : width,
+            swapsAxes ? width : height,
+            BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D g = target.createGraphics();
+        try {
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            // No metadata is passed, so EXIF from the original (GPS, device) is stripped
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
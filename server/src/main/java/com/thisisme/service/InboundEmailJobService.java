@@ -0,0 +1,274 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.CorrespondenceDTO.InboundEmailJobResponse;
+import com.thisisme.model.entity.InboundEmailJob;
+import com.thisisme.model.enums.InboundEmailJobStatus;
+import com.thisisme.repository.InboundEmailJobRepository;
+import com.thisisme.repository.PassportRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persistent ingestion queue for the inbound email webhook. The webhook only stores the
+ * raw payload and queues a job; InboundEmailWorker parses and processes it later. As with
+ * OcrJobService, each queue method is a short transaction and the slow work runs between them.
+ */
+@Service
+public class InboundEmailJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundEmailJobService.class);
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final InboundEmailJobRepository jobRepository;
+    private final PassportRepository passportRepository;
+    private final StorageService storageService;
+
+    @Value("${app.webhook.spool-dir:#{systemProperties['java.io.tmpdir']}}")
+    private String spoolDir;
+
+    @Value("${app.webhook.max-request-bytes:262144000}")
+    private long maxRequestBytes; // 250MB default
+
+    @Value("${app.webhook.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.webhook.jobs.base-backoff-ms:30000}")
+    private long baseBackoffMs;
+
+    @Value("${app.webhook.jobs.max-backoff-ms:1800000}")
+    private long maxBackoffMs; // 30 minutes
+
+    @Value("${app.webhook.jobs.stale-after-ms:900000}")
+    private long staleAfterMs; // 15 minutes
+
+    public InboundEmailJobService(
+            InboundEmailJobRepository jobRepository,
+            PassportRepository passportRepository,
+            StorageService storageService) {
+        this.jobRepository = jobRepository;
+        this.passportRepository = passportRepository;
+        this.storageService = storageService;
+    }
+
+    /**
+     * Store a webhook payload and queue it for processing. The body is spooled to disk
+     * first so it can be uploaded with a known length. Not transactional: the job row
+     * is only written once the payload is safely in storage.
+     *
+     * @throws IllegalArgumentException if the payload is over the size limit
+     */
+    public InboundEmailJob accept(UUID passportId, InputStream body, String clientIp) throws IOException {
+        if (passportRepository.findActiveById(passportId).isEmpty()) {
+            throw new ResourceNotFoundException("Passport not found");
+        }
+
+        Path spool = Files.createTempFile(Paths.get(spoolDir), "inbound-", ".json");
+        try {
+            long size = spool(body, spool);
+            String payloadPath = "passports/" + passportId + "/inbound/" + UUID.randomUUID() + ".json";
+            try (InputStream in = Files.newInputStream(spool)) {
+                storageService.upload(payloadPath, in, size, "application/json");
+            }
+
+            try {
+                InboundEmailJob job = jobRepository.save(new InboundEmailJob(passportId, payloadPath, size, clientIp));
+                logger.debug("Queued inbound email job {} for passport {} ({} bytes)", job.getId(), passportId, size);
+                return job;
+            } catch (RuntimeException e) {
+                deletePayload(payloadPath);
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    /**
+     * Claim up to {@code limit} due jobs for a worker, at most one per passport
+     */
+    @Transactional
+    public List<UUID> claimBatch(String workerId, int limit) {
+        Instant now = Instant.now();
+        List<UUID> ids = jobRepository.lockDueJobIds(now, limit);
+        if (!ids.isEmpty()) {
+            jobRepository.markClaimed(ids, workerId, now, InboundEmailJobStatus.RUNNING);
+        }
+        return ids;
+    }
+
+    /**
+     * What a claimed job needs to process, or empty if it's no longer claimed by this worker
+     */
+    @Transactional(readOnly = true)
+    public Optional<InboundEmailWork> startWork(UUID jobId, String workerId) {
+        return jobRepository.findById(jobId)
+            .filter(job -> job.isClaimedBy(workerId))
+            .map(job -> new InboundEmailWork(job.getId(), job.getPassportId(), job.getPayloadPath(), job.getClientIp()));
+    }
+
+    /**
+     * Mark a job done. Returns false if the job was reclaimed by another worker meanwhile
+     * (processing is idempotent, so that's harmless).
+     */
+    @Transactional
+    public boolean complete(UUID jobId, String workerId, UUID entryId) {
+        InboundEmailJob job = jobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            logger.warn("Inbound email job {} is no longer claimed by {}", jobId, workerId);
+            return false;
+        }
+        job.complete(entryId);
+        return true;
+    }
+
+    /**
+     * Schedule a retry with exponential backoff, or move the job to the dead letter state.
+     * Later emails for the same passport wait until this one completes or is dead-lettered.
+     */
+    @Transactional
+    public void recordFailure(UUID jobId, String workerId, String error, boolean retryable) {
+        InboundEmailJob job = jobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            return;
+        }
+
+        if (retryable && job.getAttempts() < maxAttempts) {
+            Instant nextAttempt = Instant.now().plus(backoff(job.getAttempts()));
+            job.retryAt(nextAttempt, error);
+            logger.info("Inbound email job {} failed (attempt {}/{}), retrying at {}: {}",
+                jobId, job.getAttempts(), maxAttempts, nextAttempt, error);
+            return;
+        }
+
+        job.fail(error);
+        logger.warn("Inbound email job {} for passport {} dead-lettered after {} attempts: {}",
+            jobId, job.getPassportId(), job.getAttempts(), error);
+    }
+
+    /**
+     * Requeue jobs left RUNNING by a worker that died mid-job
+     */
+    @Transactional
+    public int releaseStaleJobs() {
+        Instant now = Instant.now();
+        int released = jobRepository.releaseStale(now.minusMillis(staleAfterMs), now);
+        if (released > 0) {
+            logger.warn("Released {} stale inbound email jobs back to the queue", released);
+        }
+        return released;
+    }
+
+    /**
+     * Dead-lettered jobs, most recent first
+     */
+    @Transactional(readOnly = true)
+    public List<InboundEmailJobResponse> getDeadLetters(int limit) {
+        return jobRepository.findFailed(PageRequest.of(0, Math.max(1, Math.min(limit, 500)))).stream()
+            .map(InboundEmailJobService::toResponse)
+            .toList();
+    }
+
+    /**
+     * Put a dead-lettered job back on the queue
+     *
+     * @throws IllegalStateException if the job isn't in the dead letter state
+     */
+    @Transactional
+    public InboundEmailJobResponse requeue(UUID jobId) {
+        InboundEmailJob job = jobRepository.findByIdForUpdate(jobId)
+            .orElseThrow(() -> new ResourceNotFoundException("Inbound email job not found"));
+        if (job.getStatus() != InboundEmailJobStatus.FAILED) {
+            throw new IllegalStateException("Only failed jobs can be requeued");
+        }
+        job.requeue();
+        logger.info("Requeued inbound email job {} for passport {}", jobId, job.getPassportId());
+        return toResponse(job);
+    }
+
+    @Transactional(readOnly = true)
+    public long countByStatus(InboundEmailJobStatus status) {
+        return jobRepository.countByStatus(status);
+    }
+
+    /**
+     * base * 2^(attempts-1), capped, with up to 20% jitter
+     */
+    Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        long delay = Math.min(baseBackoffMs << exponent, maxBackoffMs);
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    /**
+     * Remove a processed payload from storage. Call after the job's completion has committed.
+     */
+    public void deletePayload(String payloadPath) {
+        try {
+            storageService.delete(payloadPath);
+        } catch (IOException | RuntimeException e) {
+            // Only leaves an orphan, encrypted under the passport key and shredded with it
+            logger.warn("Failed to delete inbound email payload {}: {}", payloadPath, e.getMessage());
+        }
+    }
+
+    // Helper methods
+
+    private long spool(InputStream body, Path spool) throws IOException {
+        long size = 0;
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        try (OutputStream out = Files.newOutputStream(spool)) {
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                size += n;
+                if (size > maxRequestBytes) {
+                    throw new IllegalArgumentException("Webhook payload exceeds " + maxRequestBytes + " bytes");
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        return size;
+    }
+
+    private static InboundEmailJobResponse toResponse(InboundEmailJob job) {
+        return new InboundEmailJobResponse(
+            job.getId(),
+            job.getPassportId(),
+            job.getStatus().name(),
+            job.getAttempts(),
+            job.getLastError(),
+            job.getPayloadSize(),
+            job.getCreatedAt(),
+            job.getCompletedAt()
+        );
+    }
+
+    /**
+     * Payload location a worker needs to process a job outside a transaction
+     */
+    public record InboundEmailWork(
+        UUID jobId,
+        UUID passportId,
+        String payloadPath,
+        String clientIp
+    ) {}
+}
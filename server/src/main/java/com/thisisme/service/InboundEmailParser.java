@@ -0,0 +1,339 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.thisisme.model.dto.CorrespondenceDTO.InboundEmailWebhookRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming parser for the inbound email webhook payload. Attachment content is
+ * base64-decoded straight from the request into spool files, so memory use doesn't
+ * grow with attachment size. Size limits are enforced while reading.
+ */
+@Component
+public class InboundEmailParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundEmailParser.class);
+
+    private static final int SPOOL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_MESSAGE_ID_CHARS = 998; // RFC 5322 line limit
+
+    private final Validator validator;
+    private JsonFactory jsonFactory;
+
+    @Value("${app.webhook.spool-dir:#{systemProperties['java.io.tmpdir']}}")
+    private String spoolDir;
+
+    @Value("${app.webhook.max-request-bytes:262144000}")
+    private long maxRequestBytes; // 250MB default
+
+    @Value("${app.webhook.max-attachment-bytes:52428800}")
+    private long maxAttachmentBytes; // 50MB default
+
+    @Value("${app.webhook.max-attachments:20}")
+    private int maxAttachments;
+
+    @Value("${app.webhook.max-text-chars:1048576}")
+    private int maxTextChars;
+
+    public InboundEmailParser(Validator validator) {
+        this.validator = validator;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Caps buffered strings (subject, body, ...). Attachment content is decoded
+        // from the input buffer without being materialised, so it isn't affected.
+        jsonFactory = JsonFactory.builder()
+            .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(maxTextChars).build())
+            .build();
+        Files.createDirectories(Paths.get(spoolDir));
+    }
+
+    /**
+     * Attachment spooled to a local file. "error" is set (and "file" null) when the
+     * attachment was rejected, e.g. for being over the size limit.
+     */
+    public record SpooledAttachment(String filename, String contentType, Path file, long size, String error) {
+
+        public boolean isAccepted() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Parsed webhook payload. messageId is the sender's Message-ID header, if supplied;
+     * payloadHash is the hex SHA-256 of the raw request body. Closing it deletes the
+     * spool files.
+     */
+    public record InboundEmail(String from, String to, String subject, String body, LocalDate date,
+                               String messageId, String payloadHash,
+                               List<SpooledAttachment> attachments) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            for (SpooledAttachment attachment : attachments) {
+                deleteQuietly(attachment.file());
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload is malformed, invalid or over the size limits
+     */
+    public InboundEmail parse(InputStream body) throws IOException {
+        String from = null;
+        String to = null;
+        String subject = null;
+        String text = null;
+        LocalDate date = null;
+        String messageId = null;
+        List<SpooledAttachment> attachments = new ArrayList<>();
+
+        MessageDigest digest = DocumentService.sha256();
+        try (JsonParser parser = jsonFactory.createParser(
+                new DigestInputStream(new LimitedInputStream(body, maxRequestBytes), digest))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Webhook payload must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "from" -> from = readText(parser, field);
+                    case "to" -> to = readText(parser, field);
+                    case "subject" -> subject = readText(parser, field);
+                    case "body" -> text = readText(parser, field);
+                    case "date" -> date = readDate(parser);
+                    case "messageId" -> messageId = readText(parser, field);
+                    case "attachments" -> readAttachments(parser, attachments);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            new InboundEmail(from, to, subject, text, date, messageId, null, attachments).close();
+            throw new IllegalArgumentException("Malformed webhook payload: " + e.getOriginalMessage());
+        } catch (IOException | RuntimeException e) {
+            new InboundEmail(from, to, subject, text, date, messageId, null, attachments).close();
+            throw e;
+        }
+
+        if (messageId != null && messageId.length() > MAX_MESSAGE_ID_CHARS) {
+            new InboundEmail(from, to, subject, text, date, messageId, null, attachments).close();
+            throw new IllegalArgumentException("messageId exceeds " + MAX_MESSAGE_ID_CHARS + " characters");
+        }
+        String payloadHash = HexFormat.of().formatHex(digest.digest());
+        InboundEmail email = new InboundEmail(from, to, subject, text, date, messageId, payloadHash, attachments);
+        Set<ConstraintViolation<InboundEmailWebhookRequest>> violations =
+            validator.validate(new InboundEmailWebhookRequest(from, to, subject, text, date, null));
+        if (!violations.isEmpty()) {
+            email.close();
+            throw new IllegalArgumentException(violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+        }
+        return email;
+    }
+
+    private void readAttachments(JsonParser parser, List<SpooledAttachment> attachments) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("attachments must be an array");
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (attachments.size() >= maxAttachments) {
+                throw new IllegalArgumentException("Too many attachments (max " + maxAttachments + ")");
+            }
+            attachments.add(readAttachment(parser));
+        }
+    }
+
+    private SpooledAttachment readAttachment(JsonParser parser) throws IOException {
+        String filename = null;
+        String contentType = null;
+        Path file = null;
+        long size = 0;
+        boolean tooLarge = false;
+
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "filename" -> filename = readText(parser, field);
+                    case "contentType" -> contentType = readText(parser, field);
+                    case "content" -> {
+                        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+                            throw new IllegalArgumentException("Attachment content must be a base64 string");
+                        }
+                        deleteQuietly(file);
+                        file = Files.createTempFile(Paths.get(spoolDir), "inbound-", ".part");
+                        try (LimitedOutputStream out = new LimitedOutputStream(
+                                new BufferedOutputStream(Files.newOutputStream(file), SPOOL_BUFFER_BYTES),
+                                maxAttachmentBytes)) {
+                            parser.readBinaryValue(out);
+                            size = out.written;
+                            tooLarge = out.exceeded;
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+
+        String error = null;
+        if (tooLarge) {
+            error = "exceeds maximum size of " + maxAttachmentBytes + " bytes";
+        } else if (filename == null || filename.isBlank()) {
+            error = "missing filename";
+        } else if (contentType == null || contentType.isBlank()) {
+            error = "missing content type";
+        } else if (file == null || size == 0) {
+            error = "empty content";
+        }
+        if (error != null) {
+            logger.warn("Rejected inbound email attachment '{}': {}", filename, error);
+            deleteQuietly(file);
+            return new SpooledAttachment(filename, contentType, null, 0, error);
+        }
+        return new SpooledAttachment(filename, contentType, file, size, null);
+    }
+
+    private static String readText(JsonParser parser, String field) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NULL -> null;
+            case VALUE_STRING -> parser.getText();
+            default -> throw new IllegalArgumentException(field + " must be a string");
+        };
+    }
+
+    private static LocalDate readDate(JsonParser parser) throws IOException {
+        String value = readText(parser, "date");
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("date must be an ISO date (yyyy-MM-dd)");
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Rejects the request once more than "limit" bytes have been read
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long read;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(long n) {
+            read += n;
+            if (read > limit) {
+                throw new IllegalArgumentException("Webhook payload exceeds " + limit + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Stops writing once "limit" bytes have been written and just records that the
+     * limit was exceeded, so the parser can carry on past the rest of the attachment.
+     */
+    private static final class LimitedOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private long written;
+        private boolean exceeded;
+
+        LimitedOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (exceeded) {
+                return;
+            }
+            if (written + length > limit) {
+                exceeded = true;
+                return;
+            }
+            out.write(buffer, offset, length);
+            written += length;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.CorrespondenceDTO.CorrespondenceResponse;
+import com.thisisme.model.dto.TimelineDTO.TimelineEntryResponse;
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.InboundEmailReceipt;
+import com.thisisme.model.entity.PassportPermission;
+import com.thisisme.model.enums.Role;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.InboundEmailReceiptRepository;
+import com.thisisme.repository.PassportPermissionRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.service.DocumentService.StoredAttachment;
+import com.thisisme.service.InboundEmailParser.InboundEmail;
+import com.thisisme.service.InboundEmailParser.SpooledAttachment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Turns a parsed inbound email into a correspondence timeline entry with its attachments.
+ * Attachments are streamed from their spool files into storage in parallel; the
+ * document records are then saved one by one.
+ *
+ * Deliveries are recorded in inbound_email_receipts so sender retries are idempotent.
+ * The entry is recorded on the claim before any attachment is saved; a retry that takes
+ * over the claim after a crash adds the missing attachments to that entry rather than
+ * creating a second one.
+ */
+@Service
+public class InboundEmailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundEmailService.class);
+
+    private final TimelineService timelineService;
+    private final DocumentService documentService;
+    private final UserRepository userRepository;
+    private final PassportPermissionRepository permissionRepository;
+    private final InboundEmailReceiptRepository receiptRepository;
+    private final DocumentRepository documentRepository;
+    private final Executor attachmentExecutor;
+
+    @Value("${app.webhook.claim-stale-seconds:900}")
+    private long claimStaleSeconds; // 15 minutes default
+
+    public InboundEmailService(
+            TimelineService timelineService,
+            DocumentService documentService,
+            UserRepository userRepository,
+            PassportPermissionRepository permissionRepository,
+            InboundEmailReceiptRepository receiptRepository,
+            DocumentRepository documentRepository,
+            @Qualifier("inboundAttachmentExecutor") Executor attachmentExecutor) {
+        this.timelineService = timelineService;
+        this.documentService = documentService;
+        this.userRepository = userRepository;
+        this.permissionRepository = permissionRepository;
+        this.receiptRepository = receiptRepository;
+        this.documentRepository = documentRepository;
+        this.attachmentExecutor = attachmentExecutor;
+    }
+
+    /**
+     * Create the correspondence entry for an inbound email. A delivery that has already
+     * been processed (same Message-ID, or same payload when there is none) returns the
+     * original result without creating anything.
+     *
+     * @throws IllegalStateException if the same delivery is still being processed, or
+     *                               there is no user to author the entry
+     */
+    public CorrespondenceResponse process(UUID passportId, InboundEmail email, String ipAddress) {
+        String dedupKey = dedupKey(email);
+        Instant now = Instant.now();
+        if (receiptRepository.claim(UUID.randomUUID(), passportId, dedupKey, now,
+                now.minusSeconds(claimStaleSeconds)) == 0) {
+            return replay(passportId, dedupKey, email);
+        }
+
+        try {
+            UUID userId = resolveAuthor(passportId, email.from());
+
+            // Set when this takes over the claim of an attempt that died after creating the entry
+            UUID entryId = receiptRepository.findByPassportIdAndDedupKey(passportId, dedupKey)
+                .map(InboundEmailReceipt::getEntryId)
+                .orElse(null);
+            List<String> alreadySaved = new ArrayList<>();
+            if (entryId == null) {
+                TimelineEntryResponse entry = timelineService.createCorrespondenceEntry(
+                    passportId,
+                    userId,
+                    email.from(),
+                    email.to(),
+                    email.subject(),
+                    email.body(),
+                    email.date(),
+                    "WEBHOOK",
+                    VisibilityLevel.OWNERS_ONLY,
+                    null,
+                    null,
+                    ipAddress
+                );
+                entryId = entry.id();
+                receiptRepository.recordEntry(passportId, dedupKey, entryId);
+            } else {
+                logger.info("Resuming inbound email for passport {} ({}) on entry {}", passportId, dedupKey, entryId);
+                for (Document document : documentRepository.findByTimelineEntryId(entryId)) {
+                    alreadySaved.add(attachmentKey(document.getOriginalFileName(), document.getContentHash()));
+                }
+            }
+
+            int saved = saveAttachments(passportId, userId, entryId, email.attachments(), alreadySaved);
+            receiptRepository.complete(passportId, dedupKey, entryId, saved, Instant.now());
+
+            return response(entryId, email, saved);
+        } catch (RuntimeException e) {
+            receiptRepository.release(passportId, dedupKey, Instant.EPOCH);
+            throw e;
+        }
+    }
+
+    /**
+     * The sender, if they're a user with permission to add entries to the passport;
+     * otherwise the passport's owner.
+     */
+    UUID resolveAuthor(UUID passportId, String from) {
+        Optional<UUID> sender = userRepository.findByEmail(from.trim().toLowerCase())
+            .flatMap(user -> permissionRepository.findActivePermission(passportId, user.getId()))
+            .filter(PassportPermission::canAddTimelineEntries)
+            .map(permission -> permission.getUser().getId());
+        if (sender.isPresent()) {
+            return sender.get();
+        }
+
+        return permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)).stream()
+            .filter(PassportPermission::canAddTimelineEntries)
+            .min(Comparator.comparing(PassportPermission::getGrantedAt,
+                Comparator.nullsLast(Comparator.naturalOrder())))
+            .map(permission -> permission.getUser().getId())
+            .orElseThrow(() -> new IllegalStateException("No user found to create entry"));
+    }
+
+    private CorrespondenceResponse replay(UUID passportId, String dedupKey, InboundEmail email) {
+        InboundEmailReceipt receipt = receiptRepository.findByPassportIdAndDedupKey(passportId, dedupKey)
+            .filter(InboundEmailReceipt::isCompleted)
+            .orElseThrow(() -> new IllegalStateException("This email is already being processed"));
+        logger.info("Duplicate inbound email for passport {} ({}), returning entry {}",
+            passportId, dedupKey, receipt.getEntryId());
+        return response(receipt.getEntryId(), email, receipt.getAttachmentCount());
+    }
+
+    private static CorrespondenceResponse response(UUID entryId, InboundEmail email, int attachmentCount) {
+        return new CorrespondenceResponse(
+            entryId,
+            email.from(),
+            email.to(),
+            email.subject(),
+            email.date(),
+            "WEBHOOK",
+            attachmentCount
+        );
+    }
+
+    /**
+     * Message-ID when the sender supplied one, so re-encoded retries still match;
+     * otherwise the hash of the raw payload
+     */
+    static String dedupKey(InboundEmail email) {
+        if (email.messageId() != null && !email.messageId().isBlank()) {
+            byte[] hash = DocumentService.sha256().digest(email.messageId().trim().getBytes(StandardCharsets.UTF_8));
+            return "message-id:" + HexFormat.of().formatHex(hash);
+        }
+        return "payload:" + email.payloadHash();
+    }
+
+    /**
+     * Failed attachments are logged and skipped rather than failing the whole email.
+     * Attachments matching one of alreadySaved (see attachmentKey) were saved by an
+     * earlier attempt; they count as saved and aren't recorded again.
+     *
+     * @return number of attachments saved
+     */
+    int saveAttachments(UUID passportId, UUID userId, UUID entryId, List<SpooledAttachment> attachments,
+                        List<String> alreadySaved) {
+        List<SpooledAttachment> accepted = new ArrayList<>();
+        List<CompletableFuture<StoredAttachment>> uploads = new ArrayList<>();
+        for (SpooledAttachment attachment : attachments) {
+            if (!attachment.isAccepted()) {
+                logger.warn("Skipping attachment '{}' for passport {}: {}",
+                    attachment.filename(), passportId, attachment.error());
+                continue;
+            }
+            accepted.add(attachment);
+            uploads.add(CompletableFuture.supplyAsync(() -> store(passportId, attachment), attachmentExecutor));
+        }
+
+        int saved = 0;
+        for (int i = 0; i < accepted.size(); i++) {
+            SpooledAttachment attachment = accepted.get(i);
+            StoredAttachment stored;
+            try {
+                stored = uploads.get(i).join();
+            } catch (CompletionException e) {
+                logger.error("Failed to store attachment '{}' for passport {}: {}",
+                    attachment.filename(), passportId, e.getCause().getMessage(), e.getCause());
+                continue;
+            }
+
+            // remove() consumes one match, in case the email carries the same file twice
+            if (alreadySaved.remove(attachmentKey(stored.filename(), stored.contentHash()))) {
+                documentService.discardStoredAttachment(stored);
+                saved++;
+                continue;
+            }
+
+            try {
+                documentService.saveEmailAttachment(passportId, userId, entryId, stored);
+                saved++;
+            } catch (RuntimeException e) {
+                logger.error("Failed to save attachment '{}' for passport {}: {}",
+                    attachment.filename(), passportId, e.getMessage(), e);
+                documentService.discardStoredAttachment(stored);
+            }
+        }
+        return saved;
+    }
+
+    private static String attachmentKey(String filename, String contentHash) {
+        return filename + "\n" + contentHash;
+    }
+
+    private StoredAttachment store(UUID passportId, SpooledAttachment attachment) {
+        try {
+            return documentService.storeEmailAttachment(
+                passportId, attachment.filename(), attachment.contentType(), attachment.file());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
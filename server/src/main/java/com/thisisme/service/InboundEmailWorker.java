@@ -0,0 +1,168 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.CorrespondenceDTO.CorrespondenceResponse;
+import com.thisisme.model.enums.InboundEmailJobStatus;
+import com.thisisme.service.InboundEmailJobService.InboundEmailWork;
+import com.thisisme.service.InboundEmailParser.InboundEmail;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the inbound email queue and processes claimed jobs on the inbound email pool.
+ * Only claims as many jobs as there are idle workers, and the queue hands out at most
+ * one job per passport at a time, so each passport's emails land in arrival order.
+ */
+@Component
+public class InboundEmailWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundEmailWorker.class);
+
+    private final InboundEmailJobService jobService;
+    private final InboundEmailParser parser;
+    private final InboundEmailService inboundEmailService;
+    private final StorageService storageService;
+    private final Executor executor;
+
+    private final String workerId;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Queue depth across all instances, refreshed periodically rather than queried per scrape
+    private final AtomicLong pendingJobs = new AtomicLong();
+    private final AtomicLong runningJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+
+    @Value("${app.webhook.worker.threads:2}")
+    private int concurrency;
+
+    public InboundEmailWorker(
+            InboundEmailJobService jobService,
+            InboundEmailParser parser,
+            InboundEmailService inboundEmailService,
+            StorageService storageService,
+            @Qualifier("inboundEmailExecutor") Executor executor,
+            MeterRegistry meterRegistry) {
+        this.jobService = jobService;
+        this.parser = parser;
+        this.inboundEmailService = inboundEmailService;
+        this.storageService = storageService;
+        this.executor = executor;
+        // pid@host plus a random suffix, so restarts never inherit a previous run's claims
+        String runtime = ManagementFactory.getRuntimeMXBean().getName();
+        String id = runtime + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.workerId = id.length() > 100 ? id.substring(id.length() - 100) : id;
+
+        Gauge.builder("inbound.email.jobs.queued", pendingJobs, AtomicLong::get).tag("status", "pending")
+            .description("Inbound emails waiting to be processed").register(meterRegistry);
+        Gauge.builder("inbound.email.jobs.queued", runningJobs, AtomicLong::get).tag("status", "running")
+            .description("Inbound emails claimed by a worker").register(meterRegistry);
+        Gauge.builder("inbound.email.jobs.queued", failedJobs, AtomicLong::get).tag("status", "failed")
+            .description("Dead-lettered inbound emails").register(meterRegistry);
+        Gauge.builder("inbound.email.worker.busy", inFlight, AtomicInteger::get)
+            .description("Inbound emails being processed on this instance").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.worker.poll-interval-ms:1000}")
+    public void poll() {
+        int idle = concurrency - inFlight.get();
+        if (idle <= 0) {
+            return;
+        }
+
+        List<UUID> claimed = jobService.claimBatch(workerId, idle);
+        for (UUID jobId : claimed) {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        process(jobId);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // Left RUNNING; releaseStaleJobs puts it back on the queue
+                inFlight.decrementAndGet();
+                logger.warn("Inbound email pool rejected job {}: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.worker.stale-check-interval-ms:60000}")
+    public void releaseStaleJobs() {
+        jobService.releaseStaleJobs();
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.worker.metrics-interval-ms:30000}")
+    public void refreshQueueMetrics() {
+        pendingJobs.set(jobService.countByStatus(InboundEmailJobStatus.PENDING));
+        runningJobs.set(jobService.countByStatus(InboundEmailJobStatus.RUNNING));
+        failedJobs.set(jobService.countByStatus(InboundEmailJobStatus.FAILED));
+    }
+
+    /**
+     * Run one claimed job: parse the stored payload, create the entry and attachments,
+     * record the outcome. Malformed payloads and permission failures are dead-lettered
+     * straight away; anything else is retried.
+     */
+    void process(UUID jobId) {
+        try {
+            Optional<InboundEmailWork> claimed = jobService.startWork(jobId, workerId);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            InboundEmailWork work = claimed.get();
+
+            InboundEmail email;
+            try (InputStream in = storageService.openStream(work.payloadPath())) {
+                email = parser.parse(in);
+            } catch (IOException e) {
+                jobService.recordFailure(jobId, workerId, "Failed to read payload: " + e.getMessage(), true);
+                return;
+            } catch (IllegalArgumentException e) {
+                jobService.recordFailure(jobId, workerId, "Invalid payload: " + e.getMessage(), false);
+                return;
+            }
+
+            CorrespondenceResponse response;
+            try (email) {
+                response = inboundEmailService.process(work.passportId(), email, work.clientIp());
+            } catch (SecurityException | ResourceNotFoundException e) {
+                jobService.recordFailure(jobId, workerId, e.getMessage(), false);
+                return;
+            }
+
+            if (jobService.complete(jobId, workerId, response.entryId())) {
+                jobService.deletePayload(work.payloadPath());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Inbound email job {} failed unexpectedly: {}", jobId, e.getMessage(), e);
+            try {
+                jobService.recordFailure(jobId, workerId, e.getMessage(), true);
+            } catch (RuntimeException recordError) {
+                logger.error("Failed to record inbound email job {} failure: {}", jobId, recordError.getMessage());
+            }
+        }
+    }
+
+    String getWorkerId() {
+        return workerId;
+    }
+}
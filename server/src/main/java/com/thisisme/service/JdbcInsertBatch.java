@@ -0,0 +1,53 @@
+package com.thisisme.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows for one INSERT, sent with JdbcTemplate.batchUpdate every batchSize rows.
+ * Child batches (tags of the entries being inserted, say) are flushed after their
+ * parent, so foreign keys are always satisfied. Call flush() once the last row is added.
+ */
+final class JdbcInsertBatch {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String sql;
+    private final int batchSize;
+    private final JdbcInsertBatch parent;
+    private final List<JdbcInsertBatch> children = new ArrayList<>();
+    private List<Object[]> rows = new ArrayList<>();
+
+    JdbcInsertBatch(JdbcTemplate jdbcTemplate, String sql, int batchSize) {
+        this(jdbcTemplate, sql, batchSize, null);
+    }
+
+    private JdbcInsertBatch(JdbcTemplate jdbcTemplate, String sql, int batchSize, JdbcInsertBatch parent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sql = sql;
+        this.batchSize = batchSize;
+        this.parent = parent;
+    }
+
+    JdbcInsertBatch child(String childSql) {
+        JdbcInsertBatch child = new JdbcInsertBatch(jdbcTemplate, childSql, batchSize, this);
+        children.add(child);
+        return child;
+    }
+
+    void add(Object... row) {
+        rows.add(row);
+        if (rows.size() >= batchSize) {
+            (parent != null ? parent : this).flush();
+        }
+    }
+
+    void flush() {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows = new ArrayList<>();
+        }
+        children.forEach(JdbcInsertBatch::flush);
+    }
+}
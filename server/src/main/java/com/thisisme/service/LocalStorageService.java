@@ -8,11 +8,15 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Local filesystem storage implementation.
@@ -44,6 +48,14 @@ public class LocalStorageService implements StorageService {
         logger.debug("Uploaded file to local storage: {}", key);
     }
 
+    @Override
+    public void upload(String key, InputStream data, long contentLength, String contentType) throws IOException {
+        Path filePath = resolveAndValidatePath(key);
+        Files.createDirectories(filePath.getParent());
+        Files.copy(data, filePath, StandardCopyOption.REPLACE_EXISTING);
+        logger.debug("Uploaded file to local storage: {}", key);
+    }
+
     @Override
     public byte[] download(String key) throws IOException {
         Path filePath = resolveAndValidatePath(key);
@@ -53,6 +65,26 @@ public class LocalStorageService implements StorageService {
         return Files.readAllBytes(filePath);
     }
 
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        Path filePath = resolveAndValidatePath(key);
+        if (!Files.exists(filePath)) {
+            throw new IOException("File not found: " + key);
+        }
+        return Files.newInputStream(filePath);
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        Path filePath = resolveAndValidatePath(key);
+        if (!Files.exists(filePath)) {
+            throw new IOException("File not found: " + key);
+        }
+        SeekableByteChannel channel = Files.newByteChannel(filePath);
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
     @Override
     public void delete(String key) throws IOException {
         Path filePath = resolveAndValidatePath(key);
@@ -68,6 +100,12 @@ public class LocalStorageService implements StorageService {
         return "/api/documents/download/" + key + "?filename=" + encodedFilename;
     }
 
+    @Override
+    public boolean supportsDirectDownload() {
+        // The relative URL above isn't served; downloads go through the document API
+        return false;
+    }
+
     @Override
     public boolean exists(String key) {
         try {
@@ -0,0 +1,363 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.service.TimelineSearchSource.IndexedEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Timeline search on an embedded Lucene index in local files, one per application node.
+ *
+ * Entries are indexed with their title, tags, content and email headers, and the file names and
+ * OCR text of their attachments in a field of their own that is only searched for callers who
+ * may view documents. Query words match stemmed, as prefixes, or within one or two
+ * edits, so "playgrund" finds "playground". A scheduled sync picks up entries and attachments
+ * changed since the last run, re-reading a short overlap so rows from transactions that
+ * committed late are not missed, and refreshes the searcher so changes show within seconds.
+ * Bulk imports, which keep the entries' original timestamps, are found by the reindex
+ * request they leave on the passport. An empty index is rebuilt from the database.
+ */
+@Service
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "lucene")
+public class LuceneTimelineSearchEngine implements TimelineSearchEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneTimelineSearchEngine.class);
+
+    static final String SYNCED_UP_TO = "syncedUpTo";
+    private static final String TYPE_FACET = "type";
+    private static final String TAG_FACET = "tag";
+    private static final int MAX_TAG_FACETS = 50;
+    // Entries read from the database per round trip
+    private static final int BATCH_SIZE = 500;
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    private static final String DOCUMENTS_FIELD = "documents";
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of(
+        "title", 3f, "tags", 2f, "content", 1f, "email", 1f);
+    private static final Map<String, Float> FIELD_BOOSTS_WITH_DOCUMENTS = Map.of(
+        "title", 3f, "tags", 2f, "content", 1f, "email", 1f, DOCUMENTS_FIELD, 1f);
+
+    private final TimelineSearchSource source;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+
+    @Value("${app.search.lucene.path:./search-index}")
+    private String indexPath;
+
+    @Value("${app.search.lucene.sync-overlap-ms:10000}")
+    private long syncOverlapMs;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile Instant syncedUpTo;
+    private volatile FacetState facetState;
+
+    // Facet ordinals of one reader, rebuilt when a refresh opens a new one
+    private record FacetState(IndexReader reader, SortedSetDocValuesReaderState state) {}
+
+    public LuceneTimelineSearchEngine(TimelineSearchSource source) {
+        this.source = source;
+        facetsConfig.setMultiValued(TAG_FACET, true);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(Path.of(indexPath));
+        if (DirectoryReader.indexExists(directory)) {
+            String synced = SegmentInfos.readLatestCommit(directory).getUserData().get(SYNCED_UP_TO);
+            syncedUpTo = synced != null ? Instant.parse(synced) : null;
+        }
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+            .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    @Override
+    public SearchResult search(UUID passportId, SearchQuery query) {
+        Query text = textQuery(query.text(),
+            query.includeDocuments() ? FIELD_BOOSTS_WITH_DOCUMENTS : FIELD_BOOSTS);
+        if (text == null || query.viewerRole() == null) {
+            return SearchResult.empty();
+        }
+        Query base = new BooleanQuery.Builder()
+            .add(text, BooleanClause.Occur.MUST)
+            .add(new TermQuery(new Term("passportId", passportId.toString())), BooleanClause.Occur.FILTER)
+            .add(new TermQuery(new Term("visibleTo", query.viewerRole().name())), BooleanClause.Occur.FILTER)
+            .build();
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                FacetsCollectorManager.FacetsResult all = FacetsCollectorManager.search(
+                    searcher, base, query.limit(), new FacetsCollectorManager());
+                Map<EntryType, Long> typeCounts = new EnumMap<>(EntryType.class);
+                Map<String, Long> tagCounts = new TreeMap<>();
+                SortedSetDocValuesReaderState state = facetState(searcher.getIndexReader());
+                if (state != null) {
+                    SortedSetDocValuesFacetCounts counts =
+                        new SortedSetDocValuesFacetCounts(state, all.facetsCollector());
+                    collect(counts.getAllChildren(TYPE_FACET), (label, count) ->
+                        typeCounts.put(EntryType.valueOf(label), count));
+                    collect(counts.getTopChildren(MAX_TAG_FACETS, TAG_FACET), tagCounts::put);
+                }
+
+                TopDocs hits = all.topDocs();
+                if (!isEmpty(query.entryTypes()) || !isEmpty(query.tags())) {
+                    DrillDownQuery refined = new DrillDownQuery(facetsConfig, base);
+                    if (!isEmpty(query.entryTypes())) {
+                        query.entryTypes().forEach(type -> refined.add(TYPE_FACET, type.name()));
+                    }
+                    if (!isEmpty(query.tags())) {
+                        query.tags().forEach(tag -> refined.add(TAG_FACET, tag));
+                    }
+                    hits = searcher.search(refined, query.limit());
+                }
+
+                StoredFields stored = searcher.storedFields();
+                List<UUID> entryIds = new ArrayList<>(hits.scoreDocs.length);
+                for (ScoreDoc hit : hits.scoreDocs) {
+                    entryIds.add(UUID.fromString(stored.document(hit.doc).get("id")));
+                }
+                return new SearchResult(entryIds, hits.totalHits.value, typeCounts, tagCounts);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Search index unreadable", e);
+        }
+    }
+
+    @Override
+    public void passportChanged(UUID passportId) {
+        source.requestReindex(passportId);
+    }
+
+    /**
+     * Bring the index up to date with the database and make the changes searchable
+     */
+    @Scheduled(fixedDelayString = "${app.search.lucene.sync-interval-ms:2000}")
+    public synchronized void sync() {
+        try {
+            if (syncedUpTo == null) {
+                rebuild();
+                return;
+            }
+            Instant startedAt = Instant.now();
+            Instant since = syncedUpTo.minusMillis(syncOverlapMs);
+            boolean changed = false;
+            for (UUID passportId : source.reindexRequestedSince(since)) {
+                writer.deleteDocuments(new Term("passportId", passportId.toString()));
+                index(source.liveIdsOf(passportId));
+                changed = true;
+            }
+            Set<UUID> changedIds = source.changedSince(since);
+            if (!changedIds.isEmpty()) {
+                index(changedIds);
+                changed = true;
+            }
+            if (changed) {
+                commit(startedAt);
+                searcherManager.maybeRefresh();
+            } else {
+                // Nothing to persist; a restart re-reads the gap since the last commit
+                syncedUpTo = startedAt;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Search index sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reindex every live entry. Searches keep seeing the previous index until this finishes.
+     */
+    @Override
+    public synchronized void rebuild() {
+        Instant startedAt = Instant.now();
+        try {
+            writer.deleteAll();
+            UUID afterId = FIRST_ID;
+            List<UUID> ids;
+            int indexed = 0;
+            while (!(ids = source.liveIdsAfter(afterId, BATCH_SIZE)).isEmpty()) {
+                index(ids);
+                indexed += ids.size();
+                afterId = ids.get(ids.size() - 1);
+            }
+            commit(startedAt);
+            searcherManager.maybeRefresh();
+            logger.info("Rebuilt search index with {} timeline entries", indexed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Search index rebuild failed", e);
+        }
+    }
+
+    // Replace the indexed copies of the given entries; ids no longer live are removed
+    private void index(Collection<UUID> entryIds) throws IOException {
+        List<UUID> ids = List.copyOf(entryIds);
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<UUID> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            Set<UUID> live = new HashSet<>();
+            for (IndexedEntry entry : source.load(batch)) {
+                writer.updateDocument(new Term("id", entry.id().toString()), toDocument(entry));
+                live.add(entry.id());
+            }
+            for (UUID id : batch) {
+                if (!live.contains(id)) {
+                    writer.deleteDocuments(new Term("id", id.toString()));
+                }
+            }
+        }
+    }
+
+    private Document toDocument(IndexedEntry entry) throws IOException {
+        Document doc = new Document();
+        doc.add(new StringField("id", entry.id().toString(), Field.Store.YES));
+        doc.add(new StringField("passportId", entry.passportId().toString(), Field.Store.NO));
+        entry.visibleTo().forEach(role -> doc.add(new StringField("visibleTo", role.name(), Field.Store.NO)));
+        addText(doc, "title", entry.title());
+        addText(doc, "content", entry.content());
+        addText(doc, "email", entry.email());
+        addText(doc, DOCUMENTS_FIELD, entry.documents());
+        doc.add(new SortedSetDocValuesFacetField(TYPE_FACET, entry.entryType().name()));
+        for (String tag : entry.tags()) {
+            if (!tag.isBlank()) {
+                addText(doc, "tags", tag);
+                doc.add(new SortedSetDocValuesFacetField(TAG_FACET, tag));
+            }
+        }
+        return facetsConfig.build(doc);
+    }
+
+    private static void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private void commit(Instant syncedTo) throws IOException {
+        writer.setLiveCommitData(Map.of(SYNCED_UP_TO, syncedTo.toString()).entrySet());
+        writer.commit();
+        syncedUpTo = syncedTo;
+    }
+
+    /**
+     * Every analysed query word must match in one of the given fields: exactly, as a prefix,
+     * or within the edit distance its length allows
+     */
+    private Query textQuery(String text, Map<String, Float> fieldBoosts) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        boolean any = false;
+        for (String word : analyze(text)) {
+            if (word.length() < 2) {
+                continue;
+            }
+            BooleanQuery.Builder fields = new BooleanQuery.Builder();
+            fieldBoosts.forEach((field, boost) -> {
+                Term term = new Term(field, word);
+                fields.add(new BoostQuery(new TermQuery(term), boost), BooleanClause.Occur.SHOULD);
+                fields.add(new BoostQuery(new PrefixQuery(term), boost * 0.7f), BooleanClause.Occur.SHOULD);
+                int edits = word.length() > 5 ? 2 : word.length() > 3 ? 1 : 0;
+                if (edits > 0) {
+                    fields.add(new BoostQuery(new FuzzyQuery(term, edits, 1), boost * 0.5f),
+                        BooleanClause.Occur.SHOULD);
+                }
+            });
+            query.add(fields.build(), BooleanClause.Occur.MUST);
+            any = true;
+        }
+        return any ? query.build() : null;
+    }
+
+    private List<String> analyze(String text) {
+        List<String> words = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream("content", text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                words.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return words;
+    }
+
+    private SortedSetDocValuesReaderState facetState(IndexReader reader) throws IOException {
+        FacetState current = facetState;
+        if (current == null || current.reader() != reader) {
+            SortedSetDocValuesReaderState state;
+            try {
+                state = new DefaultSortedSetDocValuesReaderState(reader, facetsConfig);
+            } catch (IllegalArgumentException e) {
+                // Nothing indexed yet
+                state = null;
+            }
+            current = new FacetState(reader, state);
+            facetState = current;
+        }
+        return current.state();
+    }
+
+    private static void collect(FacetResult result, BiConsumer<String, Long> counts) {
+        if (result != null) {
+            for (LabelAndValue value : result.labelValues) {
+                counts.accept(value.label, value.value.longValue());
+            }
+        }
+    }
+
+    private static boolean isEmpty(Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+}
@@ -16,6 +16,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
@@ -157,7 +158,11 @@ public class NotificationService {
         );
     }
 
-    @Transactional
+    /**
+     * Runs in its own transaction: uploads that hit the OCR result cache call this
+     * after their transaction commits, when joining it would never be committed.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void notifyDocumentOcrComplete(UUID uploaderId, UUID passportId, UUID documentId, String fileName) {
         createNotification(
             uploaderId,
@@ -172,6 +177,21 @@ public class NotificationService {
         );
     }
 
+    @Transactional
+    public void notifyExportReady(UUID requesterId, UUID passportId, UUID jobId, String format) {
+        createNotification(
+            requesterId,
+            NotificationType.EXPORT_READY,
+            "Your export is ready",
+            "Your " + format.toLowerCase() + " export (" + jobId + ") is ready to download",
+            null,
+            passportId,
+            null,
+            null,
+            null
+        );
+    }
+
     // === Read Notifications ===
 
     @Transactional(readOnly = true)
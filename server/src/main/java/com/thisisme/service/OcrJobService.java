@@ -0,0 +1,382 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.OcrJob;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.TimelineEntry;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.OcrJobStatus;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.OcrJobRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.service.OcrService.OcrResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persistent OCR job queue. Each method is a short transaction; the slow parts
+ * (reading the file and calling the OCR service) run in OcrJobWorker between them,
+ * so no DB connection is held across the OCR round trip.
+ */
+@Service
+public class OcrJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobService.class);
+
+    private final OcrJobRepository ocrJobRepository;
+    private final DocumentRepository documentRepository;
+    private final TimelineEntryRepository timelineRepository;
+
+    @Value("${app.ocr.auto-timeline:true}")
+    private boolean autoCreateTimelineFromOcr;
+
+    @Value("${app.ocr.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.ocr.jobs.base-backoff-ms:30000}")
+    private long baseBackoffMs;
+
+    @Value("${app.ocr.jobs.max-backoff-ms:1800000}")
+    private long maxBackoffMs; // 30 minutes
+
+    @Value("${app.ocr.jobs.stale-after-ms:900000}")
+    private long staleAfterMs; // 15 minutes
+
+    public OcrJobService(
+            OcrJobRepository ocrJobRepository,
+            DocumentRepository documentRepository,
+            TimelineEntryRepository timelineRepository) {
+        this.ocrJobRepository = ocrJobRepository;
+        this.documentRepository = documentRepository;
+        this.timelineRepository = timelineRepository;
+    }
+
+    public boolean supports(String mimeType) {
+        return mimeType != null
+            && (mimeType.startsWith("image/") || PdfTextExtractor.PDF_MIME_TYPE.equals(mimeType));
+    }
+
+    /**
+     * Queue OCR for a document. Call inside the transaction that saves the document
+     * so the job only becomes visible to workers once the upload commits.
+     */
+    @Transactional
+    public OcrJob enqueue(Document document, boolean autoCreateTimeline) {
+        OcrJob job = ocrJobRepository.save(new OcrJob(document, autoCreateTimeline));
+        logger.debug("Queued OCR job {} for document {}", job.getId(), document.getId());
+        return job;
+    }
+
+    /**
+     * Queue documents that were never OCR'd (uploaded before the queue existed, or
+     * while OCR was disabled). These are treated as standalone uploads.
+     */
+    @Transactional
+    public int seedBacklog() {
+        int queued = 0;
+        for (Document document : documentRepository.findPendingOcr()) {
+            if (supports(document.getMimeType()) && !ocrJobRepository.existsByDocumentId(document.getId())) {
+                ocrJobRepository.save(new OcrJob(document, document.getTimelineEntry() == null));
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            logger.info("Seeded {} OCR jobs from pending documents", queued);
+        }
+        return queued;
+    }
+
+    /**
+     * Claim up to {@code limit} due jobs for a worker
+     */
+    @Transactional
+    public List<UUID> claimBatch(String workerId, int limit) {
+        Instant now = Instant.now();
+        return claim(ocrJobRepository.lockDueJobIds(now, limit), workerId, now);
+    }
+
+    /**
+     * Claim up to {@code limit} due jobs that need no OCR service: PDFs whose text layer
+     * hasn't been read yet
+     */
+    @Transactional
+    public List<UUID> claimTextLayerBatch(String workerId, int limit) {
+        Instant now = Instant.now();
+        return claim(ocrJobRepository.lockDueTextLayerJobIds(now, limit), workerId, now);
+    }
+
+    private List<UUID> claim(List<UUID> ids, String workerId, Instant now) {
+        if (!ids.isEmpty()) {
+            ocrJobRepository.markClaimed(ids, workerId, now, OcrJobStatus.RUNNING);
+        }
+        return ids;
+    }
+
+    /**
+     * Resolve what a claimed job needs to read, or empty if the job should be skipped
+     */
+    @Transactional
+    public Optional<OcrWork> startWork(UUID jobId, String workerId) {
+        OcrJob job = ocrJobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            return Optional.empty();
+        }
+
+        Document document = job.getDocument();
+        if (document.isDeleted()) {
+            job.complete();
+            return Optional.empty();
+        }
+
+        return Optional.of(new OcrWork(
+            job.getId(),
+            document.getId(),
+            document.getStoragePath(),
+            document.getOriginalFileName(),
+            document.getMimeType(),
+            document.getContentHash()
+        ));
+    }
+
+    /**
+     * Store a successful result and create the timeline entry if requested.
+     * Returns who to notify, or empty if the job was reclaimed by another worker meanwhile.
+     */
+    @Transactional
+    public Optional<OcrCompletion> complete(UUID jobId, String workerId, OcrResult result) {
+        OcrJob job = ocrJobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            logger.warn("Discarding OCR result for job {}: no longer claimed by {}", jobId, workerId);
+            return Optional.empty();
+        }
+
+        Document document = job.getDocument();
+        if (document.isDeleted()) {
+            job.complete();
+            return Optional.empty();
+        }
+
+        applyResult(document, result, job.isAutoCreateTimeline());
+        job.complete();
+
+        return Optional.of(completion(document));
+    }
+
+    /**
+     * Apply a result that was already known (e.g. from the OCR result cache) directly,
+     * without queueing a job. Call inside the transaction that saves the document.
+     */
+    @Transactional
+    public OcrCompletion applyCachedResult(Document document, OcrResult result, boolean autoCreateTimeline) {
+        applyResult(document, result, autoCreateTimeline);
+        return completion(document);
+    }
+
+    /**
+     * Schedule a retry with exponential backoff, or give up and record the error on the document
+     */
+    @Transactional
+    public void recordFailure(UUID jobId, String workerId, String error, boolean retryable) {
+        OcrJob job = ocrJobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            return;
+        }
+        retryOrFail(job, error, retryable);
+    }
+
+    /**
+     * Save the text a PDF gave without its scanned pages, and queue the job again for
+     * those. It then waits for a worker that can reach the OCR service; a pass that
+     * never called the service doesn't count as an attempt.
+     */
+    @Transactional
+    public void deferScannedPages(UUID jobId, String workerId, OcrResult partial, boolean ocrAttempted) {
+        OcrJob job = ocrJobRepository.findByIdForUpdate(jobId).orElse(null);
+        if (job == null || !job.isClaimedBy(workerId)) {
+            return;
+        }
+
+        Document document = job.getDocument();
+        if (document.isDeleted()) {
+            job.complete();
+            return;
+        }
+
+        if (partial.success()) {
+            document.setOcrText(partial.rawTextOrError());
+        }
+        job.markTextLayerExtracted();
+        if (ocrAttempted) {
+            retryOrFail(job, "OCR service unavailable", true);
+        } else {
+            job.requeue("Scanned pages waiting for the OCR service");
+        }
+    }
+
+    private void retryOrFail(OcrJob job, String error, boolean retryable) {
+        UUID jobId = job.getId();
+        if (retryable && job.getAttempts() < maxAttempts) {
+            Instant nextAttempt = Instant.now().plus(backoff(job.getAttempts()));
+            job.retryAt(nextAttempt, error);
+            logger.info("OCR job {} failed (attempt {}/{}), retrying at {}: {}",
+                jobId, job.getAttempts(), maxAttempts, nextAttempt, error);
+            return;
+        }
+
+        job.fail(error);
+        if (!job.getDocument().isDeleted()) {
+            job.getDocument().setOcrError(error);
+        }
+        logger.warn("OCR job {} failed permanently after {} attempts: {}", jobId, job.getAttempts(), error);
+    }
+
+    /**
+     * Requeue jobs left RUNNING by a worker that died mid-job (crash, restart, lost connection)
+     */
+    @Transactional
+    public int releaseStaleJobs() {
+        Instant now = Instant.now();
+        int released = ocrJobRepository.releaseStale(now.minusMillis(staleAfterMs), now);
+        if (released > 0) {
+            logger.warn("Released {} stale OCR jobs back to the queue", released);
+        }
+        return released;
+    }
+
+    @Transactional(readOnly = true)
+    public long countByStatus(OcrJobStatus status) {
+        return ocrJobRepository.countByStatus(status);
+    }
+
+    /**
+     * base * 2^(attempts-1), capped, with up to 20% jitter so jobs that failed
+     * together during an outage don't all retry in the same instant
+     */
+    Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        long delay = Math.min(baseBackoffMs << exponent, maxBackoffMs);
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    // Helper methods
+
+    private void applyResult(Document document, OcrResult result, boolean autoCreateTimeline) {
+        document.setOcrText(result.rawTextOrError());
+        logger.info("OCR extracted {} fields from {}",
+            result.formFields() != null ? result.formFields().size() : 0,
+            document.getOriginalFileName());
+
+        // A PDF read only from its text layer has no classification; a generic
+        // "Scanned Document" entry for every digital letter would just be noise
+        boolean classified = document.isImage() || result.documentType() != null;
+
+        if (autoCreateTimelineFromOcr && autoCreateTimeline && classified && document.getTimelineEntry() == null) {
+            TimelineEntry entry = createTimelineEntryFromOcr(
+                document.getPassport(), document.getUploadedBy(), result, document.getOriginalFileName());
+            entry.addAttachment(document);
+            logger.info("Created timeline entry from OCR: {}", entry.getTitle());
+        }
+    }
+
+    private static OcrCompletion completion(Document document) {
+        return new OcrCompletion(
+            document.getUploadedBy().getId(),
+            document.getPassport().getId(),
+            document.getId(),
+            document.getOriginalFileName()
+        );
+    }
+
+    /**
+     * Create a timeline entry from OCR results.
+     * Maps document types to appropriate EntryTypes.
+     */
+    private TimelineEntry createTimelineEntryFromOcr(
+            Passport passport, User author, OcrResult ocrResult, String fileName) {
+
+        EntryType entryType = mapDocumentTypeToEntryType(ocrResult.documentType());
+
+        TimelineEntry entry = new TimelineEntry(
+            passport,
+            author,
+            entryType,
+            ocrResult.getTitle(),
+            ocrResult.getContent(),
+            java.time.LocalDate.now()
+        );
+
+        entry.setVisibilityLevel(VisibilityLevel.PROFESSIONALS);
+        entry.addTag("scanned");
+        entry.addTag("ocr");
+
+        if (ocrResult.documentType() != null) {
+            entry.addTag(ocrResult.documentType().toLowerCase().replace(" ", "-"));
+        }
+
+        return timelineRepository.save(entry);
+    }
+
+    /**
+     * Map OCR document classification to timeline entry type.
+     */
+    private EntryType mapDocumentTypeToEntryType(String documentType) {
+        if (documentType == null) {
+            return EntryType.NOTE;
+        }
+
+        String type = documentType.toLowerCase();
+
+        if (type.contains("medical") || type.contains("health") || type.contains("prescription")) {
+            return EntryType.MEDICAL;
+        }
+        if (type.contains("school") || type.contains("report") || type.contains("assessment")) {
+            return EntryType.SCHOOL_REPORT;
+        }
+        if (type.contains("therapy") || type.contains("speech") || type.contains("occupational")) {
+            return EntryType.THERAPY;
+        }
+        if (type.contains("iep") || type.contains("education") || type.contains("learning")) {
+            return EntryType.EDUCATIONAL;
+        }
+        if (type.contains("behavior") || type.contains("incident")) {
+            return EntryType.BEHAVIOR;
+        }
+
+        return EntryType.NOTE;
+    }
+
+    /**
+     * File details a worker needs to run OCR outside a transaction
+     */
+    public record OcrWork(
+        UUID jobId,
+        UUID documentId,
+        String storagePath,
+        String fileName,
+        String mimeType,
+        String contentHash
+    ) {}
+
+    /**
+     * Who to notify once a completed job has committed
+     */
+    public record OcrCompletion(
+        UUID uploaderId,
+        UUID passportId,
+        UUID documentId,
+        String fileName
+    ) {}
+}
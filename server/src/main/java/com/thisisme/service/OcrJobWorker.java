@@ -0,0 +1,225 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.OcrJobStatus;
+import com.thisisme.service.OcrJobService.OcrCompletion;
+import com.thisisme.service.OcrJobService.OcrWork;
+import com.thisisme.service.OcrService.OcrResult;
+import com.thisisme.service.PdfTextExtractor.PdfText;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the OCR job queue and runs claimed jobs on the OCR worker pool.
+ * Only claims as many jobs as there are idle workers, so nothing sits locked in a local queue.
+ */
+@Component
+public class OcrJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobWorker.class);
+
+    private final OcrJobService ocrJobService;
+    private final OcrService ocrService;
+    private final StorageService storageService;
+    private final NotificationService notificationService;
+    private final OcrResultCache ocrResultCache;
+    private final PdfTextExtractor pdfTextExtractor;
+    private final Executor executor;
+
+    private final String workerId;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Queue depth across all instances, refreshed periodically rather than queried per scrape
+    private final AtomicLong pendingJobs = new AtomicLong();
+    private final AtomicLong runningJobs = new AtomicLong();
+
+    @Value("${app.ocr.worker.threads:2}")
+    private int concurrency;
+
+    public OcrJobWorker(
+            OcrJobService ocrJobService,
+            OcrService ocrService,
+            StorageService storageService,
+            NotificationService notificationService,
+            OcrResultCache ocrResultCache,
+            PdfTextExtractor pdfTextExtractor,
+            @Qualifier("ocrExecutor") Executor executor,
+            MeterRegistry meterRegistry) {
+        this.ocrJobService = ocrJobService;
+        this.ocrService = ocrService;
+        this.storageService = storageService;
+        this.notificationService = notificationService;
+        this.ocrResultCache = ocrResultCache;
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.executor = executor;
+        // pid@host plus a random suffix, so restarts never inherit a previous run's claims
+        String runtime = ManagementFactory.getRuntimeMXBean().getName();
+        String id = runtime + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.workerId = id.length() > 100 ? id.substring(id.length() - 100) : id;
+
+        Gauge.builder("ocr.jobs.queued", pendingJobs, AtomicLong::get).tag("status", "pending")
+            .description("OCR jobs waiting to be claimed").register(meterRegistry);
+        Gauge.builder("ocr.jobs.queued", runningJobs, AtomicLong::get).tag("status", "running")
+            .description("OCR jobs claimed by a worker").register(meterRegistry);
+        Gauge.builder("ocr.worker.busy", inFlight, AtomicInteger::get)
+            .description("OCR jobs running on this instance").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedBacklog() {
+        // Seeded even with OCR disabled: PDF text layers are read in-process regardless
+        try {
+            ocrJobService.seedBacklog();
+        } catch (RuntimeException e) {
+            // Another instance may be seeding concurrently; the next start picks up the rest
+            logger.warn("Failed to seed OCR backlog: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ocr.worker.poll-interval-ms:2000}")
+    public void poll() {
+        int idle = concurrency - inFlight.get();
+        if (idle <= 0) {
+            return;
+        }
+
+        // While the OCR service is disabled or its circuit is open, only read PDF text
+        // layers; other jobs stay queued rather than burning their retry attempts
+        List<UUID> claimed = ocrService.isAvailable()
+            ? ocrJobService.claimBatch(workerId, idle)
+            : ocrJobService.claimTextLayerBatch(workerId, idle);
+        for (UUID jobId : claimed) {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        process(jobId);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // Left RUNNING; releaseStaleJobs puts it back on the queue
+                inFlight.decrementAndGet();
+                logger.warn("OCR pool rejected job {}: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ocr.worker.stale-check-interval-ms:60000}")
+    public void releaseStaleJobs() {
+        ocrJobService.releaseStaleJobs();
+    }
+
+    @Scheduled(fixedDelayString = "${app.ocr.worker.metrics-interval-ms:30000}")
+    public void refreshQueueMetrics() {
+        pendingJobs.set(ocrJobService.countByStatus(OcrJobStatus.PENDING));
+        runningJobs.set(ocrJobService.countByStatus(OcrJobStatus.RUNNING));
+    }
+
+    /**
+     * Run one claimed job: read the file, extract text in-process (PDF) or via the
+     * OCR service (images and scanned PDF pages), record the outcome
+     */
+    void process(UUID jobId) {
+        try {
+            Optional<OcrWork> claimed = ocrJobService.startWork(jobId, workerId);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            OcrWork work = claimed.get();
+
+            // Another upload of the same file may have been processed since this job was queued
+            Optional<OcrResult> cached = ocrResultCache.lookup(work.contentHash());
+            if (cached.isPresent()) {
+                ocrJobService.complete(jobId, workerId, cached.get()).ifPresent(this::notifyUploader);
+                return;
+            }
+
+            byte[] fileBytes;
+            try {
+                fileBytes = storageService.download(work.storagePath());
+            } catch (IOException e) {
+                ocrJobService.recordFailure(jobId, workerId, "Failed to read document: " + e.getMessage(), true);
+                return;
+            }
+
+            OcrResult result;
+            if (PdfTextExtractor.PDF_MIME_TYPE.equals(work.mimeType())) {
+                PdfText text;
+                try {
+                    text = pdfTextExtractor.extract(fileBytes, work.fileName());
+                } catch (IOException e) {
+                    // Corrupt or password protected; retrying won't help
+                    ocrJobService.recordFailure(jobId, workerId, "Unreadable PDF: " + e.getMessage(), false);
+                    return;
+                }
+                if (!text.isComplete()) {
+                    // Keep the text read so far; only the scanned pages are retried
+                    ocrJobService.deferScannedPages(jobId, workerId, text.result(), text.ocrAttempted());
+                    return;
+                }
+                result = text.result();
+            } else {
+                result = ocrService.processImage(fileBytes, work.fileName(), work.mimeType());
+            }
+
+            if (result == null) {
+                // Transport error or non-200 response
+                ocrJobService.recordFailure(jobId, workerId, "OCR service unavailable", true);
+                return;
+            }
+            if (!result.success()) {
+                // The service read the file and rejected it; retrying won't change that
+                ocrJobService.recordFailure(jobId, workerId, result.rawTextOrError(), false);
+                return;
+            }
+
+            ocrResultCache.store(work.contentHash(), result);
+            ocrJobService.complete(jobId, workerId, result).ifPresent(this::notifyUploader);
+        } catch (RuntimeException e) {
+            logger.error("OCR job {} failed unexpectedly: {}", jobId, e.getMessage(), e);
+            try {
+                ocrJobService.recordFailure(jobId, workerId, e.getMessage(), true);
+            } catch (RuntimeException recordError) {
+                logger.error("Failed to record OCR job {} failure: {}", jobId, recordError.getMessage());
+            }
+        }
+    }
+
+    String getWorkerId() {
+        return workerId;
+    }
+
+    // Helper methods
+
+    private void notifyUploader(OcrCompletion completion) {
+        try {
+            notificationService.notifyDocumentOcrComplete(
+                completion.uploaderId(),
+                completion.passportId(),
+                completion.documentId(),
+                completion.fileName()
+            );
+        } catch (Exception e) {
+            logger.warn("Failed to send OCR complete notification: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.thisisme.model.entity.OcrResultCacheEntry;
+import com.thisisme.repository.OcrResultCacheRepository;
+import com.thisisme.service.OcrService.OcrResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Persisted cache of successful OCR results keyed by file content hash.
+ * An entry is only reused while it is within its TTL and was produced by the
+ * OCR model version the service currently reports.
+ */
+@Service
+public class OcrResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrResultCache.class);
+
+    private final OcrResultCacheRepository cacheRepository;
+    private final OcrService ocrService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader resultReader;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.ocr.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ocr.cache.ttl-days:90}")
+    private int ttlDays;
+
+    public OcrResultCache(
+            OcrResultCacheRepository cacheRepository,
+            OcrService ocrService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.cacheRepository = cacheRepository;
+        this.ocrService = ocrService;
+        this.objectMapper = objectMapper;
+        // OcrResult also exposes derived getters (title, content) that aren't record components
+        this.resultReader = objectMapper.readerFor(OcrResult.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        this.hits = Counter.builder("ocr.cache.requests").tag("result", "hit")
+            .description("OCR results served from the content hash cache").register(meterRegistry);
+        this.misses = Counter.builder("ocr.cache.requests").tag("result", "miss")
+            .description("OCR lookups that had to call the OCR service").register(meterRegistry);
+    }
+
+    /**
+     * Cached result for this content, if still valid
+     */
+    @Transactional(readOnly = true)
+    public Optional<OcrResult> lookup(String contentHash) {
+        if (!enabled || contentHash == null) {
+            return Optional.empty();
+        }
+
+        Optional<OcrResult> result = cacheRepository.findById(contentHash)
+            .filter(this::isUsable)
+            .flatMap(this::deserialize);
+
+        if (result.isPresent()) {
+            hits.increment();
+            logger.debug("OCR cache hit for content {}", contentHash);
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Remember a successful result. Failures are not cached so they get retried.
+     * Best-effort: a concurrent store of the same content is harmless and ignored.
+     */
+    public void store(String contentHash, OcrResult result) {
+        if (!enabled || contentHash == null || result == null || !result.success()) {
+            return;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(result);
+            Instant expiresAt = Instant.now().plus(Duration.ofDays(ttlDays));
+            cacheRepository.save(new OcrResultCacheEntry(contentHash, ocrService.getServiceVersion(), json, expiresAt));
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Failed to cache OCR result for content {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    /**
+     * Drop expired entries and any produced by a model version other than the current one
+     */
+    @Scheduled(fixedDelayString = "${app.ocr.cache.purge-interval-ms:21600000}",
+               initialDelayString = "${app.ocr.cache.purge-initial-delay-ms:300000}")
+    @Transactional
+    public void purge() {
+        int expired = cacheRepository.deleteExpired(Instant.now());
+        int outdated = 0;
+        String currentVersion = ocrService.getServiceVersion();
+        if (currentVersion != null) {
+            outdated = cacheRepository.deleteOtherModelVersions(currentVersion);
+        }
+        if (expired + outdated > 0) {
+            logger.info("Purged OCR result cache: {} expired, {} from other model versions", expired, outdated);
+        }
+    }
+
+    // Helper methods
+
+    private boolean isUsable(OcrResultCacheEntry entry) {
+        if (entry.isExpired(Instant.now())) {
+            return false;
+        }
+        // Until the first health check reports a version there is nothing to compare against
+        String currentVersion = ocrService.getServiceVersion();
+        return currentVersion == null || Objects.equals(currentVersion, entry.getModelVersion());
+    }
+
+    private Optional<OcrResult> deserialize(OcrResultCacheEntry entry) {
+        try {
+            return Optional.of(resultReader.readValue(entry.getResultJson()));
+        } catch (JsonProcessingException e) {
+            logger.warn("Unreadable OCR cache entry for content {}: {}", entry.getContentHash(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -2,21 +2,35 @@ package com.thisisme.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Client for the OCR microservice.
  * Processes document images and returns structured form data.
+ * Calls are capped by a bulkhead and short-circuited while the service is unhealthy.
  */
 @Service
 public class OcrService {
@@ -25,6 +39,7 @@ public class OcrService {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     @Value("${app.ocr.service-url:http://localhost:8081}")
     private String ocrServiceUrl;
@@ -32,9 +47,60 @@ public class OcrService {
     @Value("${app.ocr.enabled:true}")
     private boolean ocrEnabled;
 
-    public OcrService(ObjectMapper objectMapper) {
-        this.restTemplate = new RestTemplate();
+    @Value("${app.ocr.client.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${app.ocr.client.bulkhead-wait-ms:10000}")
+    private long bulkheadWaitMs;
+
+    @Value("${app.ocr.client.breaker.failure-threshold:3}")
+    private int breakerFailureThreshold;
+
+    @Value("${app.ocr.client.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    private Semaphore bulkhead;
+    private OcrCircuitBreaker circuitBreaker;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile String serviceVersion;
+
+    private Counter bulkheadRejections;
+    private Counter shortCircuits;
+
+    public OcrService(ObjectMapper objectMapper,
+                      @Qualifier("ocrRestTemplate") RestTemplate restTemplate,
+                      MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(maxConcurrent, true);
+        circuitBreaker = new OcrCircuitBreaker(
+            breakerFailureThreshold, Duration.ofMillis(breakerOpenMs), Clock.systemUTC());
+
+        bulkheadRejections = Counter.builder("ocr.client.rejected")
+            .tag("reason", "bulkhead")
+            .description("OCR calls refused because all permits were busy")
+            .register(meterRegistry);
+        shortCircuits = Counter.builder("ocr.client.rejected")
+            .tag("reason", "circuit_open")
+            .description("OCR calls skipped while the circuit breaker was open")
+            .register(meterRegistry);
+        Gauge.builder("ocr.client.in_flight", inFlight, AtomicInteger::get)
+            .description("OCR calls currently in progress").register(meterRegistry);
+        Gauge.builder("ocr.client.waiting", waiting, AtomicInteger::get)
+            .description("Callers queued on the OCR bulkhead").register(meterRegistry);
+        Gauge.builder("ocr.client.circuit.open", this,
+                service -> service.getCircuitState() == OcrCircuitBreaker.State.CLOSED ? 0 : 1)
+            .description("1 while the OCR circuit breaker is open or half-open").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return ocrEnabled;
     }
 
     /**
@@ -44,14 +110,48 @@ public class OcrService {
         if (!ocrEnabled) {
             return false;
         }
+        return circuitBreaker.allowRequest();
+    }
+
+    /**
+     * Version reported by the OCR service's last successful health check, if any
+     */
+    public String getServiceVersion() {
+        return serviceVersion;
+    }
+
+    public OcrCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Probe /health so the breaker opens as soon as the container goes unhealthy
+     * and closes again when it recovers, without waiting on real traffic.
+     */
+    @Scheduled(fixedDelayString = "${app.ocr.client.health-interval-ms:15000}")
+    public void checkHealth() {
+        if (!ocrEnabled) {
+            return;
+        }
         try {
             ResponseEntity<String> response = restTemplate.getForEntity(
                 ocrServiceUrl + "/health", String.class);
-            return response.getStatusCode() == HttpStatus.OK;
+            JsonNode body = response.getBody() != null ? objectMapper.readTree(response.getBody()) : null;
+
+            if (response.getStatusCode() == HttpStatus.OK && body != null
+                    && "healthy".equals(body.path("status").asText())) {
+                serviceVersion = body.path("version").asText(null);
+                if (circuitBreaker.getState() != OcrCircuitBreaker.State.CLOSED) {
+                    logger.info("OCR service healthy again (version {}), closing circuit", serviceVersion);
+                }
+                circuitBreaker.recordSuccess();
+                return;
+            }
+            logger.warn("OCR service reported unhealthy: {}", response.getBody());
         } catch (Exception e) {
-            logger.warn("OCR service not available: {}", e.getMessage());
-            return false;
+            logger.warn("OCR health check failed: {}", e.getMessage());
         }
+        circuitBreaker.recordUnhealthy();
     }
 
     /**
@@ -60,53 +160,172 @@ public class OcrService {
      * @param imageBytes The image content
      * @param fileName The original file name
      * @param mimeType The MIME type
-     * @return OCR result with metadata and form data, or null if processing failed
+     * @return OCR result with metadata and form data, or null if the service could not be reached
+     *         (disabled, circuit open, bulkhead full, timeout or server error)
      */
     public OcrResult processImage(byte[] imageBytes, String fileName, String mimeType) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", namedResource(imageBytes, fileName));
+
+        ServiceResponse response = post("/ocr", body, fileName);
+        if (response == null) {
+            return null;
+        }
+        if (response.rejectedStatus() != null) {
+            return new OcrResult(false, null, null, null, null,
+                "OCR service rejected file (" + response.rejectedStatus() + ")");
+        }
+        return parseOcrResponse(response.body());
+    }
+
+    /**
+     * Process several images in one round trip via /ocr/batch.
+     * Holds a single bulkhead permit for the whole batch.
+     *
+     * @return one result per image, in order, or null if the service could not be reached
+     */
+    public List<OcrResult> processBatch(List<BatchImage> images) {
+        if (images.isEmpty()) {
+            return List.of();
+        }
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        for (BatchImage image : images) {
+            body.add("files", namedResource(image.content(), image.fileName()));
+        }
+
+        String description = images.size() + " images from " + images.get(0).fileName();
+        ServiceResponse response = post("/ocr/batch", body, description);
+        if (response == null) {
+            return null;
+        }
+
+        List<OcrResult> results = new ArrayList<>();
+        if (response.rejectedStatus() != null) {
+            for (int i = 0; i < images.size(); i++) {
+                results.add(new OcrResult(false, null, null, null, null,
+                    "OCR service rejected file (" + response.rejectedStatus() + ")"));
+            }
+            return results;
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(response.body());
+            for (int i = 0; i < images.size(); i++) {
+                JsonNode item = root.path(i);
+                results.add(item.isMissingNode()
+                    ? new OcrResult(false, null, null, null, null, "Missing batch result")
+                    : parseOcrResponse(item));
+            }
+            return results;
+        } catch (Exception e) {
+            logger.error("Failed to parse OCR batch response: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * POST a multipart body through the circuit breaker and bulkhead.
+     * Returns null when the service couldn't be reached; 4xx responses come back as rejected.
+     */
+    private ServiceResponse post(String path, MultiValueMap<String, Object> body, String description) {
         if (!ocrEnabled) {
             logger.debug("OCR is disabled");
             return null;
         }
 
+        if (!circuitBreaker.allowRequest()) {
+            shortCircuits.increment();
+            logger.debug("OCR circuit open, skipping {}", description);
+            return null;
+        }
+
+        if (!acquirePermit()) {
+            bulkheadRejections.increment();
+            logger.warn("OCR bulkhead full, skipping {}", description);
+            return null;
+        }
+
+        inFlight.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-            // Create multipart request
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new ByteArrayResource(imageBytes) {
-                @Override
-                public String getFilename() {
-                    return fileName;
-                }
-            });
-
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
             ResponseEntity<String> response = restTemplate.exchange(
-                ocrServiceUrl + "/ocr",
+                ocrServiceUrl + path,
                 HttpMethod.POST,
                 requestEntity,
                 String.class
             );
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return parseOcrResponse(response.getBody());
+                circuitBreaker.recordSuccess();
+                outcome = "success";
+                return new ServiceResponse(response.getBody(), null);
             }
 
             logger.warn("OCR service returned status: {}", response.getStatusCode());
+            circuitBreaker.recordFailure();
             return null;
 
+        } catch (HttpClientErrorException e) {
+            // The service is up but refused this file; that says nothing about its health
+            circuitBreaker.recordSuccess();
+            outcome = "rejected";
+            logger.warn("OCR service rejected {}: {}", description, e.getStatusCode());
+            return new ServiceResponse(null, e.getStatusCode().value());
+
         } catch (Exception e) {
-            logger.error("OCR processing failed for {}: {}", fileName, e.getMessage());
+            circuitBreaker.recordFailure();
+            logger.error("OCR processing failed for {}: {}", description, e.getMessage());
             return null;
+
+        } finally {
+            sample.stop(Timer.builder("ocr.client.requests")
+                .tag("outcome", outcome)
+                .description("OCR service call latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+            inFlight.decrementAndGet();
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquirePermit() {
+        waiting.incrementAndGet();
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
         }
     }
 
+    private static ByteArrayResource namedResource(byte[] content, String fileName) {
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+    }
+
     private OcrResult parseOcrResponse(String responseBody) {
         try {
-            JsonNode root = objectMapper.readTree(responseBody);
+            return parseOcrResponse(objectMapper.readTree(responseBody));
+        } catch (Exception e) {
+            logger.error("Failed to parse OCR response: {}", e.getMessage());
+            return new OcrResult(false, null, null, null, null, "Failed to parse OCR response");
+        }
+    }
 
+    private OcrResult parseOcrResponse(JsonNode root) {
+        try {
             if (!root.path("success").asBoolean(false)) {
                 String error = root.path("data").path("error").asText("Unknown error");
                 return new OcrResult(false, null, null, null, null, error);
@@ -159,6 +378,16 @@ public class OcrService {
         }
     }
 
+    /**
+     * Raw response body, or the 4xx status if the service refused the request
+     */
+    private record ServiceResponse(String body, Integer rejectedStatus) {}
+
+    /**
+     * One image in a batch request
+     */
+    public record BatchImage(String fileName, byte[] content) {}
+
     /**
      * Result from OCR processing.
      */
@@ -0,0 +1,132 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.PassportKey;
+import com.thisisme.repository.PassportKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Per-passport key-encryption keys for stored documents. Shredding a passport's key
+ * makes all its encrypted blobs unreadable in one row update, however many there are.
+ *
+ * Unwrapped keys are cached briefly. Shredding evicts the local cache; other nodes
+ * may keep decrypting for up to the cache TTL.
+ */
+@Service
+public class PassportKeyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PassportKeyService.class);
+
+    private final PassportKeyRepository passportKeyRepository;
+    private final StorageKeyRing keyRing;
+
+    // Passport id -> unwrapped key, in access order. Guarded by "this".
+    private final Map<UUID, CachedKey> cache;
+
+    @Value("${app.storage.encryption.passport-key-cache-seconds:300}")
+    private long cacheSeconds;
+
+    public PassportKeyService(PassportKeyRepository passportKeyRepository, StorageKeyRing keyRing,
+                              @Value("${app.storage.encryption.passport-key-cache-size:10000}") int cacheSize) {
+        this.passportKeyRepository = passportKeyRepository;
+        this.keyRing = keyRing;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    private record CachedKey(SecretKey key, Instant loadedAt) {}
+
+    /**
+     * Key for encrypting new blobs under a passport, created on first use
+     *
+     * @throws IllegalStateException if the passport's key has been shredded
+     */
+    public SecretKey getOrCreateKey(UUID passportId) {
+        Optional<SecretKey> existing = findKey(passportId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        SecretKey key = keyRing.generateDataKey();
+        String kekId = keyRing.getCurrentKeyId();
+        if (passportKeyRepository.insertIfAbsent(passportId, kekId, keyRing.wrap(key), Instant.now()) == 1) {
+            logger.info("Created encryption key for passport {}", passportId);
+            cache(passportId, key);
+            return key;
+        }
+
+        // Lost a race with another upload, or the passport has been erased
+        return findKey(passportId).orElseThrow(() ->
+            new IllegalStateException("Encryption key for passport " + passportId + " has been destroyed"));
+    }
+
+    /**
+     * @return empty if the passport never had a key or it has been shredded
+     */
+    @Transactional(readOnly = true)
+    public Optional<SecretKey> findKey(UUID passportId) {
+        synchronized (this) {
+            CachedKey cached = cache.get(passportId);
+            if (cached != null && cached.loadedAt().plus(Duration.ofSeconds(cacheSeconds)).isAfter(Instant.now())) {
+                return Optional.of(cached.key());
+            }
+        }
+
+        Optional<PassportKey> row = passportKeyRepository.findById(passportId);
+        if (row.isEmpty() || row.get().isShredded()) {
+            return Optional.empty();
+        }
+        try {
+            SecretKey key = keyRing.unwrap(row.get().getKekId(), row.get().getWrappedKey());
+            cache(passportId, key);
+            return Optional.of(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to unwrap encryption key for passport " + passportId, e);
+        }
+    }
+
+    /**
+     * Destroy the passport's key. Irreversible once committed.
+     */
+    @Transactional
+    public void shred(UUID passportId, Instant now) {
+        passportKeyRepository.shred(passportId, now);
+        evict(passportId);
+        // Evict again after commit, in case a concurrent read re-cached the old key meanwhile
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(passportId);
+                }
+            });
+        }
+        logger.info("Shredded encryption key for passport {}", passportId);
+    }
+
+    private synchronized void cache(UUID passportId, SecretKey key) {
+        cache.put(passportId, new CachedKey(key, Instant.now()));
+    }
+
+    private synchronized void evict(UUID passportId) {
+        cache.remove(passportId);
+    }
+}
@@ -0,0 +1,249 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.SearchDTO.ChildHits;
+import com.thisisme.model.dto.SearchDTO.CrossPassportSearchResponse;
+import com.thisisme.model.dto.SearchDTO.HitType;
+import com.thisisme.model.dto.SearchDTO.SearchHit;
+import com.thisisme.model.dto.SearchDTO.SearchResponse;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ranked search over timeline entries and documents, on their tsvector columns, on one
+ * passport or on every passport the caller can view. The caller's permission rows are
+ * joined into the query: entries need timeline access and must be visible to the caller's
+ * role on that passport, documents need document access. Passports without access, and
+ * passports that are deactivated or awaiting deletion, simply yield no hits.
+ */
+@Service
+public class PassportSearchService {
+
+    static final int MAX_LIMIT = 100;
+
+    // ts_headline copies the source text as is, and that includes email bodies and OCR
+    // text. Matches are marked with control characters instead of tags, so the snippet can
+    // be HTML-escaped before the markers become <b> tags.
+    private static final String START_SEL = "\u0002";
+    private static final String STOP_SEL = "\u0003";
+    private static final String HEADLINE_OPTIONS =
+        "MaxFragments=1, MaxWords=25, MinWords=8, StartSel=" + START_SEL + ", StopSel=" + STOP_SEL;
+
+    /**
+     * Hits on one passport, best first
+     */
+    static final String SEARCH_PASSPORT = searchSql("pp.passport_id = :passportId AND ", false);
+
+    /**
+     * Hits on every passport the caller can view, best first, and the same after a cursor
+     */
+    static final String SEARCH_ALL = searchSql("", false);
+    static final String SEARCH_ALL_AFTER = searchSql("", true);
+
+    /**
+     * Each kind is ranked and cut to the limit on its own index, then the two are merged;
+     * snippets are only built for the hits returned. With a keyset, only hits ranked after
+     * (:afterRank, :afterId) are considered.
+     */
+    private static String searchSql(String passportScope, boolean keyset) {
+        String entryRank = "ts_rank(t.content_search_vector, q.query)";
+        String documentRank = "ts_rank(d.search_vector, q.query)";
+        return "WITH q AS (SELECT to_tsquery('english', :query) AS query), " +
+            "v AS (SELECT pp.passport_id, pp.role, pp.can_view_timeline, pp.can_view_documents " +
+            "      FROM passport_permissions pp JOIN passports p ON p.id = pp.passport_id " +
+            "      WHERE " + passportScope + "pp.user_id = :userId AND pp.revoked_at IS NULL " +
+            "      AND p.active AND p.deleted_at IS NULL), " +
+            "hits AS (" +
+            " (SELECT 'TIMELINE_ENTRY' AS type, t.id, " + entryRank + " AS rank " +
+            "  FROM v JOIN timeline_entries t ON t.passport_id = v.passport_id CROSS JOIN q " +
+            "  WHERE v.can_view_timeline AND t.deleted_at IS NULL AND t.content_search_vector @@ q.query " +
+            "  AND " + TimelineEntryRepository.VISIBLE_TO_ROLE + (keyset ? after(entryRank, "t.id") : "") +
+            "  ORDER BY rank DESC, t.id LIMIT :limit) " +
+            " UNION ALL " +
+            " (SELECT 'DOCUMENT' AS type, d.id, " + documentRank + " AS rank " +
+            "  FROM v JOIN documents d ON d.passport_id = v.passport_id CROSS JOIN q " +
+            "  WHERE v.can_view_documents AND d.deleted_at IS NULL AND d.search_vector @@ q.query " +
+            (keyset ? after(documentRank, "d.id") : "") +
+            "  ORDER BY rank DESC, d.id LIMIT :limit) " +
+            " ORDER BY rank DESC, id LIMIT :limit) " +
+            "SELECT h.type, h.id, h.rank, p.id AS passport_id, p.child_first_name, " +
+            "  COALESCE(t.title, d.original_file_name) AS title, COALESCE(t.entry_type, d.mime_type) AS detail, " +
+            "  COALESCE(t.entry_date, CAST(d.uploaded_at AS DATE)) AS hit_date, " +
+            "  ts_headline('english', COALESCE(t.content, d.ocr_text, ''), q.query, :headline) AS snippet " +
+            "FROM hits h CROSS JOIN q " +
+            "LEFT JOIN timeline_entries t ON h.type = 'TIMELINE_ENTRY' AND t.id = h.id " +
+            "LEFT JOIN documents d ON h.type = 'DOCUMENT' AND d.id = h.id " +
+            "JOIN passports p ON p.id = COALESCE(t.passport_id, d.passport_id) " +
+            "ORDER BY h.rank DESC, h.id";
+    }
+
+    private static String after(String rank, String id) {
+        return " AND (" + rank + " < CAST(:afterRank AS REAL) " +
+            "OR (" + rank + " = CAST(:afterRank AS REAL) AND " + id + " > :afterId)) ";
+    }
+
+    static final RowMapper<SearchHit> HIT_MAPPER = (rs, row) -> new SearchHit(
+        HitType.valueOf(rs.getString("type")),
+        rs.getObject("id", UUID.class),
+        rs.getObject("passport_id", UUID.class),
+        rs.getString("title"),
+        rs.getString("detail"),
+        rs.getObject("hit_date", LocalDate.class),
+        snippetHtml(rs.getString("snippet")),
+        rs.getDouble("rank"));
+
+    /**
+     * The headline, HTML-escaped, with the matched words in <b> tags
+     */
+    static String snippetHtml(String headline) {
+        if (headline == null) {
+            return null;
+        }
+        return headline
+            .replace("&", "&amp;")
+            .replace("<", "&lt;")
+            .replace(">", "&gt;")
+            .replace("\"", "&quot;")
+            .replace("'", "&#39;")
+            .replace(START_SEL, "<b>")
+            .replace(STOP_SEL, "</b>");
+    }
+
+    // Rank and id of the last hit of the previous page. Ranks are float4 in the database,
+    // so they round-trip exactly.
+    record SearchCursor(float rank, UUID id) {}
+
+    // A hit with the first name of the child it belongs to
+    record ChildHit(String childFirstName, SearchHit hit) {}
+
+    private static final RowMapper<ChildHit> CHILD_HIT_MAPPER = (rs, row) ->
+        new ChildHit(rs.getString("child_first_name"), HIT_MAPPER.mapRow(rs, row));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final PermissionEvaluator permissionEvaluator;
+    private final AuditService auditService;
+
+    public PassportSearchService(NamedParameterJdbcTemplate jdbcTemplate, UserRepository userRepository,
+                                 PermissionEvaluator permissionEvaluator, AuditService auditService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.permissionEvaluator = permissionEvaluator;
+        this.auditService = auditService;
+    }
+
+    /**
+     * Best hits first, at most limit of them. The query itself applies the finer timeline
+     * and document rules.
+     *
+     * @throws SecurityException if the user can't view the passport
+     */
+    @Transactional(readOnly = true)
+    public SearchResponse search(UUID passportId, UUID userId, String text, int limit, String ipAddress) {
+        String tsQuery = PostgresTimelineSearchEngine.buildPrefixTsQuery(text);
+        if (tsQuery == null) {
+            throw new IllegalArgumentException("Search text is required");
+        }
+        if (!permissionEvaluator.canView(passportId, userId)) {
+            throw new SecurityException("You don't have permission to search this passport");
+        }
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        List<SearchHit> hits = jdbcTemplate.query(SEARCH_PASSPORT, new MapSqlParameterSource()
+            .addValue("query", tsQuery)
+            .addValue("passportId", passportId)
+            .addValue("userId", userId)
+            .addValue("limit", Math.max(1, Math.min(limit, MAX_LIMIT)))
+            .addValue("headline", HEADLINE_OPTIONS), HIT_MAPPER);
+
+        auditService.log(AuditAction.PASSPORT_SEARCHED, userId, user.getName(), ipAddress)
+            .withPassport(passportId)
+            .withDescription("Searched timeline and documents: " + hits.size() + " hits")
+            .withDataCategories("BEHAVIORAL", "ACTIVITIES", "DOCUMENTS")
+            .save();
+
+        return new SearchResponse(hits);
+    }
+
+    /**
+     * One page of hits across every passport the caller can view: the best limit hits
+     * overall, or the best after the cursor of the previous page
+     */
+    @Transactional(readOnly = true)
+    public CrossPassportSearchResponse searchAll(UUID userId, String text, int limit, String cursor,
+                                                String ipAddress) {
+        String tsQuery = PostgresTimelineSearchEngine.buildPrefixTsQuery(text);
+        if (tsQuery == null) {
+            throw new IllegalArgumentException("Search text is required");
+        }
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("query", tsQuery)
+            .addValue("userId", userId)
+            // One extra hit tells whether there is a next page
+            .addValue("limit", pageSize + 1)
+            .addValue("headline", HEADLINE_OPTIONS);
+        String sql = SEARCH_ALL;
+        if (cursor != null && !cursor.isBlank()) {
+            SearchCursor after = decodeCursor(cursor);
+            params.addValue("afterRank", after.rank()).addValue("afterId", after.id());
+            sql = SEARCH_ALL_AFTER;
+        }
+        List<ChildHit> hits = jdbcTemplate.query(sql, params, CHILD_HIT_MAPPER);
+
+        boolean hasNext = hits.size() > pageSize;
+        List<ChildHit> page = hasNext ? hits.subList(0, pageSize) : hits;
+        Map<UUID, ChildHits> children = new LinkedHashMap<>();
+        for (ChildHit hit : page) {
+            children.computeIfAbsent(hit.hit().passportId(),
+                id -> new ChildHits(id, hit.childFirstName(), new ArrayList<>())).hits().add(hit.hit());
+        }
+
+        auditService.log(AuditAction.PASSPORT_SEARCHED, userId, user.getName(), ipAddress)
+            .withDescription("Searched all passports: " + page.size() + " hits across "
+                + children.size() + " children")
+            .withDataCategories("BEHAVIORAL", "ACTIVITIES", "DOCUMENTS")
+            .save();
+
+        return new CrossPassportSearchResponse(List.copyOf(children.values()),
+            hasNext ? encodeCursor(page.get(page.size() - 1).hit()) : null, hasNext);
+    }
+
+    static String encodeCursor(SearchHit last) {
+        String raw = Float.toString((float) last.rank()) + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new SearchCursor(Float.parseFloat(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.thisisme.model.dto.SnapshotDTO.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+
+/**
+ * Versioned binary snapshot of a whole passport aggregate, for backups and moving a
+ * passport between environments.
+ *
+ * A snapshot is one CBOR map: the format name and version, the passport itself, then one
+ * array per {@link Section} in declaration order. Both sides stream: the writer emits
+ * records as they're read from the database and the reader hands them back one at a
+ * time, so neither holds the timeline in memory. Readers skip sections they don't know,
+ * so a version can gain sections without breaking older readers; anything else that
+ * changes the layout bumps VERSION.
+ */
+public final class PassportSnapshotFormat {
+
+    public static final String FORMAT = "thisisme-passport-snapshot";
+    public static final int VERSION = 1;
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    private static final ObjectMapper MAPPER = CBORMapper.builder()
+        .addModule(new JavaTimeModule())
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .build();
+
+    /**
+     * Record arrays, in the order they appear. Later sections refer to earlier ones
+     * (revisions to sections, comments to entries), so an import can insert in one pass.
+     */
+    public enum Section {
+        USERS("users", UserRef.class),
+        PERMISSIONS("permissions", PermissionData.class),
+        SECTIONS("sections", SectionData.class),
+        REVISIONS("revisions", RevisionData.class),
+        ENTRIES("entries", EntryData.class),
+        COMMENTS("comments", CommentData.class),
+        REACTIONS("reactions", ReactionData.class),
+        DOCUMENTS("documents", DocumentRef.class);
+
+        private final String fieldName;
+        private final Class<?> recordType;
+
+        Section(String fieldName, Class<?> recordType) {
+            this.fieldName = fieldName;
+            this.recordType = recordType;
+        }
+
+        public Class<?> getRecordType() {
+            return recordType;
+        }
+
+        static Section byFieldName(String name) {
+            for (Section section : values()) {
+                if (section.fieldName.equals(name)) {
+                    return section;
+                }
+            }
+            return null;
+        }
+    }
+
+    private PassportSnapshotFormat() {}
+
+    /**
+     * Writes a snapshot to a stream, which is left open
+     */
+    public static final class Writer implements Closeable {
+
+        private final JsonGenerator generator;
+        private Section current;
+
+        public Writer(OutputStream out, PassportData passport) throws IOException {
+            this.generator = MAPPER.createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("format", FORMAT);
+            generator.writeNumberField("version", VERSION);
+            generator.writeFieldName("createdAt");
+            generator.writeObject(Instant.now());
+            generator.writeFieldName("passport");
+            generator.writeObject(passport);
+        }
+
+        public void startSection(Section section) throws IOException {
+            if (current != null && section.ordinal() <= current.ordinal()) {
+                throw new IllegalStateException("Snapshot section " + section + " written out of order");
+            }
+            if (current != null) {
+                generator.writeEndArray();
+            }
+            generator.writeArrayFieldStart(section.fieldName);
+            current = section;
+        }
+
+        public void write(Object record) throws IOException {
+            if (current == null || !current.recordType.isInstance(record)) {
+                throw new IllegalStateException("Record does not belong to snapshot section " + current);
+            }
+            generator.writeObject(record);
+        }
+
+        public void finish() throws IOException {
+            if (current != null) {
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * Reads a snapshot from a stream: the passport first, then each section's records in turn
+     */
+    public static final class Reader implements Closeable {
+
+        private final JsonParser parser;
+        private final PassportData passport;
+        private Section current;
+
+        public Reader(InputStream in) throws IOException {
+            this.parser = MAPPER.createParser(in);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Not a passport snapshot");
+            }
+
+            String format = null;
+            Integer version = null;
+            PassportData data = null;
+            while (data == null && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "format" -> format = parser.getValueAsString();
+                    case "version" -> version = parser.getIntValue();
+                    case "passport" -> {
+                        if (!FORMAT.equals(format) || version == null) {
+                            throw new IllegalArgumentException("Not a passport snapshot");
+                        }
+                        if (version != VERSION) {
+                            throw new IllegalArgumentException("Unsupported passport snapshot version: " + version);
+                        }
+                        data = MAPPER.readValue(parser, PassportData.class);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (data == null) {
+                throw new IllegalArgumentException("Not a passport snapshot");
+            }
+            this.passport = data;
+        }
+
+        public PassportData passport() {
+            return passport;
+        }
+
+        /**
+         * Move to the next known section, skipping the rest of the current one and any
+         * unknown ones; null once the snapshot is exhausted
+         */
+        public Section nextSection() throws IOException {
+            if (current != null) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+                current = null;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                Section section = Section.byFieldName(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (section == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Malformed passport snapshot section: " + section);
+                }
+                current = section;
+                return section;
+            }
+            if (token != JsonToken.END_OBJECT) {
+                throw new IllegalArgumentException("Malformed passport snapshot");
+            }
+            return null;
+        }
+
+        /**
+         * Next record of the current section, or null at its end
+         */
+        public <T> T next(Class<T> type) throws IOException {
+            if (current == null || current.recordType != type) {
+                throw new IllegalStateException("Not reading a snapshot section of " + type.getSimpleName());
+            }
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                current = null;
+                return null;
+            }
+            return MAPPER.readValue(parser, type);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
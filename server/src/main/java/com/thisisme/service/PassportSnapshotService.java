@@ -0,0 +1,466 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.SnapshotDTO.*;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.PassportPermission;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.Role;
+import com.thisisme.repository.*;
+import com.thisisme.security.PermissionEvaluator;
+import com.thisisme.service.PassportSnapshotFormat.Section;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Binary snapshots of a whole passport (see {@link PassportSnapshotFormat}), for backups
+ * and moving families between environments.
+ *
+ * Exports stream every table from database cursors. Imports always create a new passport
+ * owned by the importing user: rows get fresh ids derived from the new passport's id,
+ * keep their original timestamps, and are written with batched JDBC inserts rather than
+ * through the persistence context; search vectors are filled in one pass at the end.
+ * A snapshot is untrusted input, so its user ids are never mapped onto local accounts:
+ * all imported content is attributed to the importer, with the original author's name
+ * kept only as text (revision author names, and importedAuthor in entry metadata).
+ * Permissions, reactions and mentions are dropped; collaborators are re-invited through
+ * the normal invitation flow. Document files aren't part of a snapshot, so document
+ * references are counted but not imported.
+ */
+@Service
+public class PassportSnapshotService {
+
+    // Rows per collection lookup (tags, roles, mentions) while exporting
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    /**
+     * passport_permissions capability columns, as listed in a snapshot's grants
+     */
+    private static final Map<String, Predicate<PassportPermission>> GRANTS = new LinkedHashMap<>();
+
+    static {
+        GRANTS.put("can_view_passport", PassportPermission::canViewPassport);
+        GRANTS.put("can_edit_passport", PassportPermission::canEditPassport);
+        GRANTS.put("can_delete_passport", PassportPermission::canDeletePassport);
+        GRANTS.put("can_manage_permissions", PassportPermission::canManagePermissions);
+        GRANTS.put("can_create_share_links", PassportPermission::canCreateShareLinks);
+        GRANTS.put("can_view_sections", PassportPermission::canViewSections);
+        GRANTS.put("can_edit_sections", PassportPermission::canEditSections);
+        GRANTS.put("can_delete_sections", PassportPermission::canDeleteSections);
+        GRANTS.put("can_publish_sections", PassportPermission::canPublishSections);
+        GRANTS.put("can_reorder_sections", PassportPermission::canReorderSections);
+        GRANTS.put("can_view_timeline", PassportPermission::canViewTimeline);
+        GRANTS.put("can_add_timeline_entries", PassportPermission::canAddTimelineEntries);
+        GRANTS.put("can_edit_timeline_entries", PassportPermission::canEditTimelineEntries);
+        GRANTS.put("can_delete_timeline_entries", PassportPermission::canDeleteTimelineEntries);
+        GRANTS.put("can_comment_on_timeline", PassportPermission::canCommentOnTimeline);
+        GRANTS.put("can_react_on_timeline", PassportPermission::canReactOnTimeline);
+        GRANTS.put("can_view_documents", PassportPermission::canViewDocuments);
+        GRANTS.put("can_upload_documents", PassportPermission::canUploadDocuments);
+        GRANTS.put("can_download_documents", PassportPermission::canDownloadDocuments);
+        GRANTS.put("can_delete_documents", PassportPermission::canDeleteDocuments);
+    }
+
+    private static final String INSERT_SECTION =
+        "INSERT INTO passport_sections (id, passport_id, type, content, remedial_suggestion, published, "
+            + "visibility_level, display_order, created_by_id, last_edited_by_id, status, child_mode_contribution, "
+            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_REVISION =
+        "INSERT INTO section_revisions (id, section_id, passport_id, content, remedial_suggestion, change_type, "
+            + "author_id, author_name, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ENTRY =
+        "INSERT INTO timeline_entries (id, passport_id, author_id, entry_type, title, content, entry_date, "
+            + "visibility_level, metadata, status, child_mode_contribution, pinned, flagged, follow_up_due_date, "
+            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ENTRY_TAG =
+        "INSERT INTO timeline_entry_tags (entry_id, tag) VALUES (?, ?)";
+    private static final String INSERT_ENTRY_ROLE =
+        "INSERT INTO timeline_entry_visible_roles (entry_id, role) VALUES (?, ?)";
+    private static final String INSERT_COMMENT =
+        "INSERT INTO timeline_comments (id, entry_id, author_id, content, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final PassportRepository passportRepository;
+    private final PassportPermissionRepository permissionRepository;
+    private final SectionRevisionRepository revisionRepository;
+    private final TimelineEntryRepository timelineRepository;
+    private final TimelineCommentRepository commentRepository;
+    private final TimelineReactionRepository reactionRepository;
+    private final DocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final PermissionEvaluator permissionEvaluator;
+    private final AuditService auditService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TimelineSearchEngine searchEngine;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.snapshot.import.batch-size:500}")
+    private int batchSize;
+
+    public PassportSnapshotService(
+            PassportRepository passportRepository,
+            PassportPermissionRepository permissionRepository,
+            SectionRevisionRepository revisionRepository,
+            TimelineEntryRepository timelineRepository,
+            TimelineCommentRepository commentRepository,
+            TimelineReactionRepository reactionRepository,
+            DocumentRepository documentRepository,
+            UserRepository userRepository,
+            PermissionEvaluator permissionEvaluator,
+            AuditService auditService,
+            JdbcTemplate jdbcTemplate,
+            TimelineSearchEngine searchEngine) {
+        this.passportRepository = passportRepository;
+        this.permissionRepository = permissionRepository;
+        this.revisionRepository = revisionRepository;
+        this.timelineRepository = timelineRepository;
+        this.commentRepository = commentRepository;
+        this.reactionRepository = reactionRepository;
+        this.documentRepository = documentRepository;
+        this.userRepository = userRepository;
+        this.permissionEvaluator = permissionEvaluator;
+        this.auditService = auditService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchEngine = searchEngine;
+    }
+
+    /**
+     * Snapshots carry collaborators and full history, so only the owner can take one
+     */
+    @Transactional(readOnly = true)
+    public void checkAccess(UUID passportId, UUID userId) {
+        if (!permissionEvaluator.isOwner(passportId, userId)) {
+            throw new SecurityException("Only the passport owner can export a snapshot");
+        }
+        if (passportRepository.findActiveById(passportId).isEmpty()) {
+            throw new ResourceNotFoundException("Passport not found");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportSnapshot(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException {
+        if (!permissionEvaluator.isOwner(passportId, userId)) {
+            throw new SecurityException("Only the passport owner can export a snapshot");
+        }
+        Passport passport = passportRepository.findActiveById(passportId)
+            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
+
+        PassportData data = new PassportData(passport.getId(), passport.getChildFirstName(),
+            passport.getChildDateOfBirth(), passport.isChildViewShowHates(), passport.isWizardComplete(),
+            passport.getCreatedBy().getId(), passport.getCreatedAt());
+
+        try (PassportSnapshotFormat.Writer writer = new PassportSnapshotFormat.Writer(out, data)) {
+            writer.startSection(Section.USERS);
+            for (UserRef user : userRepository.findSnapshotUsers(passportId)) {
+                writer.write(user);
+            }
+
+            writer.startSection(Section.PERMISSIONS);
+            for (PassportPermission permission : permissionRepository.findActiveByPassportId(passportId)) {
+                writer.write(toPermissionData(permission));
+            }
+
+            writer.startSection(Section.SECTIONS);
+            for (SectionData section : passportRepository.findSectionsForSnapshot(passportId)) {
+                writer.write(section);
+            }
+
+            writer.startSection(Section.REVISIONS);
+            try (Stream<RevisionData> rows = revisionRepository.streamForSnapshot(passportId)) {
+                writeAll(writer, rows, Function.identity());
+            }
+
+            writer.startSection(Section.ENTRIES);
+            try (Stream<EntryData> rows = timelineRepository.streamForSnapshot(passportId)) {
+                writeAll(writer, rows, this::withEntryCollections);
+            }
+
+            writer.startSection(Section.COMMENTS);
+            try (Stream<CommentData> rows = commentRepository.streamForSnapshot(passportId)) {
+                writeAll(writer, rows, this::withCommentMentions);
+            }
+
+            writer.startSection(Section.REACTIONS);
+            try (Stream<ReactionData> rows = reactionRepository.streamForSnapshot(passportId)) {
+                writeAll(writer, rows, Function.identity());
+            }
+
+            writer.startSection(Section.DOCUMENTS);
+            try (Stream<DocumentRef> rows = documentRepository.streamForSnapshot(passportId)) {
+                writeAll(writer, rows, Function.identity());
+            }
+
+            writer.finish();
+        }
+
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        auditService.log(AuditAction.DATA_EXPORT_COMPLETED, userId, user.getName(), ipAddress)
+            .withPassport(passportId)
+            .withDescription("Exported passport snapshot")
+            .save();
+    }
+
+    /**
+     * Load a snapshot as a new passport owned by the user. Runs in one transaction, so a
+     * snapshot that fails part way leaves nothing behind.
+     */
+    @Transactional
+    public ImportResult importSnapshot(InputStream in, UUID userId, String ipAddress) throws IOException {
+        User importer = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        try (PassportSnapshotFormat.Reader reader = new PassportSnapshotFormat.Reader(in)) {
+            PassportData source = reader.passport();
+            Passport passport = new Passport(source.childFirstName(), importer);
+            passport.setChildDateOfBirth(source.childDateOfBirth());
+            passport.setChildViewShowHates(source.childViewShowHates());
+            passport.setWizardComplete(source.wizardComplete());
+            passport = passportRepository.saveAndFlush(passport);
+            permissionRepository.saveAndFlush(new PassportPermission(passport, importer, Role.OWNER, importer));
+
+            timelineRepository.deferSearchVectors();
+            SnapshotImport snapshotImport = new SnapshotImport(passport.getId(), userId);
+            for (Section section; (section = reader.nextSection()) != null; ) {
+                snapshotImport.load(reader, section);
+            }
+            timelineRepository.refreshMissingSearchVectors(passport.getId());
+            searchEngine.passportChanged(passport.getId());
+            ImportResult result = snapshotImport.result();
+
+            auditService.log(AuditAction.PASSPORT_IMPORTED, userId, importer.getName(), ipAddress)
+                .withPassport(passport.getId())
+                .withEntity("Passport", passport.getId())
+                .withDescription("Imported passport snapshot of " + source.id() + " with "
+                    + result.entries() + " timeline entries")
+                .withDataCategories("CHILD_PROFILE")
+                .save();
+            return result;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed passport snapshot", e);
+        }
+    }
+
+    private PermissionData toPermissionData(PassportPermission permission) {
+        Set<String> grants = GRANTS.entrySet().stream()
+            .filter(grant -> grant.getValue().test(permission))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(TreeSet::new));
+        return new PermissionData(permission.getUser().getId(), permission.getRole(), grants,
+            permission.getGrantedBy().getId(), permission.getGrantedAt(), permission.getNotes());
+    }
+
+    /**
+     * Write rows from a cursor, a batch at a time so per-row collections can be looked up
+     * in one query per batch
+     */
+    private <T> void writeAll(PassportSnapshotFormat.Writer writer, Stream<T> rows,
+                              Function<List<T>, List<T>> enrich) throws IOException {
+        Iterator<T> it = rows.iterator();
+        List<T> batch = new ArrayList<>(LOOKUP_BATCH_SIZE);
+        while (it.hasNext()) {
+            batch.add(it.next());
+            if (batch.size() == LOOKUP_BATCH_SIZE || !it.hasNext()) {
+                for (T row : enrich.apply(batch)) {
+                    writer.write(row);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private List<EntryData> withEntryCollections(List<EntryData> entries) {
+        List<UUID> ids = entries.stream().map(EntryData::id).toList();
+        Map<UUID, Set<String>> tags = group(timelineRepository.findTagsByEntryIds(ids));
+        Map<UUID, Set<Role>> roles = group(timelineRepository.findVisibleRolesByEntryIds(ids));
+        Map<UUID, Set<UUID>> mentions = group(timelineRepository.findMentionsByEntryIds(ids));
+        return entries.stream()
+            .map(e -> e.withCollections(tags.getOrDefault(e.id(), Set.of()), roles.getOrDefault(e.id(), Set.of()),
+                mentions.getOrDefault(e.id(), Set.of())))
+            .toList();
+    }
+
+    private List<CommentData> withCommentMentions(List<CommentData> comments) {
+        Map<UUID, Set<UUID>> mentions = group(
+            commentRepository.findMentionsByCommentIds(comments.stream().map(CommentData::id).toList()));
+        return comments.stream()
+            .map(c -> c.withMentions(mentions.getOrDefault(c.id(), Set.of())))
+            .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Map<UUID, Set<V>> group(List<Object[]> pairs) {
+        Map<UUID, Set<V>> grouped = new HashMap<>();
+        for (Object[] pair : pairs) {
+            grouped.computeIfAbsent((UUID) pair[0], k -> new HashSet<>()).add((V) pair[1]);
+        }
+        return grouped;
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+
+    /**
+     * State of one import: the snapshot's author names, the id salt and the pending insert batches
+     */
+    private final class SnapshotImport {
+
+        private final UUID passportId;
+        private final UUID importerId;
+        private final byte[] salt;
+        private final Map<UUID, String> authorNames = new HashMap<>();
+
+        private int sections;
+        private int revisions;
+        private int entries;
+        private int comments;
+        private int documentsSkipped;
+
+        SnapshotImport(UUID passportId, UUID importerId) {
+            this.passportId = passportId;
+            this.importerId = importerId;
+            this.salt = ByteBuffer.allocate(16)
+                .putLong(passportId.getMostSignificantBits())
+                .putLong(passportId.getLeastSignificantBits())
+                .array();
+        }
+
+        void load(PassportSnapshotFormat.Reader reader, Section section) throws IOException {
+            switch (section) {
+                case USERS -> {
+                    for (UserRef user; (user = reader.next(UserRef.class)) != null; ) {
+                        if (user.name() != null) {
+                            authorNames.put(user.id(), user.name());
+                        }
+                    }
+                }
+                case PERMISSIONS -> {
+                    while (reader.next(PermissionData.class) != null) {
+                        // Collaborators are re-invited, never granted from a snapshot
+                    }
+                }
+                case SECTIONS -> {
+                    JdbcInsertBatch batch = batch(INSERT_SECTION);
+                    for (SectionData s; (s = reader.next(SectionData.class)) != null; ) {
+                        batch.add(remap(s.id()), passportId, s.type().name(), s.content(), s.remedialSuggestion(),
+                            s.published(), s.visibilityLevel().name(), s.displayOrder(), importerId,
+                            s.lastEditedBy() != null ? importerId : null, s.status().name(),
+                            s.childModeContribution(), timestamp(s.createdAt()), timestamp(s.updatedAt()));
+                        sections++;
+                    }
+                    batch.flush();
+                }
+                case REVISIONS -> {
+                    JdbcInsertBatch batch = batch(INSERT_REVISION);
+                    for (RevisionData r; (r = reader.next(RevisionData.class)) != null; ) {
+                        batch.add(remap(r.id()), remap(r.sectionId()), passportId, r.content(), r.remedialSuggestion(),
+                            r.changeType().name(), importerId,
+                            r.authorName() != null ? r.authorName() : authorNames.get(r.authorId()),
+                            timestamp(r.createdAt()));
+                        revisions++;
+                    }
+                    batch.flush();
+                }
+                case ENTRIES -> {
+                    JdbcInsertBatch batch = batch(INSERT_ENTRY);
+                    JdbcInsertBatch tags = batch.child(INSERT_ENTRY_TAG);
+                    JdbcInsertBatch roles = batch.child(INSERT_ENTRY_ROLE);
+                    for (EntryData e; (e = reader.next(EntryData.class)) != null; ) {
+                        UUID id = remap(e.id());
+                        batch.add(id, passportId, importerId, e.entryType().name(), e.title(), e.content(),
+                            e.entryDate(), e.visibilityLevel().name(), json(withImportedAuthor(e)), e.status().name(),
+                            e.childModeContribution(), e.pinned(), e.flaggedForFollowup(), e.followupDueDate(),
+                            timestamp(e.createdAt()), timestamp(e.updatedAt()));
+                        for (String tag : nullToEmpty(e.tags())) {
+                            tags.add(id, tag);
+                        }
+                        for (Role role : nullToEmpty(e.visibleToRoles())) {
+                            roles.add(id, role.name());
+                        }
+                        entries++;
+                    }
+                    batch.flush();
+                }
+                case COMMENTS -> {
+                    JdbcInsertBatch batch = batch(INSERT_COMMENT);
+                    for (CommentData c; (c = reader.next(CommentData.class)) != null; ) {
+                        batch.add(remap(c.id()), remap(c.entryId()), importerId, c.content(),
+                            timestamp(c.createdAt()), timestamp(c.updatedAt()));
+                        comments++;
+                    }
+                    batch.flush();
+                }
+                case REACTIONS -> {
+                    while (reader.next(ReactionData.class) != null) {
+                        // Reactions belong to their users, who aren't carried over
+                    }
+                }
+                case DOCUMENTS -> {
+                    while (reader.next(DocumentRef.class) != null) {
+                        documentsSkipped++;
+                    }
+                }
+            }
+        }
+
+        private JdbcInsertBatch batch(String sql) {
+            return new JdbcInsertBatch(jdbcTemplate, sql, batchSize);
+        }
+
+        ImportResult result() {
+            return new ImportResult(passportId, sections, revisions, entries, comments, documentsSkipped);
+        }
+
+        /**
+         * Entry metadata with the original author's name, as text only
+         */
+        private Map<String, Object> withImportedAuthor(EntryData entry) {
+            String name = authorNames.get(entry.authorId());
+            if (name == null) {
+                return entry.metadata();
+            }
+            Map<String, Object> metadata = entry.metadata() != null
+                ? new LinkedHashMap<>(entry.metadata()) : new LinkedHashMap<>();
+            metadata.putIfAbsent("importedAuthor", name);
+            return metadata;
+        }
+
+        /**
+         * Stable new id for a snapshot row, so references between rows can be rewritten
+         * without keeping a map of every id seen
+         */
+        private UUID remap(UUID sourceId) {
+            ByteBuffer name = ByteBuffer.allocate(32)
+                .put(salt)
+                .putLong(sourceId.getMostSignificantBits())
+                .putLong(sourceId.getLeastSignificantBits());
+            return UUID.nameUUIDFromBytes(name.array());
+        }
+
+        private String json(Map<String, Object> metadata) throws JsonProcessingException {
+            return metadata == null ? null : objectMapper.writeValueAsString(metadata);
+        }
+
+        private static <T> Collection<T> nullToEmpty(Collection<T> values) {
+            return values != null ? values : List.of();
+        }
+    }
+}
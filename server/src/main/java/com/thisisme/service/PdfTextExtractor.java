@@ -0,0 +1,208 @@
+package com.thisisme.service;
+
+import com.thisisme.service.OcrService.BatchImage;
+import com.thisisme.service.OcrService.OcrResult;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extracts text from PDFs in-process, page by page. Pages with an embedded text layer
+ * are read directly; only image-only (scanned) pages are rasterised and sent to the
+ * OCR service, a batch at a time, so most digital letters never leave the JVM. When the
+ * service is unavailable the text layer is still read, and the scanned pages are left
+ * for later.
+ */
+@Service
+public class PdfTextExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    public static final String PDF_MIME_TYPE = "application/pdf";
+
+    private final OcrService ocrService;
+
+    @Value("${app.ocr.pdf.min-text-chars:20}")
+    private int minTextChars; // Fewer non-whitespace chars than this = scanned page
+
+    @Value("${app.ocr.pdf.render-dpi:200}")
+    private int renderDpi;
+
+    @Value("${app.ocr.pdf.batch-size:4}")
+    private int batchSize;
+
+    @Value("${app.ocr.pdf.max-pages:200}")
+    private int maxPages;
+
+    @Value("${app.ocr.pdf.max-ocr-pages:20}")
+    private int maxOcrPages;
+
+    public PdfTextExtractor(OcrService ocrService) {
+        this.ocrService = ocrService;
+    }
+
+    /**
+     * Text of a PDF. pendingOcrPages counts scanned pages that still need the OCR service
+     * because it was unavailable or couldn't be reached; the result holds every other page.
+     * ocrAttempted tells whether the service was called at all.
+     */
+    public record PdfText(OcrResult result, int pendingOcrPages, boolean ocrAttempted) {
+
+        public boolean isComplete() {
+            return pendingOcrPages == 0;
+        }
+    }
+
+    /**
+     * Extract the text of a PDF.
+     *
+     * @return combined result, unsuccessful if no page gave any text, and how many scanned
+     *         pages are still waiting for OCR
+     * @throws IOException if the PDF can't be parsed (corrupt or password protected)
+     */
+    public PdfText extract(byte[] pdfBytes, String fileName) throws IOException {
+        // Spill parsed streams to temp files rather than the heap for large documents
+        try (PDDocument pdf = Loader.loadPDF(new RandomAccessReadBuffer(pdfBytes), "", null, null,
+                IOUtils.createTempFileOnlyStreamCache())) {
+
+            int pageCount = Math.min(pdf.getNumberOfPages(), maxPages);
+            String[] pageTexts = new String[pageCount];
+            List<Integer> scannedPages = new ArrayList<>();
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            for (int page = 1; page <= pageCount; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(pdf).strip();
+                if (text.replaceAll("\\s", "").length() >= minTextChars) {
+                    pageTexts[page - 1] = text;
+                } else {
+                    scannedPages.add(page - 1);
+                }
+            }
+
+            if (scannedPages.size() > maxOcrPages) {
+                logger.info("PDF {} has {} scanned pages, OCR limited to the first {}",
+                    fileName, scannedPages.size(), maxOcrPages);
+                scannedPages = scannedPages.subList(0, maxOcrPages);
+            }
+
+            List<OcrResult> ocrResults = new ArrayList<>();
+            int pendingOcrPages = 0;
+            boolean ocrAttempted = false;
+            if (!scannedPages.isEmpty()) {
+                PDFRenderer renderer = new PDFRenderer(pdf);
+                for (int start = 0; start < scannedPages.size(); start += batchSize) {
+                    List<Integer> batch = scannedPages.subList(start, Math.min(start + batchSize, scannedPages.size()));
+                    List<OcrResult> results = null;
+                    if (ocrService.isAvailable()) {
+                        ocrAttempted = true;
+                        results = ocrService.processBatch(render(renderer, batch, fileName));
+                    }
+                    if (results == null) {
+                        // Keep what has been read; the rest waits for the service
+                        pendingOcrPages = scannedPages.size() - start;
+                        break;
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        OcrResult result = results.get(i);
+                        if (result.success()) {
+                            pageTexts[batch.get(i)] = result.rawTextOrError().strip();
+                            ocrResults.add(result);
+                        }
+                    }
+                }
+            }
+
+            logger.info("Extracted PDF {}: {} pages, {} with text layer, {} sent to OCR, {} waiting for OCR",
+                fileName, pageCount, pageCount - scannedPages.size(), scannedPages.size() - pendingOcrPages,
+                pendingOcrPages);
+
+            return new PdfText(combine(pageTexts, ocrResults), pendingOcrPages, ocrAttempted);
+
+        } catch (InvalidPasswordException e) {
+            throw new IOException("PDF is password protected", e);
+        }
+    }
+
+    // Helper methods
+
+    private List<BatchImage> render(PDFRenderer renderer, List<Integer> pages, String fileName) throws IOException {
+        List<BatchImage> images = new ArrayList<>(pages.size());
+        for (int pageIndex : pages) {
+            BufferedImage image = renderer.renderImageWithDPI(pageIndex, renderDpi, ImageType.GRAY);
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            images.add(new BatchImage(baseName(fileName) + "-page-" + (pageIndex + 1) + ".png", png.toByteArray()));
+        }
+        return images;
+    }
+
+    /**
+     * Join page texts in page order. Classification and form fields can only come from
+     * OCR'd pages, since the text layer carries no structure.
+     */
+    private OcrResult combine(String[] pageTexts, List<OcrResult> ocrResults) {
+        StringBuilder text = new StringBuilder();
+        for (String pageText : pageTexts) {
+            if (pageText != null && !pageText.isEmpty()) {
+                if (!text.isEmpty()) {
+                    text.append("\n\n");
+                }
+                text.append(pageText);
+            }
+        }
+        if (text.isEmpty()) {
+            return new OcrResult(false, null, null, null, null, "No text found in PDF");
+        }
+
+        String documentType = null;
+        String documentSubtype = null;
+        Map<String, String> formFields = new LinkedHashMap<>();
+        Set<String> detectedNames = new LinkedHashSet<>();
+        for (OcrResult result : ocrResults) {
+            if (documentType == null && result.documentType() != null) {
+                documentType = result.documentType();
+                documentSubtype = result.documentSubtype();
+            }
+            if (result.formFields() != null) {
+                result.formFields().forEach(formFields::putIfAbsent);
+            }
+            if (result.detectedNames() != null) {
+                detectedNames.addAll(result.detectedNames());
+            }
+        }
+
+        return new OcrResult(true, documentType, documentSubtype, formFields,
+            new ArrayList<>(detectedNames), text.toString());
+    }
+
+    private static String baseName(String fileName) {
+        if (fileName == null) {
+            return "document";
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
@@ -0,0 +1,91 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.repository.TimelineEntryRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Search on the content_search_vector column, kept up to date by database triggers.
+ * Every query word must match, as a prefix of a stemmed word in the title, content or tags.
+ */
+@Service
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresTimelineSearchEngine implements TimelineSearchEngine {
+
+    // Entry ids per tag lookup
+    private static final int TAG_BATCH_SIZE = 1000;
+
+    private final TimelineEntryRepository timelineRepository;
+
+    public PostgresTimelineSearchEngine(TimelineEntryRepository timelineRepository) {
+        this.timelineRepository = timelineRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SearchResult search(UUID passportId, SearchQuery query) {
+        String tsQuery = buildPrefixTsQuery(query.text());
+        if (tsQuery == null || query.viewerRole() == null) {
+            return SearchResult.empty();
+        }
+
+        Map<UUID, EntryType> matches = new LinkedHashMap<>();
+        for (Object[] row : timelineRepository.searchVisibleMatches(passportId, tsQuery, query.viewerRole().name())) {
+            matches.put((UUID) row[0], EntryType.valueOf((String) row[1]));
+        }
+        Map<UUID, Set<String>> tags = tagsOf(new ArrayList<>(matches.keySet()));
+
+        Map<EntryType, Long> typeCounts = new EnumMap<>(EntryType.class);
+        Map<String, Long> tagCounts = new TreeMap<>();
+        List<UUID> hits = new ArrayList<>();
+        for (Map.Entry<UUID, EntryType> match : matches.entrySet()) {
+            Set<String> entryTags = tags.getOrDefault(match.getKey(), Set.of());
+            typeCounts.merge(match.getValue(), 1L, Long::sum);
+            entryTags.forEach(tag -> tagCounts.merge(tag, 1L, Long::sum));
+
+            boolean typeMatches = isEmpty(query.entryTypes()) || query.entryTypes().contains(match.getValue());
+            boolean tagMatches = isEmpty(query.tags()) || entryTags.stream().anyMatch(query.tags()::contains);
+            if (typeMatches && tagMatches) {
+                hits.add(match.getKey());
+            }
+        }
+
+        return new SearchResult(hits.stream().limit(query.limit()).toList(), hits.size(), typeCounts, tagCounts);
+    }
+
+    private Map<UUID, Set<String>> tagsOf(List<UUID> entryIds) {
+        Map<UUID, Set<String>> tags = new HashMap<>();
+        for (int from = 0; from < entryIds.size(); from += TAG_BATCH_SIZE) {
+            List<UUID> batch = entryIds.subList(from, Math.min(from + TAG_BATCH_SIZE, entryIds.size()));
+            for (Object[] row : timelineRepository.findTagsByEntryIds(batch)) {
+                tags.computeIfAbsent((UUID) row[0], k -> new HashSet<>()).add((String) row[1]);
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * "first ste" becomes "first:* & ste:*"; punctuation and single letters are dropped
+     */
+    static String buildPrefixTsQuery(String input) {
+        if (input == null) {
+            return null;
+        }
+        String cleaned = input.trim().replaceAll("[^\\w\\s]", " ");
+        String query = Arrays.stream(cleaned.split("\\s+"))
+            .filter(w -> !w.isBlank())
+            .filter(w -> w.length() > 1)
+            .map(w -> w + ":*")
+            .collect(Collectors.joining(" & "));
+        return query.isBlank() ? null : query;
+    }
+
+    private static boolean isEmpty(Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+}
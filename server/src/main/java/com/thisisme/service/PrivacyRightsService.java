@@ -1,8 +1,5 @@
 package com.thisisme.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.thisisme.model.entity.*;
 import com.thisisme.model.enums.AuditAction;
 import com.thisisme.model.enums.DataRequestType;
@@ -16,7 +13,8 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
- * Service for handling UK GDPR data subject rights (Articles 15-21).
+ * Service for handling UK GDPR data subject rights (Articles 15-21). The access
+ * exports are generated by SubjectAccessExportService.
  */
 @Service
 public class PrivacyRightsService {
@@ -29,7 +27,6 @@ public class PrivacyRightsService {
     private final TimelineEntryRepository timelineEntryRepository;
     private final DocumentRepository documentRepository;
     private final AuditService auditService;
-    private final ObjectMapper objectMapper;
 
     public PrivacyRightsService(
             DataRequestRepository dataRequestRepository,
@@ -48,11 +45,6 @@ public class PrivacyRightsService {
         this.timelineEntryRepository = timelineEntryRepository;
         this.documentRepository = documentRepository;
         this.auditService = auditService;
-
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     }
 
     /**
@@ -112,140 +104,6 @@ public class PrivacyRightsService {
         return saved;
     }
 
-    /**
-     * Generate data export for SAR or portability (JSON format)
-     */
-    @Transactional(readOnly = true)
-    public Map<String, Object> generateDataExport(UUID userId) {
-        User user = userRepository.findById(userId)
-            .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        Map<String, Object> export = new LinkedHashMap<>();
-
-        // Metadata
-        export.put("exportDate", Instant.now().toString());
-        export.put("exportType", "UK_GDPR_SAR");
-        export.put("dataController", "ThisIsMe");
-
-        // User data
-        Map<String, Object> userData = new LinkedHashMap<>();
-        userData.put("id", user.getId());
-        userData.put("name", user.getName());
-        userData.put("email", user.getEmail());
-        userData.put("emailVerified", user.isEmailVerified());
-        userData.put("createdAt", user.getCreatedAt());
-        userData.put("lastLoginAt", user.getLastLoginAt());
-        export.put("userData", userData);
-
-        // Passports
-        List<Map<String, Object>> passports = new ArrayList<>();
-        for (Passport passport : passportRepository.findAllByCreator(userId)) {
-            passports.add(exportPassport(passport));
-        }
-        export.put("passports", passports);
-
-        // Consent records
-        List<Map<String, Object>> consents = new ArrayList<>();
-        for (Consent consent : consentRepository.findAllByUser(userId)) {
-            Map<String, Object> c = new LinkedHashMap<>();
-            c.put("id", consent.getId());
-            c.put("type", consent.getType());
-            c.put("lawfulBasis", consent.getLawfulBasis());
-            c.put("consentText", consent.getConsentText());
-            c.put("policyVersion", consent.getPolicyVersion());
-            c.put("grantedAt", consent.getGrantedAt());
-            c.put("withdrawnAt", consent.getWithdrawnAt());
-            c.put("withdrawalReason", consent.getWithdrawalReason());
-            consents.add(c);
-        }
-        export.put("consentRecords", consents);
-
-        return export;
-    }
-
-    private Map<String, Object> exportPassport(Passport passport) {
-        Map<String, Object> p = new LinkedHashMap<>();
-        p.put("id", passport.getId());
-        p.put("childFirstName", passport.getChildFirstName());
-        p.put("childDateOfBirth", passport.getChildDateOfBirth());
-        p.put("createdAt", passport.getCreatedAt());
-        p.put("updatedAt", passport.getUpdatedAt());
-
-        // Sections
-        List<Map<String, Object>> sections = new ArrayList<>();
-        for (PassportSection section : passport.getSections()) {
-            Map<String, Object> s = new LinkedHashMap<>();
-            s.put("type", section.getType());
-            s.put("content", section.getContent());
-            s.put("remedialSuggestion", section.getRemedialSuggestion());
-            s.put("createdAt", section.getCreatedAt());
-            sections.add(s);
-        }
-        p.put("sections", sections);
-
-        // Timeline entries
-        List<Map<String, Object>> timeline = new ArrayList<>();
-        for (TimelineEntry entry : passport.getTimelineEntries()) {
-            if (entry.getDeletedAt() == null) {
-                Map<String, Object> t = new LinkedHashMap<>();
-                t.put("id", entry.getId());
-                t.put("entryType", entry.getEntryType());
-                t.put("title", entry.getTitle());
-                t.put("content", entry.getContent());
-                t.put("entryDate", entry.getEntryDate());
-                t.put("createdAt", entry.getCreatedAt());
-                timeline.add(t);
-            }
-        }
-        p.put("timelineEntries", timeline);
-
-        return p;
-    }
-
-    /**
-     * Export data as JSON string
-     */
-    public String exportAsJson(UUID userId) {
-        try {
-            return objectMapper.writeValueAsString(generateDataExport(userId));
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate JSON export", e);
-        }
-    }
-
-    /**
-     * Export data as CSV (simplified format for timeline/sections)
-     */
-    public String exportAsCsv(UUID userId) {
-        StringBuilder csv = new StringBuilder();
-
-        // Header
-        csv.append("Type,Date,Title,Content\n");
-
-        // Get all passports and their data
-        for (Passport passport : passportRepository.findAllByCreator(userId)) {
-            // Sections
-            for (PassportSection section : passport.getSections()) {
-                csv.append(escapeCsv("Section: " + section.getType())).append(",");
-                csv.append(escapeCsv(section.getCreatedAt().toString())).append(",");
-                csv.append(escapeCsv(section.getType().name())).append(",");
-                csv.append(escapeCsv(section.getContent())).append("\n");
-            }
-
-            // Timeline
-            for (TimelineEntry entry : passport.getTimelineEntries()) {
-                if (entry.getDeletedAt() == null) {
-                    csv.append(escapeCsv("Timeline: " + entry.getEntryType())).append(",");
-                    csv.append(escapeCsv(entry.getEntryDate().toString())).append(",");
-                    csv.append(escapeCsv(entry.getTitle())).append(",");
-                    csv.append(escapeCsv(entry.getContent())).append("\n");
-                }
-            }
-        }
-
-        return csv.toString();
-    }
-
     /**
      * Process erasure request - soft delete user data
      */
@@ -306,12 +164,4 @@ public class PrivacyRightsService {
     public List<DataRequest> getUserRequests(UUID userId) {
         return dataRequestRepository.findByRequesterId(userId);
     }
-
-    private String escapeCsv(String value) {
-        if (value == null) return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
-        }
-        return value;
-    }
 }
@@ -0,0 +1,177 @@
+package com.thisisme.service;
+
+import com.thisisme.service.RetentionService.PurgeCandidate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+/**
+ * Scheduled clean-up of expired data: erases passports scheduled for deletion, expires
+ * documents, purges the blobs and rows of documents deleted longer ago than the retention
+ * period (or belonging to an erased passport), and deactivates expired share links and
+ * invitations.
+ *
+ * Runs on one node at a time under a database lease. Work is done in bounded chunks
+ * with a pause between them, and each run stops at a time budget; whatever is left
+ * is picked up by the next run.
+ */
+@Component
+public class RetentionReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionReaper.class);
+
+    static final String LEASE_NAME = "retention-reaper";
+
+    // Extra lease time beyond the run budget, covering the chunk in flight when the budget runs out
+    private static final Duration LEASE_MARGIN = Duration.ofMinutes(5);
+
+    private final RetentionService retentionService;
+    private final StorageService storageService;
+    private final SchedulerLeaseService leaseService;
+
+    private final Counter purgedDocuments;
+    private final Counter purgeFailures;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.deleted-document-days:30}")
+    private int deletedDocumentDays;
+
+    @Value("${app.retention.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${app.retention.chunk-pause-ms:500}")
+    private long chunkPauseMs;
+
+    @Value("${app.retention.max-run-ms:300000}")
+    private long maxRunMs;
+
+    public RetentionReaper(
+            RetentionService retentionService,
+            StorageService storageService,
+            SchedulerLeaseService leaseService,
+            MeterRegistry meterRegistry) {
+        this.retentionService = retentionService;
+        this.storageService = storageService;
+        this.leaseService = leaseService;
+
+        this.purgedDocuments = Counter.builder("retention.documents.purged")
+            .description("Deleted documents permanently removed with their blobs").register(meterRegistry);
+        this.purgeFailures = Counter.builder("retention.blobs.failed")
+            .description("Blob deletions that failed and will be retried").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.retention.interval-ms:900000}",
+               initialDelayString = "${app.retention.initial-delay-ms:300000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+
+        Duration budget = Duration.ofMillis(maxRunMs);
+        if (!leaseService.tryAcquire(LEASE_NAME, budget.plus(LEASE_MARGIN))) {
+            return;
+        }
+
+        try {
+            Instant deadline = Instant.now().plus(budget);
+
+            int erased = drain(deadline, () -> retentionService.eraseScheduledPassports(Instant.now(), chunkSize));
+            int expired = drain(deadline, () -> retentionService.expireDocuments(Instant.now(), chunkSize));
+            int purged = purgeDeletedDocuments(deadline);
+            int shareLinks = drain(deadline, () -> retentionService.deactivateExpiredShareLinks(Instant.now(), chunkSize));
+            int invitations = drain(deadline, () -> retentionService.expireInvitations(Instant.now(), chunkSize));
+
+            if (erased + expired + purged + shareLinks + invitations > 0) {
+                logger.info("Retention run: {} passports erased, {} documents expired, {} purged, "
+                    + "{} share links and {} invitations expired",
+                    erased, expired, purged, shareLinks, invitations);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Retention run failed: {}", e.getMessage(), e);
+        } finally {
+            leaseService.release(LEASE_NAME);
+        }
+    }
+
+    /**
+     * Delete blobs for a chunk of purgeable documents in one batch, then drop the rows
+     * whose blobs are all gone. Rows with a failed blob stay and are retried next run.
+     */
+    int purgeDeletedDocuments(Instant deadline) {
+        Instant deletedBefore = Instant.now().minus(Duration.ofDays(deletedDocumentDays));
+        int total = 0;
+
+        while (true) {
+            List<PurgeCandidate> candidates = retentionService.findPurgeableDocuments(deletedBefore, chunkSize);
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            List<String> keys = candidates.stream().flatMap(c -> c.storageKeys().stream()).toList();
+            Set<String> failed = new HashSet<>(storageService.deleteAll(keys));
+            if (!failed.isEmpty()) {
+                purgeFailures.increment(failed.size());
+            }
+
+            List<PurgeCandidate> purged = candidates.stream()
+                .filter(c -> c.storageKeys().stream().noneMatch(failed::contains))
+                .toList();
+            retentionService.deletePurgedDocuments(purged);
+            purgedDocuments.increment(purged.size());
+            total += purged.size();
+
+            if (purged.isEmpty()) {
+                // Storage is refusing every delete; no point re-reading the same chunk
+                logger.warn("Could not delete blobs for {} purgeable documents; will retry next run", candidates.size());
+                break;
+            }
+            if (candidates.size() < chunkSize || !pauseBeforeNextChunk(deadline)) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Run a chunked step until it comes back short or the run budget is spent
+     */
+    private int drain(Instant deadline, IntSupplier chunk) {
+        int total = 0;
+        while (true) {
+            int processed = chunk.getAsInt();
+            total += processed;
+            if (processed < chunkSize || !pauseBeforeNextChunk(deadline)) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * @return false if the run should stop here
+     */
+    private boolean pauseBeforeNextChunk(Instant deadline) {
+        if (!Instant.now().isBefore(deadline)) {
+            return false;
+        }
+        try {
+            Thread.sleep(chunkPauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.Invitation;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.ShareLink;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.RenditionSize;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.InvitationRepository;
+import com.thisisme.repository.OcrResultCacheRepository;
+import com.thisisme.repository.PassportRepository;
+import com.thisisme.repository.ShareLinkRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Retention clean-up steps, each a bounded chunk in its own transaction.
+ * Driven by RetentionReaper.
+ */
+@Service
+public class RetentionService {
+
+    private static final String SYSTEM_IP = "system";
+
+    private final DocumentRepository documentRepository;
+    private final ShareLinkRepository shareLinkRepository;
+    private final InvitationRepository invitationRepository;
+    private final PassportRepository passportRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final OcrResultCacheRepository ocrResultCacheRepository;
+    private final StorageUsageService storageUsageService;
+    private final PassportKeyService passportKeyService;
+    private final AuditService auditService;
+
+    public RetentionService(
+            DocumentRepository documentRepository,
+            ShareLinkRepository shareLinkRepository,
+            InvitationRepository invitationRepository,
+            PassportRepository passportRepository,
+            TimelineEntryRepository timelineEntryRepository,
+            OcrResultCacheRepository ocrResultCacheRepository,
+            StorageUsageService storageUsageService,
+            PassportKeyService passportKeyService,
+            AuditService auditService) {
+        this.documentRepository = documentRepository;
+        this.shareLinkRepository = shareLinkRepository;
+        this.invitationRepository = invitationRepository;
+        this.passportRepository = passportRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.ocrResultCacheRepository = ocrResultCacheRepository;
+        this.storageUsageService = storageUsageService;
+        this.passportKeyService = passportKeyService;
+        this.auditService = auditService;
+    }
+
+    /**
+     * Document row plus every blob stored for it
+     */
+    public record PurgeCandidate(UUID documentId, UUID passportId, List<String> storageKeys) {}
+
+    /**
+     * Soft delete documents past their expiry date. Their blobs are purged later
+     * with other deleted documents once the retention period has passed.
+     *
+     * @return number of documents expired
+     */
+    @Transactional
+    public int expireDocuments(Instant now, int limit) {
+        List<Document> expired = documentRepository.findExpired(now, PageRequest.of(0, limit));
+        for (Document document : expired) {
+            document.setDeletedAt(now);
+            storageUsageService.release(document.getPassport().getId(), document.getFileSize());
+
+            auditService.logSystem(AuditAction.DOCUMENT_DELETED, SYSTEM_IP)
+                .withPassport(document.getPassport())
+                .withEntity("Document", document.getId())
+                .withDescription("Document expired: " + document.getOriginalFileName())
+                .save();
+        }
+        return expired.size();
+    }
+
+    /**
+     * Erase passports whose deletion grace period has ended. Shredding the passport key
+     * makes its encrypted documents unreadable straight away; the rest is a handful of
+     * bulk updates, including dropping the OCR text cached for its documents' content.
+     * Blobs are removed later by the purge step, which picks up documents of erased
+     * passports without waiting out the retention period.
+     *
+     * @return number of passports erased
+     */
+    @Transactional
+    public int eraseScheduledPassports(Instant now, int limit) {
+        List<Passport> due = passportRepository.findScheduledForDeletion(now, PageRequest.of(0, limit));
+        for (Passport passport : due) {
+            UUID passportId = passport.getId();
+            passportKeyService.shred(passportId, now);
+            ocrResultCacheRepository.deleteForErasedPassport(passportId);
+            int documents = documentRepository.eraseByPassport(passportId, now);
+            int entries = timelineEntryRepository.eraseByPassport(passportId, now);
+            storageUsageService.clear(passportId);
+            passportRepository.markDeleted(passportId, now);
+
+            auditService.logSystem(AuditAction.PASSPORT_DELETED, SYSTEM_IP)
+                .withPassport(passportId)
+                .withEntity("Passport", passportId)
+                .withDescription("Passport erased: encryption key destroyed, " + documents
+                    + " documents and " + entries + " timeline entries deleted")
+                .save();
+        }
+        return due.size();
+    }
+
+    /**
+     * Deleted documents due for permanent removal, oldest first
+     */
+    @Transactional(readOnly = true)
+    public List<PurgeCandidate> findPurgeableDocuments(Instant deletedBefore, int limit) {
+        return documentRepository.findDeletedBefore(deletedBefore, PageRequest.of(0, limit)).stream()
+            .map(document -> new PurgeCandidate(document.getId(), document.getPassport().getId(),
+                storageKeys(document)))
+            .toList();
+    }
+
+    /**
+     * Remove document rows whose blobs are already gone
+     */
+    @Transactional
+    public void deletePurgedDocuments(List<PurgeCandidate> purged) {
+        if (purged.isEmpty()) {
+            return;
+        }
+        documentRepository.deleteAllByIdInBatch(purged.stream().map(PurgeCandidate::documentId).toList());
+
+        for (PurgeCandidate candidate : purged) {
+            auditService.logSystem(AuditAction.DOCUMENT_DELETED, SYSTEM_IP)
+                .withPassport(candidate.passportId())
+                .withEntity("Document", candidate.documentId())
+                .withDescription("Document permanently deleted after retention period")
+                .save();
+        }
+    }
+
+    /**
+     * @return number of share links deactivated
+     */
+    @Transactional
+    public int deactivateExpiredShareLinks(Instant now, int limit) {
+        List<ShareLink> expired = shareLinkRepository.findExpired(now, PageRequest.of(0, limit));
+        expired.forEach(ShareLink::deactivate);
+        return expired.size();
+    }
+
+    /**
+     * @return number of invitations marked expired
+     */
+    @Transactional
+    public int expireInvitations(Instant now, int limit) {
+        List<Invitation> expired = invitationRepository.findExpiredPending(now, PageRequest.of(0, limit));
+        for (Invitation invitation : expired) {
+            invitation.markExpired();
+
+            auditService.logSystem(AuditAction.INVITATION_EXPIRED, SYSTEM_IP)
+                .withPassport(invitation.getPassport())
+                .withEntity("Invitation", invitation.getId())
+                .save();
+        }
+        return expired.size();
+    }
+
+    private static List<String> storageKeys(Document document) {
+        List<String> keys = new ArrayList<>();
+        keys.add(document.getStoragePath());
+        // Renditions may exist even if generation failed part way, and missing keys are harmless
+        if (document.isImage()) {
+            for (RenditionSize size : RenditionSize.values()) {
+                keys.add(ImageRenditionService.renditionPath(document.getStoragePath(), size));
+            }
+        }
+        return keys;
+    }
+}
@@ -12,8 +12,13 @@ import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * AWS S3 storage implementation.
@@ -25,6 +30,9 @@ public class S3StorageService implements StorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(S3StorageService.class);
 
+    // DeleteObjects accepts at most this many keys per request
+    private static final int MAX_DELETE_BATCH = 1000;
+
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
 
@@ -53,6 +61,24 @@ public class S3StorageService implements StorageService {
         }
     }
 
+    @Override
+    public void upload(String key, InputStream data, long contentLength, String contentType) throws IOException {
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .build();
+
+            s3Client.putObject(request, RequestBody.fromInputStream(data, contentLength));
+            logger.debug("Uploaded file to S3: {}", key);
+        } catch (S3Exception e) {
+            throw new IOException("Failed to upload to S3: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public byte[] download(String key) throws IOException {
         try {
@@ -67,6 +93,33 @@ public class S3StorageService implements StorageService {
         }
     }
 
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to download from S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        try {
+            GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+
+            return s3Client.getObject(request);
+        } catch (S3Exception e) {
+            throw new IOException("Failed to download range from S3: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void delete(String key) throws IOException {
         try {
@@ -82,6 +135,41 @@ public class S3StorageService implements StorageService {
         }
     }
 
+    /**
+     * Batch delete with DeleteObjects: one request per 1000 keys instead of one per key
+     */
+    @Override
+    public List<String> deleteAll(Collection<String> keys) {
+        List<String> all = new ArrayList<>(keys);
+        List<String> failed = new ArrayList<>();
+
+        for (int from = 0; from < all.size(); from += MAX_DELETE_BATCH) {
+            List<String> batch = all.subList(from, Math.min(from + MAX_DELETE_BATCH, all.size()));
+            List<ObjectIdentifier> objects = batch.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+
+            try {
+                DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder().objects(objects).quiet(true).build())
+                    .build();
+
+                // Quiet mode only reports the keys that failed
+                DeleteObjectsResponse response = s3Client.deleteObjects(request);
+                for (S3Error error : response.errors()) {
+                    logger.warn("Failed to delete {} from S3: {} {}", error.key(), error.code(), error.message());
+                    failed.add(error.key());
+                }
+                logger.debug("Deleted {} files from S3", batch.size() - response.errors().size());
+            } catch (S3Exception e) {
+                logger.warn("Batch delete of {} files from S3 failed: {}", batch.size(), e.getMessage());
+                failed.addAll(batch);
+            }
+        }
+        return failed;
+    }
+
     @Override
     public String getDownloadUrl(String key, String originalFilename) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
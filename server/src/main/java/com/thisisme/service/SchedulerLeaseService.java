@@ -0,0 +1,58 @@
+package com.thisisme.service;
+
+import com.thisisme.repository.SchedulerLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Database leases for scheduled jobs that must run on only one node at a time.
+ * A lease lapses on its own after its TTL, so a node that dies mid-run blocks
+ * the job for at most that long.
+ */
+@Service
+public class SchedulerLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerLeaseService.class);
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final String owner;
+
+    public SchedulerLeaseService(SchedulerLeaseRepository leaseRepository) {
+        this.leaseRepository = leaseRepository;
+
+        String runtime = ManagementFactory.getRuntimeMXBean().getName();
+        String id = runtime + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.owner = id.length() > 100 ? id.substring(id.length() - 100) : id;
+    }
+
+    /**
+     * Take (or extend) the named lease for the given time
+     *
+     * @return true if this node now holds the lease
+     */
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = Instant.now();
+        boolean acquired = leaseRepository.tryAcquire(name, owner, now, now.plus(ttl)) == 1;
+        if (!acquired) {
+            logger.debug("Lease {} is held by another node", name);
+        }
+        return acquired;
+    }
+
+    /**
+     * Give the lease up early so another node can take the next run
+     */
+    public void release(String name) {
+        leaseRepository.release(name, owner, Instant.now());
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,139 @@
+package com.thisisme.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Key-encryption keys for stored documents, by key id.
+ * Each blob gets a fresh data key, wrapped with the current key
+ * (app.storage.encryption-key-id). Older keys stay configured so blobs wrapped
+ * with them can still be read after a rotation.
+ */
+@Component
+public class StorageKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageKeyRing.class);
+
+    private static final String WRAP_CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Map<String, SecretKey> keys = new HashMap<>();
+
+    @Value("${app.storage.encryption-key-id:default-key}")
+    private String currentKeyId;
+
+    /**
+     * Comma-separated "keyId:base64" pairs of 256-bit AES keys
+     */
+    @Value("${app.storage.encryption.keys:}")
+    private String keySpec;
+
+    @PostConstruct
+    public void init() {
+        for (String entry : keySpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("Storage encryption keys must be keyId:base64 pairs");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            byte[] material = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            if (material.length != 32) {
+                throw new IllegalStateException("Storage encryption key " + keyId + " must be 256 bits");
+            }
+            keys.put(keyId, new SecretKeySpec(material, "AES"));
+        }
+        logger.info("Storage key ring loaded {} key(s); current key id: {}", keys.size(), currentKeyId);
+    }
+
+    public String getCurrentKeyId() {
+        return currentKeyId;
+    }
+
+    public boolean hasKey(String keyId) {
+        return keys.containsKey(keyId);
+    }
+
+    /**
+     * Fresh random AES-256 data key
+     */
+    public SecretKey generateDataKey() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256, RANDOM);
+            return generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES not available", e);
+        }
+    }
+
+    /**
+     * Encrypt a data key with the current key: IV || AES-GCM(key, IV, aad = keyId)
+     */
+    public byte[] wrap(SecretKey dataKey) {
+        return wrap(requireKey(currentKeyId), currentKeyId, dataKey);
+    }
+
+    public SecretKey unwrap(String keyId, byte[] wrapped) throws GeneralSecurityException {
+        SecretKey kek = keys.get(keyId);
+        if (kek == null) {
+            throw new GeneralSecurityException("Unknown storage encryption key: " + keyId);
+        }
+        return unwrap(kek, keyId, wrapped);
+    }
+
+    /**
+     * Encrypt a key with an arbitrary key-encryption key, binding it to "keyId"
+     */
+    static byte[] wrap(SecretKey kek, String keyId, SecretKey key) {
+        byte[] iv = new byte[IV_BYTES];
+        RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(WRAP_CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, kek, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(keyId.getBytes(StandardCharsets.UTF_8));
+            byte[] wrapped = cipher.doFinal(key.getEncoded());
+            return ByteBuffer.allocate(IV_BYTES + wrapped.length).put(iv).put(wrapped).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to wrap key", e);
+        }
+    }
+
+    static SecretKey unwrap(SecretKey kek, String keyId, byte[] wrapped) throws GeneralSecurityException {
+        if (wrapped.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Wrapped key is too short");
+        }
+        Cipher cipher = Cipher.getInstance(WRAP_CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, kek, new GCMParameterSpec(TAG_BITS, wrapped, 0, IV_BYTES));
+        cipher.updateAAD(keyId.getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(cipher.doFinal(wrapped, IV_BYTES, wrapped.length - IV_BYTES), "AES");
+    }
+
+    private SecretKey requireKey(String keyId) {
+        SecretKey key = keys.get(keyId);
+        if (key == null) {
+            throw new IllegalStateException("Storage encryption key not configured: " + keyId);
+        }
+        return key;
+    }
+}
@@ -1,6 +1,12 @@
 package com.thisisme.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Storage service interface for document storage abstraction.
@@ -16,6 +22,14 @@ public interface StorageService {
      */
     void upload(String key, byte[] data, String contentType) throws IOException;
 
+    /**
+     * Upload a file from a stream of known length, without holding it all in memory
+     * where the backend allows
+     */
+    default void upload(String key, InputStream data, long contentLength, String contentType) throws IOException {
+        upload(key, data.readAllBytes(), contentType);
+    }
+
     /**
      * Download a file from storage
      * @param key the storage key/path
@@ -23,12 +37,56 @@ public interface StorageService {
      */
     byte[] download(String key) throws IOException;
 
+    /**
+     * Open a file for streaming; the caller closes the stream
+     */
+    default InputStream openStream(String key) throws IOException {
+        return new ByteArrayInputStream(download(key));
+    }
+
+    /**
+     * Open part of a file; reading past the end of the file just ends the stream
+     * @param offset first byte to read
+     * @param length maximum number of bytes to read
+     */
+    default InputStream openRange(String key, long offset, long length) throws IOException {
+        InputStream in = openStream(key);
+        try {
+            in.skipNBytes(offset);
+        } catch (EOFException e) {
+            in.close();
+            return InputStream.nullInputStream();
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        return new BoundedInputStream(in, length);
+    }
+
     /**
      * Delete a file from storage
      * @param key the storage key/path
      */
     void delete(String key) throws IOException;
 
+    /**
+     * Delete several files, carrying on past individual failures.
+     * Keys that don't exist count as deleted.
+     * @param keys the storage keys/paths
+     * @return the keys that could not be deleted
+     */
+    default List<String> deleteAll(Collection<String> keys) {
+        List<String> failed = new ArrayList<>();
+        for (String key : keys) {
+            try {
+                delete(key);
+            } catch (IOException | RuntimeException e) {
+                failed.add(key);
+            }
+        }
+        return failed;
+    }
+
     /**
      * Generate a URL for downloading the file
      * For local storage, this returns a relative URL
@@ -39,6 +97,14 @@ public interface StorageService {
      */
     String getDownloadUrl(String key, String originalFilename);
 
+    /**
+     * Whether clients can fetch files straight from the backend via getDownloadUrl.
+     * When false, downloads are served through the API instead.
+     */
+    default boolean supportsDirectDownload() {
+        return true;
+    }
+
     /**
      * Check if a file exists
      * @param key the storage key/path
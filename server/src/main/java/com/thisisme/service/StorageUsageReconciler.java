@@ -0,0 +1,62 @@
+package com.thisisme.service;
+
+import com.thisisme.repository.StorageUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Periodically re-derives every passport's storage counter from its documents,
+ * one short transaction per passport so uploads are never blocked for long.
+ */
+@Component
+public class StorageUsageReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageUsageReconciler.class);
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final StorageUsageRepository usageRepository;
+    private final StorageUsageService usageService;
+
+    @Value("${app.storage.usage.reconcile-batch-size:200}")
+    private int batchSize;
+
+    public StorageUsageReconciler(StorageUsageRepository usageRepository, StorageUsageService usageService) {
+        this.usageRepository = usageRepository;
+        this.usageService = usageService;
+    }
+
+    @Scheduled(cron = "${app.storage.usage.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAll() {
+        int checked = 0;
+        int corrected = 0;
+        UUID after = FIRST_ID;
+
+        while (true) {
+            List<UUID> passportIds = usageRepository.findPassportIdsAfter(after, PageRequest.of(0, batchSize));
+            for (UUID passportId : passportIds) {
+                try {
+                    if (usageService.reconcile(passportId)) {
+                        corrected++;
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to reconcile storage usage for passport {}: {}", passportId, e.getMessage());
+                }
+                checked++;
+            }
+            if (passportIds.size() < batchSize) {
+                break;
+            }
+            after = passportIds.get(passportIds.size() - 1);
+        }
+
+        logger.info("Storage usage reconciled: {} passports checked, {} corrected", checked, corrected);
+    }
+}
@@ -0,0 +1,114 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.StorageUsage;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.StorageUsageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Per-passport storage counters used for quota checks.
+ * Counter changes join the caller's transaction so they commit or roll back with
+ * the document row they account for.
+ */
+@Service
+public class StorageUsageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageUsageService.class);
+
+    private final StorageUsageRepository usageRepository;
+    private final DocumentRepository documentRepository;
+
+    private final Counter corrections;
+
+    public StorageUsageService(
+            StorageUsageRepository usageRepository,
+            DocumentRepository documentRepository,
+            MeterRegistry meterRegistry) {
+        this.usageRepository = usageRepository;
+        this.documentRepository = documentRepository;
+
+        this.corrections = Counter.builder("storage.usage.corrections")
+            .description("Passports whose usage counter had drifted from their documents")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Bytes currently counted against the passport's quota
+     */
+    @Transactional(readOnly = true)
+    public long getBytesUsed(UUID passportId) {
+        return usageRepository.findBytesUsed(passportId).orElse(0L);
+    }
+
+    /**
+     * Count a new document against the quota.
+     *
+     * @return false if it would take the passport over the quota (nothing is changed)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(UUID passportId, long bytes, long quota) {
+        usageRepository.insertIfAbsent(passportId);
+        return usageRepository.addWithinQuota(passportId, bytes, quota, Instant.now()) == 1;
+    }
+
+    /**
+     * Count a new document without enforcing the quota (system-originated files such as email attachments)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(UUID passportId, long bytes) {
+        usageRepository.insertIfAbsent(passportId);
+        usageRepository.add(passportId, bytes, Instant.now());
+    }
+
+    /**
+     * Stop counting a document that has been deleted
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(UUID passportId, long bytes) {
+        usageRepository.subtract(passportId, bytes, Instant.now());
+    }
+
+    /**
+     * Stop counting anything for a passport whose documents have all been deleted
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void clear(UUID passportId) {
+        usageRepository.reset(passportId, Instant.now());
+    }
+
+    /**
+     * Recompute a passport's counter from its documents.
+     * The row lock waits for in-flight uploads to commit, so the totals read
+     * afterwards include them.
+     *
+     * @return true if the counter had drifted and was corrected
+     */
+    @Transactional
+    public boolean reconcile(UUID passportId) {
+        usageRepository.insertIfAbsent(passportId);
+        StorageUsage usage = usageRepository.findByIdForUpdate(passportId)
+            .orElseThrow(() -> new IllegalStateException("Storage usage row missing for passport " + passportId));
+
+        Long actualBytes = documentRepository.getTotalStorageByPassport(passportId);
+        long bytes = actualBytes != null ? actualBytes : 0L;
+        int count = (int) documentRepository.countActiveByPassport(passportId);
+
+        boolean drifted = usage.getBytesUsed() != bytes || usage.getDocumentCount() != count;
+        if (drifted) {
+            logger.warn("Storage usage for passport {} drifted: counted {} bytes / {} documents, actual {} / {}",
+                passportId, usage.getBytesUsed(), usage.getDocumentCount(), bytes, count);
+            corrections.increment();
+        }
+        usage.reconcile(bytes, count, Instant.now());
+        return drifted;
+    }
+}
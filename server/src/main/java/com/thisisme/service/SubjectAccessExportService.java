@@ -0,0 +1,482 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.thisisme.model.dto.SubjectAccessDTO.*;
+import com.thisisme.model.entity.Consent;
+import com.thisisme.model.entity.DataRequest;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.repository.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * UK GDPR subject access export (Art 15/20) covering every category of a user's data.
+ *
+ * Each category is read in keyset pages (id greater than the last id seen) and written
+ * before the next page is fetched. Nothing here is transactional: every page is its own
+ * short read, so a heavy user's export holds neither a long transaction nor their whole
+ * history in memory.
+ */
+@Service
+public class SubjectAccessExportService {
+
+    static final UUID FIRST_PAGE = new UUID(0L, 0L);
+
+    private final UserRepository userRepository;
+    private final PassportRepository passportRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final DocumentRepository documentRepository;
+    private final TimelineCommentRepository commentRepository;
+    private final TimelineReactionRepository reactionRepository;
+    private final NotificationRepository notificationRepository;
+    private final AuditLogRepository auditLogRepository;
+    private final ConsentRepository consentRepository;
+    private final DataRequestRepository dataRequestRepository;
+    private final AuditService auditService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.privacy.export.page-size:500}")
+    private int pageSize;
+
+    public SubjectAccessExportService(
+            UserRepository userRepository,
+            PassportRepository passportRepository,
+            TimelineEntryRepository timelineEntryRepository,
+            DocumentRepository documentRepository,
+            TimelineCommentRepository commentRepository,
+            TimelineReactionRepository reactionRepository,
+            NotificationRepository notificationRepository,
+            AuditLogRepository auditLogRepository,
+            ConsentRepository consentRepository,
+            DataRequestRepository dataRequestRepository,
+            AuditService auditService) {
+        this.userRepository = userRepository;
+        this.passportRepository = passportRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.documentRepository = documentRepository;
+        this.commentRepository = commentRepository;
+        this.reactionRepository = reactionRepository;
+        this.notificationRepository = notificationRepository;
+        this.auditLogRepository = auditLogRepository;
+        this.consentRepository = consentRepository;
+        this.dataRequestRepository = dataRequestRepository;
+        this.auditService = auditService;
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Write the export as a single JSON document with one array per category
+     */
+    public void writeJson(UUID userId, String ipAddress, OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            generator.useDefaultPrettyPrinter();
+            export(userId, ipAddress, new JsonSink(generator), "JSON");
+        }
+    }
+
+    /**
+     * Write the export as newline-delimited JSON, one {"type", "data"} object per record,
+     * so it can be processed without parsing the whole file
+     */
+    public void writeNdjson(UUID userId, String ipAddress, OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            export(userId, ipAddress, new NdjsonSink(generator), "NDJSON");
+        }
+    }
+
+    /**
+     * Write a simplified CSV of the user's passport sections and timeline entries,
+     * including entries they wrote on passports shared with them
+     */
+    public void writeCsv(UUID userId, String ipAddress, OutputStream out) throws IOException {
+        User user = findUser(userId);
+        // Not closed: that would close the caller's stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Sink sink = new CsvSink(writer);
+        sink.begin(Map.of());
+        writePassportsAndEntries(userId, sink);
+        sink.end();
+        logCompleted(user, ipAddress, "CSV");
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    private void export(UUID userId, String ipAddress, Sink sink, String format) throws IOException {
+        User user = findUser(userId);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("exportDate", Instant.now().toString());
+        metadata.put("exportType", "UK_GDPR_SAR");
+        metadata.put("dataController", "ThisIsMe");
+        sink.begin(metadata);
+
+        Map<String, Object> userData = new LinkedHashMap<>();
+        userData.put("id", user.getId());
+        userData.put("name", user.getName());
+        userData.put("email", user.getEmail());
+        userData.put("emailVerified", user.isEmailVerified());
+        userData.put("createdAt", user.getCreatedAt());
+        userData.put("lastLoginAt", user.getLastLoginAt());
+        sink.value("userData", userData);
+
+        List<UUID> passportIds = writePassportsAndEntries(userId, sink);
+
+        // Documents follow the same order as timeline entries
+        sink.section("documents");
+        for (UUID passportId : passportIds) {
+            writePages(sink, DocumentRow::id,
+                afterId -> documentRepository.findPageAfter(passportId, afterId, pageLimit()));
+        }
+        writePages(sink, DocumentRow::id,
+            afterId -> documentRepository.findByUploaderOnOtherPassportsPageAfter(userId, afterId, pageLimit()));
+
+        sink.section("comments");
+        writePages(sink, CommentRow::id,
+            afterId -> commentRepository.findByAuthorPageAfter(userId, afterId, pageLimit()));
+
+        sink.section("reactions");
+        writePages(sink, ReactionRow::id,
+            afterId -> reactionRepository.findByUserPageAfter(userId, afterId, pageLimit()));
+
+        sink.section("notifications");
+        writePages(sink, NotificationRow::id,
+            afterId -> notificationRepository.findByRecipientPageAfter(userId, afterId, pageLimit()));
+
+        sink.section("auditLog");
+        writePages(sink, AuditRow::id,
+            afterId -> auditLogRepository.findByUserPageAfter(userId, afterId, pageLimit()));
+
+        // Consents and data requests are a handful of rows per user
+        sink.section("consentRecords");
+        for (Consent consent : consentRepository.findAllByUser(userId)) {
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("id", consent.getId());
+            c.put("type", consent.getType());
+            c.put("lawfulBasis", consent.getLawfulBasis());
+            c.put("consentText", consent.getConsentText());
+            c.put("policyVersion", consent.getPolicyVersion());
+            c.put("grantedAt", consent.getGrantedAt());
+            c.put("withdrawnAt", consent.getWithdrawnAt());
+            c.put("withdrawalReason", consent.getWithdrawalReason());
+            sink.record(c);
+        }
+
+        sink.section("dataRequests");
+        for (DataRequest request : dataRequestRepository.findByRequesterId(userId)) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id", request.getId());
+            r.put("type", request.getType());
+            r.put("status", request.getStatus());
+            r.put("details", request.getRequestDetails());
+            r.put("requestedAt", request.getRequestedAt());
+            r.put("dueBy", request.getEffectiveDeadline());
+            r.put("completedAt", request.getCompletedAt());
+            sink.record(r);
+        }
+
+        sink.end();
+        logCompleted(user, ipAddress, format);
+    }
+
+    private User findUser(UUID userId) {
+        return userRepository.findById(userId)
+            .orElseThrow(() -> new IllegalArgumentException("User not found"));
+    }
+
+    /**
+     * Write the user's passports, then the timeline entries on them, then what they wrote
+     * on passports shared with them
+     *
+     * @return ids of the user's passports, kept (16 bytes each) to walk other categories per passport
+     */
+    private List<UUID> writePassportsAndEntries(UUID userId, Sink sink) throws IOException {
+        List<UUID> passportIds = new ArrayList<>();
+        sink.section("passports");
+        writePages(sink, PassportRow::id, afterId -> {
+            List<PassportRow> page = passportRepository.findCreatedPageAfter(userId, afterId, pageLimit());
+            page.forEach(p -> passportIds.add(p.id()));
+            return withSections(page);
+        });
+
+        sink.section("timelineEntries");
+        for (UUID passportId : passportIds) {
+            writePages(sink, TimelineRow::id, afterId -> withTags(
+                timelineEntryRepository.findPageAfter(passportId, afterId, pageLimit())));
+        }
+        writePages(sink, TimelineRow::id, afterId -> withTags(
+            timelineEntryRepository.findByAuthorOnOtherPassportsPageAfter(userId, afterId, pageLimit())));
+        return passportIds;
+    }
+
+    private void logCompleted(User user, String ipAddress, String format) {
+        auditService.log(AuditAction.DATA_EXPORT_COMPLETED, user.getId(), user.getName(), ipAddress)
+            .withDescription("Exported personal data as " + format)
+            .save();
+    }
+
+    /**
+     * Fetch and write pages until one comes back short, flushing after each so output
+     * keeps pace with the reads
+     */
+    private <T> void writePages(Sink sink, Function<T, UUID> idOf, PageFetcher<T> fetcher) throws IOException {
+        UUID afterId = FIRST_PAGE;
+        List<T> page;
+        do {
+            page = fetcher.fetch(afterId);
+            for (T row : page) {
+                sink.record(row);
+            }
+            sink.flush();
+            if (!page.isEmpty()) {
+                afterId = idOf.apply(page.get(page.size() - 1));
+            }
+        } while (page.size() == pageSize);
+    }
+
+    private PageRequest pageLimit() {
+        return PageRequest.of(0, pageSize);
+    }
+
+    private List<PassportRow> withSections(List<PassportRow> passports) {
+        if (passports.isEmpty()) {
+            return passports;
+        }
+        Map<UUID, List<SectionRow>> sections = new HashMap<>();
+        List<UUID> ids = passports.stream().map(PassportRow::id).toList();
+        for (SectionRow section : passportRepository.findSectionRows(ids)) {
+            sections.computeIfAbsent(section.passportId(), k -> new ArrayList<>()).add(section);
+        }
+        return passports.stream()
+            .map(p -> p.withSections(sections.getOrDefault(p.id(), List.of())))
+            .toList();
+    }
+
+    private List<TimelineRow> withTags(List<TimelineRow> entries) {
+        if (entries.isEmpty()) {
+            return entries;
+        }
+        Map<UUID, List<String>> tags = new HashMap<>();
+        List<UUID> ids = entries.stream().map(TimelineRow::id).toList();
+        for (Object[] row : timelineEntryRepository.findTagsByEntryIds(ids)) {
+            tags.computeIfAbsent((UUID) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return entries.stream()
+            .map(e -> e.withTags(tags.getOrDefault(e.id(), List.of())))
+            .toList();
+    }
+
+    @FunctionalInterface
+    private interface PageFetcher<T> {
+        List<T> fetch(UUID afterId);
+    }
+
+    /**
+     * Output layout; the traversal above is the same for every format
+     */
+    private interface Sink {
+        void begin(Map<String, Object> metadata) throws IOException;
+
+        void value(String name, Object value) throws IOException;
+
+        void section(String name) throws IOException;
+
+        void record(Object record) throws IOException;
+
+        void flush() throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * One object: metadata and userData fields, then an array per section
+     */
+    private static final class JsonSink implements Sink {
+
+        private final JsonGenerator generator;
+        private boolean inSection;
+
+        JsonSink(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void begin(Map<String, Object> metadata) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> field : metadata.entrySet()) {
+                generator.writeObjectField(field.getKey(), field.getValue());
+            }
+        }
+
+        @Override
+        public void value(String name, Object value) throws IOException {
+            closeSection();
+            generator.writeObjectField(name, value);
+        }
+
+        @Override
+        public void section(String name) throws IOException {
+            closeSection();
+            generator.writeArrayFieldStart(name);
+            inSection = true;
+        }
+
+        @Override
+        public void record(Object record) throws IOException {
+            generator.writeObject(record);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void end() throws IOException {
+            closeSection();
+            generator.writeEndObject();
+            generator.flush();
+        }
+
+        private void closeSection() throws IOException {
+            if (inSection) {
+                generator.writeEndArray();
+                inSection = false;
+            }
+        }
+    }
+
+    /**
+     * One line per record; the first line carries the metadata
+     */
+    private static final class NdjsonSink implements Sink {
+
+        private final JsonGenerator generator;
+        private String type;
+
+        NdjsonSink(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void begin(Map<String, Object> metadata) throws IOException {
+            write("export", metadata);
+        }
+
+        @Override
+        public void value(String name, Object value) throws IOException {
+            write(name, value);
+        }
+
+        @Override
+        public void section(String name) {
+            type = name;
+        }
+
+        @Override
+        public void record(Object record) throws IOException {
+            write(type, record);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+
+        private void write(String recordType, Object data) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", recordType);
+            generator.writeObjectField("data", data);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Type,Date,Title,Content rows: one per passport section and one per timeline entry.
+     * Other values and sections are not part of this format.
+     */
+    private static final class CsvSink implements Sink {
+
+        private final Writer writer;
+
+        CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin(Map<String, Object> metadata) throws IOException {
+            writer.write("Type,Date,Title,Content\n");
+        }
+
+        @Override
+        public void value(String name, Object value) {
+        }
+
+        @Override
+        public void section(String name) {
+        }
+
+        @Override
+        public void record(Object record) throws IOException {
+            if (record instanceof PassportRow passport) {
+                for (SectionRow section : passport.sections()) {
+                    row("Section: " + section.type(), section.createdAt().toString(), section.type().name(),
+                        section.content());
+                }
+            } else if (record instanceof TimelineRow entry) {
+                row("Timeline: " + entry.entryType(), entry.entryDate().toString(), entry.title(), entry.content());
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void end() throws IOException {
+            writer.flush();
+        }
+
+        private void row(String type, String date, String title, String content) throws IOException {
+            writer.write(escape(type) + "," + escape(date) + "," + escape(title) + "," + escape(content) + "\n");
+        }
+
+        private static String escape(String value) {
+            if (value == null) return "";
+            if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.TimelineDTO.CreateTimelineEntryRequest;
+import com.thisisme.model.dto.TimelineDTO.ImportRowError;
+import com.thisisme.model.dto.TimelineDTO.TimelineImportResult;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.ContentStatus;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.repository.PassportPermissionRepository;
+import com.thisisme.repository.PassportRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk timeline import from CSV or NDJSON, for schools bringing years of behaviour logs
+ * and correspondence into a passport.
+ *
+ * Access is checked once for the whole file. Rows are then parsed and validated as they
+ * stream in and written with batched JDBC inserts; the search vector triggers are
+ * deferred and the vectors filled in one pass before commit. Invalid rows are skipped
+ * and reported, the rest import in one transaction. Mentions are recorded but not
+ * notified: imported entries are history, not new activity.
+ */
+@Service
+public class TimelineImportService {
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    // Separates values of list columns (tags, visibleToRoles, mentionedUserIds) in CSV
+    private static final String LIST_SEPARATOR = ";";
+    private static final int MAX_TITLE_LENGTH = 255;
+    private static final int MAX_TAG_LENGTH = 100;
+
+    private static final String INSERT_ENTRY =
+        "INSERT INTO timeline_entries (id, passport_id, author_id, entry_type, title, content, entry_date, "
+            + "visibility_level, metadata, status, child_mode_contribution, pinned, flagged, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, FALSE, FALSE, ?, ?)";
+    private static final String INSERT_TAG =
+        "INSERT INTO timeline_entry_tags (entry_id, tag) VALUES (?, ?)";
+    private static final String INSERT_ROLE =
+        "INSERT INTO timeline_entry_visible_roles (entry_id, role) VALUES (?, ?)";
+    private static final String INSERT_MENTION =
+        "INSERT INTO timeline_entry_mentions (entry_id, user_id) VALUES (?, ?)";
+
+    private final PassportRepository passportRepository;
+    private final TimelineEntryRepository timelineRepository;
+    private final UserRepository userRepository;
+    private final PassportPermissionRepository permissionRepository;
+    private final PermissionEvaluator permissionEvaluator;
+    private final AuditService auditService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TimelineSearchEngine searchEngine;
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    @Value("${app.timeline.import.batch-size:1000}")
+    private int batchSize;
+
+    public TimelineImportService(
+            PassportRepository passportRepository,
+            TimelineEntryRepository timelineRepository,
+            UserRepository userRepository,
+            PassportPermissionRepository permissionRepository,
+            PermissionEvaluator permissionEvaluator,
+            AuditService auditService,
+            JdbcTemplate jdbcTemplate,
+            TimelineSearchEngine searchEngine) {
+        this.passportRepository = passportRepository;
+        this.timelineRepository = timelineRepository;
+        this.userRepository = userRepository;
+        this.permissionRepository = permissionRepository;
+        this.permissionEvaluator = permissionEvaluator;
+        this.auditService = auditService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchEngine = searchEngine;
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Import a CSV file with a header row. Columns are entryType, title, content,
+     * entryDate (yyyy-MM-dd), visibilityLevel, visibleToRoles, tags and mentionedUserIds;
+     * list columns separate values with semicolons. Unknown columns are ignored.
+     */
+    @Transactional
+    public TimelineImportResult importCsv(UUID passportId, UUID userId, InputStream in,
+                                          String ipAddress) throws IOException {
+        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+        try (MappingIterator<Map<String, String>> rows = csvMapper.readerForMapOf(String.class)
+                .with(schema)
+                .readValues(in)) {
+            return importRows(passportId, userId, ipAddress, "CSV", new CsvRows(rows));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed CSV: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Import newline-delimited JSON, one timeline entry request per line
+     */
+    @Transactional
+    public TimelineImportResult importNdjson(UUID passportId, UUID userId, InputStream in,
+                                             String ipAddress) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return importRows(passportId, userId, ipAddress, "NDJSON", new NdjsonRows(reader));
+        }
+    }
+
+    private TimelineImportResult importRows(UUID passportId, UUID userId, String ipAddress, String format,
+                                            RowSource source) throws IOException {
+        Passport passport = passportRepository.findActiveById(passportId)
+            .orElseThrow(() -> new ResourceNotFoundException("Passport not found"));
+
+        if (!permissionEvaluator.canAddTimelineEntries(passportId, userId)) {
+            throw new SecurityException("You don't have permission to add timeline entries");
+        }
+
+        User author = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        // Child role contributions require review, as with entries added one at a time
+        boolean childRole = permissionEvaluator.getRole(passportId, userId) == Role.CHILD;
+        Set<UUID> collaborators = permissionRepository.findActiveByPassportId(passportId).stream()
+            .map(permission -> permission.getUser().getId())
+            .collect(Collectors.toSet());
+
+        timelineRepository.deferSearchVectors();
+
+        JdbcInsertBatch entries = new JdbcInsertBatch(jdbcTemplate, INSERT_ENTRY, batchSize);
+        JdbcInsertBatch tags = entries.child(INSERT_TAG);
+        JdbcInsertBatch roles = entries.child(INSERT_ROLE);
+        JdbcInsertBatch mentions = entries.child(INSERT_MENTION);
+
+        Timestamp now = Timestamp.from(Instant.now());
+        int imported = 0;
+        int failed = 0;
+        List<ImportRowError> errors = new ArrayList<>();
+
+        for (ParsedRow row; (row = source.next()) != null; ) {
+            String error = row.error() != null ? row.error() : validate(row.request(), collaborators);
+            if (error != null) {
+                failed++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new ImportRowError(row.number(), error));
+                }
+                continue;
+            }
+
+            CreateTimelineEntryRequest request = row.request();
+            boolean review = childRole || Boolean.TRUE.equals(request.childModeContribution());
+            VisibilityLevel visibility = request.visibilityLevel() != null
+                ? request.visibilityLevel() : VisibilityLevel.OWNERS_ONLY;
+            String metadata = objectMapper.writeValueAsString(
+                request.metadata() != null ? request.metadata() : Map.of());
+
+            UUID id = UUID.randomUUID();
+            entries.add(id, passportId, userId, request.entryType().name(), request.title().strip(),
+                request.content(), request.entryDate(), visibility.name(), metadata,
+                (review ? ContentStatus.PENDING_REVIEW : ContentStatus.PUBLISHED).name(), review, now, now);
+            for (String tag : normalizeTags(request.tags())) {
+                tags.add(id, tag);
+            }
+            for (Role role : orEmpty(request.visibleToRoles())) {
+                roles.add(id, role.name());
+            }
+            for (UUID mentioned : orEmpty(request.mentionedUserIds())) {
+                mentions.add(id, mentioned);
+            }
+            imported++;
+        }
+        entries.flush();
+
+        timelineRepository.refreshMissingSearchVectors(passportId);
+        searchEngine.passportChanged(passportId);
+
+        auditService.log(AuditAction.TIMELINE_ENTRIES_IMPORTED, userId, author.getName(), ipAddress)
+            .withPassport(passport)
+            .withDescription("Imported " + imported + " timeline entries from " + format
+                + (failed > 0 ? " (" + failed + " rows skipped)" : ""))
+            .withDataCategories("BEHAVIORAL", "ACTIVITIES")
+            .save();
+
+        return new TimelineImportResult(imported, failed, errors);
+    }
+
+    /**
+     * The same rules as a single created entry, plus the limits the database would
+     * otherwise enforce by failing the whole batch
+     */
+    private String validate(CreateTimelineEntryRequest request, Set<UUID> collaborators) {
+        if (request.entryType() == null) {
+            return "entryType is required";
+        }
+        if (request.title() == null || request.title().isBlank()) {
+            return "title is required";
+        }
+        if (request.title().strip().length() > MAX_TITLE_LENGTH) {
+            return "title is longer than " + MAX_TITLE_LENGTH + " characters";
+        }
+        if (request.entryDate() == null) {
+            return "entryDate is required";
+        }
+        for (String tag : normalizeTags(request.tags())) {
+            if (tag.length() > MAX_TAG_LENGTH) {
+                return "tag is longer than " + MAX_TAG_LENGTH + " characters: " + tag;
+            }
+        }
+        for (UUID mentioned : orEmpty(request.mentionedUserIds())) {
+            if (!collaborators.contains(mentioned)) {
+                return "mentioned user is not a collaborator: " + mentioned;
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> normalizeTags(Set<String> tags) {
+        if (tags == null) {
+            return Set.of();
+        }
+        return tags.stream()
+            .filter(Objects::nonNull)
+            .map(String::strip)
+            .filter(tag -> !tag.isEmpty())
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static <T> Collection<T> orEmpty(Collection<T> values) {
+        return values != null ? values : List.of();
+    }
+
+    /**
+     * A row as read from the file: a request to validate, or why it couldn't be read
+     */
+    private record ParsedRow(long number, CreateTimelineEntryRequest request, String error) {}
+
+    private interface RowSource {
+        /**
+         * Next row, or null at the end of the file
+         */
+        ParsedRow next() throws IOException;
+    }
+
+    private static final class CsvRows implements RowSource {
+
+        private final MappingIterator<Map<String, String>> rows;
+        private long number;
+
+        CsvRows(MappingIterator<Map<String, String>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            if (!rows.hasNextValue()) {
+                return null;
+            }
+            Map<String, String> fields = rows.nextValue();
+            number++;
+            try {
+                return new ParsedRow(number, new CreateTimelineEntryRequest(
+                    parse(fields, "entryType", EntryType::valueOf),
+                    parse(fields, "title", Function.identity()),
+                    parse(fields, "content", Function.identity()),
+                    parse(fields, "entryDate", LocalDate::parse),
+                    parse(fields, "visibilityLevel", VisibilityLevel::valueOf),
+                    parseList(fields, "visibleToRoles", Role::fromString),
+                    parseList(fields, "tags", Function.identity()),
+                    parseList(fields, "mentionedUserIds", UUID::fromString),
+                    null,
+                    null
+                ), null);
+            } catch (IllegalArgumentException e) {
+                return new ParsedRow(number, null, e.getMessage());
+            }
+        }
+
+        private static <T> T parse(Map<String, String> fields, String column, Function<String, T> parser) {
+            String value = fields.get(column);
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            try {
+                return parser.apply(value.strip());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid " + column + ": " + value);
+            }
+        }
+
+        private static <T> Set<T> parseList(Map<String, String> fields, String column, Function<String, T> parser) {
+            String value = fields.get(column);
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            Set<T> values = new LinkedHashSet<>();
+            for (String item : value.split(LIST_SEPARATOR)) {
+                if (!item.isBlank()) {
+                    try {
+                        values.add(parser.apply(item.strip()));
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("Invalid " + column + ": " + item.strip());
+                    }
+                }
+            }
+            return values;
+        }
+    }
+
+    private final class NdjsonRows implements RowSource {
+
+        private final BufferedReader reader;
+        private long number;
+
+        NdjsonRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                number++;
+            } while (line.isBlank());
+
+            try {
+                return new ParsedRow(number, objectMapper.readValue(line, CreateTimelineEntryRequest.class), null);
+            } catch (JsonProcessingException e) {
+                return new ParsedRow(number, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
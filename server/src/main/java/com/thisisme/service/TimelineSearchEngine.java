@@ -0,0 +1,55 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Full-text search over a passport's timeline, selected with app.search.engine:
+ * "postgres" (default) uses the tsvector column, "lucene" an embedded index on local disk.
+ *
+ * Callers check access; engines only return live entries the viewer's role can see.
+ */
+public interface TimelineSearchEngine {
+
+    /**
+     * @param entryTypes restrict hits to these types; null or empty for any
+     * @param tags restrict hits to entries with any of these tags; null or empty for any
+     * @param viewerRole role of the caller on the passport, for entry visibility
+     * @param includeDocuments whether the caller may view documents, and so match entries
+     *                         by the text of their attachments
+     */
+    record SearchQuery(String text, Set<EntryType> entryTypes, Set<String> tags, Role viewerRole,
+                       boolean includeDocuments, int limit) {}
+
+    /**
+     * Hits best first. Facet counts cover every visible match of the text, before the
+     * type and tag restrictions, so a client can show what each refinement would return.
+     */
+    record SearchResult(List<UUID> entryIds, long totalHits, Map<EntryType, Long> entryTypeCounts,
+                        Map<String, Long> tagCounts) {
+
+        public static SearchResult empty() {
+            return new SearchResult(List.of(), 0, Map.of(), Map.of());
+        }
+    }
+
+    SearchResult search(UUID passportId, SearchQuery query);
+
+    /**
+     * Reindex a passport's entries once the current transaction commits, on every node.
+     * For bulk writes; single-entry changes are picked up without being reported.
+     */
+    default void passportChanged(UUID passportId) {
+    }
+
+    /**
+     * Rebuild the index from the database; nothing to do where the database is the index
+     */
+    default void rebuild() {
+    }
+}
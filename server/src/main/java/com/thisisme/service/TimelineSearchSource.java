@@ -0,0 +1,138 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.TimelineEntry;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.PassportRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reads timeline entries from the database in the shape an external search index stores them
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "lucene")
+public class TimelineSearchSource {
+
+    /**
+     * Everything indexed for one live entry. visibleTo holds the roles that may see it.
+     */
+    public record IndexedEntry(UUID id, UUID passportId, EntryType entryType, String title, String content,
+                               Set<String> tags, Set<Role> visibleTo, String email, String documents) {}
+
+    private final TimelineEntryRepository timelineRepository;
+    private final DocumentRepository documentRepository;
+    private final PassportRepository passportRepository;
+
+    public TimelineSearchSource(TimelineEntryRepository timelineRepository,
+                                DocumentRepository documentRepository,
+                                PassportRepository passportRepository) {
+        this.timelineRepository = timelineRepository;
+        this.documentRepository = documentRepository;
+        this.passportRepository = passportRepository;
+    }
+
+    /**
+     * The live entries among the given ids; deleted or missing ones are left out
+     */
+    @Transactional(readOnly = true)
+    public List<IndexedEntry> load(Collection<UUID> entryIds) {
+        if (entryIds.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, StringBuilder> documents = new HashMap<>();
+        for (Object[] row : documentRepository.findTextByTimelineEntryIds(entryIds)) {
+            StringBuilder text = documents.computeIfAbsent((UUID) row[0], k -> new StringBuilder());
+            append(text, (String) row[1]);
+            append(text, (String) row[2]);
+        }
+
+        List<IndexedEntry> entries = new ArrayList<>();
+        for (TimelineEntry entry : timelineRepository.findForIndexing(entryIds)) {
+            if (entry.isDeleted()) {
+                continue;
+            }
+            Set<Role> visibleTo = Arrays.stream(Role.values())
+                .filter(entry::isVisibleTo)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(Role.class)));
+            StringBuilder text = documents.get(entry.getId());
+            entries.add(new IndexedEntry(entry.getId(), entry.getPassport().getId(), entry.getEntryType(),
+                entry.getTitle(), entry.getContent(), Set.copyOf(entry.getTags()), visibleTo,
+                emailText(entry.getMetadata()), text != null ? text.toString() : null));
+        }
+        return entries;
+    }
+
+    @Transactional(readOnly = true)
+    public List<UUID> liveIdsOf(UUID passportId) {
+        return timelineRepository.findLiveIdsByPassportId(passportId);
+    }
+
+    /**
+     * Ids of entries whose indexed text may have changed after the given instant,
+     * including ones deleted since
+     */
+    @Transactional(readOnly = true)
+    public Set<UUID> changedSince(Instant since) {
+        Set<UUID> ids = new HashSet<>(timelineRepository.findIdsChangedSince(since));
+        ids.addAll(documentRepository.findEntryIdsWithDocumentsChangedSince(since));
+        return ids;
+    }
+
+    /**
+     * Ask for the passport to be reindexed everywhere. Joins the caller's transaction, so
+     * the request is seen once the changes it covers are.
+     */
+    @Transactional
+    public void requestReindex(UUID passportId) {
+        passportRepository.requestSearchReindex(passportId, Instant.now());
+    }
+
+    /**
+     * Passports whose reindex was requested after the given instant
+     */
+    @Transactional(readOnly = true)
+    public List<UUID> reindexRequestedSince(Instant since) {
+        return passportRepository.findIdsWithSearchReindexRequestedSince(since);
+    }
+
+    /**
+     * Live entry ids in id order, for rebuilds
+     */
+    @Transactional(readOnly = true)
+    public List<UUID> liveIdsAfter(UUID afterId, int limit) {
+        return timelineRepository.findLiveIdsAfter(afterId, PageRequest.of(0, limit));
+    }
+
+    // Sender, recipient and subject of entries created from emails
+    private static String emailText(Map<String, Object> metadata) {
+        if (metadata == null || !metadata.containsKey("from")) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String key : List.of("from", "to", "subject")) {
+            Object value = metadata.get(key);
+            if (value != null) {
+                append(text, value.toString());
+            }
+        }
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String value) {
+        if (value != null && !value.isBlank()) {
+            if (!text.isEmpty()) {
+                text.append('\n');
+            }
+            text.append(value);
+        }
+    }
+}
@@ -17,6 +17,8 @@ import com.thisisme.repository.PassportRepository;
 import com.thisisme.repository.TimelineEntryRepository;
 import com.thisisme.repository.UserRepository;
 import com.thisisme.security.PermissionEvaluator;
+import com.thisisme.service.TimelineSearchEngine.SearchQuery;
+import com.thisisme.service.TimelineSearchEngine.SearchResult;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -29,6 +31,8 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -36,6 +40,9 @@ import java.util.stream.Collectors;
 @Service
 public class TimelineService {
 
+    // Most hits a search returns
+    private static final int MAX_SEARCH_HITS = 1000;
+
     private final TimelineEntryRepository timelineRepository;
     private final PassportRepository passportRepository;
     private final UserRepository userRepository;
@@ -43,6 +50,7 @@ public class TimelineService {
     private final PermissionEvaluator permissionEvaluator;
     private final AuditService auditService;
     private final NotificationService notificationService;
+    private final TimelineSearchEngine searchEngine;
 
     public TimelineService(
             TimelineEntryRepository timelineRepository,
@@ -51,7 +59,8 @@ public class TimelineService {
             PassportPermissionRepository permissionRepository,
             PermissionEvaluator permissionEvaluator,
             AuditService auditService,
-            NotificationService notificationService) {
+            NotificationService notificationService,
+            TimelineSearchEngine searchEngine) {
         this.timelineRepository = timelineRepository;
         this.passportRepository = passportRepository;
         this.userRepository = userRepository;
@@ -59,6 +68,7 @@ public class TimelineService {
         this.permissionEvaluator = permissionEvaluator;
         this.auditService = auditService;
         this.notificationService = notificationService;
+        this.searchEngine = searchEngine;
     }
 
     /**
@@ -149,10 +159,10 @@ public class TimelineService {
         Page<TimelineEntry> entriesPage;
 
         if (filter.searchQuery() != null && !filter.searchQuery().isBlank()) {
-            String tsQuery = buildPrefixTsQuery(filter.searchQuery());
-            List<TimelineEntry> searchResults = tsQuery != null
-                ? timelineRepository.searchByPassportId(passportId, tsQuery)
-                : List.of();
+            SearchResult hits = searchEngine.search(passportId, new SearchQuery(
+                filter.searchQuery(), filter.entryTypes(), filter.tags(), userRole,
+                permissionEvaluator.canViewDocuments(passportId, userId), MAX_SEARCH_HITS));
+            List<TimelineEntry> searchResults = loadInOrder(hits.entryIds());
             entriesPage = new PageImpl<>(searchResults, pageable, searchResults.size());
         } else if (filter.startDate() != null && filter.endDate() != null) {
             List<TimelineEntry> entries = timelineRepository.findByPassportIdAndDateRange(
@@ -231,6 +241,39 @@ public class TimelineService {
         );
     }
 
+    /**
+     * Ranked search of a passport's timeline with entry type and tag facets
+     */
+    @Transactional(readOnly = true)
+    public TimelineSearchResponse search(UUID passportId, UUID userId, String text, Set<EntryType> entryTypes,
+                                         Set<String> tags, int limit, String ipAddress) {
+        if (!permissionEvaluator.canViewTimeline(passportId, userId)) {
+            throw new SecurityException("You don't have permission to view this timeline");
+        }
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Search text is required");
+        }
+
+        Role userRole = permissionEvaluator.getRole(passportId, userId);
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        SearchResult hits = searchEngine.search(passportId, new SearchQuery(
+            text, entryTypes, tags, userRole, permissionEvaluator.canViewDocuments(passportId, userId),
+            Math.max(1, Math.min(limit, MAX_SEARCH_HITS))));
+        List<TimelineEntryResponse> entries = loadInOrder(hits.entryIds()).stream()
+            .filter(entry -> entry.isVisibleTo(userRole))
+            .map(entry -> toResponse(entry, userRole))
+            .toList();
+
+        auditService.log(AuditAction.TIMELINE_ENTRY_VIEWED, userId, user.getName(), ipAddress)
+            .withPassport(passportId)
+            .withDescription("Searched timeline: " + entries.size() + " hits")
+            .save();
+
+        return new TimelineSearchResponse(entries, hits.totalHits(), hits.entryTypeCounts(), hits.tagCounts());
+    }
+
     /**
      * Approve or reject a pending timeline entry contribution
      */
@@ -621,17 +664,13 @@ public class TimelineService {
     }
 
     /**
-     * Convert a plain search string into a prefix-matching tsquery string.
-     * "diab type" → "diab:* & type:*" so partial words like "diab" match "diabetes".
-     * Returns null if the input contains no usable tokens.
+     * Live entries with the given ids, in the given order. A search index can briefly
+     * trail the database, so deleted entries are dropped here.
      */
-    private String buildPrefixTsQuery(String input) {
-        String cleaned = input.trim().replaceAll("[^\\w\\s]", " ");
-        String query = java.util.Arrays.stream(cleaned.split("\\s+"))
-            .filter(w -> !w.isBlank())
-            .filter(w -> w.length() > 1)
-            .map(w -> w + ":*")
-            .collect(Collectors.joining(" & "));
-        return query.isBlank() ? null : query;
+    private List<TimelineEntry> loadInOrder(List<UUID> entryIds) {
+        Map<UUID, TimelineEntry> byId = timelineRepository.findAllById(entryIds).stream()
+            .filter(entry -> !entry.isDeleted())
+            .collect(Collectors.toMap(TimelineEntry::getId, entry -> entry));
+        return entryIds.stream().map(byId::get).filter(Objects::nonNull).toList();
     }
 }
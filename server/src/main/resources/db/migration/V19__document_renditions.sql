@@ -0,0 +1,9 @@
+-- V19: Track generated image renditions (thumbnail / preview) per document
+
+ALTER TABLE documents
+ADD COLUMN renditions_generated_at TIMESTAMP WITH TIME ZONE,
+ADD COLUMN rendition_error VARCHAR(255);
+
+-- Backfill sweep looks for images that still need renditions
+CREATE INDEX idx_documents_renditions_pending ON documents(uploaded_at)
+    WHERE renditions_generated_at IS NULL AND rendition_error IS NULL AND deleted_at IS NULL;
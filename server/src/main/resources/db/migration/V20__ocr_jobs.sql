@@ -0,0 +1,21 @@
+-- V20: Persistent OCR job queue.
+-- Uploads enqueue a job in the same transaction as the document row; a pool of
+-- workers claims due jobs with FOR UPDATE SKIP LOCKED and retries with backoff.
+
+CREATE TABLE ocr_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    document_id UUID NOT NULL UNIQUE REFERENCES documents(id) ON DELETE CASCADE,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',   -- PENDING | RUNNING | COMPLETED | FAILED
+    auto_create_timeline BOOLEAN NOT NULL DEFAULT FALSE,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    locked_by VARCHAR(100),
+    locked_at TIMESTAMP WITH TIME ZONE,
+    last_error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+-- Workers only ever scan due PENDING jobs and stale RUNNING ones
+CREATE INDEX idx_ocr_jobs_due ON ocr_jobs(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_ocr_jobs_running ON ocr_jobs(locked_at) WHERE status = 'RUNNING';
@@ -0,0 +1,14 @@
+-- V21: Cache of parsed OCR results keyed by file content hash.
+-- Identical files (forwarded attachments, re-uploads) reuse the stored result
+-- instead of running OCR again. Entries expire after a TTL and are ignored once
+-- the OCR service reports a different model version.
+
+CREATE TABLE ocr_result_cache (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    model_version VARCHAR(50),
+    result_json TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_ocr_result_cache_expires ON ocr_result_cache(expires_at);
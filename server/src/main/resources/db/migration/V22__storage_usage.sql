@@ -0,0 +1,18 @@
+-- V22: Maintained per-passport storage usage.
+-- Quota checks read and update this row instead of summing every document, and
+-- the conditional increment makes concurrent uploads unable to overshoot the quota.
+-- A periodic job reconciles the counters against the documents table.
+
+CREATE TABLE storage_usage (
+    passport_id UUID PRIMARY KEY REFERENCES passports(id) ON DELETE CASCADE,
+    bytes_used BIGINT NOT NULL DEFAULT 0,
+    document_count INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    reconciled_at TIMESTAMP WITH TIME ZONE
+);
+
+INSERT INTO storage_usage (passport_id, bytes_used, document_count, updated_at, reconciled_at)
+SELECT p.id, COALESCE(SUM(d.file_size), 0), COUNT(d.id), NOW(), NOW()
+FROM passports p
+LEFT JOIN documents d ON d.passport_id = p.id AND d.deleted_at IS NULL
+GROUP BY p.id;
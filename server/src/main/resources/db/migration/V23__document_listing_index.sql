@@ -0,0 +1,4 @@
+-- V23: Index backing the keyset-paginated document list.
+-- Live documents of a passport in upload order, with id as the cursor tiebreaker.
+
+CREATE INDEX idx_documents_passport_listing ON documents(passport_id, deleted_at, uploaded_at, id);
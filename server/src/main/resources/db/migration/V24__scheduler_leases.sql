@@ -0,0 +1,10 @@
+-- V24: Named leases so cluster-wide scheduled jobs run on one node at a time.
+-- A node takes a lease by upserting the row when it is free or already its own;
+-- an expired lease (crashed holder) can be taken over by anyone.
+
+CREATE TABLE scheduler_leases (
+    name VARCHAR(100) PRIMARY KEY,
+    owner VARCHAR(100) NOT NULL,
+    locked_until TIMESTAMP WITH TIME ZONE NOT NULL,
+    acquired_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,14 @@
+-- V25: Per-passport key-encryption keys for stored documents (crypto-shredding).
+-- Blob data keys under a passport are wrapped with that passport's key, itself
+-- wrapped with the configured storage key. Erasing a passport nulls wrapped_key,
+-- which makes every blob under it unreadable at once; the blobs themselves are
+-- deleted later by the retention reaper. The row is kept as a tombstone so no new
+-- key is ever minted for an erased passport.
+
+CREATE TABLE passport_keys (
+    passport_id UUID PRIMARY KEY REFERENCES passports(id) ON DELETE CASCADE,
+    kek_id VARCHAR(255),
+    wrapped_key BYTEA,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    shredded_at TIMESTAMP WITH TIME ZONE
+);
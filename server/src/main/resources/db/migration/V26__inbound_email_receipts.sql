@@ -0,0 +1,16 @@
+-- V26: Idempotency receipts for the inbound email webhook. Each delivery is keyed by
+-- its Message-ID, or by a hash of the raw payload when the sender doesn't supply one,
+-- so a retried delivery returns the original entry instead of creating a duplicate.
+-- claimed_at marks a delivery in progress; a claim left uncompleted by a crashed
+-- node can be taken over once it's stale.
+
+CREATE TABLE inbound_email_receipts (
+    id UUID PRIMARY KEY,
+    passport_id UUID NOT NULL REFERENCES passports(id) ON DELETE CASCADE,
+    dedup_key VARCHAR(80) NOT NULL,
+    claimed_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE,
+    entry_id UUID,
+    attachment_count INTEGER,
+    CONSTRAINT uq_inbound_email_receipts_key UNIQUE (passport_id, dedup_key)
+);
@@ -0,0 +1,31 @@
+-- V27: Ingestion queue for the inbound email webhook.
+-- The webhook stores the raw payload (under the passport's storage prefix, so it is
+-- encrypted with and shredded alongside the passport's key) and queues a job, then
+-- returns 202. Workers claim jobs with FOR UPDATE SKIP LOCKED, one at a time per
+-- passport in arrival (seq) order, and retry with backoff. FAILED is the dead letter
+-- state; those payloads are kept until the job is requeued.
+
+CREATE TABLE inbound_email_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    seq BIGSERIAL NOT NULL UNIQUE,
+    passport_id UUID NOT NULL REFERENCES passports(id) ON DELETE CASCADE,
+    payload_path VARCHAR(500) NOT NULL,
+    payload_size BIGINT NOT NULL,
+    client_ip VARCHAR(45),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',   -- PENDING | RUNNING | COMPLETED | FAILED
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    locked_by VARCHAR(100),
+    locked_at TIMESTAMP WITH TIME ZONE,
+    last_error TEXT,
+    entry_id UUID,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX idx_inbound_email_jobs_due ON inbound_email_jobs(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_inbound_email_jobs_running ON inbound_email_jobs(locked_at) WHERE status = 'RUNNING';
+-- Per-passport ordering check: is there an earlier unfinished job for this passport?
+CREATE INDEX idx_inbound_email_jobs_open ON inbound_email_jobs(passport_id, seq)
+    WHERE status IN ('PENDING', 'RUNNING');
+CREATE INDEX idx_inbound_email_jobs_failed ON inbound_email_jobs(completed_at) WHERE status = 'FAILED';
@@ -0,0 +1,38 @@
+-- V28: Background export jobs.
+-- Large passport exports and data subject exports are rendered by workers into storage
+-- instead of on the request thread. Passport artifacts live under the passport's storage
+-- prefix, so they are encrypted with and shredded alongside the passport's key.
+--
+-- dedup_key identifies what is being exported (passport, format and content version, or
+-- user and format for data subject exports). At most one job per key can be open at a
+-- time, so identical concurrent requests share a job; a COMPLETED job is reused until
+-- its artifact expires.
+
+CREATE TABLE export_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    requested_by UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    passport_id UUID REFERENCES passports(id) ON DELETE CASCADE,  -- NULL for data subject exports
+    format VARCHAR(20) NOT NULL,
+    content_version VARCHAR(64),
+    dedup_key VARCHAR(200) NOT NULL,
+    client_ip VARCHAR(45),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',   -- PENDING | RUNNING | COMPLETED | FAILED
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    locked_by VARCHAR(100),
+    locked_at TIMESTAMP WITH TIME ZONE,
+    bytes_written BIGINT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    artifact_path VARCHAR(500),
+    artifact_size BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    started_at TIMESTAMP WITH TIME ZONE,
+    completed_at TIMESTAMP WITH TIME ZONE,
+    expires_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE UNIQUE INDEX idx_export_jobs_open_key ON export_jobs(dedup_key) WHERE status IN ('PENDING', 'RUNNING');
+CREATE INDEX idx_export_jobs_completed_key ON export_jobs(dedup_key, completed_at) WHERE status = 'COMPLETED';
+CREATE INDEX idx_export_jobs_due ON export_jobs(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_export_jobs_running ON export_jobs(locked_at) WHERE status = 'RUNNING';
+CREATE INDEX idx_export_jobs_expires ON export_jobs(expires_at) WHERE expires_at IS NOT NULL;
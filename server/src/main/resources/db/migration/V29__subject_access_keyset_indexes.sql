@@ -0,0 +1,27 @@
+-- V29: Keyset indexes for subject access exports.
+-- The export reads each category of a user's data in pages of "id > last seen ORDER BY id"
+-- scoped to the user (or, for entries and documents, to one of their passports). With the
+-- scope column alone every page re-sorts all of the user's rows; (scope, id) lets each
+-- page start where the last one ended. They replace the single-column indexes, which
+-- they cover.
+
+CREATE INDEX idx_passports_created_by_id ON passports(created_by_id, id);
+DROP INDEX IF EXISTS idx_passports_created_by;
+
+CREATE INDEX idx_timeline_passport_id ON timeline_entries(passport_id, id);
+DROP INDEX IF EXISTS idx_timeline_passport;
+
+CREATE INDEX idx_documents_passport_id ON documents(passport_id, id);
+DROP INDEX IF EXISTS idx_documents_passport;
+
+CREATE INDEX idx_comments_author_id ON timeline_comments(author_id, id);
+DROP INDEX IF EXISTS idx_comments_author;
+
+CREATE INDEX idx_reactions_user_id ON timeline_reactions(user_id, id);
+DROP INDEX IF EXISTS idx_reactions_user;
+
+CREATE INDEX idx_notifications_recipient_id ON notifications(recipient_id, id);
+DROP INDEX IF EXISTS idx_notifications_recipient;
+
+CREATE INDEX idx_audit_user_id ON audit_logs(user_id, id);
+DROP INDEX IF EXISTS idx_audit_user;
@@ -0,0 +1,27 @@
+-- V30: Let bulk writers skip the per-row search vector triggers for one transaction
+-- (SELECT set_config('thisisme.defer_search_vector', 'on', true)) and fill the vectors
+-- in one set-based pass afterwards.
+
+CREATE OR REPLACE FUNCTION tg_timeline_entry_search() RETURNS trigger AS $$
+BEGIN
+    IF current_setting('thisisme.defer_search_vector', true) = 'on' THEN
+        RETURN NEW;
+    END IF;
+    PERFORM refresh_timeline_search_vector(NEW.id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION tg_timeline_tag_search() RETURNS trigger AS $$
+BEGIN
+    IF current_setting('thisisme.defer_search_vector', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'DELETE' THEN
+        PERFORM refresh_timeline_search_vector(OLD.entry_id);
+    ELSE
+        PERFORM refresh_timeline_search_vector(NEW.entry_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,95 @@
+-- V31: One search vector write per entry per transaction
+--
+-- The V13 triggers recomputed the vector row by row: an UPDATE of the entry after every
+-- entry write and after every tag inserted or deleted, so replacing ten tags rewrote the
+-- entry about twenty times. Now:
+--   * entry writes compute the vector in a BEFORE trigger, in the row being written
+--   * tag changes queue the entry id; a deferred trigger drains the queue once at commit
+--     and recomputes every queued entry in one statement
+-- Bulk writers can still defer everything to one pass (see V30).
+
+CREATE OR REPLACE FUNCTION timeline_search_vector(p_title text, p_content text, p_tags text)
+RETURNS tsvector AS $$
+    SELECT setweight(to_tsvector('english', coalesce(p_title, '')), 'A') ||
+           setweight(to_tsvector('english', coalesce(p_content, '')), 'B') ||
+           setweight(to_tsvector('english', coalesce(p_tags, '')), 'C');
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Entry writes: fill the vector before the row is stored
+DROP TRIGGER tg_timeline_entry_search ON timeline_entries;
+
+CREATE OR REPLACE FUNCTION tg_timeline_entry_search() RETURNS trigger AS $$
+BEGIN
+    IF current_setting('thisisme.defer_search_vector', true) = 'on' THEN
+        NEW.content_search_vector := NULL;
+        RETURN NEW;
+    END IF;
+    NEW.content_search_vector := timeline_search_vector(NEW.title, NEW.content,
+        (SELECT string_agg(tag, ' ') FROM timeline_entry_tags WHERE entry_id = NEW.id));
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tg_timeline_entry_search_insert
+BEFORE INSERT ON timeline_entries
+FOR EACH ROW EXECUTE FUNCTION tg_timeline_entry_search();
+
+CREATE TRIGGER tg_timeline_entry_search_update
+BEFORE UPDATE OF title, content ON timeline_entries
+FOR EACH ROW
+WHEN (OLD.title IS DISTINCT FROM NEW.title OR OLD.content IS DISTINCT FROM NEW.content)
+EXECUTE FUNCTION tg_timeline_entry_search();
+
+-- Tag writes: queue the entry for one recompute at commit. Rows never outlive their
+-- transaction, so the queue needs no WAL.
+CREATE UNLOGGED TABLE timeline_search_vector_queue (
+    entry_id UUID PRIMARY KEY
+);
+
+DROP TRIGGER tg_timeline_tag_search ON timeline_entry_tags;
+
+CREATE OR REPLACE FUNCTION tg_timeline_tag_search() RETURNS trigger AS $$
+BEGIN
+    IF current_setting('thisisme.defer_search_vector', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO timeline_search_vector_queue (entry_id)
+    VALUES (CASE WHEN TG_OP = 'DELETE' THEN OLD.entry_id ELSE NEW.entry_id END)
+    ON CONFLICT DO NOTHING;
+    IF TG_OP = 'UPDATE' AND OLD.entry_id <> NEW.entry_id THEN
+        INSERT INTO timeline_search_vector_queue (entry_id) VALUES (OLD.entry_id)
+        ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tg_timeline_tag_search
+AFTER INSERT OR UPDATE OR DELETE ON timeline_entry_tags
+FOR EACH ROW EXECUTE FUNCTION tg_timeline_tag_search();
+
+-- The first queued row's deferred trigger drains the whole queue; the rest find it empty.
+-- Other transactions' queued rows are uncommitted, so invisible here.
+CREATE OR REPLACE FUNCTION tg_drain_search_vector_queue() RETURNS trigger AS $$
+BEGIN
+    WITH drained AS (
+        DELETE FROM timeline_search_vector_queue RETURNING entry_id
+    )
+    UPDATE timeline_entries t
+    SET content_search_vector = timeline_search_vector(t.title, t.content, g.tags)
+    FROM (SELECT d.entry_id, string_agg(tg.tag, ' ') AS tags
+          FROM drained d
+          LEFT JOIN timeline_entry_tags tg ON tg.entry_id = d.entry_id
+          GROUP BY d.entry_id) g
+    WHERE t.id = g.entry_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE CONSTRAINT TRIGGER tg_drain_search_vector_queue
+AFTER INSERT ON timeline_search_vector_queue
+DEFERRABLE INITIALLY DEFERRED
+FOR EACH ROW EXECUTE FUNCTION tg_drain_search_vector_queue();
+
+-- Superseded by the set-based paths above
+DROP FUNCTION refresh_timeline_search_vector(UUID);
@@ -0,0 +1,38 @@
+-- V32: Full-text search over documents
+--
+-- Each document gets a weighted vector: its original file name (A) above its OCR text (C),
+-- the same weights timeline entries give titles and tags, so ranks of the two are
+-- comparable. The vector is written in the row by a BEFORE trigger, on insert and on the
+-- updates that change either input: OCR completing, or erasure clearing the text. Other
+-- document updates (renditions, soft deletes) leave it alone.
+
+ALTER TABLE documents ADD COLUMN search_vector tsvector;
+
+-- File names are split on dots, dashes and underscores so "gp-letter_2024.pdf" matches
+-- "letter"; the parser would otherwise read it as a single file path token
+CREATE OR REPLACE FUNCTION document_search_vector(p_file_name text, p_ocr_text text)
+RETURNS tsvector AS $$
+    SELECT setweight(to_tsvector('english', regexp_replace(coalesce(p_file_name, ''), '[._-]+', ' ', 'g')), 'A') ||
+           setweight(to_tsvector('english', coalesce(p_ocr_text, '')), 'C');
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION tg_document_search() RETURNS trigger AS $$
+BEGIN
+    NEW.search_vector := document_search_vector(NEW.original_file_name, NEW.ocr_text);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tg_document_search_insert
+BEFORE INSERT ON documents
+FOR EACH ROW EXECUTE FUNCTION tg_document_search();
+
+CREATE TRIGGER tg_document_search_update
+BEFORE UPDATE OF original_file_name, ocr_text ON documents
+FOR EACH ROW
+WHEN (OLD.original_file_name IS DISTINCT FROM NEW.original_file_name OR OLD.ocr_text IS DISTINCT FROM NEW.ocr_text)
+EXECUTE FUNCTION tg_document_search();
+
+UPDATE documents SET search_vector = document_search_vector(original_file_name, ocr_text);
+
+CREATE INDEX idx_documents_search ON documents USING GIN (search_vector) WHERE deleted_at IS NULL;
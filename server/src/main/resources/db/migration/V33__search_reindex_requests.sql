@@ -0,0 +1,10 @@
+-- V33: Search reindex requests that every node sees
+--
+-- Bulk imports keep the original timestamps of the entries they write, so an index that
+-- syncs on updated_at would never pick them up. Imports stamp the passport instead, in the
+-- same transaction, and each node's sync reindexes passports stamped since its last run.
+
+ALTER TABLE passports ADD COLUMN search_reindex_requested_at TIMESTAMP WITH TIME ZONE;
+
+CREATE INDEX idx_passports_search_reindex ON passports(search_reindex_requested_at)
+    WHERE search_reindex_requested_at IS NOT NULL;
@@ -0,0 +1,9 @@
+-- V34: Keyset indexes for the entries and documents a user wrote on passports shared
+-- with them. Subject access exports page over these by author (or uploader) as V29's
+-- indexes do by passport; they replace the single-column indexes, which they cover.
+
+CREATE INDEX idx_timeline_author_id ON timeline_entries(author_id, id);
+DROP INDEX IF EXISTS idx_timeline_author;
+
+CREATE INDEX idx_documents_uploaded_by_id ON documents(uploaded_by_id, id);
+DROP INDEX IF EXISTS idx_documents_uploaded_by;
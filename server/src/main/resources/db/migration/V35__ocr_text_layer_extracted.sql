@@ -0,0 +1,7 @@
+-- V35: Read PDF text layers while the OCR service is unavailable
+--
+-- Workers keep claiming PDF jobs while OCR is disabled or its circuit is open. The text
+-- layer is saved straight away and the job goes back on the queue for its scanned pages
+-- only; this flag keeps it off the text-layer claim query until the service is back.
+
+ALTER TABLE ocr_jobs ADD COLUMN text_layer_extracted BOOLEAN NOT NULL DEFAULT FALSE;
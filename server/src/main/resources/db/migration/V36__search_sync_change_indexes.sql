@@ -0,0 +1,14 @@
+-- V36: Indexes for the search index sync, which every node polls every couple of
+-- seconds for entries and attachments changed since its last run. Each timestamp in
+-- those OR'd conditions gets its own index so the planner can combine range scans
+-- instead of reading the whole table. Only attachments of entries are indexed, as
+-- the sync ignores the rest.
+
+CREATE INDEX idx_timeline_entries_updated_at ON timeline_entries(updated_at);
+CREATE INDEX idx_timeline_entries_deleted_at ON timeline_entries(deleted_at) WHERE deleted_at IS NOT NULL;
+
+CREATE INDEX idx_documents_entry_uploaded_at ON documents(uploaded_at) WHERE timeline_entry_id IS NOT NULL;
+CREATE INDEX idx_documents_entry_ocr_processed_at ON documents(ocr_processed_at)
+    WHERE timeline_entry_id IS NOT NULL AND ocr_processed_at IS NOT NULL;
+CREATE INDEX idx_documents_entry_deleted_at ON documents(deleted_at)
+    WHERE timeline_entry_id IS NOT NULL AND deleted_at IS NOT NULL;
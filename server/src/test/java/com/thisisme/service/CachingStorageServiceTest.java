@@ -0,0 +1,298 @@
+package com.thisisme.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingStorageServiceTest {
+
+    @Mock private StorageService delegate;
+
+    @TempDir
+    Path cacheDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CachingStorageService cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CachingStorageService(delegate, cacheDir, 100, 60, meterRegistry);
+        cache.init();
+    }
+
+    @Test
+    void download_ShouldServeRepeatReadsFromDisk() throws IOException {
+        when(delegate.download("passports/p/documents/a.jpg")).thenReturn(bytes(10));
+
+        byte[] first = cache.download("passports/p/documents/a.jpg");
+        byte[] second = cache.download("passports/p/documents/a.jpg");
+
+        assertArrayEquals(first, second);
+        verify(delegate, times(1)).download("passports/p/documents/a.jpg");
+        assertEquals(1.0, requests("hit"));
+        assertEquals(1.0, requests("miss"));
+    }
+
+    @Test
+    void upload_ShouldWriteThroughToCache() throws IOException {
+        cache.upload("key", bytes(20), "image/jpeg");
+
+        assertArrayEquals(bytes(20), cache.download("key"));
+        verify(delegate).upload("key", bytes(20), "image/jpeg");
+        verify(delegate, never()).download(any());
+    }
+
+    @Test
+    void upload_ShouldStreamThroughAndWriteThroughToCache() throws IOException {
+        doAnswer(i -> i.<InputStream>getArgument(1).readAllBytes())
+            .when(delegate).upload(eq("key"), any(InputStream.class), eq(20L), eq("image/jpeg"));
+
+        cache.upload("key", new ByteArrayInputStream(bytes(20)), 20, "image/jpeg");
+
+        assertArrayEquals(bytes(20), cache.download("key"));
+        verify(delegate, never()).upload(any(), any(byte[].class), any());
+        verify(delegate, never()).download(any());
+    }
+
+    @Test
+    void upload_ShouldNotCacheWhenBackendFails() throws IOException {
+        doThrow(new IOException("S3 unavailable"))
+            .when(delegate).upload(eq("key"), any(InputStream.class), eq(20L), eq("image/jpeg"));
+
+        assertThrows(IOException.class,
+            () -> cache.upload("key", new ByteArrayInputStream(bytes(20)), 20, "image/jpeg"));
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cacheFiles());
+    }
+
+    @Test
+    void openStream_ShouldFillCacheAsMissIsRead() throws IOException {
+        when(delegate.openStream("doc")).thenReturn(new ByteArrayInputStream(bytes(30)));
+
+        try (InputStream in = cache.openStream("doc")) {
+            assertArrayEquals(bytes(30), in.readAllBytes());
+        }
+        try (InputStream in = cache.openStream("doc")) {
+            assertArrayEquals(bytes(30), in.readAllBytes());
+        }
+
+        verify(delegate, times(1)).openStream("doc");
+        assertEquals(30, cache.getCurrentSizeBytes());
+        assertEquals(1.0, requests("hit"));
+    }
+
+    @Test
+    void openStream_ShouldNotCacheOversizedOrPartlyReadStreams() throws IOException {
+        when(delegate.openStream("big")).thenReturn(new ByteArrayInputStream(bytes(61)));
+        when(delegate.openStream("doc")).thenReturn(new ByteArrayInputStream(bytes(30)));
+
+        try (InputStream in = cache.openStream("big")) {
+            assertArrayEquals(bytes(61), in.readAllBytes());
+        }
+        try (InputStream in = cache.openStream("doc")) {
+            assertEquals(10, in.readNBytes(10).length);
+        }
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cacheFiles());
+    }
+
+    @Test
+    void openRange_ShouldServeCachedEntriesFromDisk() throws IOException {
+        when(delegate.download("doc")).thenReturn(bytes(30));
+        cache.download("doc");
+
+        try (InputStream in = cache.openRange("doc", 25, 10)) {
+            assertArrayEquals(Arrays.copyOfRange(bytes(30), 25, 30), in.readAllBytes());
+        }
+
+        verify(delegate, never()).openRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void openRange_ShouldPassMissesToBackend() throws IOException {
+        when(delegate.openRange("doc", 5, 3)).thenReturn(new ByteArrayInputStream(bytes(3)));
+
+        try (InputStream in = cache.openRange("doc", 5, 3)) {
+            assertArrayEquals(bytes(3), in.readAllBytes());
+        }
+
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void store_ShouldEvictLeastRecentlyUsedOverCap() throws IOException {
+        when(delegate.download("a")).thenReturn(bytes(40));
+        when(delegate.download("b")).thenReturn(bytes(40));
+        when(delegate.download("c")).thenReturn(bytes(40));
+
+        cache.download("a");
+        cache.download("b");
+        cache.download("a"); // "b" is now least recently used
+        cache.download("c");
+
+        assertEquals(80, cache.getCurrentSizeBytes());
+        cache.download("a");
+        cache.download("b");
+        verify(delegate, times(1)).download("a");
+        verify(delegate, times(2)).download("b");
+    }
+
+    @Test
+    void download_ShouldNotCacheEntriesOverMaxEntrySize() throws IOException {
+        when(delegate.download("big")).thenReturn(bytes(61));
+
+        cache.download("big");
+        cache.download("big");
+
+        verify(delegate, times(2)).download("big");
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void download_ShouldCoalesceConcurrentMissesForSameKey() throws Exception {
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.download("slow")).thenAnswer(i -> {
+            fetchStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return bytes(30);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> leader = pool.submit(() -> cache.download("slow"));
+            assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+            Future<byte[]> follower = pool.submit(() -> cache.download("slow"));
+
+            // Give the follower time to join the in-flight fetch before releasing it
+            while (requests("coalesced") < 1.0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertArrayEquals(bytes(30), leader.get(5, TimeUnit.SECONDS));
+            assertArrayEquals(bytes(30), follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(delegate, times(1)).download("slow");
+    }
+
+    @Test
+    void delete_ShouldInvalidateCachedCopy() throws IOException {
+        when(delegate.download("doc")).thenReturn(bytes(10));
+        cache.download("doc");
+
+        cache.delete("doc");
+        cache.download("doc");
+
+        verify(delegate).delete("doc");
+        verify(delegate, times(2)).download("doc");
+    }
+
+    @Test
+    void download_ShouldNotCacheObjectDeletedWhileFetching() throws IOException {
+        when(delegate.download("doc")).thenAnswer(i -> {
+            cache.delete("doc");
+            return bytes(10);
+        }).thenReturn(bytes(10));
+
+        assertArrayEquals(bytes(10), cache.download("doc"));
+        cache.download("doc");
+
+        assertEquals(1, cache.getEntryCount());
+        verify(delegate, times(2)).download("doc");
+    }
+
+    @Test
+    void openStream_ShouldDiscardFillWhenObjectDeletedWhileReading() throws IOException {
+        when(delegate.openStream("doc")).thenReturn(new ByteArrayInputStream(bytes(10)));
+
+        try (InputStream in = cache.openStream("doc")) {
+            in.read(new byte[4]);
+            cache.delete("doc");
+            in.readAllBytes();
+        }
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cacheFiles());
+        assertFalse(cache.exists("doc"));
+    }
+
+    @Test
+    void deleteAll_ShouldInvalidateOnlyKeysTheBackendDeleted() throws IOException {
+        when(delegate.download("a")).thenReturn(bytes(10));
+        when(delegate.download("b")).thenReturn(bytes(10));
+        cache.download("a");
+        cache.download("b");
+        when(delegate.deleteAll(List.of("a", "b"))).thenReturn(List.of("b"));
+
+        assertEquals(List.of("b"), cache.deleteAll(List.of("a", "b")));
+
+        assertEquals(1, cache.getEntryCount());
+        assertFalse(cache.exists("a"));
+    }
+
+    @Test
+    void init_ShouldRebuildIndexAndSweepPartialFills() throws IOException {
+        when(delegate.download("doc")).thenReturn(bytes(10));
+        cache.download("doc");
+        Files.write(cacheDir.resolve("abandoned.1234.tmp"), bytes(5));
+
+        CachingStorageService restarted = new CachingStorageService(
+            delegate, cacheDir, 100, 60, new SimpleMeterRegistry());
+        restarted.init();
+
+        assertEquals(1, restarted.getEntryCount());
+        assertEquals(10, restarted.getCurrentSizeBytes());
+        assertFalse(Files.exists(cacheDir.resolve("abandoned.1234.tmp")));
+        restarted.download("doc");
+        verify(delegate, times(1)).download("doc");
+    }
+
+    private long cacheFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.count();
+        }
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("storage.cache.requests").tag("result", result).counter().count();
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
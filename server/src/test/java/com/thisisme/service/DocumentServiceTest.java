@@ -1,9 +1,11 @@
 package com.thisisme.service;
 
 import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.DocumentDTO.DocumentFilterRequest;
 import com.thisisme.model.entity.Document;
 import com.thisisme.model.entity.Passport;
 import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.DocumentSort;
 import com.thisisme.repository.DocumentRepository;
 import com.thisisme.repository.PassportRepository;
 import com.thisisme.repository.TimelineEntryRepository;
@@ -16,10 +18,23 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -27,6 +42,8 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,7 +58,10 @@ class DocumentServiceTest {
     @Mock private AuditService auditService;
     @Mock private AuditService.AuditLogBuilder auditLogBuilder;
     @Mock private StorageService storageService;
-    @Mock private OcrService ocrService;
+    @Mock private OcrJobService ocrJobService;
+    @Mock private OcrResultCache ocrResultCache;
+    @Mock private ImageRenditionService renditionService;
+    @Mock private StorageUsageService storageUsageService;
     @Mock private NotificationService notificationService;
 
     private DocumentService documentService;
@@ -59,14 +79,17 @@ class DocumentServiceTest {
             permissionEvaluator,
             auditService,
             storageService,
-            ocrService, notificationService
+            ocrJobService,
+            ocrResultCache,
+            renditionService,
+            storageUsageService,
+            notificationService
         );
 
         // Set config values
         ReflectionTestUtils.setField(documentService, "encryptionKeyId", "test-key");
         ReflectionTestUtils.setField(documentService, "maxFileSize", 52428800L);
         ReflectionTestUtils.setField(documentService, "storageQuotaPerPassport", 524288000L);
-        ReflectionTestUtils.setField(documentService, "autoCreateTimelineFromOcr", true);
 
         testUser = new User("Test User", "test@example.com", "hashedPassword");
         ReflectionTestUtils.setField(testUser, "id", UUID.randomUUID());
@@ -88,6 +111,8 @@ class DocumentServiceTest {
         ReflectionTestUtils.setField(testDocument, "id", UUID.randomUUID());
         ReflectionTestUtils.setField(testDocument, "uploadedAt", Instant.now());
 
+        lenient().when(storageUsageService.tryReserve(any(), anyLong(), anyLong())).thenReturn(true);
+
         // Setup audit mock chain
         lenient().when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
         lenient().when(auditLogBuilder.withPassport(any(Passport.class))).thenReturn(auditLogBuilder);
@@ -109,7 +134,7 @@ class DocumentServiceTest {
         when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(documentRepository.getTotalStorageByPassport(testPassport.getId())).thenReturn(0L);
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
         when(documentRepository.save(any(Document.class))).thenAnswer(i -> {
             Document d = i.getArgument(0);
             ReflectionTestUtils.setField(d, "id", UUID.randomUUID());
@@ -128,7 +153,7 @@ class DocumentServiceTest {
         assertEquals("test.pdf", result.getOriginalFileName());
         assertEquals("application/pdf", result.getMimeType());
 
-        verify(storageService).upload(any(String.class), any(byte[].class), eq("application/pdf"));
+        verify(storageService).upload(any(String.class), any(InputStream.class), eq(11L), eq("application/pdf"));
         verify(documentRepository).save(any(Document.class));
     }
 
@@ -154,7 +179,7 @@ class DocumentServiceTest {
         when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(documentRepository.getTotalStorageByPassport(testPassport.getId())).thenReturn(0L);
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
 
         assertThrows(IllegalArgumentException.class, () ->
             documentService.uploadDocument(testPassport.getId(), testUser.getId(), file, null, "192.168.1.1")
@@ -170,24 +195,72 @@ class DocumentServiceTest {
         when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(documentRepository.getTotalStorageByPassport(testPassport.getId())).thenReturn(524288000L); // At quota
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(524288000L); // At quota
+
+        assertThrows(IllegalStateException.class, () ->
+            documentService.uploadDocument(testPassport.getId(), testUser.getId(), file, null, "192.168.1.1")
+        );
+    }
+
+    @Test
+    void uploadDocument_ShouldRemoveStoredFileWhenConcurrentUploadTookTheQuota() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file", "test.pdf", "application/pdf", "content".getBytes()
+        );
+
+        when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
+        when(storageUsageService.tryReserve(testPassport.getId(), file.getSize(), 524288000L)).thenReturn(false);
 
         assertThrows(IllegalStateException.class, () ->
             documentService.uploadDocument(testPassport.getId(), testUser.getId(), file, null, "192.168.1.1")
         );
+
+        verify(storageService).delete(argThat(path -> path.startsWith("passports/" + testPassport.getId())));
+        verify(documentRepository, never()).save(any());
     }
 
     @Test
     void getDocuments_ShouldReturnDocumentList() {
         when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of(testDocument));
-        when(documentRepository.getTotalStorageByPassport(testPassport.getId())).thenReturn(1024L);
+        when(documentRepository.findBy(any(Specification.class), any()))
+            .thenReturn(Window.from(List.of(testDocument), i -> ScrollPosition.offset(i), false));
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(1024L);
 
-        var result = documentService.getDocuments(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        var result = documentService.getDocuments(testPassport.getId(), testUser.getId(), defaultFilter(null), "192.168.1.1");
 
         assertNotNull(result);
         assertEquals(1, result.documents().size());
         assertEquals(1024L, result.totalStorageBytes());
+        assertFalse(result.hasMore());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getDocuments_ShouldReturnCursorThatResumesAfterLastDocument() {
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(documentRepository.findBy(any(Specification.class), any()))
+            .thenReturn(Window.from(List.of(testDocument), i -> ScrollPosition.offset(i), true));
+
+        var result = documentService.getDocuments(testPassport.getId(), testUser.getId(), defaultFilter(null), "192.168.1.1");
+
+        assertTrue(result.hasMore());
+        KeysetScrollPosition position = (KeysetScrollPosition) DocumentService.decodeCursor(
+            result.nextCursor(), DocumentSort.UPLOADED_AT, Sort.Direction.DESC);
+        assertEquals(testDocument.getUploadedAt(), position.getKeys().get("uploadedAt"));
+        assertEquals(testDocument.getId(), position.getKeys().get("id"));
+    }
+
+    @Test
+    void getDocuments_ShouldRejectCursorFromDifferentSort() {
+        String cursor = DocumentService.encodeCursor(testDocument, DocumentSort.NAME, Sort.Direction.ASC);
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () ->
+            documentService.getDocuments(testPassport.getId(), testUser.getId(), defaultFilter(cursor), "192.168.1.1")
+        );
     }
 
     @Test
@@ -223,6 +296,18 @@ class DocumentServiceTest {
         documentService.deleteDocument(testDocument.getId(), testUser.getId(), "192.168.1.1");
 
         verify(documentRepository).save(argThat(doc -> doc.getDeletedAt() != null));
+        verify(storageUsageService).release(testPassport.getId(), 1024L);
+    }
+
+    @Test
+    void deleteDocument_ShouldNotReleaseUsageTwice() {
+        testDocument.setDeletedAt(Instant.now());
+        when(documentRepository.findById(testDocument.getId())).thenReturn(Optional.of(testDocument));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+
+        documentService.deleteDocument(testDocument.getId(), testUser.getId(), "192.168.1.1");
+
+        verify(storageUsageService, never()).release(any(), anyLong());
     }
 
     @Test
@@ -245,6 +330,7 @@ class DocumentServiceTest {
         when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageService.supportsDirectDownload()).thenReturn(true);
         when(storageService.getDownloadUrl(testDocument.getStoragePath(), testDocument.getOriginalFileName()))
             .thenReturn("https://storage.example.com/download/file");
 
@@ -253,4 +339,163 @@ class DocumentServiceTest {
         assertNotNull(url);
         assertEquals("https://storage.example.com/download/file", url);
     }
+
+    @Test
+    void getDownloadUrl_ShouldServeThroughApiWhenBackendCannotServeDirectly() {
+        when(documentRepository.findById(testDocument.getId())).thenReturn(Optional.of(testDocument));
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageService.supportsDirectDownload()).thenReturn(false);
+
+        String url = documentService.getDownloadUrl(testDocument.getId(), testUser.getId(), "192.168.1.1");
+
+        assertEquals("/api/v1/passports/" + testPassport.getId() + "/documents/" + testDocument.getId() + "/file", url);
+        verify(storageService, never()).getDownloadUrl(any(), any());
+    }
+
+    @Test
+    void downloadFile_ShouldServeSingleRangeAsPartialContent() throws IOException {
+        when(documentRepository.findById(testDocument.getId())).thenReturn(Optional.of(testDocument));
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageService.openRange(testDocument.getStoragePath(), 1000L, 24L))
+            .thenReturn(new ByteArrayInputStream(new byte[24]));
+
+        ResponseEntity<Resource> response = documentService.downloadFile(
+            testDocument.getId(), testUser.getId(), "bytes=1000-", "192.168.1.1");
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 1000-1023/1024", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(24L, response.getHeaders().getContentLength());
+        assertEquals(24, response.getBody().getInputStream().readAllBytes().length);
+        verify(storageService, never()).openStream(any());
+    }
+
+    @Test
+    void downloadFile_ShouldRejectUnsatisfiableRange() throws IOException {
+        when(documentRepository.findById(testDocument.getId())).thenReturn(Optional.of(testDocument));
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+
+        ResponseEntity<Resource> response = documentService.downloadFile(
+            testDocument.getId(), testUser.getId(), "bytes=2048-", "192.168.1.1");
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */1024", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(storageService, never()).openRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void uploadDocument_ShouldQueueBackgroundWorkForImages() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "photo.jpg",
+            "image/jpeg",
+            "JPEG content".getBytes()
+        );
+
+        when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
+        when(renditionService.supports("image/jpeg")).thenReturn(true);
+        when(ocrJobService.supports("image/jpeg")).thenReturn(true);
+        when(documentRepository.save(any(Document.class))).thenAnswer(i -> {
+            Document d = i.getArgument(0);
+            ReflectionTestUtils.setField(d, "id", UUID.randomUUID());
+            return d;
+        });
+
+        Document result = documentService.uploadDocument(
+            testPassport.getId(), testUser.getId(), file, null, "192.168.1.1");
+
+        verify(renditionService).scheduleAfterCommit(result.getId());
+        // OCR is queued rather than run inside the upload transaction
+        verify(ocrJobService).enqueue(result, true);
+    }
+
+    @Test
+    void uploadDocument_ShouldApplyCachedOcrResultInsteadOfQueueing() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "form.png",
+            "image/png",
+            "PNG content".getBytes()
+        );
+        OcrService.OcrResult cached = new OcrService.OcrResult(
+            true, "Medical", null, java.util.Map.of(), List.of(), "Name: Sam\n");
+
+        when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
+        when(ocrJobService.supports("image/png")).thenReturn(true);
+        when(ocrResultCache.lookup(any())).thenReturn(Optional.of(cached));
+        when(documentRepository.save(any(Document.class))).thenAnswer(i -> i.getArgument(0));
+
+        Document result = documentService.uploadDocument(
+            testPassport.getId(), testUser.getId(), file, null, "192.168.1.1");
+
+        verify(ocrResultCache).lookup(result.getContentHash());
+        verify(ocrJobService).applyCachedResult(result, cached, true);
+        verify(ocrJobService, never()).enqueue(any(), anyBoolean());
+    }
+
+    @Test
+    void uploadDocument_ShouldNotifyUploaderOfCachedOcrResultAfterCommit() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "form.png",
+            "image/png",
+            "PNG content".getBytes()
+        );
+        OcrService.OcrResult cached = new OcrService.OcrResult(
+            true, "Medical", null, java.util.Map.of(), List.of(), "Name: Sam\n");
+
+        when(permissionEvaluator.canUploadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageUsageService.getBytesUsed(testPassport.getId())).thenReturn(0L);
+        when(ocrJobService.supports("image/png")).thenReturn(true);
+        when(ocrResultCache.lookup(any())).thenReturn(Optional.of(cached));
+        when(documentRepository.save(any(Document.class))).thenAnswer(i -> i.getArgument(0));
+        when(ocrJobService.applyCachedResult(any(), eq(cached), eq(true))).thenAnswer(i -> {
+            Document document = i.getArgument(0);
+            return new OcrJobService.OcrCompletion(
+                testUser.getId(), testPassport.getId(), document.getId(), document.getOriginalFileName());
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            Document result = documentService.uploadDocument(
+                testPassport.getId(), testUser.getId(), file, null, "192.168.1.1");
+
+            verify(notificationService, never()).notifyDocumentOcrComplete(any(), any(), any(), any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(notificationService).notifyDocumentOcrComplete(
+                testUser.getId(), testPassport.getId(), result.getId(), "form.png");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getRenditionDocument_ShouldThrowUntilRenditionsGenerated() {
+        when(documentRepository.findById(testDocument.getId())).thenReturn(Optional.of(testDocument));
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+            documentService.getRenditionDocument(testDocument.getId(), testUser.getId())
+        );
+
+        ReflectionTestUtils.setField(testDocument, "renditionsGeneratedAt", Instant.now());
+        assertEquals(testDocument, documentService.getRenditionDocument(testDocument.getId(), testUser.getId()));
+    }
+
+    private static DocumentFilterRequest defaultFilter(String cursor) {
+        return new DocumentFilterRequest(null, null, null, null, cursor, 0);
+    }
 }
@@ -0,0 +1,258 @@
+package com.thisisme.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EncryptingStorageServiceTest {
+
+    private static final int CHUNK = 4096;
+    private static final String KEY_1 = "k1:" + Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String KEY_2 = "k2:" + Base64.getEncoder().encodeToString(filled(32, 7));
+
+    private InMemoryStorage backend;
+    private PassportKeyService passportKeyService;
+    private EncryptingStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        backend = new InMemoryStorage();
+        passportKeyService = mock(PassportKeyService.class);
+        storage = new EncryptingStorageService(backend, keyRing("k1", KEY_1), passportKeyService, true, CHUNK);
+    }
+
+    @Test
+    void upload_ShouldRoundTripAcrossChunkBoundaries() throws IOException {
+        for (int size : new int[] {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK + 17}) {
+            byte[] data = random(size);
+            storage.upload("doc-" + size, new ByteArrayInputStream(data), size, "application/pdf");
+
+            assertArrayEquals(data, storage.download("doc-" + size), "size " + size);
+        }
+    }
+
+    @Test
+    void upload_ShouldStoreOnlyCiphertext() throws IOException {
+        byte[] data = filled(2 * CHUNK, 'A');
+        storage.upload("doc", data, "text/plain");
+
+        byte[] stored = backend.blobs.get("doc");
+        assertArrayEquals(ChunkedEncryption.MAGIC, Arrays.copyOf(stored, ChunkedEncryption.MAGIC.length));
+        assertEquals(-1, indexOf(stored, filled(64, 'A')));
+        assertFalse(storage.supportsDirectDownload());
+    }
+
+    @Test
+    void upload_ShouldRejectStreamShorterThanDeclaredLength() {
+        assertThrows(IOException.class, () ->
+            storage.upload("doc", new ByteArrayInputStream(new byte[10]), 20, "text/plain"));
+    }
+
+    @Test
+    void openRange_ShouldDecryptOnlyRequestedBytes() throws IOException {
+        byte[] data = random(3 * CHUNK + 100);
+        storage.upload("doc", data, "application/pdf");
+
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 20), read(storage.openRange("doc", 10, 10)));
+        assertArrayEquals(Arrays.copyOfRange(data, CHUNK - 5, 2 * CHUNK + 5),
+            read(storage.openRange("doc", CHUNK - 5, CHUNK + 10)));
+        assertArrayEquals(Arrays.copyOfRange(data, 3 * CHUNK, data.length),
+            read(storage.openRange("doc", 3 * CHUNK, 1000)));
+        assertEquals(0, read(storage.openRange("doc", data.length, 10)).length);
+    }
+
+    @Test
+    void openRange_ShouldFetchOnlyCoveringChunks() throws IOException {
+        storage.upload("doc", random(4 * CHUNK), "application/pdf");
+        backend.rangeBytesServed = 0;
+
+        read(storage.openRange("doc", 2 * CHUNK + 1, 10));
+
+        // Header probe plus one chunk, not the whole blob
+        assertTrue(backend.rangeBytesServed <= ChunkedEncryption.MAX_HEADER_BYTES + CHUNK + ChunkedEncryption.TAG_BYTES);
+    }
+
+    @Test
+    void download_ShouldDetectTampering() throws IOException {
+        storage.upload("doc", random(2 * CHUNK), "application/pdf");
+        byte[] stored = backend.blobs.get("doc");
+        stored[stored.length - CHUNK] ^= 1;
+
+        assertThrows(IOException.class, () -> storage.download("doc"));
+    }
+
+    @Test
+    void download_ShouldDetectTruncation() throws IOException {
+        storage.upload("doc", random(2 * CHUNK), "application/pdf");
+        byte[] stored = backend.blobs.get("doc");
+        backend.blobs.put("doc", Arrays.copyOf(stored, stored.length - CHUNK - ChunkedEncryption.TAG_BYTES));
+
+        assertThrows(IOException.class, () -> storage.download("doc"));
+    }
+
+    @Test
+    void download_ShouldPassThroughBlobsStoredBeforeEncryption() throws IOException {
+        byte[] legacy = random(CHUNK + 3);
+        backend.blobs.put("legacy", legacy);
+
+        assertArrayEquals(legacy, storage.download("legacy"));
+        assertArrayEquals(Arrays.copyOfRange(legacy, 5, 15), read(storage.openRange("legacy", 5, 10)));
+    }
+
+    @Test
+    void download_ShouldReadBlobsWrappedWithPreviousKeyAfterRotation() throws IOException {
+        byte[] data = random(CHUNK + 1);
+        storage.upload("old", data, "application/pdf");
+
+        EncryptingStorageService rotated = new EncryptingStorageService(
+            backend, keyRing("k2", KEY_1 + "," + KEY_2), passportKeyService, true, CHUNK);
+        rotated.upload("new", data, "application/pdf");
+
+        assertArrayEquals(data, rotated.download("old"));
+        assertArrayEquals(data, rotated.download("new"));
+        assertThrows(IOException.class, () -> storage.download("new"));
+    }
+
+    @Test
+    void upload_ShouldWrapPassportBlobsWithPassportKey() throws IOException {
+        UUID passportId = UUID.randomUUID();
+        String key = "passports/" + passportId + "/documents/a.pdf";
+        SecretKey passportKey = new SecretKeySpec(filled(32, 3), "AES");
+        when(passportKeyService.getOrCreateKey(passportId)).thenReturn(passportKey);
+        when(passportKeyService.findKey(passportId)).thenReturn(Optional.of(passportKey));
+        byte[] data = random(CHUNK + 9);
+
+        storage.upload(key, data, "application/pdf");
+
+        assertArrayEquals(data, storage.download(key));
+        assertArrayEquals(Arrays.copyOfRange(data, CHUNK, CHUNK + 9), read(storage.openRange(key, CHUNK, 9)));
+    }
+
+    @Test
+    void download_ShouldFailOnceThePassportKeyIsShredded() throws IOException {
+        UUID passportId = UUID.randomUUID();
+        String key = "passports/" + passportId + "/documents/a.pdf";
+        when(passportKeyService.getOrCreateKey(passportId)).thenReturn(new SecretKeySpec(filled(32, 3), "AES"));
+        when(passportKeyService.findKey(passportId)).thenReturn(Optional.empty());
+        storage.upload(key, random(100), "application/pdf");
+
+        assertThrows(IOException.class, () -> storage.download(key));
+        assertThrows(IOException.class, () -> storage.openRange(key, 0, 10));
+    }
+
+    @Test
+    void passportId_ShouldParseOnlyPassportScopedKeys() {
+        UUID passportId = UUID.randomUUID();
+
+        assertEquals(passportId, EncryptingStorageService.passportId("passports/" + passportId + "/documents/a.jpg"));
+        assertNull(EncryptingStorageService.passportId("passports/not-a-uuid/documents/a.jpg"));
+        assertNull(EncryptingStorageService.passportId("exports/" + passportId + ".zip"));
+    }
+
+    @Test
+    void constructor_ShouldFailFastWhenCurrentKeyMissing() {
+        assertThrows(IllegalStateException.class, () ->
+            new EncryptingStorageService(backend, keyRing("missing", KEY_1), passportKeyService, true, CHUNK));
+    }
+
+    // Helper methods
+
+    private static StorageKeyRing keyRing(String currentKeyId, String keys) {
+        StorageKeyRing keyRing = new StorageKeyRing();
+        ReflectionTestUtils.setField(keyRing, "currentKeyId", currentKeyId);
+        ReflectionTestUtils.setField(keyRing, "keySpec", keys);
+        keyRing.init();
+        return keyRing;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] filled(int size, int value) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(haystack, i, i + needle.length, needle, 0, needle.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Map-backed backend that counts bytes served by ranged reads
+     */
+    private static class InMemoryStorage implements StorageService {
+
+        final Map<String, byte[]> blobs = new HashMap<>();
+        long rangeBytesServed;
+
+        @Override
+        public void upload(String key, byte[] data, String contentType) {
+            blobs.put(key, data.clone());
+        }
+
+        @Override
+        public byte[] download(String key) throws IOException {
+            byte[] data = blobs.get(key);
+            if (data == null) {
+                throw new IOException("Not found: " + key);
+            }
+            return data.clone();
+        }
+
+        @Override
+        public InputStream openRange(String key, long offset, long length) throws IOException {
+            byte[] data = download(key);
+            int from = (int) Math.min(offset, data.length);
+            int count = (int) Math.min(length, data.length - from);
+            rangeBytesServed += count;
+            return new ByteArrayInputStream(data, from, count);
+        }
+
+        @Override
+        public void delete(String key) {
+            blobs.remove(key);
+        }
+
+        @Override
+        public String getDownloadUrl(String key, String originalFilename) {
+            return "https://storage.example.com/" + key;
+        }
+
+        @Override
+        public boolean exists(String key) {
+            return blobs.containsKey(key);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.ExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExportCache cache;
+    private final UUID passportId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ExportCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSizeBytes", 100L);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 60L);
+    }
+
+    @Test
+    void put_ShouldEvictLeastRecentlyUsedOverSizeCap() {
+        ExportCache.Key a = key(UUID.randomUUID(), ExportFormat.HTML, "v1");
+        ExportCache.Key b = key(UUID.randomUUID(), ExportFormat.HTML, "v1");
+        ExportCache.Key c = key(UUID.randomUUID(), ExportFormat.HTML, "v1");
+        cache.put(a, new byte[40]);
+        cache.put(b, new byte[40]);
+        cache.get(a);
+        cache.put(c, new byte[40]);
+
+        assertTrue(cache.get(a).isPresent());
+        assertTrue(cache.get(b).isEmpty());
+        assertTrue(cache.get(c).isPresent());
+        assertEquals(80, cache.getCurrentSizeBytes());
+        assertEquals(1.0, meterRegistry.get("export.cache.evictions").counter().count());
+    }
+
+    @Test
+    void put_ShouldDropOlderVersionsOfSamePassport() {
+        cache.put(key(passportId, ExportFormat.HTML, "v1"), new byte[10]);
+        cache.put(key(passportId, ExportFormat.MARKDOWN, "v1"), new byte[10]);
+        cache.put(key(passportId, ExportFormat.HTML, "v2"), new byte[10]);
+
+        assertTrue(cache.get(key(passportId, ExportFormat.MARKDOWN, "v1")).isEmpty());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(10, cache.getCurrentSizeBytes());
+    }
+
+    @Test
+    void put_ShouldSkipExportsOverEntryCap() {
+        cache.put(key(passportId, ExportFormat.JSON, "v1"), new byte[61]);
+
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void etag_ShouldBeStableForSameKeyAndDifferByRole() {
+        assertEquals(key(passportId, ExportFormat.HTML, "v1").etag(), key(passportId, ExportFormat.HTML, "v1").etag());
+        assertNotEquals(key(passportId, ExportFormat.HTML, "v1").etag(),
+            new ExportCache.Key(passportId, ExportFormat.HTML, "v1", "VIEWER").etag());
+    }
+
+    private static ExportCache.Key key(UUID passportId, ExportFormat format, String version) {
+        return new ExportCache.Key(passportId, format, version, "OWNER");
+    }
+}
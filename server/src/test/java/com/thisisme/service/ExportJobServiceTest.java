@@ -0,0 +1,216 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.ExportDTO.ExportJobResponse;
+import com.thisisme.model.entity.ExportJob;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.ExportFormat;
+import com.thisisme.model.enums.ExportJobStatus;
+import com.thisisme.repository.ExportJobRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ExportJobServiceTest {
+
+    private static final String WORKER = "worker-1";
+
+    @Mock private ExportJobRepository jobRepository;
+    @Mock private ExportService exportService;
+    @Mock private UserRepository userRepository;
+    @Mock private PermissionEvaluator permissionEvaluator;
+    @Mock private StorageService storageService;
+    @Mock private NotificationService notificationService;
+    @Mock private AuditService auditService;
+    @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+
+    private ExportJobService jobService;
+    private final UUID passportId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        jobService = new ExportJobService(jobRepository, exportService, userRepository, permissionEvaluator,
+            storageService, notificationService, auditService);
+        ReflectionTestUtils.setField(jobService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(jobService, "baseBackoffMs", 1000L);
+        ReflectionTestUtils.setField(jobService, "maxBackoffMs", 60000L);
+        ReflectionTestUtils.setField(jobService, "artifactTtlHours", 24L);
+
+        User user = new User("Test User", "test@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(user, "id", userId);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(exportService.contentVersion(passportId)).thenReturn("v1");
+        when(exportService.viewerRole(passportId, userId)).thenReturn("OWNER");
+        when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withPassport(any(UUID.class))).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withEntity(any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDescription(any())).thenReturn(auditLogBuilder);
+    }
+
+    @Test
+    void requestPassportExport_ShouldQueueJobKeyedByContentVersion() {
+        String key = "passport:" + passportId + ":HTML:OWNER:v1";
+        ExportJob queued = job(ExportJobStatus.PENDING, passportId, ExportFormat.HTML);
+        when(jobRepository.findReusable(eq(key), any())).thenReturn(Optional.empty());
+        ArgumentCaptor<UUID> id = ArgumentCaptor.forClass(UUID.class);
+        when(jobRepository.insertIfAbsent(id.capture(), eq(userId), eq(passportId), eq("HTML"), eq("v1"),
+            eq(key), eq("10.0.0.1"), any())).thenReturn(1);
+        when(jobRepository.findById(any())).thenReturn(Optional.of(queued));
+
+        ExportJobResponse response = jobService.requestPassportExport(passportId, userId, ExportFormat.HTML, "10.0.0.1");
+
+        assertEquals("PENDING", response.status());
+        verify(exportService).checkAccess(passportId, userId, ExportFormat.HTML);
+        verify(jobRepository).findById(id.getValue());
+        verify(auditLogBuilder).save();
+    }
+
+    @Test
+    void requestPassportExport_ShouldReuseFinishedArtifactForSameVersion() {
+        ExportJob done = job(ExportJobStatus.COMPLETED, passportId, ExportFormat.JSON);
+        when(jobRepository.findReusable(eq("passport:" + passportId + ":JSON:OWNER:v1"), any())).thenReturn(Optional.of(done));
+
+        ExportJobResponse response = jobService.requestPassportExport(passportId, userId, ExportFormat.JSON, "10.0.0.1");
+
+        assertEquals(done.getId(), response.id());
+        verify(jobRepository, never()).insertIfAbsent(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void requestPassportExport_ShouldJoinJobAlreadyInProgress() {
+        ExportJob running = job(ExportJobStatus.RUNNING, passportId, ExportFormat.ZIP);
+        String key = "passport:" + passportId + ":ZIP:OWNER:v1";
+        when(jobRepository.findReusable(eq(key), any())).thenReturn(Optional.empty());
+        when(jobRepository.insertIfAbsent(any(), any(), any(), any(), any(), eq(key), any(), any())).thenReturn(0);
+        when(jobRepository.findOpenByDedupKey(key)).thenReturn(Optional.of(running));
+
+        ExportJobResponse response = jobService.requestPassportExport(passportId, userId, ExportFormat.ZIP, "10.0.0.1");
+
+        assertEquals(running.getId(), response.id());
+        assertEquals("RUNNING", response.status());
+    }
+
+    @Test
+    void requestPassportExport_ShouldRejectDataSubjectFormats() {
+        assertThrows(IllegalArgumentException.class, () ->
+            jobService.requestPassportExport(passportId, userId, ExportFormat.DATA_SUBJECT_JSON, "10.0.0.1"));
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void getJob_ShouldHideOtherUsersDataSubjectExports() {
+        ExportJob job = job(ExportJobStatus.COMPLETED, null, ExportFormat.DATA_SUBJECT_JSON);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThrows(ResourceNotFoundException.class, () -> jobService.getJob(job.getId(), UUID.randomUUID()));
+        assertEquals("COMPLETED", jobService.getJob(job.getId(), userId).status());
+    }
+
+    @Test
+    void requestPassportExport_ShouldRejectZipWithoutDocumentAccess() {
+        doThrow(new SecurityException("You don't have permission to download documents"))
+            .when(exportService).checkAccess(passportId, userId, ExportFormat.ZIP);
+
+        assertThrows(SecurityException.class, () ->
+            jobService.requestPassportExport(passportId, userId, ExportFormat.ZIP, "10.0.0.1"));
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void openArtifact_ShouldHideZipFromCallersWhoCannotDownloadDocuments() {
+        ExportJob job = job(ExportJobStatus.COMPLETED, passportId, ExportFormat.ZIP);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(permissionEvaluator.canView(passportId, userId)).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(passportId, userId)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> jobService.openArtifact(job.getId(), userId, "10.0.0.1"));
+        assertThrows(ResourceNotFoundException.class, () -> jobService.getJob(job.getId(), userId));
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    void getJob_ShouldHidePassportJobsRequestedWithAnotherRole() {
+        ExportJob job = job(ExportJobStatus.COMPLETED, passportId, ExportFormat.JSON);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(permissionEvaluator.canView(passportId, userId)).thenReturn(true);
+        when(exportService.viewerRole(passportId, userId)).thenReturn("PROFESSIONAL");
+
+        assertThrows(ResourceNotFoundException.class, () -> jobService.getJob(job.getId(), userId));
+    }
+
+    @Test
+    void openArtifact_ShouldRejectUnfinishedJob() {
+        ExportJob job = job(ExportJobStatus.RUNNING, passportId, ExportFormat.JSON);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(permissionEvaluator.canView(passportId, userId)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> jobService.openArtifact(job.getId(), userId, "10.0.0.1"));
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    void complete_ShouldStoreArtifactAndNotifyRequester() {
+        ExportJob job = job(ExportJobStatus.RUNNING, passportId, ExportFormat.JSON);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+
+        assertTrue(jobService.complete(job.getId(), WORKER, "passports/" + passportId + "/exports/a.json", 42L));
+
+        assertEquals(ExportJobStatus.COMPLETED, job.getStatus());
+        assertEquals(42L, job.getArtifactSize());
+        assertTrue(job.getExpiresAt().isAfter(Instant.now()));
+        verify(notificationService).notifyExportReady(userId, passportId, job.getId(), "JSON");
+    }
+
+    @Test
+    void recordFailure_ShouldFailWhenNotRetryable() {
+        ExportJob job = job(ExportJobStatus.RUNNING, passportId, ExportFormat.JSON);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        ReflectionTestUtils.setField(job, "attempts", 1);
+        when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+
+        jobService.recordFailure(job.getId(), WORKER, "Access denied", false);
+
+        assertEquals(ExportJobStatus.FAILED, job.getStatus());
+        assertNotNull(job.getExpiresAt());
+        verify(notificationService, never()).notifyExportReady(any(), any(), any(), anyString());
+    }
+
+    // Helper methods
+
+    private ExportJob job(ExportJobStatus status, UUID passportId, ExportFormat format) {
+        ExportJob job = BeanUtils.instantiateClass(ExportJob.class);
+        ReflectionTestUtils.setField(job, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(job, "requestedBy", userId);
+        ReflectionTestUtils.setField(job, "passportId", passportId);
+        ReflectionTestUtils.setField(job, "format", format);
+        if (passportId != null) {
+            ReflectionTestUtils.setField(job, "dedupKey", "passport:" + passportId + ":" + format + ":OWNER:v1");
+        }
+        ReflectionTestUtils.setField(job, "status", status);
+        ReflectionTestUtils.setField(job, "createdAt", Instant.now());
+        return job;
+    }
+}
@@ -0,0 +1,111 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.ExportFormat;
+import com.thisisme.service.ExportJobService.ExportWork;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportJobWorkerTest {
+
+    @Mock private ExportJobService jobService;
+    @Mock private ExportService exportService;
+    @Mock private SubjectAccessExportService subjectAccessExportService;
+    @Mock private StorageService storageService;
+
+    @TempDir Path spoolDir;
+
+    private ExportJobWorker worker;
+    private String workerId;
+    private final UUID jobId = UUID.randomUUID();
+    private final UUID passportId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+    private ExportWork work;
+
+    @BeforeEach
+    void setUp() {
+        worker = new ExportJobWorker(jobService, exportService, subjectAccessExportService, storageService,
+            Runnable::run, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(worker, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(worker, "progressIntervalMs", 60000L);
+        workerId = worker.getWorkerId();
+        work = new ExportWork(jobId, userId, passportId, ExportFormat.HTML, "10.0.0.1");
+        when(jobService.startWork(jobId, workerId)).thenReturn(Optional.of(work));
+    }
+
+    @Test
+    void process_ShouldUploadRenderedExportUnderPassport() throws IOException {
+        byte[] html = "<!DOCTYPE html><p>hi</p>".getBytes(StandardCharsets.UTF_8);
+        doAnswer(i -> {
+            i.<OutputStream>getArgument(3).write(html);
+            return null;
+        }).when(exportService).exportAsHtml(eq(passportId), eq(userId), eq("10.0.0.1"), any());
+        String path = "passports/" + passportId + "/exports/" + jobId + ".html";
+        doAnswer(i -> {
+            assertArrayEquals(html, i.<InputStream>getArgument(1).readAllBytes());
+            return null;
+        }).when(storageService).upload(eq(path), any(InputStream.class), eq((long) html.length), eq("text/html"));
+        when(jobService.complete(jobId, workerId, path, html.length)).thenReturn(true);
+
+        worker.process(jobId);
+
+        verify(jobService).complete(jobId, workerId, path, html.length);
+        verify(jobService, never()).deleteArtifact(any());
+        try (var files = Files.list(spoolDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void process_ShouldFailWithoutRetryWhenAccessWasRevoked() throws IOException {
+        doThrow(new SecurityException("Access denied")).when(exportService)
+            .exportAsHtml(eq(passportId), eq(userId), any(), any());
+
+        worker.process(jobId);
+
+        verify(jobService).recordFailure(jobId, workerId, "Access denied", false);
+        verify(storageService, never()).upload(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void process_ShouldRetryStorageFailures() throws IOException {
+        doThrow(new IOException("storage down")).when(storageService).upload(any(), any(), anyLong(), any());
+
+        worker.process(jobId);
+
+        verify(jobService).recordFailure(jobId, workerId, "storage down", true);
+        verify(jobService, never()).complete(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void process_ShouldDeleteArtifactWhenJobWasReclaimed() throws IOException {
+        when(jobService.complete(eq(jobId), eq(workerId), any(), anyLong())).thenReturn(false);
+
+        worker.process(jobId);
+
+        verify(jobService).deleteArtifact("passports/" + passportId + "/exports/" + jobId + ".html");
+        verify(jobService, never()).recordFailure(any(), any(), any(), anyBoolean());
+    }
+}
@@ -1,11 +1,16 @@
 package com.thisisme.service;
 
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.dto.ExportDTO.DocumentExportRow;
+import com.thisisme.model.dto.ExportDTO.TimelineExportRow;
 import com.thisisme.model.entity.*;
 import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.ExportFormat;
 import com.thisisme.model.enums.SectionType;
 import com.thisisme.model.enums.VisibilityLevel;
 import com.thisisme.repository.*;
 import com.thisisme.security.PermissionEvaluator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,17 +18,22 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,8 +47,11 @@ class ExportServiceTest {
     @Mock private PermissionEvaluator permissionEvaluator;
     @Mock private AuditService auditService;
     @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+    @Mock private StorageService storageService;
+    @Mock private PassportPermissionRepository permissionRepository;
 
     private ExportService exportService;
+    private ExportCache exportCache;
     private User testUser;
     private Passport testPassport;
     private PassportSection testSection;
@@ -47,14 +60,25 @@ class ExportServiceTest {
 
     @BeforeEach
     void setUp() {
+        exportCache = new ExportCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(exportCache, "enabled", true);
+        ReflectionTestUtils.setField(exportCache, "maxSizeBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(exportCache, "maxEntryBytes", 1024L * 1024);
+
         exportService = new ExportService(
             passportRepository,
             timelineRepository,
             documentRepository,
             userRepository,
             permissionEvaluator,
-            auditService
+            auditService,
+            permissionRepository,
+            storageService,
+            exportCache,
+            Runnable::run
         );
+        ReflectionTestUtils.setField(exportService, "prefetchWindow", 2);
+        ReflectionTestUtils.setField(exportService, "prefetchMaxBytes", 8L * 1024 * 1024);
 
         testUser = new User("Test User", "test@example.com", "hashedPassword");
         ReflectionTestUtils.setField(testUser, "id", UUID.randomUUID());
@@ -91,15 +115,15 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsJson_ShouldGenerateValidJson() {
+    void exportAsJson_ShouldGenerateValidJson() throws IOException {
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of(testEntry)));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of(testDocument));
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(documentRow()));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String json = exportService.exportAsJson(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String json = export(exportService::exportAsJson);
 
         assertNotNull(json);
         assertTrue(json.contains("THISISME_PASSPORT_EXPORT"));
@@ -110,15 +134,15 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsCsv_ShouldGenerateValidCsv() {
+    void exportAsCsv_ShouldGenerateValidCsv() throws IOException {
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of(testEntry)));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of(testDocument));
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(documentRow()));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String csv = exportService.exportAsCsv(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String csv = export(exportService::exportAsCsv);
 
         assertNotNull(csv);
         assertTrue(csv.startsWith("Section,Type,Date,Title,Content"));
@@ -129,15 +153,15 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsMarkdown_ShouldGenerateValidMarkdown() {
+    void exportAsMarkdown_ShouldGenerateValidMarkdown() throws IOException {
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of(testEntry)));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of(testDocument));
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(documentRow()));
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String md = exportService.exportAsMarkdown(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String md = export(exportService::exportAsMarkdown);
 
         assertNotNull(md);
         assertTrue(md.startsWith("# Passport for Test Child"));
@@ -149,15 +173,15 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsHtml_ShouldGenerateValidHtml() {
+    void exportAsHtml_ShouldGenerateValidHtml() throws IOException {
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of(testEntry)));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of());
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String html = exportService.exportAsHtml(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String html = export(exportService::exportAsHtml);
 
         assertNotNull(html);
         assertTrue(html.startsWith("<!DOCTYPE html>"));
@@ -167,16 +191,16 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsJson_ShouldThrowWhenNoAccess() {
+    void exportAsJson_ShouldThrowWhenNoAccess() throws IOException {
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(false);
 
         assertThrows(SecurityException.class, () ->
-            exportService.exportAsJson(testPassport.getId(), testUser.getId(), "192.168.1.1")
+            export(exportService::exportAsJson)
         );
     }
 
     @Test
-    void exportAsCsv_ShouldEscapeSpecialCharacters() {
+    void exportAsCsv_ShouldEscapeSpecialCharacters() throws IOException {
         testSection = new PassportSection(testPassport, SectionType.NEEDS,
             "Needs \"quiet time\" and breaks\nMultiple lines", testUser);
         testSection.setVisibilityLevel(VisibilityLevel.ALL);
@@ -188,12 +212,11 @@ class ExportServiceTest {
 
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of()));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of());
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String csv = exportService.exportAsCsv(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String csv = export(exportService::exportAsCsv);
 
         assertNotNull(csv);
         // Quotes should be escaped as double quotes
@@ -203,7 +226,7 @@ class ExportServiceTest {
     }
 
     @Test
-    void exportAsHtml_ShouldEscapeHtmlCharacters() {
+    void exportAsHtml_ShouldEscapeHtmlCharacters() throws IOException {
         testSection = new PassportSection(testPassport, SectionType.NEEDS,
             "Needs <script>alert('xss')</script>", testUser);
         testSection.setVisibilityLevel(VisibilityLevel.ALL);
@@ -215,16 +238,182 @@ class ExportServiceTest {
 
         when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
-        when(timelineRepository.findByPassportId(eq(testPassport.getId()), any(Pageable.class)))
-            .thenReturn(new PageImpl<>(List.of()));
-        when(documentRepository.findByPassportId(testPassport.getId())).thenReturn(List.of());
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
 
-        String html = exportService.exportAsHtml(testPassport.getId(), testUser.getId(), "192.168.1.1");
+        String html = export(exportService::exportAsHtml);
 
         assertNotNull(html);
         // Script tags should be escaped
         assertTrue(html.contains("&lt;script&gt;"));
         assertFalse(html.contains("<script>"));
     }
+
+    @Test
+    void exportAsJson_ShouldIncludeTagsAndFullHistory() throws IOException {
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        List<TimelineExportRow> rows = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            rows.add(new TimelineExportRow(UUID.randomUUID(), EntryType.NOTE, "Entry " + i, "",
+                LocalDate.now(), VisibilityLevel.ALL, false, Instant.now()));
+        }
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(rows.stream());
+        when(timelineRepository.findTagsByEntryIds(any()))
+            .thenReturn(List.<Object[]>of(new Object[] {rows.get(1199).id(), "speech"}));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+
+        String json = export(exportService::exportAsJson);
+
+        assertTrue(json.contains("Entry 1199"));
+        assertTrue(json.contains("\"speech\""));
+        // Tags are fetched per batch rather than per entry
+        verify(timelineRepository, times(3)).findTagsByEntryIds(any());
+        verify(auditLogBuilder).save();
+    }
+
+    @Test
+    void exportAsMarkdown_ShouldGroupTimelineByType() throws IOException {
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(
+            new TimelineExportRow(UUID.randomUUID(), EntryType.MEDICAL, "Checkup", "", LocalDate.now(),
+                VisibilityLevel.ALL, false, Instant.now()),
+            new TimelineExportRow(UUID.randomUUID(), EntryType.MEDICAL, "Dentist", "", LocalDate.now(),
+                VisibilityLevel.ALL, false, Instant.now()),
+            new TimelineExportRow(UUID.randomUUID(), EntryType.MILESTONE, "First Word", "", LocalDate.now(),
+                VisibilityLevel.ALL, false, Instant.now())));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+
+        String md = export(exportService::exportAsMarkdown);
+
+        assertEquals(1, md.split("### Medicals", -1).length - 1);
+        assertTrue(md.indexOf("#### Dentist") < md.indexOf("### Milestones"));
+        assertFalse(md.contains("## Documents"));
+    }
+
+    @Test
+    void checkAccess_ShouldRejectBeforeStreaming() {
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () ->
+            exportService.checkAccess(testPassport.getId(), testUser.getId()));
+    }
+
+    @Test
+    void exportAsZip_ShouldRejectCallersWhoCannotDownloadDocuments() {
+        // A CHILD can view the passport but not its documents
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(false);
+
+        assertThrows(SecurityException.class, () ->
+            exportService.checkAccess(testPassport.getId(), testUser.getId(), ExportFormat.ZIP));
+        assertThrows(SecurityException.class, () ->
+            exportService.exportAsZip(testPassport.getId(), testUser.getId(), "192.168.1.1",
+                new ByteArrayOutputStream()));
+        verifyNoInteractions(documentRepository, storageService);
+    }
+
+    @Test
+    void exportAsZip_ShouldIncludeDocumentFilesAndManifest() throws IOException {
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.canDownloadDocuments(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        DocumentExportRow missing = new DocumentExportRow(UUID.randomUUID(), "scan.jpg", "image/jpeg",
+            2048L, false, Instant.now(), "path/to/missing");
+        DocumentExportRow other = new DocumentExportRow(UUID.randomUUID(), "../notes 2.txt", "text/plain",
+            5L, false, Instant.now(), "path/to/notes");
+        // Streamed twice: once for passport.json, once for the files
+        when(documentRepository.streamForExport(testPassport.getId()))
+            .thenReturn(Stream.of(documentRow(), missing, other), Stream.of(documentRow(), missing, other));
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(storageService.openStream("path/to/doc"))
+            .thenReturn(new ByteArrayInputStream("%PDF-report".getBytes(StandardCharsets.UTF_8)));
+        when(storageService.openStream("path/to/missing")).thenThrow(new IOException("not found"));
+        when(storageService.openStream("path/to/notes"))
+            .thenReturn(new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportAsZip(testPassport.getId(), testUser.getId(), "192.168.1.1", out);
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        assertTrue(entries.get("passport.json").contains("First Word"));
+        assertFalse(entries.get("passport.json").contains("path/to/doc"));
+        assertEquals("%PDF-report", entries.get("documents/" + testDocument.getId() + "-report.pdf"));
+        assertEquals("hello", entries.get("documents/" + other.id() + "-.._notes_2.txt"));
+        assertEquals(4, entries.size());
+
+        String manifest = entries.get("manifest.json");
+        assertTrue(manifest.contains("File could not be read from storage"));
+        // sha256("hello")
+        assertTrue(manifest.contains("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"));
+        verify(auditLogBuilder).save();
+    }
+
+    @Test
+    void exportCached_ShouldRenderOnceAndServeRepeatsFromCache() throws IOException {
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
+        when(timelineRepository.streamForExportByType(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(timelineRepository.streamForExport(testPassport.getId())).thenReturn(Stream.of(entryRow()));
+        when(documentRepository.streamForExport(testPassport.getId())).thenReturn(Stream.empty());
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        ExportCache.Key key = new ExportCache.Key(testPassport.getId(), ExportFormat.HTML, "v1", "OWNER");
+
+        String first = export((passportId, userId, ip, out) -> exportService.exportCached(key, userId, ip, out));
+        String second = export((passportId, userId, ip, out) -> exportService.exportCached(key, userId, ip, out));
+
+        assertEquals(first, second);
+        assertTrue(second.contains("First Word"));
+        verify(passportRepository, times(1)).findActiveById(testPassport.getId());
+        // Both downloads are audited
+        verify(auditLogBuilder, times(2)).save();
+    }
+
+    @Test
+    void exportCached_ShouldStillCheckAccessOnCacheHit() throws IOException {
+        ExportCache.Key key = new ExportCache.Key(testPassport.getId(), ExportFormat.MARKDOWN, "v1", "VIEWER");
+        exportCache.put(key, "# cached".getBytes(StandardCharsets.UTF_8));
+        when(permissionEvaluator.canView(testPassport.getId(), testUser.getId())).thenReturn(false);
+
+        assertThrows(SecurityException.class, () ->
+            export((passportId, userId, ip, out) -> exportService.exportCached(key, userId, ip, out)));
+    }
+
+    // Helper methods
+
+    @FunctionalInterface
+    private interface Exporter {
+        void export(UUID passportId, UUID userId, String ipAddress, OutputStream out) throws IOException;
+    }
+
+    private String export(Exporter exporter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(testPassport.getId(), testUser.getId(), "192.168.1.1", out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private TimelineExportRow entryRow() {
+        return new TimelineExportRow(testEntry.getId(), testEntry.getEntryType(), testEntry.getTitle(),
+            testEntry.getContent(), testEntry.getEntryDate(), testEntry.getVisibilityLevel(),
+            testEntry.isPinned(), testEntry.getCreatedAt());
+    }
+
+    private DocumentExportRow documentRow() {
+        return new DocumentExportRow(testDocument.getId(), testDocument.getOriginalFileName(),
+            testDocument.getMimeType(), testDocument.getFileSize(), false, testDocument.getUploadedAt(),
+            testDocument.getStoragePath());
+    }
 }
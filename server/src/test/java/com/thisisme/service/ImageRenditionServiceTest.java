@@ -0,0 +1,135 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.RenditionSize;
+import com.thisisme.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageRenditionServiceTest {
+
+    @Mock private DocumentRepository documentRepository;
+    @Mock private StorageService storageService;
+
+    private ImageRenditionService renditionService;
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        // Run tasks inline so generation is observable without waiting
+        renditionService = new ImageRenditionService(documentRepository, storageService, Runnable::run);
+        ReflectionTestUtils.setField(renditionService, "enabled", true);
+        ReflectionTestUtils.setField(renditionService, "maxSourcePixels", 100_000_000L);
+        ReflectionTestUtils.setField(renditionService, "backfillBatchSize", 50);
+
+        User user = new User("Test User", "test@example.com", "hash");
+        ReflectionTestUtils.setField(user, "id", UUID.randomUUID());
+        Passport passport = new Passport("Test Child", user);
+        ReflectionTestUtils.setField(passport, "id", UUID.randomUUID());
+
+        document = new Document(passport, "photo.jpg", "IMG_0001.jpg", "image/jpeg", 1024L,
+            "passports/p/documents/photo.jpg", "test-key", "hash", user);
+        ReflectionTestUtils.setField(document, "id", UUID.randomUUID());
+    }
+
+    @Test
+    void renditionPath_ShouldSitNextToOriginal() {
+        assertEquals("passports/p/documents/photo.thumbnail.jpg",
+            ImageRenditionService.renditionPath("passports/p/documents/photo.jpg", RenditionSize.THUMBNAIL));
+        assertEquals("passports/p/documents/noext.preview.jpg",
+            ImageRenditionService.renditionPath("passports/p/documents/noext", RenditionSize.PREVIEW));
+    }
+
+    @Test
+    void render_ShouldDownscaleLongestEdgeAndNeverUpscale() throws IOException {
+        Map<RenditionSize, byte[]> large = renditionService.render(png(3000, 1500));
+        BufferedImage preview = ImageIO.read(new ByteArrayInputStream(large.get(RenditionSize.PREVIEW)));
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(large.get(RenditionSize.THUMBNAIL)));
+        assertEquals(1280, preview.getWidth());
+        assertEquals(640, preview.getHeight());
+        assertEquals(256, thumbnail.getWidth());
+        assertEquals(128, thumbnail.getHeight());
+
+        Map<RenditionSize, byte[]> small = renditionService.render(png(100, 50));
+        BufferedImage smallPreview = ImageIO.read(new ByteArrayInputStream(small.get(RenditionSize.PREVIEW)));
+        assertEquals(100, smallPreview.getWidth());
+        assertEquals(50, smallPreview.getHeight());
+    }
+
+    @Test
+    void applyOrientation_ShouldRotateClockwiseForOrientationSix() {
+        BufferedImage source = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+        source.setRGB(0, 0, Color.RED.getRGB()); // top-left
+
+        BufferedImage rotated = ImageRenditionService.applyOrientation(source, 6);
+
+        assertEquals(2, rotated.getWidth());
+        assertEquals(4, rotated.getHeight());
+        // After a clockwise quarter turn the top-left pixel ends up top-right
+        assertEquals(Color.RED.getRGB(), rotated.getRGB(1, 0));
+    }
+
+    @Test
+    void generateRenditions_ShouldStoreEverySizeAndMarkDocument() throws IOException {
+        when(documentRepository.findById(document.getId())).thenReturn(Optional.of(document));
+        when(storageService.download(document.getStoragePath())).thenReturn(png(800, 600));
+
+        renditionService.generateRenditions(document.getId());
+
+        verify(storageService).upload(eq("passports/p/documents/photo.thumbnail.jpg"), any(byte[].class), eq("image/jpeg"));
+        verify(storageService).upload(eq("passports/p/documents/photo.preview.jpg"), any(byte[].class), eq("image/jpeg"));
+        verify(documentRepository).markRenditionsGenerated(eq(document.getId()), any(Instant.class));
+    }
+
+    @Test
+    void generateRenditions_ShouldRecordErrorForUndecodableImage() throws IOException {
+        when(documentRepository.findById(document.getId())).thenReturn(Optional.of(document));
+        when(storageService.download(document.getStoragePath())).thenReturn("not an image".getBytes());
+
+        renditionService.generateRenditions(document.getId());
+
+        verify(documentRepository).markRenditionError(eq(document.getId()), any(String.class));
+        verify(storageService, never()).upload(any(), any(), any());
+    }
+
+    @Test
+    void generateRenditions_ShouldLeaveDocumentPendingWhenStorageUnavailable() throws IOException {
+        when(documentRepository.findById(document.getId())).thenReturn(Optional.of(document));
+        when(storageService.download(document.getStoragePath())).thenThrow(new IOException("timeout"));
+
+        renditionService.generateRenditions(document.getId());
+
+        // No error recorded, so the backfill sweep retries it
+        verify(documentRepository, never()).markRenditionError(any(), any());
+        verify(documentRepository, never()).markRenditionsGenerated(any(), any());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,154 @@
+package com.thisisme.service;
+
+import com.thisisme.exception.ResourceNotFoundException;
+import com.thisisme.model.entity.InboundEmailJob;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.enums.InboundEmailJobStatus;
+import com.thisisme.repository.InboundEmailJobRepository;
+import com.thisisme.repository.PassportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InboundEmailJobServiceTest {
+
+    private static final String WORKER = "worker-1";
+
+    @Mock private InboundEmailJobRepository jobRepository;
+    @Mock private PassportRepository passportRepository;
+    @Mock private StorageService storageService;
+
+    @TempDir Path spoolDir;
+
+    private InboundEmailJobService jobService;
+    private final UUID passportId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        jobService = new InboundEmailJobService(jobRepository, passportRepository, storageService);
+        ReflectionTestUtils.setField(jobService, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(jobService, "maxRequestBytes", 100L);
+        ReflectionTestUtils.setField(jobService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(jobService, "baseBackoffMs", 1000L);
+        ReflectionTestUtils.setField(jobService, "maxBackoffMs", 60000L);
+        ReflectionTestUtils.setField(jobService, "staleAfterMs", 900000L);
+    }
+
+    @Test
+    void accept_ShouldStorePayloadUnderPassportAndQueueJob() throws IOException {
+        when(passportRepository.findActiveById(passportId)).thenReturn(Optional.of(mock(Passport.class)));
+        byte[] payload = "{\"from\":\"school@example.com\"}".getBytes();
+        doAnswer(i -> {
+            assertArrayEquals(payload, i.<InputStream>getArgument(1).readAllBytes());
+            return null;
+        }).when(storageService).upload(startsWith("passports/" + passportId + "/inbound/"),
+            any(InputStream.class), eq((long) payload.length), eq("application/json"));
+        when(jobRepository.save(any(InboundEmailJob.class))).thenAnswer(i -> i.getArgument(0));
+
+        InboundEmailJob job = jobService.accept(passportId, new ByteArrayInputStream(payload), "10.0.0.1");
+
+        assertEquals(InboundEmailJobStatus.PENDING, job.getStatus());
+        assertEquals(passportId, job.getPassportId());
+        assertEquals(payload.length, job.getPayloadSize());
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void accept_ShouldRejectOversizedPayloadBeforeStoringIt() throws IOException {
+        when(passportRepository.findActiveById(passportId)).thenReturn(Optional.of(mock(Passport.class)));
+
+        assertThrows(IllegalArgumentException.class, () ->
+            jobService.accept(passportId, new ByteArrayInputStream(new byte[101]), "10.0.0.1"));
+        verify(storageService, never()).upload(anyString(), any(InputStream.class), anyLong(), anyString());
+        verifyNoInteractions(jobRepository);
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void accept_ShouldRejectUnknownPassport() {
+        when(passportRepository.findActiveById(passportId)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () ->
+            jobService.accept(passportId, new ByteArrayInputStream(new byte[1]), "10.0.0.1"));
+        verifyNoInteractions(storageService, jobRepository);
+    }
+
+    @Test
+    void recordFailure_ShouldRetryThenDeadLetter() {
+        InboundEmailJob job = claimedJob(1);
+        when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+
+        jobService.recordFailure(job.getId(), WORKER, "storage down", true);
+        assertEquals(InboundEmailJobStatus.PENDING, job.getStatus());
+
+        ReflectionTestUtils.setField(job, "status", InboundEmailJobStatus.RUNNING);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        ReflectionTestUtils.setField(job, "attempts", 3);
+        jobService.recordFailure(job.getId(), WORKER, "storage down", true);
+
+        assertEquals(InboundEmailJobStatus.FAILED, job.getStatus());
+        assertEquals("storage down", job.getLastError());
+    }
+
+    @Test
+    void recordFailure_ShouldDeadLetterNonRetryableFailureImmediately() {
+        InboundEmailJob job = claimedJob(1);
+        when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+
+        jobService.recordFailure(job.getId(), WORKER, "Invalid payload", false);
+
+        assertEquals(InboundEmailJobStatus.FAILED, job.getStatus());
+    }
+
+    @Test
+    void requeue_ShouldResetDeadLetteredJobOnly() {
+        InboundEmailJob job = claimedJob(3);
+        job.fail("Invalid payload");
+        when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+
+        jobService.requeue(job.getId());
+
+        assertEquals(InboundEmailJobStatus.PENDING, job.getStatus());
+        assertEquals(0, job.getAttempts());
+        assertThrows(IllegalStateException.class, () -> jobService.requeue(job.getId()));
+    }
+
+    // Helper methods
+
+    private InboundEmailJob claimedJob(int attempts) {
+        InboundEmailJob job = new InboundEmailJob(passportId, "passports/" + passportId + "/inbound/a.json", 10, null);
+        ReflectionTestUtils.setField(job, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(job, "status", InboundEmailJobStatus.RUNNING);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        ReflectionTestUtils.setField(job, "attempts", attempts);
+        return job;
+    }
+
+    private long spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.count();
+        }
+    }
+}
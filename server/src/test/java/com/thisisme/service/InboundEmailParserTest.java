@@ -0,0 +1,175 @@
+package com.thisisme.service;
+
+import com.thisisme.service.InboundEmailParser.InboundEmail;
+import com.thisisme.service.InboundEmailParser.SpooledAttachment;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InboundEmailParserTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private ValidatorFactory validatorFactory;
+    private InboundEmailParser parser;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        parser = new InboundEmailParser(validatorFactory.getValidator());
+        ReflectionTestUtils.setField(parser, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(parser, "maxRequestBytes", 1_000_000L);
+        ReflectionTestUtils.setField(parser, "maxAttachmentBytes", 100_000L);
+        ReflectionTestUtils.setField(parser, "maxAttachments", 3);
+        ReflectionTestUtils.setField(parser, "maxTextChars", 1000);
+        parser.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void parse_ShouldSpoolAttachmentsLargerThanTheTextLimit() throws IOException {
+        byte[] scan = random(50_000);
+
+        try (InboundEmail email = parse(payload(attachment("scan.pdf", "application/pdf", scan)))) {
+            assertEquals("school@example.com", email.from());
+            assertEquals("Report", email.subject());
+            assertEquals(LocalDate.of(2026, 3, 1), email.date());
+            assertEquals(1, email.attachments().size());
+
+            SpooledAttachment attachment = email.attachments().get(0);
+            assertTrue(attachment.isAccepted());
+            assertEquals("scan.pdf", attachment.filename());
+            assertEquals(scan.length, attachment.size());
+            assertArrayEquals(scan, Files.readAllBytes(attachment.file()));
+        }
+
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void parse_ShouldRejectOversizedAttachmentButKeepTheOthers() throws IOException {
+        String payload = payload(
+            attachment("huge.pdf", "application/pdf", random(150_000)),
+            attachment("small.png", "image/png", random(10)));
+
+        try (InboundEmail email = parse(payload)) {
+            SpooledAttachment huge = email.attachments().get(0);
+            assertFalse(huge.isAccepted());
+            assertNull(huge.file());
+            assertTrue(huge.error().contains("maximum size"));
+
+            SpooledAttachment small = email.attachments().get(1);
+            assertTrue(small.isAccepted());
+            assertEquals(1, spoolFiles());
+        }
+    }
+
+    @Test
+    void parse_ShouldRejectPayloadOverRequestLimit() {
+        ReflectionTestUtils.setField(parser, "maxRequestBytes", 10_000L);
+
+        assertThrows(IllegalArgumentException.class, () ->
+            parse(payload(attachment("scan.pdf", "application/pdf", random(20_000)))));
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void parse_ShouldRejectTooManyAttachments() {
+        String one = attachment("a.png", "image/png", random(10));
+
+        assertThrows(IllegalArgumentException.class, () -> parse(payload(one, one, one, one)));
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void parse_ShouldValidateRequiredFields() {
+        String json = "{\"from\":\"not-an-email\",\"subject\":\"Hi\",\"date\":\"2026-03-01\"}";
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse(json));
+        assertTrue(e.getMessage().startsWith("from:"));
+    }
+
+    @Test
+    void parse_ShouldRejectMalformedJsonAndCleanUp() {
+        String truncated = payload(attachment("a.png", "image/png", random(10))).substring(0, 200);
+
+        assertThrows(IllegalArgumentException.class, () -> parse(truncated));
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void parse_ShouldMarkAttachmentWithoutFilenameAsRejected() throws IOException {
+        String json = "{\"from\":\"a@example.com\",\"subject\":\"Hi\",\"date\":\"2026-03-01\","
+            + "\"attachments\":[{\"contentType\":\"image/png\",\"content\":\"AAEC\"}]}";
+
+        try (InboundEmail email = parse(json)) {
+            assertEquals("missing filename", email.attachments().get(0).error());
+            assertEquals(0, spoolFiles());
+        }
+    }
+
+    @Test
+    void parse_ShouldReadMessageIdAndHashThePayload() throws IOException {
+        String json = payload().replace("{\"from\"", "{\"messageId\":\"<abc@mail.example.com>\",\"from\"");
+
+        try (InboundEmail first = parse(json); InboundEmail retry = parse(json); InboundEmail other = parse(payload())) {
+            assertEquals("<abc@mail.example.com>", first.messageId());
+            assertNull(other.messageId());
+            assertEquals(64, first.payloadHash().length());
+            assertEquals(first.payloadHash(), retry.payloadHash());
+            assertNotEquals(first.payloadHash(), other.payloadHash());
+        }
+    }
+
+    // Helper methods
+
+    private InboundEmail parse(String json) throws IOException {
+        return parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String payload(String... attachments) {
+        return "{\"from\":\"school@example.com\",\"to\":\"passport@example.com\",\"subject\":\"Report\","
+            + "\"unknown\":{\"nested\":[1,2]},\"body\":\"See attached\",\"date\":\"2026-03-01\","
+            + "\"attachments\":[" + String.join(",", attachments) + "]}";
+    }
+
+    private static String attachment(String filename, String contentType, byte[] content) {
+        return "{\"content\":\"" + Base64.getEncoder().encodeToString(content) + "\",\"filename\":\""
+            + filename + "\",\"contentType\":\"" + contentType + "\"}";
+    }
+
+    private long spoolFiles() {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,295 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.CorrespondenceDTO.CorrespondenceResponse;
+import com.thisisme.model.dto.TimelineDTO.TimelineEntryResponse;
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.InboundEmailReceipt;
+import com.thisisme.model.entity.PassportPermission;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.Role;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.InboundEmailReceiptRepository;
+import com.thisisme.repository.PassportPermissionRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.service.DocumentService.StoredAttachment;
+import com.thisisme.service.InboundEmailParser.InboundEmail;
+import com.thisisme.service.InboundEmailParser.SpooledAttachment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InboundEmailServiceTest {
+
+    @Mock private TimelineService timelineService;
+    @Mock private DocumentService documentService;
+    @Mock private UserRepository userRepository;
+    @Mock private PassportPermissionRepository permissionRepository;
+    @Mock private InboundEmailReceiptRepository receiptRepository;
+    @Mock private DocumentRepository documentRepository;
+
+    private ExecutorService executor;
+    private InboundEmailService inboundEmailService;
+
+    private final UUID passportId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+    private final UUID entryId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+        inboundEmailService = new InboundEmailService(timelineService, documentService, userRepository,
+            permissionRepository, receiptRepository, documentRepository, executor);
+        ReflectionTestUtils.setField(inboundEmailService, "claimStaleSeconds", 900L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void saveAttachments_ShouldUploadInParallel() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        when(documentService.storeEmailAttachment(eq(passportId), any(), any(), any())).thenAnswer(i -> {
+            allStarted.countDown();
+            // Only completes if all three uploads are in flight at once
+            assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            return stored(i.getArgument(1));
+        });
+
+        int saved = inboundEmailService.saveAttachments(passportId, userId, entryId,
+            List.of(spooled("a.pdf"), spooled("b.pdf"), spooled("c.pdf")), new ArrayList<>());
+
+        assertEquals(3, saved);
+        verify(documentService, times(3)).saveEmailAttachment(eq(passportId), eq(userId), eq(entryId), any());
+    }
+
+    @Test
+    void saveAttachments_ShouldSkipRejectedAndFailedAttachments() throws IOException {
+        SpooledAttachment rejected = new SpooledAttachment("big.pdf", "application/pdf", null, 0, "too large");
+        when(documentService.storeEmailAttachment(passportId, "a.pdf", "application/pdf", Path.of("a.pdf")))
+            .thenThrow(new IOException("storage down"));
+        when(documentService.storeEmailAttachment(passportId, "b.pdf", "application/pdf", Path.of("b.pdf")))
+            .thenReturn(stored("b.pdf"));
+
+        int saved = inboundEmailService.saveAttachments(passportId, userId, entryId,
+            List.of(rejected, spooled("a.pdf"), spooled("b.pdf")), new ArrayList<>());
+
+        assertEquals(1, saved);
+        verify(documentService, never()).storeEmailAttachment(any(), eq("big.pdf"), any(), any());
+    }
+
+    @Test
+    void saveAttachments_ShouldDiscardBlobWhenRecordFailsToSave() throws IOException {
+        StoredAttachment stored = stored("a.pdf");
+        when(documentService.storeEmailAttachment(any(), any(), any(), any())).thenReturn(stored);
+        when(documentService.saveEmailAttachment(passportId, userId, entryId, stored))
+            .thenThrow(new IllegalStateException("db down"));
+
+        int saved = inboundEmailService.saveAttachments(passportId, userId, entryId, List.of(spooled("a.pdf")),
+            new ArrayList<>());
+
+        assertEquals(0, saved);
+        verify(documentService).discardStoredAttachment(stored);
+    }
+
+    @Test
+    void process_ShouldReturnOriginalEntryForRetriedDelivery() {
+        InboundEmail email = email("<abc@mail.example.com>");
+        String dedupKey = InboundEmailService.dedupKey(email);
+        when(receiptRepository.claim(any(), eq(passportId), eq(dedupKey), any(), any())).thenReturn(0);
+        InboundEmailReceipt receipt = BeanUtils.instantiateClass(InboundEmailReceipt.class);
+        ReflectionTestUtils.setField(receipt, "completedAt", Instant.now());
+        ReflectionTestUtils.setField(receipt, "entryId", entryId);
+        ReflectionTestUtils.setField(receipt, "attachmentCount", 2);
+        when(receiptRepository.findByPassportIdAndDedupKey(passportId, dedupKey)).thenReturn(Optional.of(receipt));
+
+        CorrespondenceResponse response = inboundEmailService.process(passportId, email, "127.0.0.1");
+
+        assertEquals(entryId, response.entryId());
+        assertEquals(2, response.attachmentCount());
+        verifyNoInteractions(timelineService, documentService, userRepository);
+    }
+
+    @Test
+    void process_ShouldRecordOnlyTheAttachmentsSaved() throws IOException {
+        when(receiptRepository.claim(any(), any(), any(), any(), any())).thenReturn(1);
+        when(userRepository.findByEmail("school@example.com")).thenReturn(Optional.empty());
+        when(permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)))
+            .thenReturn(List.of(permission(user(userId), true)));
+        TimelineEntryResponse entry = mock(TimelineEntryResponse.class);
+        when(entry.id()).thenReturn(entryId);
+        when(timelineService.createCorrespondenceEntry(eq(passportId), eq(userId), any(), any(), any(), any(),
+            any(), any(), any(), any(), any(), any())).thenReturn(entry);
+        when(documentService.storeEmailAttachment(passportId, "a.pdf", "application/pdf", Path.of("a.pdf")))
+            .thenReturn(stored("a.pdf"));
+        SpooledAttachment rejected = new SpooledAttachment("big.pdf", "application/pdf", null, 0, "too large");
+        InboundEmail email = new InboundEmail("school@example.com", "passport@example.com", "Report",
+            "See attached", LocalDate.of(2026, 3, 1), null, "0".repeat(64), List.of(spooled("a.pdf"), rejected));
+
+        CorrespondenceResponse response = inboundEmailService.process(passportId, email, "127.0.0.1");
+
+        assertEquals(1, response.attachmentCount());
+        verify(receiptRepository).complete(eq(passportId), eq(InboundEmailService.dedupKey(email)), eq(entryId),
+            eq(1), any());
+    }
+
+    @Test
+    void process_ShouldRecordEntryOnClaimBeforeSavingAttachments() throws IOException {
+        when(receiptRepository.claim(any(), any(), any(), any(), any())).thenReturn(1);
+        when(permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)))
+            .thenReturn(List.of(permission(user(userId), true)));
+        TimelineEntryResponse entry = mock(TimelineEntryResponse.class);
+        when(entry.id()).thenReturn(entryId);
+        when(timelineService.createCorrespondenceEntry(eq(passportId), eq(userId), any(), any(), any(), any(),
+            any(), any(), any(), any(), any(), any())).thenReturn(entry);
+        when(documentService.storeEmailAttachment(any(), any(), any(), any())).thenReturn(stored("a.pdf"));
+        InboundEmail email = new InboundEmail("school@example.com", "passport@example.com", "Report",
+            "See attached", LocalDate.of(2026, 3, 1), null, "0".repeat(64), List.of(spooled("a.pdf")));
+
+        inboundEmailService.process(passportId, email, "127.0.0.1");
+
+        String dedupKey = InboundEmailService.dedupKey(email);
+        InOrder order = inOrder(receiptRepository, documentService);
+        order.verify(receiptRepository).recordEntry(passportId, dedupKey, entryId);
+        order.verify(documentService).saveEmailAttachment(eq(passportId), eq(userId), eq(entryId), any());
+        order.verify(receiptRepository).complete(eq(passportId), eq(dedupKey), eq(entryId), eq(1), any());
+    }
+
+    @Test
+    void process_ShouldResumeEntryOfAttemptThatDied() throws IOException {
+        InboundEmail email = new InboundEmail("school@example.com", "passport@example.com", "Report",
+            "See attached", LocalDate.of(2026, 3, 1), null, "0".repeat(64),
+            List.of(spooled("a.pdf"), spooled("b.pdf")));
+        String dedupKey = InboundEmailService.dedupKey(email);
+        when(receiptRepository.claim(any(), eq(passportId), eq(dedupKey), any(), any())).thenReturn(1);
+        // The stale claim taken over had its entry recorded, and a.pdf saved, before the crash
+        InboundEmailReceipt receipt = BeanUtils.instantiateClass(InboundEmailReceipt.class);
+        ReflectionTestUtils.setField(receipt, "entryId", entryId);
+        when(receiptRepository.findByPassportIdAndDedupKey(passportId, dedupKey)).thenReturn(Optional.of(receipt));
+        Document saved = BeanUtils.instantiateClass(Document.class);
+        ReflectionTestUtils.setField(saved, "originalFileName", "a.pdf");
+        ReflectionTestUtils.setField(saved, "contentHash", "hash");
+        when(documentRepository.findByTimelineEntryId(entryId)).thenReturn(List.of(saved));
+        when(permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)))
+            .thenReturn(List.of(permission(user(userId), true)));
+        StoredAttachment a = stored("a.pdf");
+        StoredAttachment b = stored("b.pdf");
+        when(documentService.storeEmailAttachment(passportId, "a.pdf", "application/pdf", Path.of("a.pdf")))
+            .thenReturn(a);
+        when(documentService.storeEmailAttachment(passportId, "b.pdf", "application/pdf", Path.of("b.pdf")))
+            .thenReturn(b);
+
+        CorrespondenceResponse response = inboundEmailService.process(passportId, email, "127.0.0.1");
+
+        assertEquals(entryId, response.entryId());
+        assertEquals(2, response.attachmentCount());
+        verifyNoInteractions(timelineService);
+        verify(documentService).discardStoredAttachment(a);
+        verify(documentService).saveEmailAttachment(passportId, userId, entryId, b);
+        verify(documentService, never()).saveEmailAttachment(passportId, userId, entryId, a);
+        verify(receiptRepository).complete(eq(passportId), eq(dedupKey), eq(entryId), eq(2), any());
+    }
+
+    @Test
+    void process_ShouldRejectDeliveryStillInProgress() {
+        when(receiptRepository.claim(any(), any(), any(), any(), any())).thenReturn(0);
+        when(receiptRepository.findByPassportIdAndDedupKey(eq(passportId), any()))
+            .thenReturn(Optional.of(BeanUtils.instantiateClass(InboundEmailReceipt.class)));
+
+        assertThrows(IllegalStateException.class, () ->
+            inboundEmailService.process(passportId, email(null), "127.0.0.1"));
+        verifyNoInteractions(timelineService);
+    }
+
+    @Test
+    void process_ShouldReleaseClaimWhenEntryCannotBeCreated() {
+        when(receiptRepository.claim(any(), any(), any(), any(), any())).thenReturn(1);
+        when(permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)))
+            .thenReturn(List.of());
+
+        InboundEmail email = email(null);
+        assertThrows(IllegalStateException.class, () -> inboundEmailService.process(passportId, email, "127.0.0.1"));
+        verify(receiptRepository).release(passportId, InboundEmailService.dedupKey(email), Instant.EPOCH);
+        verify(receiptRepository, never()).complete(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void resolveAuthor_ShouldUseSenderWithPermissionToAddEntries() {
+        User sender = user(userId);
+        when(userRepository.findByEmail("parent@example.com")).thenReturn(Optional.of(sender));
+        PassportPermission permission = permission(sender, true);
+        when(permissionRepository.findActivePermission(passportId, userId)).thenReturn(Optional.of(permission));
+
+        assertEquals(userId, inboundEmailService.resolveAuthor(passportId, " Parent@Example.com"));
+        verify(permissionRepository, never()).findActiveByPassportIdAndRoles(any(), any());
+    }
+
+    @Test
+    void resolveAuthor_ShouldFallBackToOwnerForUnknownOrReadOnlySender() {
+        User viewer = user(UUID.randomUUID());
+        User owner = user(userId);
+        when(userRepository.findByEmail("viewer@example.com")).thenReturn(Optional.of(viewer));
+        when(permissionRepository.findActivePermission(passportId, viewer.getId()))
+            .thenReturn(Optional.of(permission(viewer, false)));
+        when(permissionRepository.findActiveByPassportIdAndRoles(passportId, List.of(Role.OWNER)))
+            .thenReturn(List.of(permission(owner, true)));
+
+        assertEquals(userId, inboundEmailService.resolveAuthor(passportId, "viewer@example.com"));
+        when(userRepository.findByEmail("school@example.com")).thenReturn(Optional.empty());
+        assertEquals(userId, inboundEmailService.resolveAuthor(passportId, "school@example.com"));
+    }
+
+    private InboundEmail email(String messageId) {
+        return new InboundEmail("school@example.com", "passport@example.com", "Report", "See attached",
+            LocalDate.of(2026, 3, 1), messageId, "0".repeat(64), List.of());
+    }
+
+    private static User user(UUID id) {
+        User user = BeanUtils.instantiateClass(User.class);
+        ReflectionTestUtils.setField(user, "id", id);
+        return user;
+    }
+
+    private static PassportPermission permission(User user, boolean canAddTimelineEntries) {
+        PassportPermission permission = BeanUtils.instantiateClass(PassportPermission.class);
+        ReflectionTestUtils.setField(permission, "user", user);
+        ReflectionTestUtils.setField(permission, "canAddTimelineEntries", canAddTimelineEntries);
+        return permission;
+    }
+
+    private static SpooledAttachment spooled(String filename) {
+        return new SpooledAttachment(filename, "application/pdf", Path.of(filename), 10, null);
+    }
+
+    private StoredAttachment stored(String filename) {
+        return new StoredAttachment("passports/" + passportId + "/documents/" + filename,
+            filename, "application/pdf", 10, "hash");
+    }
+}
@@ -0,0 +1,104 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.CorrespondenceDTO.CorrespondenceResponse;
+import com.thisisme.service.InboundEmailJobService.InboundEmailWork;
+import com.thisisme.service.InboundEmailParser.InboundEmail;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InboundEmailWorkerTest {
+
+    @Mock private InboundEmailJobService jobService;
+    @Mock private InboundEmailParser parser;
+    @Mock private InboundEmailService inboundEmailService;
+    @Mock private StorageService storageService;
+
+    private InboundEmailWorker worker;
+    private String workerId;
+    private final UUID jobId = UUID.randomUUID();
+    private final UUID passportId = UUID.randomUUID();
+    private InboundEmailWork work;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        worker = new InboundEmailWorker(jobService, parser, inboundEmailService, storageService,
+            Runnable::run, new SimpleMeterRegistry());
+        workerId = worker.getWorkerId();
+        work = new InboundEmailWork(jobId, passportId, "passports/" + passportId + "/inbound/a.json", "10.0.0.1");
+        when(jobService.startWork(jobId, workerId)).thenReturn(Optional.of(work));
+        when(storageService.openStream(work.payloadPath())).thenReturn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @Test
+    void process_ShouldCompleteJobAndDropPayload() throws IOException {
+        InboundEmail email = email();
+        when(parser.parse(any(InputStream.class))).thenReturn(email);
+        UUID entryId = UUID.randomUUID();
+        when(inboundEmailService.process(passportId, email, "10.0.0.1")).thenReturn(
+            new CorrespondenceResponse(entryId, email.from(), email.to(), email.subject(), email.date(), "WEBHOOK", 0));
+        when(jobService.complete(jobId, workerId, entryId)).thenReturn(true);
+
+        worker.process(jobId);
+
+        verify(jobService).deletePayload(work.payloadPath());
+        verify(jobService, never()).recordFailure(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void process_ShouldDeadLetterInvalidPayload() throws IOException {
+        when(parser.parse(any(InputStream.class))).thenThrow(new IllegalArgumentException("subject: must not be blank"));
+
+        worker.process(jobId);
+
+        verify(jobService).recordFailure(eq(jobId), eq(workerId), startsWith("Invalid payload"), eq(false));
+        verifyNoInteractions(inboundEmailService);
+        verify(jobService, never()).deletePayload(any());
+    }
+
+    @Test
+    void process_ShouldDeadLetterPermissionFailures() throws IOException {
+        when(parser.parse(any(InputStream.class))).thenReturn(email());
+        when(inboundEmailService.process(eq(passportId), any(), any()))
+            .thenThrow(new SecurityException("You don't have permission to add timeline entries"));
+
+        worker.process(jobId);
+
+        verify(jobService).recordFailure(jobId, workerId, "You don't have permission to add timeline entries", false);
+    }
+
+    @Test
+    void process_ShouldRetryTransientFailures() throws IOException {
+        when(parser.parse(any(InputStream.class))).thenReturn(email());
+        when(inboundEmailService.process(eq(passportId), any(), any()))
+            .thenThrow(new IllegalStateException("This email is already being processed"));
+
+        worker.process(jobId);
+
+        verify(jobService).recordFailure(jobId, workerId, "This email is already being processed", true);
+        verify(jobService, never()).complete(any(), any(), any());
+    }
+
+    private static InboundEmail email() {
+        return new InboundEmail("school@example.com", "passport@example.com", "Report", "See attached",
+            LocalDate.of(2026, 3, 1), null, "0".repeat(64), List.of());
+    }
+}
@@ -0,0 +1,149 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.service.TimelineSearchEngine.SearchQuery;
+import com.thisisme.service.TimelineSearchEngine.SearchResult;
+import com.thisisme.service.TimelineSearchSource.IndexedEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LuceneTimelineSearchEngineTest {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    @Mock private TimelineSearchSource source;
+    @TempDir Path indexDir;
+
+    private LuceneTimelineSearchEngine engine;
+    private final UUID passportId = UUID.randomUUID();
+    private IndexedEntry incident;
+    private IndexedEntry note;
+    private IndexedEntry letter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Set<Role> everyone = EnumSet.allOf(Role.class);
+        incident = new IndexedEntry(UUID.randomUUID(), passportId, EntryType.INCIDENT, "Playground scuffle",
+            "Pushed another child at lunch", Set.of("behaviour", "playground"), everyone, null, null);
+        note = new IndexedEntry(UUID.randomUUID(), passportId, EntryType.NOTE, "Reading",
+            "Read quietly in the playground after lunch", Set.of("playground"), everyone, null, null);
+        letter = new IndexedEntry(UUID.randomUUID(), passportId, EntryType.MEDICAL, "Clinic letter", null,
+            Set.of(), EnumSet.of(Role.OWNER, Role.CO_OWNER), "dr.khan@nhs.example\nSleep review",
+            "paediatrician-letter.pdf\nWe recommend melatonin before bed");
+        List<UUID> ids = List.of(incident.id(), note.id(), letter.id());
+
+        engine = newEngine();
+        when(source.liveIdsAfter(FIRST_ID, 500)).thenReturn(ids);
+        when(source.liveIdsAfter(letter.id(), 500)).thenReturn(List.of());
+        when(source.load(ids)).thenReturn(List.of(incident, note, letter));
+        engine.sync();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.close();
+    }
+
+    private LuceneTimelineSearchEngine newEngine() throws Exception {
+        LuceneTimelineSearchEngine created = new LuceneTimelineSearchEngine(source);
+        ReflectionTestUtils.setField(created, "indexPath", indexDir.toString());
+        ReflectionTestUtils.setField(created, "syncOverlapMs", 1000L);
+        created.open();
+        return created;
+    }
+
+    private SearchResult search(String text, Role role, Set<EntryType> types) {
+        return engine.search(passportId, new SearchQuery(text, types, null, role, true, 20));
+    }
+
+    @Test
+    void search_ShouldMatchMisspelledWordsAndCountFacets() {
+        SearchResult result = search("playgrund", Role.PROFESSIONAL, null);
+
+        // Title matches outrank content matches
+        assertEquals(List.of(incident.id(), note.id()), result.entryIds());
+        assertEquals(2, result.totalHits());
+        assertEquals(1L, result.entryTypeCounts().get(EntryType.INCIDENT));
+        assertEquals(1L, result.entryTypeCounts().get(EntryType.NOTE));
+        assertEquals(2L, result.tagCounts().get("playground"));
+        assertEquals(1L, result.tagCounts().get("behaviour"));
+    }
+
+    @Test
+    void search_ShouldFilterByRoleAndRefineWithoutChangingFacets() {
+        assertTrue(search("melatonin", Role.PROFESSIONAL, null).entryIds().isEmpty());
+        assertEquals(List.of(letter.id()), search("melatonin", Role.OWNER, null).entryIds());
+        assertEquals(List.of(letter.id()), search("paediatrician sleep", Role.OWNER, null).entryIds());
+
+        SearchResult notes = search("playground", Role.OWNER, Set.of(EntryType.NOTE));
+        assertEquals(List.of(note.id()), notes.entryIds());
+        assertEquals(1, notes.totalHits());
+        assertEquals(1L, notes.entryTypeCounts().get(EntryType.INCIDENT));
+
+        SearchResult otherPassport = engine.search(UUID.randomUUID(),
+            new SearchQuery("playground", null, null, Role.OWNER, true, 20));
+        assertTrue(otherPassport.entryIds().isEmpty());
+    }
+
+    @Test
+    void search_ShouldOnlyMatchAttachmentTextForCallersWhoMayViewDocuments() {
+        SearchQuery withoutDocuments = new SearchQuery("melatonin", null, null, Role.OWNER, false, 20);
+        assertTrue(engine.search(passportId, withoutDocuments).entryIds().isEmpty());
+
+        // Email headers are part of the entry, not its attachments
+        assertEquals(List.of(letter.id()), engine.search(passportId,
+            new SearchQuery("sleep review", null, null, Role.OWNER, false, 20)).entryIds());
+    }
+
+    @Test
+    void sync_ShouldReindexPassportsWithAReindexRequest() {
+        // Imported elsewhere with its original timestamps, so only the request finds it
+        IndexedEntry imported = new IndexedEntry(UUID.randomUUID(), passportId, EntryType.NOTE, "Swimming",
+            "First length of the pool", Set.of(), EnumSet.allOf(Role.class), null, null);
+        List<UUID> ids = List.of(incident.id(), note.id(), letter.id(), imported.id());
+        when(source.reindexRequestedSince(any())).thenReturn(List.of(passportId));
+        when(source.liveIdsOf(passportId)).thenReturn(ids);
+        when(source.load(ids)).thenReturn(List.of(incident, note, letter, imported));
+        engine.sync();
+
+        assertEquals(List.of(imported.id()), search("swimming", Role.OWNER, null).entryIds());
+        assertEquals(2, search("playground", Role.OWNER, null).totalHits());
+    }
+
+    @Test
+    void sync_ShouldDropDeletedEntriesAndResumeAfterRestart() throws Exception {
+        when(source.changedSince(any())).thenReturn(Set.of(incident.id()));
+        when(source.load(List.of(incident.id()))).thenReturn(List.of());
+        engine.sync();
+
+        assertEquals(List.of(note.id()), search("playground", Role.OWNER, null).entryIds());
+
+        // The commit records how far the index is synced, so a restart does not rebuild
+        engine.close();
+        clearInvocations(source);
+        engine = newEngine();
+        engine.sync();
+        verify(source, never()).liveIdsAfter(any(), anyInt());
+        verify(source).changedSince(any());
+        assertEquals(List.of(note.id()), search("playground", Role.OWNER, null).entryIds());
+    }
+}
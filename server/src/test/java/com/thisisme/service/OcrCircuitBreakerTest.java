@@ -0,0 +1,69 @@
+package com.thisisme.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrCircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private final OcrCircuitBreaker breaker = new OcrCircuitBreaker(2, Duration.ofSeconds(30), clock);
+
+    @Test
+    void shouldOpenAfterThresholdAndHalfOpenAfterCoolDown() {
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        clock.advance(Duration.ofSeconds(31));
+        assertTrue(breaker.allowRequest());
+        assertEquals(OcrCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // A single failed trial re-opens without waiting for the threshold
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void successShouldResetFailureCount() {
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+
+        assertEquals(OcrCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
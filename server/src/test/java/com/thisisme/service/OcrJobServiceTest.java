@@ -0,0 +1,202 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.Document;
+import com.thisisme.model.entity.OcrJob;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.TimelineEntry;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.OcrJobStatus;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.OcrJobRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.service.OcrJobService.OcrCompletion;
+import com.thisisme.service.OcrService.OcrResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OcrJobServiceTest {
+
+    private static final String WORKER = "worker-1";
+
+    @Mock private OcrJobRepository ocrJobRepository;
+    @Mock private DocumentRepository documentRepository;
+    @Mock private TimelineEntryRepository timelineRepository;
+
+    private OcrJobService ocrJobService;
+    private User uploader;
+    private Document document;
+
+    @BeforeEach
+    void setUp() {
+        ocrJobService = new OcrJobService(ocrJobRepository, documentRepository, timelineRepository);
+        ReflectionTestUtils.setField(ocrJobService, "autoCreateTimelineFromOcr", true);
+        ReflectionTestUtils.setField(ocrJobService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(ocrJobService, "baseBackoffMs", 1000L);
+        ReflectionTestUtils.setField(ocrJobService, "maxBackoffMs", 60000L);
+        ReflectionTestUtils.setField(ocrJobService, "staleAfterMs", 900000L);
+
+        uploader = new User("Test User", "test@example.com", "hash");
+        ReflectionTestUtils.setField(uploader, "id", UUID.randomUUID());
+        Passport passport = new Passport("Test Child", uploader);
+        ReflectionTestUtils.setField(passport, "id", UUID.randomUUID());
+
+        document = new Document(passport, "scan.jpg", "scan.jpg", "image/jpeg", 1024L,
+            "passports/p/documents/scan.jpg", "test-key", "hash", uploader);
+        ReflectionTestUtils.setField(document, "id", UUID.randomUUID());
+    }
+
+    @Test
+    void claimBatch_ShouldMarkLockedJobsRunningForWorker() {
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        when(ocrJobRepository.lockDueJobIds(any(Instant.class), eq(2))).thenReturn(ids);
+
+        assertEquals(ids, ocrJobService.claimBatch(WORKER, 2));
+        verify(ocrJobRepository).markClaimed(eq(ids), eq(WORKER), any(Instant.class), eq(OcrJobStatus.RUNNING));
+    }
+
+    @Test
+    void complete_ShouldStoreTextAndCreateTimelineEntry() {
+        OcrJob job = claimedJob(true);
+        when(timelineRepository.save(any(TimelineEntry.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<OcrCompletion> completion = ocrJobService.complete(job.getId(), WORKER, medicalResult());
+
+        assertTrue(completion.isPresent());
+        assertEquals(uploader.getId(), completion.get().uploaderId());
+        assertEquals("Name: Sam\n", document.getOcrText());
+        assertNotNull(document.getTimelineEntry());
+        assertEquals(EntryType.MEDICAL, document.getTimelineEntry().getEntryType());
+        assertEquals(OcrJobStatus.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void complete_ShouldNotCreateEntryForUploadsAttachedToAnEntry() {
+        OcrJob job = claimedJob(false);
+
+        ocrJobService.complete(job.getId(), WORKER, medicalResult());
+
+        assertNotNull(document.getOcrText());
+        verify(timelineRepository, never()).save(any());
+    }
+
+    @Test
+    void complete_ShouldDiscardResultWhenJobWasReclaimed() {
+        OcrJob job = claimedJob(true);
+        ReflectionTestUtils.setField(job, "lockedBy", "another-worker");
+
+        assertTrue(ocrJobService.complete(job.getId(), WORKER, medicalResult()).isEmpty());
+        assertNull(document.getOcrText());
+    }
+
+    @Test
+    void recordFailure_ShouldBackOffThenFailPermanently() {
+        OcrJob job = claimedJob(true);
+        ReflectionTestUtils.setField(job, "attempts", 1);
+
+        Instant before = Instant.now();
+        ocrJobService.recordFailure(job.getId(), WORKER, "OCR service unavailable", true);
+
+        assertEquals(OcrJobStatus.PENDING, job.getStatus());
+        assertTrue(job.getNextAttemptAt().isAfter(before));
+        assertNull(job.getLockedBy());
+        assertNull(document.getOcrError());
+
+        // Final attempt exhausts retries and surfaces the error on the document
+        ReflectionTestUtils.setField(job, "status", OcrJobStatus.RUNNING);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        ReflectionTestUtils.setField(job, "attempts", 3);
+        ocrJobService.recordFailure(job.getId(), WORKER, "OCR service unavailable", true);
+
+        assertEquals(OcrJobStatus.FAILED, job.getStatus());
+        assertEquals("OCR service unavailable", document.getOcrError());
+    }
+
+    @Test
+    void recordFailure_ShouldNotRetryRejectedDocuments() {
+        OcrJob job = claimedJob(true);
+        ReflectionTestUtils.setField(job, "attempts", 1);
+
+        ocrJobService.recordFailure(job.getId(), WORKER, "No text detected", false);
+
+        assertEquals(OcrJobStatus.FAILED, job.getStatus());
+        assertEquals("No text detected", document.getOcrError());
+    }
+
+    @Test
+    void claimTextLayerBatch_ShouldClaimOnlyTextLayerJobs() {
+        List<UUID> ids = List.of(UUID.randomUUID());
+        when(ocrJobRepository.lockDueTextLayerJobIds(any(Instant.class), eq(2))).thenReturn(ids);
+
+        assertEquals(ids, ocrJobService.claimTextLayerBatch(WORKER, 2));
+        verify(ocrJobRepository).markClaimed(eq(ids), eq(WORKER), any(Instant.class), eq(OcrJobStatus.RUNNING));
+        verify(ocrJobRepository, never()).lockDueJobIds(any(), anyInt());
+    }
+
+    @Test
+    void deferScannedPages_ShouldKeepTextAndRequeueWithoutCountingAttempt() {
+        OcrJob job = claimedJob(true);
+        ReflectionTestUtils.setField(job, "attempts", 1);
+
+        ocrJobService.deferScannedPages(job.getId(), WORKER, textLayerResult(), false);
+
+        assertEquals("Dear parent", document.getOcrText());
+        assertTrue(job.isTextLayerExtracted());
+        assertEquals(OcrJobStatus.PENDING, job.getStatus());
+        assertEquals(0, job.getAttempts());
+        assertNull(job.getLockedBy());
+        verify(timelineRepository, never()).save(any());
+    }
+
+    @Test
+    void deferScannedPages_ShouldKeepTextWhenOcrRetriesRunOut() {
+        OcrJob job = claimedJob(true);
+        ReflectionTestUtils.setField(job, "attempts", 3);
+
+        ocrJobService.deferScannedPages(job.getId(), WORKER, textLayerResult(), true);
+
+        assertEquals(OcrJobStatus.FAILED, job.getStatus());
+        assertEquals("Dear parent", document.getOcrText());
+        assertEquals("OCR service unavailable", document.getOcrError());
+    }
+
+    @Test
+    void backoff_ShouldGrowExponentiallyUpToCap() {
+        assertTrue(ocrJobService.backoff(1).toMillis() >= 1000 && ocrJobService.backoff(1).toMillis() <= 1200);
+        assertTrue(ocrJobService.backoff(3).toMillis() >= 4000 && ocrJobService.backoff(3).toMillis() <= 4800);
+        assertTrue(ocrJobService.backoff(30).compareTo(Duration.ofMillis(72000)) <= 0);
+    }
+
+    private OcrJob claimedJob(boolean autoCreateTimeline) {
+        OcrJob job = new OcrJob(document, autoCreateTimeline);
+        ReflectionTestUtils.setField(job, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(job, "status", OcrJobStatus.RUNNING);
+        ReflectionTestUtils.setField(job, "lockedBy", WORKER);
+        when(ocrJobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+        return job;
+    }
+
+    private static OcrResult textLayerResult() {
+        return new OcrResult(true, null, null, Map.of(), List.of(), "Dear parent");
+    }
+
+    private static OcrResult medicalResult() {
+        return new OcrResult(true, "Medical", "Letter", Map.of("Name", "Sam"), List.of("Sam"), "Name: Sam\n");
+    }
+}
@@ -0,0 +1,235 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.thisisme.model.enums.OcrJobStatus;
+import com.thisisme.service.OcrJobService.OcrCompletion;
+import com.thisisme.service.OcrJobService.OcrWork;
+import com.thisisme.service.OcrService.OcrResult;
+import com.thisisme.service.PdfTextExtractor.PdfText;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the worker against a local stub of the OCR HTTP service
+ */
+@ExtendWith(MockitoExtension.class)
+class OcrJobWorkerTest {
+
+    @Mock private OcrJobService ocrJobService;
+    @Mock private StorageService storageService;
+    @Mock private NotificationService notificationService;
+    @Mock private OcrResultCache ocrResultCache;
+    @Mock private PdfTextExtractor pdfTextExtractor;
+
+    private HttpServer stubServer;
+    private volatile int stubStatus;
+    private volatile String stubBody;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OcrService ocrService;
+    private OcrJobWorker worker;
+    private UUID jobId;
+    private OcrWork work;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.createContext("/ocr", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = stubBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(stubStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubServer.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        ocrService = new OcrService(new ObjectMapper(), new RestTemplate(), meterRegistry);
+        ReflectionTestUtils.setField(ocrService, "ocrServiceUrl",
+            "http://127.0.0.1:" + stubServer.getAddress().getPort());
+        ReflectionTestUtils.setField(ocrService, "ocrEnabled", true);
+        ReflectionTestUtils.setField(ocrService, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(ocrService, "bulkheadWaitMs", 100L);
+        ReflectionTestUtils.setField(ocrService, "breakerFailureThreshold", 3);
+        ReflectionTestUtils.setField(ocrService, "breakerOpenMs", 30000L);
+        ocrService.init();
+
+        worker = new OcrJobWorker(ocrJobService, ocrService, storageService, notificationService,
+            ocrResultCache, pdfTextExtractor, Runnable::run, meterRegistry);
+        ReflectionTestUtils.setField(worker, "concurrency", 2);
+
+        jobId = UUID.randomUUID();
+        work = new OcrWork(jobId, UUID.randomUUID(), "passports/p/documents/scan.jpg", "scan.jpg",
+            "image/jpeg", "content-hash");
+        lenient().when(ocrJobService.startWork(jobId, worker.getWorkerId())).thenReturn(Optional.of(work));
+        lenient().when(storageService.download(work.storagePath())).thenReturn(new byte[] {1, 2, 3});
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void process_ShouldCompleteJobAndNotifyUploader() {
+        stubStatus = 200;
+        stubBody = """
+            {"success": true, "data": {
+              "metadata": {"document_type": "Medical", "document_subtype": "Letter", "detected_names": ["Sam"]},
+              "form": {"Name": "Sam", "Clinic": "Riverside"}
+            }}""";
+        OcrCompletion completion = new OcrCompletion(UUID.randomUUID(), UUID.randomUUID(), work.documentId(), "scan.jpg");
+        when(ocrJobService.complete(eq(jobId), eq(worker.getWorkerId()), any())).thenReturn(Optional.of(completion));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).complete(eq(jobId), eq(worker.getWorkerId()),
+            argThat(r -> r.success() && "Medical".equals(r.documentType()) && r.formFields().size() == 2));
+        verify(notificationService).notifyDocumentOcrComplete(
+            completion.uploaderId(), completion.passportId(), completion.documentId(), "scan.jpg");
+        verify(ocrResultCache).store(eq("content-hash"), argThat(OcrResult::success));
+    }
+
+    @Test
+    void process_ShouldUseCachedResultWithoutCallingService() throws IOException {
+        OcrResult cached = new OcrResult(true, "Medical", null, java.util.Map.of(), List.of(), "Name: Sam\n");
+        when(ocrResultCache.lookup("content-hash")).thenReturn(Optional.of(cached));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).complete(jobId, worker.getWorkerId(), cached);
+        verify(storageService, never()).download(any());
+    }
+
+    @Test
+    void process_ShouldRetryWhenServiceErrors() {
+        stubStatus = 503;
+        stubBody = "{\"detail\": \"OCR pipeline not initialized\"}";
+
+        worker.process(jobId);
+
+        verify(ocrJobService).recordFailure(jobId, worker.getWorkerId(), "OCR service unavailable", true);
+        verify(ocrJobService, never()).complete(any(), any(), any());
+    }
+
+    @Test
+    void process_ShouldFailPermanentlyWhenServiceRejectsDocument() {
+        stubStatus = 200;
+        stubBody = "{\"success\": false, \"data\": {\"error\": \"No text detected\"}}";
+
+        worker.process(jobId);
+
+        verify(ocrJobService).recordFailure(jobId, worker.getWorkerId(), "No text detected", false);
+    }
+
+    @Test
+    void process_ShouldExtractPdfsInProcess() throws IOException {
+        OcrWork pdfWork = new OcrWork(jobId, work.documentId(), "passports/p/documents/letter.pdf", "letter.pdf",
+            "application/pdf", "pdf-hash");
+        when(ocrJobService.startWork(jobId, worker.getWorkerId())).thenReturn(Optional.of(pdfWork));
+        when(storageService.download(pdfWork.storagePath())).thenReturn(new byte[] {1});
+        OcrResult extracted = new OcrResult(true, null, null, java.util.Map.of(), List.of(), "Dear parent");
+        when(pdfTextExtractor.extract(any(), eq("letter.pdf"))).thenReturn(new PdfText(extracted, 0, false));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).complete(jobId, worker.getWorkerId(), extracted);
+        verify(ocrResultCache).store("pdf-hash", extracted);
+    }
+
+    @Test
+    void process_ShouldKeepTextLayerAndDeferScannedPages() throws IOException {
+        OcrWork pdfWork = new OcrWork(jobId, work.documentId(), "passports/p/documents/letter.pdf", "letter.pdf",
+            "application/pdf", "pdf-hash");
+        when(ocrJobService.startWork(jobId, worker.getWorkerId())).thenReturn(Optional.of(pdfWork));
+        when(storageService.download(pdfWork.storagePath())).thenReturn(new byte[] {1});
+        OcrResult partial = new OcrResult(true, null, null, java.util.Map.of(), List.of(), "Dear parent");
+        when(pdfTextExtractor.extract(any(), eq("letter.pdf"))).thenReturn(new PdfText(partial, 2, false));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).deferScannedPages(jobId, worker.getWorkerId(), partial, false);
+        verify(ocrJobService, never()).complete(any(), any(), any());
+        verify(ocrResultCache, never()).store(any(), any());
+    }
+
+    @Test
+    void process_ShouldFailPermanentlyForUnreadablePdf() throws IOException {
+        OcrWork pdfWork = new OcrWork(jobId, work.documentId(), "passports/p/documents/locked.pdf", "locked.pdf",
+            "application/pdf", "pdf-hash");
+        when(ocrJobService.startWork(jobId, worker.getWorkerId())).thenReturn(Optional.of(pdfWork));
+        when(storageService.download(pdfWork.storagePath())).thenReturn(new byte[] {1});
+        when(pdfTextExtractor.extract(any(), any())).thenThrow(new IOException("PDF is password protected"));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).recordFailure(jobId, worker.getWorkerId(),
+            "Unreadable PDF: PDF is password protected", false);
+    }
+
+    @Test
+    void process_ShouldRetryWhenFileCannotBeRead() throws IOException {
+        when(storageService.download(work.storagePath())).thenThrow(new IOException("timeout"));
+
+        worker.process(jobId);
+
+        verify(ocrJobService).recordFailure(jobId, worker.getWorkerId(), "Failed to read document: timeout", true);
+    }
+
+    @Test
+    void poll_ShouldClaimOnlyIdleCapacity() {
+        stubStatus = 503;
+        stubBody = "{}";
+        when(ocrJobService.claimBatch(worker.getWorkerId(), 2)).thenReturn(List.of(jobId));
+
+        worker.poll();
+
+        verify(ocrJobService).claimBatch(worker.getWorkerId(), 2);
+        verify(ocrJobService).startWork(jobId, worker.getWorkerId());
+    }
+
+    @Test
+    void poll_ShouldOnlyClaimTextLayerWorkWhileOcrIsUnavailable() {
+        ReflectionTestUtils.setField(ocrService, "ocrEnabled", false);
+        when(ocrJobService.claimTextLayerBatch(worker.getWorkerId(), 2)).thenReturn(List.of());
+
+        worker.poll();
+
+        verify(ocrJobService).claimTextLayerBatch(worker.getWorkerId(), 2);
+        verify(ocrJobService, never()).claimBatch(any(), anyInt());
+    }
+
+    @Test
+    void refreshQueueMetrics_ShouldPublishQueueDepth() {
+        when(ocrJobService.countByStatus(OcrJobStatus.PENDING)).thenReturn(7L);
+        when(ocrJobService.countByStatus(OcrJobStatus.RUNNING)).thenReturn(2L);
+
+        worker.refreshQueueMetrics();
+
+        assertEquals(7.0, meterRegistry.get("ocr.jobs.queued").tag("status", "pending").gauge().value());
+        assertEquals(2.0, meterRegistry.get("ocr.jobs.queued").tag("status", "running").gauge().value());
+    }
+}
@@ -0,0 +1,91 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thisisme.model.entity.OcrResultCacheEntry;
+import com.thisisme.repository.OcrResultCacheRepository;
+import com.thisisme.service.OcrService.OcrResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OcrResultCacheTest {
+
+    @Mock private OcrResultCacheRepository cacheRepository;
+    @Mock private OcrService ocrService;
+
+    private OcrResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OcrResultCache(cacheRepository, ocrService, new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlDays", 90);
+    }
+
+    @Test
+    void storeThenLookup_ShouldRoundTripParsedResult() {
+        when(ocrService.getServiceVersion()).thenReturn("1.1.0");
+        OcrResult result = new OcrResult(true, "Medical", "Letter",
+            Map.of("Name", "Sam"), List.of("Sam"), "Name: Sam\n");
+
+        cache.store("hash", result);
+        ArgumentCaptor<OcrResultCacheEntry> saved = ArgumentCaptor.forClass(OcrResultCacheEntry.class);
+        verify(cacheRepository).save(saved.capture());
+        assertEquals("1.1.0", saved.getValue().getModelVersion());
+
+        when(cacheRepository.findById("hash")).thenReturn(Optional.of(saved.getValue()));
+        Optional<OcrResult> cached = cache.lookup("hash");
+
+        assertTrue(cached.isPresent());
+        assertEquals(result, cached.get());
+    }
+
+    @Test
+    void lookup_ShouldMissWhenModelVersionChanged() {
+        when(ocrService.getServiceVersion()).thenReturn("1.2.0");
+        when(cacheRepository.findById("hash")).thenReturn(Optional.of(
+            new OcrResultCacheEntry("hash", "1.1.0", "{\"success\":true}", Instant.now().plusSeconds(60))));
+
+        assertTrue(cache.lookup("hash").isEmpty());
+    }
+
+    @Test
+    void lookup_ShouldMissWhenExpired() {
+        when(cacheRepository.findById("hash")).thenReturn(Optional.of(
+            new OcrResultCacheEntry("hash", "1.1.0", "{\"success\":true}", Instant.now().minusSeconds(1))));
+
+        assertTrue(cache.lookup("hash").isEmpty());
+    }
+
+    @Test
+    void store_ShouldNotCacheFailures() {
+        cache.store("hash", new OcrResult(false, null, null, null, null, "No text detected"));
+
+        verify(cacheRepository, never()).save(any());
+    }
+
+    @Test
+    void purge_ShouldDropOtherModelVersionsOnceVersionKnown() {
+        when(ocrService.getServiceVersion()).thenReturn("1.2.0");
+
+        cache.purge();
+
+        verify(cacheRepository).deleteExpired(any(Instant.class));
+        verify(cacheRepository).deleteOtherModelVersions("1.2.0");
+    }
+}
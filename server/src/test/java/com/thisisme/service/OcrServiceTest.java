@@ -0,0 +1,173 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.thisisme.service.OcrService.OcrResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the OCR client against a local stub of the OCR HTTP service
+ */
+class OcrServiceTest {
+
+    private static final String SUCCESS_BODY =
+        "{\"success\": true, \"data\": {\"metadata\": {\"document_type\": \"Medical\"}, \"form\": {\"Name\": \"Sam\"}}}";
+
+    private HttpServer stubServer;
+    private final AtomicInteger ocrRequests = new AtomicInteger();
+    private volatile int ocrStatus = 200;
+    private volatile String healthBody = "{\"status\": \"healthy\", \"version\": \"1.1.0\", \"services\": {}}";
+    private volatile CountDownLatch ocrGate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OcrService ocrService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.setExecutor(Executors.newCachedThreadPool());
+        stubServer.createContext("/ocr", exchange -> {
+            ocrRequests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (ocrGate != null) {
+                try {
+                    ocrGate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, ocrStatus, ocrStatus == 200 ? SUCCESS_BODY : "{\"detail\": \"error\"}");
+        });
+        stubServer.createContext("/ocr/batch", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, "[" + SUCCESS_BODY + ", {\"success\": false, \"data\": {\"error\": \"File must be an image\"}}]");
+        });
+        stubServer.createContext("/health", exchange -> respond(exchange, 200, healthBody));
+        stubServer.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        ocrService = new OcrService(new ObjectMapper(), new RestTemplate(), meterRegistry);
+        ReflectionTestUtils.setField(ocrService, "ocrServiceUrl",
+            "http://127.0.0.1:" + stubServer.getAddress().getPort());
+        ReflectionTestUtils.setField(ocrService, "ocrEnabled", true);
+        ReflectionTestUtils.setField(ocrService, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(ocrService, "bulkheadWaitMs", 50L);
+        ReflectionTestUtils.setField(ocrService, "breakerFailureThreshold", 3);
+        ReflectionTestUtils.setField(ocrService, "breakerOpenMs", 60000L);
+        ocrService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ocrGate != null) {
+            ocrGate.countDown();
+        }
+        stubServer.stop(0);
+    }
+
+    @Test
+    void processImage_ShouldParseResultAndRecordLatency() {
+        OcrResult result = ocrService.processImage(new byte[] {1}, "scan.jpg", "image/jpeg");
+
+        assertTrue(result.success());
+        assertEquals("Medical", result.documentType());
+        assertEquals(1, meterRegistry.get("ocr.client.requests").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void processBatch_ShouldReturnOneResultPerImageInOrder() {
+        List<OcrResult> results = ocrService.processBatch(List.of(
+            new OcrService.BatchImage("page-1.png", new byte[] {1}),
+            new OcrService.BatchImage("page-2.png", new byte[] {2})));
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).success());
+        assertFalse(results.get(1).success());
+        assertEquals("File must be an image", results.get(1).rawTextOrError());
+    }
+
+    @Test
+    void processImage_ShouldShortCircuitAfterConsecutiveFailures() {
+        ocrStatus = 500;
+        for (int i = 0; i < 3; i++) {
+            assertNull(ocrService.processImage(new byte[] {1}, "scan.jpg", "image/jpeg"));
+        }
+        assertEquals(OcrCircuitBreaker.State.OPEN, ocrService.getCircuitState());
+
+        assertNull(ocrService.processImage(new byte[] {1}, "scan.jpg", "image/jpeg"));
+        assertEquals(3, ocrRequests.get());
+        assertEquals(1.0, meterRegistry.get("ocr.client.rejected").tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void processImage_ShouldReturnFailedResultWhenServiceRejectsFile() {
+        ocrStatus = 400;
+
+        OcrResult result = ocrService.processImage(new byte[] {1}, "scan.jpg", "image/jpeg");
+
+        assertFalse(result.success());
+        assertEquals(OcrCircuitBreaker.State.CLOSED, ocrService.getCircuitState());
+    }
+
+    @Test
+    void processImage_ShouldRejectWhenBulkheadIsFull() throws Exception {
+        ocrGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<OcrResult> first = pool.submit(() -> ocrService.processImage(new byte[] {1}, "a.jpg", "image/jpeg"));
+            while (ocrRequests.get() == 0) {
+                Thread.sleep(5);
+            }
+
+            assertNull(ocrService.processImage(new byte[] {1}, "b.jpg", "image/jpeg"));
+            assertEquals(1.0, meterRegistry.get("ocr.client.rejected").tag("reason", "bulkhead").counter().count());
+
+            ocrGate.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS).success());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void checkHealth_ShouldOpenWhenUnhealthyAndCloseOnRecovery() {
+        healthBody = "{\"status\": \"degraded\", \"version\": \"1.1.0\", \"services\": {}}";
+        ocrService.checkHealth();
+        assertEquals(OcrCircuitBreaker.State.OPEN, ocrService.getCircuitState());
+        assertFalse(ocrService.isAvailable());
+
+        healthBody = "{\"status\": \"healthy\", \"version\": \"1.2.0\", \"services\": {}}";
+        ocrService.checkHealth();
+        assertEquals(OcrCircuitBreaker.State.CLOSED, ocrService.getCircuitState());
+        assertEquals("1.2.0", ocrService.getServiceVersion());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
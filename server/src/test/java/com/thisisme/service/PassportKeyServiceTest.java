@@ -0,0 +1,96 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.PassportKey;
+import com.thisisme.repository.PassportKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PassportKeyServiceTest {
+
+    @Mock private PassportKeyRepository passportKeyRepository;
+
+    private StorageKeyRing keyRing;
+    private PassportKeyService passportKeyService;
+    private UUID passportId;
+
+    @BeforeEach
+    void setUp() {
+        keyRing = new StorageKeyRing();
+        ReflectionTestUtils.setField(keyRing, "currentKeyId", "k1");
+        ReflectionTestUtils.setField(keyRing, "keySpec", "k1:" + Base64.getEncoder().encodeToString(new byte[32]));
+        keyRing.init();
+
+        passportKeyService = new PassportKeyService(passportKeyRepository, keyRing, 100);
+        ReflectionTestUtils.setField(passportKeyService, "cacheSeconds", 300L);
+        passportId = UUID.randomUUID();
+    }
+
+    @Test
+    void getOrCreateKey_ShouldCreateKeyOnceAndServeItFromCache() {
+        when(passportKeyRepository.findById(passportId)).thenReturn(Optional.empty());
+        when(passportKeyRepository.insertIfAbsent(eq(passportId), eq("k1"), any(byte[].class), any(Instant.class)))
+            .thenReturn(1);
+
+        SecretKey first = passportKeyService.getOrCreateKey(passportId);
+        SecretKey second = passportKeyService.getOrCreateKey(passportId);
+
+        assertSame(first, second);
+        verify(passportKeyRepository, times(1)).insertIfAbsent(any(), any(), any(), any());
+    }
+
+    @Test
+    void findKey_ShouldUnwrapStoredKey() {
+        SecretKey key = keyRing.generateDataKey();
+        when(passportKeyRepository.findById(passportId)).thenReturn(Optional.of(row("k1", keyRing.wrap(key), null)));
+
+        assertArrayEquals(key.getEncoded(), passportKeyService.findKey(passportId).orElseThrow().getEncoded());
+    }
+
+    @Test
+    void getOrCreateKey_ShouldRefuseToReplaceShreddedKey() {
+        when(passportKeyRepository.findById(passportId)).thenReturn(Optional.of(row(null, null, Instant.now())));
+        when(passportKeyRepository.insertIfAbsent(any(), any(), any(), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> passportKeyService.getOrCreateKey(passportId));
+    }
+
+    @Test
+    void shred_ShouldEvictCachedKey() {
+        SecretKey key = keyRing.generateDataKey();
+        when(passportKeyRepository.findById(passportId))
+            .thenReturn(Optional.of(row("k1", keyRing.wrap(key), null)))
+            .thenReturn(Optional.of(row(null, null, Instant.now())));
+        assertTrue(passportKeyService.findKey(passportId).isPresent());
+
+        passportKeyService.shred(passportId, Instant.now());
+
+        assertTrue(passportKeyService.findKey(passportId).isEmpty());
+        verify(passportKeyRepository).shred(eq(passportId), any(Instant.class));
+    }
+
+    private PassportKey row(String kekId, byte[] wrappedKey, Instant shreddedAt) {
+        PassportKey row = BeanUtils.instantiateClass(PassportKey.class);
+        ReflectionTestUtils.setField(row, "passportId", passportId);
+        ReflectionTestUtils.setField(row, "kekId", kekId);
+        ReflectionTestUtils.setField(row, "wrappedKey", wrappedKey);
+        ReflectionTestUtils.setField(row, "shreddedAt", shreddedAt);
+        return row;
+    }
+}
@@ -0,0 +1,220 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.SearchDTO.ChildHits;
+import com.thisisme.model.dto.SearchDTO.CrossPassportSearchResponse;
+import com.thisisme.model.dto.SearchDTO.HitType;
+import com.thisisme.model.dto.SearchDTO.SearchHit;
+import com.thisisme.model.entity.User;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the search SQL itself, which H2 can't: the permission and role visibility
+ * predicates, the active passport scope and keyset paging across the UNION. Needs a
+ * scratch PostgreSQL database in TEST_POSTGRES_URL (with TEST_POSTGRES_USER and
+ * TEST_POSTGRES_PASSWORD); each run migrates its own schema and drops it afterwards.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class PassportSearchServicePostgresTest {
+
+    private static final String SCHEMA = "search_test_" + UUID.randomUUID().toString().replace("-", "");
+
+    private static JdbcTemplate jdbc;
+    private static PassportSearchService service;
+    private static UserRepository userRepository;
+    private static PermissionEvaluator permissionEvaluator;
+
+    @BeforeAll
+    static void migrate() {
+        String url = System.getenv("TEST_POSTGRES_URL");
+        String user = System.getenv().getOrDefault("TEST_POSTGRES_USER", "postgres");
+        String password = System.getenv().getOrDefault("TEST_POSTGRES_PASSWORD", "");
+        Flyway.configure()
+            .dataSource(url, user, password)
+            .schemas(SCHEMA)
+            .locations("classpath:db/migration")
+            .load()
+            .migrate();
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            url + (url.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA, user, password);
+        jdbc = new JdbcTemplate(dataSource);
+        userRepository = mock(UserRepository.class);
+        permissionEvaluator = mock(PermissionEvaluator.class);
+        AuditService auditService = mock(AuditService.class);
+        when(auditService.log(any(), any(), any(), any()))
+            .thenAnswer(i -> mock(AuditService.AuditLogBuilder.class, RETURNS_SELF));
+        service = new PassportSearchService(new NamedParameterJdbcTemplate(dataSource), userRepository,
+            permissionEvaluator, auditService);
+    }
+
+    @AfterAll
+    static void dropSchema() {
+        if (jdbc != null) {
+            jdbc.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+        }
+    }
+
+    @BeforeEach
+    void allowPassportSearch() {
+        when(userRepository.findById(any())).thenAnswer(i -> Optional.of(user(i.getArgument(0))));
+        when(permissionEvaluator.canView(any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void search_ShouldGiveChildNoDocumentHits() {
+        UUID owner = insertUser();
+        UUID child = insertUser();
+        UUID passport = insertPassport("Sam", owner, true);
+        grant(passport, owner, "OWNER", true, true);
+        grant(passport, child, "CHILD", true, false);
+        UUID entry = insertEntry(passport, owner, "Melatonin started", "ALL");
+        UUID document = insertDocument(passport, owner, "We recommend melatonin before bed");
+
+        assertEquals(Set.of(entry, document), ids(service.search(passport, owner, "melatonin", 20, null).hits()));
+        List<SearchHit> childHits = service.search(passport, child, "melatonin", 20, null).hits();
+        assertEquals(Set.of(entry), ids(childHits));
+        assertTrue(childHits.stream().noneMatch(hit -> hit.type() == HitType.DOCUMENT));
+    }
+
+    @Test
+    void search_ShouldHideEntriesAboveTheCallersRole() {
+        UUID owner = insertUser();
+        UUID professional = insertUser();
+        UUID passport = insertPassport("Alex", owner, true);
+        grant(passport, owner, "OWNER", true, true);
+        grant(passport, professional, "PROFESSIONAL", true, true);
+        UUID shared = insertEntry(passport, owner, "Melatonin dose reviewed", "PROFESSIONALS");
+        UUID ownersOnly = insertEntry(passport, owner, "Private melatonin note", "OWNERS_ONLY");
+        UUID custom = insertEntry(passport, owner, "Melatonin for the teacher", "CUSTOM");
+        jdbc.update("INSERT INTO timeline_entry_visible_roles (entry_id, role) VALUES (?, 'PROFESSIONAL')", custom);
+
+        // As TimelineEntry.isVisibleTo: CUSTOM entries only show to the roles listed
+        assertEquals(Set.of(shared, ownersOnly),
+            ids(service.search(passport, owner, "melatonin", 20, null).hits()));
+        assertEquals(Set.of(shared, custom),
+            ids(service.search(passport, professional, "melatonin", 20, null).hits()));
+    }
+
+    @Test
+    void searchAll_ShouldSkipRevokedAccessAndInactivePassports() {
+        UUID user = insertUser();
+        UUID other = insertUser();
+        UUID active = insertPassport("Sam", user, true);
+        UUID inactive = insertPassport("Alex", user, false);
+        UUID revoked = insertPassport("Jo", other, true);
+        grant(active, user, "OWNER", true, true);
+        grant(inactive, user, "OWNER", true, true);
+        grant(revoked, user, "PROFESSIONAL", true, true);
+        jdbc.update("UPDATE passport_permissions SET revoked_at = now() WHERE passport_id = ?", revoked);
+        UUID visible = insertEntry(active, user, "Melatonin started", "ALL");
+        insertEntry(inactive, user, "Melatonin stopped", "ALL");
+        insertEntry(revoked, other, "Melatonin review", "ALL");
+
+        CrossPassportSearchResponse response = service.searchAll(user, "melatonin", 20, null, null);
+
+        assertEquals(List.of(active), response.children().stream().map(ChildHits::passportId).toList());
+        assertEquals(Set.of(visible), ids(response.children().get(0).hits()));
+        assertTrue(service.search(inactive, user, "melatonin", 20, null).hits().isEmpty());
+    }
+
+    @Test
+    void searchAll_ShouldPageThroughRankTiesWithoutRepeatsOrGaps() {
+        UUID user = insertUser();
+        UUID passport = insertPassport("Sam", user, true);
+        grant(passport, user, "OWNER", true, true);
+        Set<UUID> expected = new HashSet<>();
+        // Identical text ranks identically, so page boundaries fall inside ties, on both sides of the UNION
+        for (int i = 0; i < 5; i++) {
+            expected.add(insertEntry(passport, user, "Melatonin", "ALL"));
+        }
+        for (int i = 0; i < 3; i++) {
+            expected.add(insertDocument(passport, user, "melatonin"));
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CrossPassportSearchResponse page = service.searchAll(user, "melatonin", 3, cursor, null);
+            page.children().forEach(child -> child.hits().forEach(hit -> seen.add(hit.id())));
+            cursor = page.nextCursor();
+            assertTrue(++pages <= 3, "paging did not terminate");
+        } while (cursor != null);
+
+        assertEquals(expected.size(), seen.size(), "a hit was repeated or skipped: " + seen);
+        assertEquals(expected, new HashSet<>(seen));
+    }
+
+    // Helper methods
+
+    private static Set<UUID> ids(List<SearchHit> hits) {
+        Set<UUID> ids = new HashSet<>();
+        hits.forEach(hit -> ids.add(hit.id()));
+        return ids;
+    }
+
+    private static User user(UUID id) {
+        User user = new User("User", id + "@example.com", "hash");
+        ReflectionTestUtils.setField(user, "id", id);
+        return user;
+    }
+
+    private static UUID insertUser() {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, name, email, password_hash) VALUES (?, 'User', ?, 'hash')",
+            id, id + "@example.com");
+        return id;
+    }
+
+    private static UUID insertPassport(String childFirstName, UUID owner, boolean active) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO passports (id, child_first_name, created_by_id, active) VALUES (?, ?, ?, ?)",
+            id, childFirstName, owner, active);
+        return id;
+    }
+
+    private static void grant(UUID passport, UUID user, String role, boolean timeline, boolean documents) {
+        jdbc.update("INSERT INTO passport_permissions (id, passport_id, user_id, role, can_view_passport, " +
+                "can_view_timeline, can_view_documents, granted_by_id) VALUES (?, ?, ?, ?, true, ?, ?, ?)",
+            UUID.randomUUID(), passport, user, role, timeline, documents, user);
+    }
+
+    private static UUID insertEntry(UUID passport, UUID author, String title, String visibility) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO timeline_entries (id, passport_id, author_id, entry_type, title, content, " +
+                "entry_date, visibility_level) VALUES (?, ?, ?, 'NOTE', ?, '', DATE '2024-01-01', ?)",
+            id, passport, author, title, visibility);
+        return id;
+    }
+
+    private static UUID insertDocument(UUID passport, UUID uploader, String ocrText) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO documents (id, passport_id, file_name, original_file_name, mime_type, file_size, " +
+                "storage_path, encryption_key_id, content_hash, uploaded_by_id, ocr_text) " +
+                "VALUES (?, ?, 'letter.pdf', 'letter.pdf', 'application/pdf', 1, 'path', 'key', 'hash', ?, ?)",
+            id, passport, uploader, ocrText);
+        return id;
+    }
+}
@@ -0,0 +1,155 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.SearchDTO.CrossPassportSearchResponse;
+import com.thisisme.model.dto.SearchDTO.HitType;
+import com.thisisme.model.dto.SearchDTO.SearchHit;
+import com.thisisme.model.dto.SearchDTO.SearchResponse;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import com.thisisme.service.PassportSearchService.ChildHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PassportSearchServiceTest {
+
+    @Mock private NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock private UserRepository userRepository;
+    @Mock private PermissionEvaluator permissionEvaluator;
+    @Mock private AuditService auditService;
+    @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+
+    private PassportSearchService service;
+    private User user;
+    private final UUID passportId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        service = new PassportSearchService(jdbcTemplate, userRepository, permissionEvaluator, auditService);
+        user = new User("Parent", "parent@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(user, "id", UUID.randomUUID());
+    }
+
+    private void allowAudit() {
+        when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
+        lenient().when(auditLogBuilder.withPassport(any(UUID.class))).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDescription(any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDataCategories(any(String[].class))).thenReturn(auditLogBuilder);
+    }
+
+    private static SearchHit hit(UUID passportId, double rank) {
+        return new SearchHit(HitType.TIMELINE_ENTRY, UUID.randomUUID(), passportId, "Melatonin", "MEDICAL",
+            LocalDate.of(2024, 3, 1), "<b>melatonin</b>", rank);
+    }
+
+    @Test
+    void search_ShouldRejectTextWithoutSearchableWords() {
+        assertThrows(IllegalArgumentException.class,
+            () -> service.search(passportId, user.getId(), " ? ", 20, "10.0.0.1"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_ShouldRunOneQueryScopedToCallerAndCapLimit() {
+        SearchHit hit = new SearchHit(HitType.DOCUMENT, UUID.randomUUID(), passportId,
+            "paediatrician-letter.pdf", "application/pdf", LocalDate.of(2024, 3, 1),
+            "we recommend <b>melatonin</b>", 0.4);
+        when(permissionEvaluator.canView(passportId, user.getId())).thenReturn(true);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(jdbcTemplate.query(eq(PassportSearchService.SEARCH_PASSPORT), any(MapSqlParameterSource.class),
+            any(RowMapper.class))).thenReturn(List.of(hit));
+        allowAudit();
+
+        SearchResponse response = service.search(passportId, user.getId(), "melatonin letter", 500, "10.0.0.1");
+
+        assertEquals(List.of(hit), response.hits());
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(PassportSearchService.SEARCH_PASSPORT), params.capture(), any(RowMapper.class));
+        assertEquals("melatonin:* & letter:*", params.getValue().getValue("query"));
+        assertEquals(user.getId(), params.getValue().getValue("userId"));
+        assertEquals(PassportSearchService.MAX_LIMIT, params.getValue().getValue("limit"));
+        verify(auditService).log(AuditAction.PASSPORT_SEARCHED, user.getId(), user.getName(), "10.0.0.1");
+        verify(auditLogBuilder).save();
+    }
+
+    @Test
+    void search_ShouldRejectCallersWhoCannotViewPassport() {
+        when(permissionEvaluator.canView(passportId, user.getId())).thenReturn(false);
+
+        assertThrows(SecurityException.class,
+            () -> service.search(passportId, user.getId(), "melatonin", 20, "10.0.0.1"));
+        verifyNoInteractions(jdbcTemplate, auditService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchAll_ShouldGroupPageByChildAndPageAfterLastHit() {
+        UUID sam = UUID.randomUUID();
+        UUID alex = UUID.randomUUID();
+        SearchHit first = hit(sam, 0.9);
+        SearchHit second = hit(alex, 0.6f);
+        SearchHit third = hit(sam, 0.5);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(jdbcTemplate.query(eq(PassportSearchService.SEARCH_ALL), any(MapSqlParameterSource.class),
+            any(RowMapper.class))).thenReturn(List.of(
+                new ChildHit("Sam", first), new ChildHit("Alex", second), new ChildHit("Sam", third)));
+        allowAudit();
+
+        CrossPassportSearchResponse page = service.searchAll(user.getId(), "melatonin", 2, null, "10.0.0.1");
+
+        assertTrue(page.hasNext());
+        assertEquals(2, page.children().size());
+        assertEquals("Sam", page.children().get(0).childFirstName());
+        assertEquals(List.of(first), page.children().get(0).hits());
+        assertEquals(List.of(second), page.children().get(1).hits());
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq(PassportSearchService.SEARCH_ALL), params.capture(), any(RowMapper.class));
+        assertEquals(3, params.getValue().getValue("limit"));
+
+        when(jdbcTemplate.query(eq(PassportSearchService.SEARCH_ALL_AFTER), any(MapSqlParameterSource.class),
+            any(RowMapper.class))).thenReturn(List.of(new ChildHit("Sam", third)));
+
+        CrossPassportSearchResponse next = service.searchAll(user.getId(), "melatonin", 2, page.nextCursor(),
+            "10.0.0.1");
+
+        assertFalse(next.hasNext());
+        assertNull(next.nextCursor());
+        verify(jdbcTemplate).query(eq(PassportSearchService.SEARCH_ALL_AFTER), params.capture(),
+            any(RowMapper.class));
+        assertEquals(0.6f, params.getValue().getValue("afterRank"));
+        assertEquals(second.id(), params.getValue().getValue("afterId"));
+    }
+
+    @Test
+    void snippetHtml_ShouldEscapeSourceTextAndMarkOnlyMatches() {
+        assertEquals("take &lt;img src=x onerror=alert(1)&gt; &amp; <b>melatonin</b>",
+            PassportSearchService.snippetHtml("take <img src=x onerror=alert(1)> & \u0002melatonin\u0003"));
+        assertNull(PassportSearchService.snippetHtml(null));
+    }
+
+    @Test
+    void decodeCursor_ShouldRejectGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> PassportSearchService.decodeCursor("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> PassportSearchService.decodeCursor("MC41"));
+    }
+}
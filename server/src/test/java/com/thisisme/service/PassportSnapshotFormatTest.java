@@ -0,0 +1,103 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.thisisme.model.dto.SnapshotDTO.*;
+import com.thisisme.model.enums.ContentStatus;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.service.PassportSnapshotFormat.Section;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassportSnapshotFormatTest {
+
+    private final PassportData passport = new PassportData(UUID.randomUUID(), "Sam", LocalDate.of(2015, 3, 1),
+        true, true, UUID.randomUUID(), Instant.parse("2024-01-01T10:00:00Z"));
+
+    @Test
+    void writeThenRead_ShouldRoundTripRecords() throws Exception {
+        UUID authorId = UUID.randomUUID();
+        EntryData entry = new EntryData(UUID.randomUUID(), authorId, EntryType.MEDICAL, "Check-up", "All good",
+            LocalDate.of(2024, 1, 5), VisibilityLevel.CUSTOM, Map.of("clinic", "Riverside"), ContentStatus.PUBLISHED,
+            false, true, false, null, Instant.parse("2024-01-05T09:30:00Z"), Instant.parse("2024-01-05T09:30:00Z"))
+            .withCollections(Set.of("health"), Set.of(Role.PROFESSIONAL), Set.of(authorId));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PassportSnapshotFormat.Writer writer = new PassportSnapshotFormat.Writer(out, passport)) {
+            writer.startSection(Section.USERS);
+            writer.write(new UserRef(authorId, "parent@example.com", "Parent"));
+            writer.startSection(Section.ENTRIES);
+            writer.write(entry);
+            writer.finish();
+        }
+
+        try (PassportSnapshotFormat.Reader reader = new PassportSnapshotFormat.Reader(
+                new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(passport, reader.passport());
+            assertEquals(Section.USERS, reader.nextSection());
+            assertEquals("parent@example.com", reader.next(UserRef.class).email());
+            assertNull(reader.next(UserRef.class));
+            assertEquals(Section.ENTRIES, reader.nextSection());
+            assertEquals(entry, reader.next(EntryData.class));
+            assertNull(reader.next(EntryData.class));
+            assertNull(reader.nextSection());
+        }
+    }
+
+    @Test
+    void nextSection_ShouldSkipUnreadRecordsAndUnknownSections() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORMapper mapper = new CBORMapper();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("format", PassportSnapshotFormat.FORMAT);
+        snapshot.put("version", PassportSnapshotFormat.VERSION);
+        snapshot.put("passport", Map.of("id", passport.id().toString(), "childFirstName", "Sam"));
+        snapshot.put("users", List.of(Map.of("id", UUID.randomUUID().toString()),
+            Map.of("id", UUID.randomUUID().toString())));
+        snapshot.put("futureSection", List.of(Map.of("a", 1)));
+        mapper.writeValue(out, snapshot);
+
+        try (PassportSnapshotFormat.Reader reader = new PassportSnapshotFormat.Reader(
+                new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("Sam", reader.passport().childFirstName());
+            assertEquals(Section.USERS, reader.nextSection());
+            assertNotNull(reader.next(UserRef.class));
+            assertNull(reader.nextSection());
+        }
+    }
+
+    @Test
+    void reader_ShouldRejectUnsupportedVersion() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("format", PassportSnapshotFormat.FORMAT);
+        snapshot.put("version", 99);
+        snapshot.put("passport", Map.of("childFirstName", "Sam"));
+        new CBORMapper().writeValue(out, snapshot);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> new PassportSnapshotFormat.Reader(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals("Unsupported passport snapshot version: 99", e.getMessage());
+    }
+
+    @Test
+    void writer_ShouldRejectSectionsOutOfOrder() throws Exception {
+        try (PassportSnapshotFormat.Writer writer = new PassportSnapshotFormat.Writer(new ByteArrayOutputStream(),
+                passport)) {
+            writer.startSection(Section.ENTRIES);
+            assertThrows(IllegalStateException.class, () -> writer.startSection(Section.SECTIONS));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.SnapshotDTO.*;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.ContentStatus;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.ReactionType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.repository.*;
+import com.thisisme.security.PermissionEvaluator;
+import com.thisisme.service.PassportSnapshotFormat.Section;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PassportSnapshotServiceTest {
+
+    @Mock private PassportRepository passportRepository;
+    @Mock private PassportPermissionRepository permissionRepository;
+    @Mock private SectionRevisionRepository revisionRepository;
+    @Mock private TimelineEntryRepository timelineRepository;
+    @Mock private TimelineCommentRepository commentRepository;
+    @Mock private TimelineReactionRepository reactionRepository;
+    @Mock private DocumentRepository documentRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private PermissionEvaluator permissionEvaluator;
+    @Mock private AuditService auditService;
+    @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TimelineSearchEngine searchEngine;
+
+    private PassportSnapshotService service;
+    private User importer;
+
+    @BeforeEach
+    void setUp() {
+        service = new PassportSnapshotService(passportRepository, permissionRepository, revisionRepository,
+            timelineRepository, commentRepository, reactionRepository, documentRepository, userRepository,
+            permissionEvaluator, auditService, jdbcTemplate, searchEngine);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+
+        importer = new User("Importer", "importer@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(importer, "id", UUID.randomUUID());
+    }
+
+    @Test
+    void checkAccess_ShouldRejectNonOwner() {
+        UUID passportId = UUID.randomUUID();
+        when(permissionEvaluator.isOwner(passportId, importer.getId())).thenReturn(false);
+
+        assertThrows(SecurityException.class, () -> service.checkAccess(passportId, importer.getId()));
+        verifyNoInteractions(passportRepository);
+    }
+
+    @Test
+    void importSnapshot_ShouldBatchInsertsAndAttributeEverythingToImporter() throws Exception {
+        // Ids and emails of real local accounts: a snapshot must not be able to act as them
+        User localAuthor = new User("Teacher", "teacher@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(localAuthor, "id", UUID.randomUUID());
+        UUID sourceAuthor = localAuthor.getId();
+
+        when(userRepository.findById(importer.getId())).thenReturn(Optional.of(importer));
+        when(passportRepository.saveAndFlush(any(Passport.class))).thenAnswer(inv -> {
+            Passport p = inv.getArgument(0);
+            ReflectionTestUtils.setField(p, "id", UUID.randomUUID());
+            return p;
+        });
+        when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withPassport(any(UUID.class))).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withEntity(any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDescription(any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDataCategories(any(String[].class))).thenReturn(auditLogBuilder);
+
+        UUID entryId = UUID.randomUUID();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PassportSnapshotFormat.Writer writer = new PassportSnapshotFormat.Writer(out, new PassportData(
+                UUID.randomUUID(), "Sam", LocalDate.of(2015, 3, 1), false, true, sourceAuthor, Instant.now()))) {
+            writer.startSection(Section.USERS);
+            writer.write(new UserRef(sourceAuthor, "teacher@example.com", "Teacher"));
+            writer.startSection(Section.PERMISSIONS);
+            writer.write(new PermissionData(sourceAuthor, Role.CO_OWNER, Set.of("can_view_passport",
+                "can_manage_permissions"), sourceAuthor, Instant.now(), null));
+            writer.startSection(Section.ENTRIES);
+            for (int i = 0; i < 3; i++) {
+                UUID id = i == 0 ? entryId : UUID.randomUUID();
+                writer.write(new EntryData(id, sourceAuthor, EntryType.NOTE, "Entry " + i, "Text",
+                    LocalDate.of(2024, 1, i + 1), VisibilityLevel.ALL, null, ContentStatus.PUBLISHED, false, false,
+                    false, null, Instant.now(), Instant.now()).withCollections(Set.of("school"), Set.of(),
+                    Set.of(sourceAuthor)));
+            }
+            writer.startSection(Section.REACTIONS);
+            writer.write(new ReactionData(entryId, sourceAuthor, ReactionType.HEART, Instant.now()));
+            writer.finish();
+        }
+
+        ImportResult result = service.importSnapshot(new ByteArrayInputStream(out.toByteArray()),
+            importer.getId(), "10.0.0.1");
+
+        assertEquals(3, result.entries());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> entryRows = ArgumentCaptor.forClass(List.class);
+        // Three entries in batches of two; tags follow each entry batch
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO timeline_entries"), entryRows.capture());
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO timeline_entry_tags"), anyList());
+        Object[] first = entryRows.getAllValues().get(0).get(0);
+        assertEquals(result.passportId(), first[1]);
+        assertEquals(importer.getId(), first[2]);
+        assertTrue(((String) first[8]).contains("\"importedAuthor\":\"Teacher\""));
+        assertNotEquals(entryId, first[0]);
+
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO passport_permissions"), anyList());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO timeline_reactions"), anyList());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO timeline_entry_mentions"), anyList());
+        verify(userRepository, never()).findById(sourceAuthor);
+        verify(userRepository, never()).findByEmail(any());
+        verify(permissionRepository).saveAndFlush(argThat(p -> p.getRole() == Role.OWNER));
+        verify(auditService).log(AuditAction.PASSPORT_IMPORTED, importer.getId(), importer.getName(), "10.0.0.1");
+    }
+}
@@ -0,0 +1,135 @@
+package com.thisisme.service;
+
+import com.thisisme.service.OcrService.BatchImage;
+import com.thisisme.service.OcrService.OcrResult;
+import com.thisisme.service.PdfTextExtractor.PdfText;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PdfTextExtractorTest {
+
+    private static final String LETTER_TEXT = "Dear parent, the annual review meeting is on Monday.";
+
+    @Mock private OcrService ocrService;
+
+    private PdfTextExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new PdfTextExtractor(ocrService);
+        ReflectionTestUtils.setField(extractor, "minTextChars", 20);
+        ReflectionTestUtils.setField(extractor, "renderDpi", 50);
+        ReflectionTestUtils.setField(extractor, "batchSize", 4);
+        ReflectionTestUtils.setField(extractor, "maxPages", 200);
+        ReflectionTestUtils.setField(extractor, "maxOcrPages", 20);
+    }
+
+    @Test
+    void extract_ShouldReadTextLayerWithoutCallingOcr() throws IOException {
+        PdfText text = extractor.extract(pdf(true), "letter.pdf");
+        OcrResult result = text.result();
+
+        assertTrue(text.isComplete());
+        assertTrue(result.success());
+        assertTrue(result.rawTextOrError().contains("annual review meeting"));
+        assertNull(result.documentType());
+        verify(ocrService, never()).processBatch(any());
+    }
+
+    @Test
+    void extract_ShouldOcrOnlyImageOnlyPages() throws IOException {
+        when(ocrService.isAvailable()).thenReturn(true);
+        when(ocrService.processBatch(any())).thenReturn(List.of(
+            new OcrResult(true, "Medical", "Letter", Map.of("Name", "Sam"), List.of("Sam"), "Name: Sam\n")));
+
+        PdfText text = extractor.extract(pdf(true, false), "letter.pdf");
+        OcrResult result = text.result();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BatchImage>> batch = ArgumentCaptor.forClass(List.class);
+        verify(ocrService).processBatch(batch.capture());
+        assertEquals(1, batch.getValue().size());
+        assertEquals("letter-page-2.png", batch.getValue().get(0).fileName());
+
+        assertTrue(text.isComplete());
+        assertTrue(result.success());
+        assertEquals("Medical", result.documentType());
+        assertTrue(result.rawTextOrError().startsWith("Dear parent"));
+        assertTrue(result.rawTextOrError().endsWith("Name: Sam"));
+    }
+
+    @Test
+    void extract_ShouldKeepTextLayerWhenScannedPagesCannotReachOcr() throws IOException {
+        when(ocrService.isAvailable()).thenReturn(true);
+        when(ocrService.processBatch(any())).thenReturn(null);
+
+        PdfText text = extractor.extract(pdf(true, false, false), "scan.pdf");
+
+        assertFalse(text.isComplete());
+        assertEquals(2, text.pendingOcrPages());
+        assertTrue(text.ocrAttempted());
+        assertTrue(text.result().success());
+        assertTrue(text.result().rawTextOrError().contains("annual review meeting"));
+    }
+
+    @Test
+    void extract_ShouldReadTextLayerWithoutOcrWhileServiceIsUnavailable() throws IOException {
+        when(ocrService.isAvailable()).thenReturn(false);
+
+        PdfText text = extractor.extract(pdf(true, false), "letter.pdf");
+
+        assertEquals(1, text.pendingOcrPages());
+        assertFalse(text.ocrAttempted());
+        assertTrue(text.result().rawTextOrError().contains("annual review meeting"));
+        verify(ocrService, never()).processBatch(any());
+    }
+
+    @Test
+    void extract_ShouldThrowForCorruptPdf() {
+        assertThrows(IOException.class, () -> extractor.extract("not a pdf".getBytes(), "broken.pdf"));
+    }
+
+    /**
+     * One page per flag: true adds a text layer, false leaves the page image-only (blank)
+     */
+    private static byte[] pdf(boolean... textLayers) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (boolean textLayer : textLayers) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (textLayer) {
+                    try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                        content.beginText();
+                        content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                        content.newLineAtOffset(72, 700);
+                        content.showText(LETTER_TEXT);
+                        content.endText();
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.thisisme.service;
+
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.Role;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.service.TimelineSearchEngine.SearchQuery;
+import com.thisisme.service.TimelineSearchEngine.SearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresTimelineSearchEngineTest {
+
+    @Mock private TimelineEntryRepository timelineRepository;
+
+    private PostgresTimelineSearchEngine engine;
+    private final UUID passportId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        engine = new PostgresTimelineSearchEngine(timelineRepository);
+    }
+
+    @Test
+    void buildPrefixTsQuery_ShouldPrefixEachWord() {
+        assertEquals("first:* & steps:*", PostgresTimelineSearchEngine.buildPrefixTsQuery("first steps"));
+        assertEquals("diab:* & type:*", PostgresTimelineSearchEngine.buildPrefixTsQuery(" diab, type! "));
+        assertNull(PostgresTimelineSearchEngine.buildPrefixTsQuery("a ."));
+    }
+
+    @Test
+    void search_ShouldCountFacetsBeforeApplyingTypeAndTagFilters() {
+        UUID incident = UUID.randomUUID();
+        UUID note = UUID.randomUUID();
+        UUID medical = UUID.randomUUID();
+        when(timelineRepository.searchVisibleMatches(passportId, "lunch:*", "PROFESSIONAL")).thenReturn(List.of(
+            new Object[]{incident, "INCIDENT"}, new Object[]{note, "NOTE"}, new Object[]{medical, "MEDICAL"}));
+        when(timelineRepository.findTagsByEntryIds(List.of(incident, note, medical))).thenReturn(List.of(
+            new Object[]{incident, "playground"}, new Object[]{note, "playground"}, new Object[]{note, "reading"}));
+
+        SearchResult result = engine.search(passportId, new SearchQuery("lunch",
+            Set.of(EntryType.NOTE, EntryType.INCIDENT), Set.of("playground"), Role.PROFESSIONAL, false, 1));
+
+        assertEquals(List.of(incident), result.entryIds());
+        assertEquals(2, result.totalHits());
+        assertEquals(1L, result.entryTypeCounts().get(EntryType.MEDICAL));
+        assertEquals(2L, result.tagCounts().get("playground"));
+        assertEquals(1L, result.tagCounts().get("reading"));
+    }
+}
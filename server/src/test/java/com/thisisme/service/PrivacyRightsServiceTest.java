@@ -1,7 +1,6 @@
 package com.thisisme.service;
 
 import com.thisisme.model.entity.DataRequest;
-import com.thisisme.model.entity.Passport;
 import com.thisisme.model.entity.User;
 import com.thisisme.model.enums.DataRequestType;
 import com.thisisme.model.enums.RequestStatus;
@@ -13,8 +12,6 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.Collections;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -107,55 +104,6 @@ class PrivacyRightsServiceTest {
         assertEquals(RequestStatus.PENDING, result.getStatus());
     }
 
-    @Test
-    void generateDataExport_ShouldIncludeUserData() {
-        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(passportRepository.findAllByCreator(testUser.getId())).thenReturn(Collections.emptyList());
-        when(consentRepository.findAllByUser(testUser.getId())).thenReturn(Collections.emptyList());
-
-        Map<String, Object> export = privacyRightsService.generateDataExport(testUser.getId());
-
-        assertNotNull(export);
-        assertEquals("UK_GDPR_SAR", export.get("exportType"));
-        assertEquals("ThisIsMe", export.get("dataController"));
-
-        @SuppressWarnings("unchecked")
-        Map<String, Object> userData = (Map<String, Object>) export.get("userData");
-        assertNotNull(userData);
-        assertEquals(testUser.getId(), userData.get("id"));
-        assertEquals(testUser.getName(), userData.get("name"));
-        assertEquals(testUser.getEmail(), userData.get("email"));
-    }
-
-    @Test
-    void exportAsJson_ShouldReturnValidJson() {
-        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(passportRepository.findAllByCreator(testUser.getId())).thenReturn(Collections.emptyList());
-        when(consentRepository.findAllByUser(testUser.getId())).thenReturn(Collections.emptyList());
-
-        String json = privacyRightsService.exportAsJson(testUser.getId());
-
-        assertNotNull(json);
-        assertTrue(json.contains("\"exportType\""));
-        assertTrue(json.contains("\"userData\""));
-        assertTrue(json.contains(testUser.getEmail()));
-    }
-
-    @Test
-    void exportAsCsv_ShouldReturnValidCsv() {
-        Passport passport = new Passport("Test Child", testUser);
-        ReflectionTestUtils.setField(passport, "id", UUID.randomUUID());
-        ReflectionTestUtils.setField(passport, "sections", Collections.emptyList());
-        ReflectionTestUtils.setField(passport, "timelineEntries", Collections.emptyList());
-
-        when(passportRepository.findAllByCreator(testUser.getId())).thenReturn(Collections.singletonList(passport));
-
-        String csv = privacyRightsService.exportAsCsv(testUser.getId());
-
-        assertNotNull(csv);
-        assertTrue(csv.startsWith("Type,Date,Title,Content"));
-    }
-
     @Test
     void submitAccessRequest_ShouldThrowExceptionForNonExistentUser() {
         UUID nonExistentId = UUID.randomUUID();
@@ -0,0 +1,91 @@
+package com.thisisme.service;
+
+import com.thisisme.service.RetentionService.PurgeCandidate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionReaperTest {
+
+    @Mock private RetentionService retentionService;
+    @Mock private StorageService storageService;
+    @Mock private SchedulerLeaseService leaseService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetentionReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reaper = new RetentionReaper(retentionService, storageService, leaseService, meterRegistry);
+        ReflectionTestUtils.setField(reaper, "enabled", true);
+        ReflectionTestUtils.setField(reaper, "deletedDocumentDays", 30);
+        ReflectionTestUtils.setField(reaper, "chunkSize", 2);
+        ReflectionTestUtils.setField(reaper, "chunkPauseMs", 0L);
+        ReflectionTestUtils.setField(reaper, "maxRunMs", 60000L);
+    }
+
+    @Test
+    void run_ShouldDoNothingWhenAnotherNodeHoldsTheLease() {
+        when(leaseService.tryAcquire(eq(RetentionReaper.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        reaper.run();
+
+        verifyNoInteractions(retentionService, storageService);
+        verify(leaseService, never()).release(any());
+    }
+
+    @Test
+    void run_ShouldDrainEachStepInChunksAndReleaseLease() {
+        when(leaseService.tryAcquire(eq(RetentionReaper.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(retentionService.expireDocuments(any(), eq(2))).thenReturn(2, 2, 1);
+        when(retentionService.findPurgeableDocuments(any(), eq(2))).thenReturn(List.of());
+        when(retentionService.deactivateExpiredShareLinks(any(), eq(2))).thenReturn(0);
+        when(retentionService.expireInvitations(any(), eq(2))).thenReturn(1);
+
+        reaper.run();
+
+        verify(retentionService, times(3)).expireDocuments(any(), anyInt());
+        verify(retentionService, times(1)).expireInvitations(any(), anyInt());
+        verify(leaseService).release(RetentionReaper.LEASE_NAME);
+    }
+
+    @Test
+    void purgeDeletedDocuments_ShouldKeepRowsWhoseBlobsFailedToDelete() {
+        PurgeCandidate ok = candidate("passports/p/documents/a.pdf");
+        PurgeCandidate stuck = candidate("passports/p/documents/b.jpg", "passports/p/documents/b.thumbnail.jpg");
+        when(retentionService.findPurgeableDocuments(any(), eq(2))).thenReturn(List.of(ok, stuck), List.of(stuck));
+        when(storageService.deleteAll(List.of("passports/p/documents/a.pdf",
+            "passports/p/documents/b.jpg", "passports/p/documents/b.thumbnail.jpg")))
+            .thenReturn(List.of("passports/p/documents/b.thumbnail.jpg"));
+        when(storageService.deleteAll(stuck.storageKeys()))
+            .thenReturn(List.of("passports/p/documents/b.thumbnail.jpg"));
+
+        int purged = reaper.purgeDeletedDocuments(Instant.now().plusSeconds(60));
+
+        assertEquals(1, purged);
+        verify(retentionService).deletePurgedDocuments(List.of(ok));
+        verify(retentionService).deletePurgedDocuments(List.of());
+        assertEquals(1.0, meterRegistry.get("retention.documents.purged").counter().count());
+        assertEquals(2.0, meterRegistry.get("retention.blobs.failed").counter().count());
+    }
+
+    private static PurgeCandidate candidate(String... keys) {
+        return new PurgeCandidate(UUID.randomUUID(), UUID.randomUUID(), List.of(keys));
+    }
+}
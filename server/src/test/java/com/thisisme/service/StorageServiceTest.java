@@ -0,0 +1,33 @@
+package com.thisisme.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StorageServiceTest {
+
+    private static final byte[] DATA = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @Test
+    void openRange_ShouldSkipToOffsetOfStream() throws IOException {
+        StorageService storage = mock(StorageService.class, CALLS_REAL_METHODS);
+        doAnswer(i -> new ByteArrayInputStream(DATA)).when(storage).openStream("doc");
+
+        try (InputStream in = storage.openRange("doc", 7, 5)) {
+            assertArrayEquals(Arrays.copyOfRange(DATA, 7, 10), in.readAllBytes());
+        }
+        try (InputStream in = storage.openRange("doc", 2, 3)) {
+            assertArrayEquals(Arrays.copyOfRange(DATA, 2, 5), in.readAllBytes());
+        }
+        // Offsets beyond int range, or past the end, just end the stream
+        try (InputStream in = storage.openRange("doc", 5_000_000_000L, 10)) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.thisisme.service;
+
+import com.thisisme.model.entity.StorageUsage;
+import com.thisisme.repository.DocumentRepository;
+import com.thisisme.repository.StorageUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StorageUsageServiceTest {
+
+    @Mock private StorageUsageRepository usageRepository;
+    @Mock private DocumentRepository documentRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StorageUsageService usageService;
+    private final UUID passportId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        usageService = new StorageUsageService(usageRepository, documentRepository, meterRegistry);
+    }
+
+    @Test
+    void tryReserve_ShouldReportWhetherConditionalUpdateApplied() {
+        when(usageRepository.addWithinQuota(eq(passportId), eq(100L), eq(1000L), any())).thenReturn(1, 0);
+
+        assertTrue(usageService.tryReserve(passportId, 100L, 1000L));
+        assertFalse(usageService.tryReserve(passportId, 100L, 1000L));
+        verify(usageRepository, times(2)).insertIfAbsent(passportId);
+    }
+
+    @Test
+    void reconcile_ShouldCorrectDriftedCounter() {
+        StorageUsage usage = new StorageUsage(passportId);
+        when(usageRepository.findByIdForUpdate(passportId)).thenReturn(Optional.of(usage));
+        when(documentRepository.getTotalStorageByPassport(passportId)).thenReturn(4096L);
+        when(documentRepository.countActiveByPassport(passportId)).thenReturn(2L);
+
+        assertTrue(usageService.reconcile(passportId));
+
+        assertEquals(4096L, usage.getBytesUsed());
+        assertEquals(2, usage.getDocumentCount());
+        assertNotNull(usage.getReconciledAt());
+        assertEquals(1.0, meterRegistry.get("storage.usage.corrections").counter().count());
+    }
+
+    @Test
+    void reconcile_ShouldLeaveAccurateCounterAlone() {
+        StorageUsage usage = new StorageUsage(passportId);
+        when(usageRepository.findByIdForUpdate(passportId)).thenReturn(Optional.of(usage));
+        when(documentRepository.getTotalStorageByPassport(passportId)).thenReturn(null);
+        when(documentRepository.countActiveByPassport(passportId)).thenReturn(0L);
+
+        assertFalse(usageService.reconcile(passportId));
+        assertEquals(0.0, meterRegistry.get("storage.usage.corrections").counter().count());
+    }
+}
@@ -0,0 +1,188 @@
+package com.thisisme.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thisisme.model.dto.SubjectAccessDTO.*;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.EntryType;
+import com.thisisme.model.enums.ReactionType;
+import com.thisisme.model.enums.SectionType;
+import com.thisisme.model.enums.VisibilityLevel;
+import com.thisisme.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubjectAccessExportServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private PassportRepository passportRepository;
+    @Mock private TimelineEntryRepository timelineEntryRepository;
+    @Mock private DocumentRepository documentRepository;
+    @Mock private TimelineCommentRepository commentRepository;
+    @Mock private TimelineReactionRepository reactionRepository;
+    @Mock private NotificationRepository notificationRepository;
+    @Mock private AuditLogRepository auditLogRepository;
+    @Mock private ConsentRepository consentRepository;
+    @Mock private DataRequestRepository dataRequestRepository;
+    @Mock private AuditService auditService;
+    @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+
+    private SubjectAccessExportService service;
+    private User user;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        service = new SubjectAccessExportService(userRepository, passportRepository, timelineEntryRepository,
+            documentRepository, commentRepository, reactionRepository, notificationRepository, auditLogRepository,
+            consentRepository, dataRequestRepository, auditService);
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+
+        user = new User("Test User", "test@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(user, "id", UUID.randomUUID());
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDescription(any())).thenReturn(auditLogBuilder);
+    }
+
+    @Test
+    void writeJson_ShouldIncludeEveryCategory() throws Exception {
+        UUID passportId = UUID.randomUUID();
+        UUID entryId = UUID.randomUUID();
+        Instant now = Instant.now();
+        when(passportRepository.findCreatedPageAfter(eq(user.getId()), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new PassportRow(passportId, "Sam", LocalDate.of(2015, 3, 1), now, now)));
+        when(passportRepository.findSectionRows(List.of(passportId))).thenReturn(List.of(
+            new SectionRow(passportId, SectionType.LOVES, "Trains", null, now, now)));
+        when(timelineEntryRepository.findPageAfter(eq(passportId), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new TimelineRow(entryId, passportId, EntryType.MEDICAL, "Check-up", "All good",
+                LocalDate.of(2024, 1, 5), VisibilityLevel.ALL, now, now)));
+        when(timelineEntryRepository.findTagsByEntryIds(List.of(entryId)))
+            .thenReturn(List.<Object[]>of(new Object[]{entryId, "health"}));
+        when(documentRepository.findPageAfter(eq(passportId), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new DocumentRow(UUID.randomUUID(), passportId, "letter.pdf", "application/pdf",
+                1024, now)));
+        // Written by the user on a passport shared with them
+        UUID sharedPassportId = UUID.randomUUID();
+        when(timelineEntryRepository.findByAuthorOnOtherPassportsPageAfter(eq(user.getId()),
+                eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new TimelineRow(UUID.randomUUID(), sharedPassportId, EntryType.THERAPY,
+                "Session notes", "Worked on turn-taking", LocalDate.of(2024, 2, 1), VisibilityLevel.ALL, now, now)));
+        when(documentRepository.findByUploaderOnOtherPassportsPageAfter(eq(user.getId()),
+                eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new DocumentRow(UUID.randomUUID(), sharedPassportId, "report.pdf",
+                "application/pdf", 2048, now)));
+        when(commentRepository.findByAuthorPageAfter(eq(user.getId()), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new CommentRow(UUID.randomUUID(), entryId, "Great news", now, null)));
+        when(reactionRepository.findByUserPageAfter(eq(user.getId()), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new ReactionRow(UUID.randomUUID(), entryId, ReactionType.HEART, now)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeJson(user.getId(), "10.0.0.1", out);
+
+        JsonNode json = mapper.readTree(out.toByteArray());
+        assertEquals("UK_GDPR_SAR", json.get("exportType").asText());
+        assertEquals(user.getEmail(), json.get("userData").get("email").asText());
+        assertEquals("Trains", json.get("passports").get(0).get("sections").get(0).get("content").asText());
+        assertEquals("health", json.get("timelineEntries").get(0).get("tags").get(0).asText());
+        assertEquals("letter.pdf", json.get("documents").get(0).get("originalFileName").asText());
+        assertEquals("Session notes", json.get("timelineEntries").get(1).get("title").asText());
+        assertEquals("report.pdf", json.get("documents").get(1).get("originalFileName").asText());
+        assertEquals("Great news", json.get("comments").get(0).get("content").asText());
+        assertEquals("HEART", json.get("reactions").get(0).get("reactionType").asText());
+        for (String section : List.of("notifications", "auditLog", "consentRecords", "dataRequests")) {
+            assertTrue(json.get(section).isArray(), section);
+        }
+        verify(auditService).log(AuditAction.DATA_EXPORT_COMPLETED, user.getId(), user.getName(), "10.0.0.1");
+    }
+
+    @Test
+    void writeJson_ShouldReadEachCategoryInKeysetPages() throws Exception {
+        AuditRow first = auditRow();
+        AuditRow second = auditRow();
+        AuditRow third = auditRow();
+        when(auditLogRepository.findByUserPageAfter(eq(user.getId()), any(), any(Pageable.class)))
+            .thenReturn(List.of(first, second), List.of(third));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeJson(user.getId(), "10.0.0.1", out);
+
+        verify(auditLogRepository).findByUserPageAfter(eq(user.getId()), eq(SubjectAccessExportService.FIRST_PAGE),
+            any(Pageable.class));
+        verify(auditLogRepository).findByUserPageAfter(eq(user.getId()), eq(second.id()), any(Pageable.class));
+        verifyNoMoreInteractions(auditLogRepository);
+        assertEquals(3, mapper.readTree(out.toByteArray()).get("auditLog").size());
+    }
+
+    @Test
+    void writeNdjson_ShouldWriteOneLinePerRecord() throws Exception {
+        when(commentRepository.findByAuthorPageAfter(eq(user.getId()), any(), any(Pageable.class)))
+            .thenReturn(List.of(new CommentRow(UUID.randomUUID(), UUID.randomUUID(), "First", Instant.now(), null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeNdjson(user.getId(), "10.0.0.1", out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size());
+        assertEquals("export", mapper.readTree(lines.get(0)).get("type").asText());
+        assertEquals("userData", mapper.readTree(lines.get(1)).get("type").asText());
+        JsonNode comment = mapper.readTree(lines.get(2));
+        assertEquals("comments", comment.get("type").asText());
+        assertEquals("First", comment.get("data").get("content").asText());
+    }
+
+    @Test
+    void writeCsv_ShouldIncludeSectionsAndEntriesOnSharedPassports() throws Exception {
+        UUID passportId = UUID.randomUUID();
+        Instant now = Instant.parse("2024-01-02T10:00:00Z");
+        when(passportRepository.findCreatedPageAfter(eq(user.getId()), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new PassportRow(passportId, "Sam", LocalDate.of(2015, 3, 1), now, now)));
+        when(passportRepository.findSectionRows(List.of(passportId))).thenReturn(List.of(
+            new SectionRow(passportId, SectionType.LOVES, "Trains, buses", null, now, now)));
+        when(timelineEntryRepository.findPageAfter(eq(passportId), eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new TimelineRow(UUID.randomUUID(), passportId, EntryType.MEDICAL, "Check-up",
+                "Said \"all good\"", LocalDate.of(2024, 1, 5), VisibilityLevel.ALL, now, now)));
+        when(timelineEntryRepository.findByAuthorOnOtherPassportsPageAfter(eq(user.getId()),
+                eq(SubjectAccessExportService.FIRST_PAGE), any()))
+            .thenReturn(List.of(new TimelineRow(UUID.randomUUID(), UUID.randomUUID(), EntryType.THERAPY,
+                "Session notes", "Worked on turn-taking", LocalDate.of(2024, 2, 1), VisibilityLevel.ALL, now, now)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeCsv(user.getId(), "10.0.0.1", out);
+
+        assertEquals(List.of(
+            "Type,Date,Title,Content",
+            "Section: LOVES,2024-01-02T10:00:00Z,LOVES,\"Trains, buses\"",
+            "Timeline: MEDICAL,2024-01-05,Check-up,\"Said \"\"all good\"\"\"",
+            "Timeline: THERAPY,2024-02-01,Session notes,Worked on turn-taking"
+        ), out.toString(StandardCharsets.UTF_8).lines().toList());
+        verifyNoInteractions(documentRepository, commentRepository, auditLogRepository);
+        verify(auditService).log(AuditAction.DATA_EXPORT_COMPLETED, user.getId(), user.getName(), "10.0.0.1");
+    }
+
+    private AuditRow auditRow() {
+        return new AuditRow(UUID.randomUUID(), AuditAction.LOGIN, null, null, null, "Signed in", "10.0.0.1",
+            Instant.now());
+    }
+}
@@ -0,0 +1,142 @@
+package com.thisisme.service;
+
+import com.thisisme.model.dto.TimelineDTO.TimelineImportResult;
+import com.thisisme.model.entity.Passport;
+import com.thisisme.model.entity.PassportPermission;
+import com.thisisme.model.entity.User;
+import com.thisisme.model.enums.AuditAction;
+import com.thisisme.model.enums.Role;
+import com.thisisme.repository.PassportPermissionRepository;
+import com.thisisme.repository.PassportRepository;
+import com.thisisme.repository.TimelineEntryRepository;
+import com.thisisme.repository.UserRepository;
+import com.thisisme.security.PermissionEvaluator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimelineImportServiceTest {
+
+    @Mock private PassportRepository passportRepository;
+    @Mock private TimelineEntryRepository timelineRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private PassportPermissionRepository permissionRepository;
+    @Mock private PermissionEvaluator permissionEvaluator;
+    @Mock private AuditService auditService;
+    @Mock private AuditService.AuditLogBuilder auditLogBuilder;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TimelineSearchEngine searchEngine;
+
+    private TimelineImportService service;
+    private User user;
+    private Passport passport;
+
+    @BeforeEach
+    void setUp() {
+        service = new TimelineImportService(passportRepository, timelineRepository, userRepository,
+            permissionRepository, permissionEvaluator, auditService, jdbcTemplate, searchEngine);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+
+        user = new User("Teacher", "teacher@example.com", "hashedPassword");
+        ReflectionTestUtils.setField(user, "id", UUID.randomUUID());
+        passport = new Passport("Sam", user);
+        ReflectionTestUtils.setField(passport, "id", UUID.randomUUID());
+    }
+
+    private void allowImport() {
+        when(passportRepository.findActiveById(passport.getId())).thenReturn(Optional.of(passport));
+        when(permissionEvaluator.canAddTimelineEntries(passport.getId(), user.getId())).thenReturn(true);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(permissionEvaluator.getRole(passport.getId(), user.getId())).thenReturn(Role.PROFESSIONAL);
+        when(permissionRepository.findActiveByPassportId(passport.getId())).thenReturn(
+            List.of(new PassportPermission(passport, user, Role.PROFESSIONAL, user)));
+        when(auditService.log(any(), any(), any(), any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withPassport(any(Passport.class))).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDescription(any())).thenReturn(auditLogBuilder);
+        when(auditLogBuilder.withDataCategories(any(String[].class))).thenReturn(auditLogBuilder);
+    }
+
+    @Test
+    void importCsv_ShouldBatchValidRowsAndReportInvalidOnes() throws Exception {
+        allowImport();
+        String csv = """
+            entryType,title,content,entryDate,tags,mentionedUserIds
+            INCIDENT,Playground,"Pushed, then apologised",2019-09-12,behaviour;playground,%s
+            NOTE,Reading,Finished book,2019-09-13,,
+            NOTE,,Missing title,2019-09-14,,
+            MEDICAL,Check-up,All good,2019-09-15,health,
+            UNKNOWN,Oops,,2019-09-16,,
+            """.formatted(user.getId());
+
+        TimelineImportResult result = service.importCsv(passport.getId(), user.getId(),
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "10.0.0.1");
+
+        assertEquals(3, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(3, result.errors().get(0).row());
+        assertEquals("title is required", result.errors().get(0).message());
+        assertEquals("Invalid entryType: UNKNOWN", result.errors().get(1).message());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> entryRows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO timeline_entries"), entryRows.capture());
+        assertEquals("Pushed, then apologised", entryRows.getAllValues().get(0).get(0)[5]);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO timeline_entry_tags"), anyList());
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO timeline_entry_mentions"), anyList());
+
+        // Search vectors are filled once, after every row is in
+        InOrder inOrder = inOrder(timelineRepository, jdbcTemplate);
+        inOrder.verify(timelineRepository).deferSearchVectors();
+        inOrder.verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), anyList());
+        inOrder.verify(timelineRepository).refreshMissingSearchVectors(passport.getId());
+        verify(searchEngine).passportChanged(passport.getId());
+        verify(auditService).log(AuditAction.TIMELINE_ENTRIES_IMPORTED, user.getId(), user.getName(), "10.0.0.1");
+    }
+
+    @Test
+    void importNdjson_ShouldReportUnreadableLinesAndUnknownMentions() throws Exception {
+        allowImport();
+        String ndjson = """
+            {"entryType":"NOTE","title":"First","entryDate":"2020-01-01","tags":["home"]}
+
+            {"entryType":"NOTE","title":
+            {"entryType":"NOTE","title":"Third","entryDate":"2020-01-03","mentionedUserIds":["%s"]}
+            """.formatted(UUID.randomUUID());
+
+        TimelineImportResult result = service.importNdjson(passport.getId(), user.getId(),
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), "10.0.0.1");
+
+        assertEquals(1, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(3, result.errors().get(0).row());
+        assertTrue(result.errors().get(0).message().startsWith("Invalid JSON"));
+        assertTrue(result.errors().get(1).message().startsWith("mentioned user is not a collaborator"));
+    }
+
+    @Test
+    void importCsv_ShouldRejectUserWithoutAddPermission() {
+        when(passportRepository.findActiveById(passport.getId())).thenReturn(Optional.of(passport));
+        when(permissionEvaluator.canAddTimelineEntries(passport.getId(), user.getId())).thenReturn(false);
+
+        assertThrows(SecurityException.class, () -> service.importCsv(passport.getId(), user.getId(),
+            new ByteArrayInputStream("entryType,title\n".getBytes(StandardCharsets.UTF_8)), "10.0.0.1"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
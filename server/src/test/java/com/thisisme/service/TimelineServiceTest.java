@@ -25,12 +25,15 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,6 +47,7 @@ class TimelineServiceTest {
     @Mock private AuditService auditService;
     @Mock private AuditService.AuditLogBuilder auditLogBuilder;
     @Mock private NotificationService notificationService;
+    @Mock private TimelineSearchEngine searchEngine;
 
     private TimelineService timelineService;
     private User testUser;
@@ -59,7 +63,8 @@ class TimelineServiceTest {
             permissionRepository,
             permissionEvaluator,
             auditService,
-            notificationService
+            notificationService,
+            searchEngine
         );
 
         testUser = new User("Test User", "test@example.com", "hashedPassword");
@@ -223,7 +228,7 @@ class TimelineServiceTest {
     }
 
     @Test
-    void getTimelineEntries_ShouldUseFtsWhenSearchQueryProvided() {
+    void getTimelineEntries_ShouldUseSearchEngineWhenSearchQueryProvided() {
         TimelineFilterRequest filter = new TimelineFilterRequest(
             null, null, null, null, null, null, "first steps", 0, 20
         );
@@ -239,8 +244,10 @@ class TimelineServiceTest {
         when(permissionEvaluator.canViewTimeline(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(permissionEvaluator.getRole(testPassport.getId(), testUser.getId())).thenReturn(Role.OWNER);
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(timelineRepository.searchByPassportId(testPassport.getId(), "first:* & steps:*"))
-            .thenReturn(List.of(matchEntry));
+        when(searchEngine.search(eq(testPassport.getId()), argThat(q ->
+                q.text().equals("first steps") && q.viewerRole() == Role.OWNER)))
+            .thenReturn(new TimelineSearchEngine.SearchResult(List.of(matchEntry.getId()), 1, Map.of(), Map.of()));
+        when(timelineRepository.findAllById(List.of(matchEntry.getId()))).thenReturn(List.of(matchEntry));
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
 
         TimelinePageResponse result = timelineService.getTimelineEntries(
@@ -249,10 +256,38 @@ class TimelineServiceTest {
 
         assertEquals(1, result.entries().size());
         assertEquals("First Steps", result.entries().get(0).title());
-        verify(timelineRepository).searchByPassportId(testPassport.getId(), "first:* & steps:*");
         verify(timelineRepository, never()).findByPassportId(any(), any());
     }
 
+    @Test
+    void search_ShouldReturnVisibleHitsWithFacetsAndAudit() {
+        TimelineEntry match = new TimelineEntry(
+            testPassport, testUser, EntryType.MILESTONE, "First Steps", "Content", LocalDate.now()
+        );
+        match.setVisibilityLevel(VisibilityLevel.ALL);
+        ReflectionTestUtils.setField(match, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(match, "createdAt", java.time.Instant.now());
+        ReflectionTestUtils.setField(match, "updatedAt", java.time.Instant.now());
+
+        when(permissionEvaluator.canViewTimeline(testPassport.getId(), testUser.getId())).thenReturn(true);
+        when(permissionEvaluator.getRole(testPassport.getId(), testUser.getId())).thenReturn(Role.OWNER);
+        when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
+        when(permissionEvaluator.canViewDocuments(testPassport.getId(), testUser.getId())).thenReturn(false);
+        // Without document access, attachment text must not match
+        when(searchEngine.search(eq(testPassport.getId()),
+                argThat(q -> q.text().equals("first steps") && !q.includeDocuments())))
+            .thenReturn(new TimelineSearchEngine.SearchResult(List.of(match.getId()), 1,
+                Map.of(EntryType.MILESTONE, 1L), Map.of()));
+        when(timelineRepository.findAllById(List.of(match.getId()))).thenReturn(List.of(match));
+
+        TimelineSearchResponse result = timelineService.search(testPassport.getId(), testUser.getId(),
+            "first steps", null, null, 20, "192.168.1.1");
+
+        assertEquals(1, result.entries().size());
+        assertEquals(1L, result.entryTypeCounts().get(EntryType.MILESTONE));
+        verify(auditLogBuilder).save();
+    }
+
     @Test
     void updateEntry_ShouldUpdateWhenUserIsAuthor() {
         UpdateTimelineEntryRequest request = new UpdateTimelineEntryRequest(
@@ -430,8 +465,10 @@ class TimelineServiceTest {
         when(permissionEvaluator.canViewTimeline(testPassport.getId(), testUser.getId())).thenReturn(true);
         when(permissionEvaluator.getRole(testPassport.getId(), testUser.getId())).thenReturn(Role.OWNER);
         when(userRepository.findById(testUser.getId())).thenReturn(Optional.of(testUser));
-        when(timelineRepository.searchByPassportId(testPassport.getId(), "steps:*"))
-            .thenReturn(List.of(flaggedMatch, unflaggedMatch));
+        List<UUID> hitIds = List.of(flaggedMatch.getId(), unflaggedMatch.getId());
+        when(searchEngine.search(eq(testPassport.getId()), any()))
+            .thenReturn(new TimelineSearchEngine.SearchResult(hitIds, 2, Map.of(), Map.of()));
+        when(timelineRepository.findAllById(hitIds)).thenReturn(List.of(unflaggedMatch, flaggedMatch));
         when(passportRepository.findActiveById(testPassport.getId())).thenReturn(Optional.of(testPassport));
 
         TimelinePageResponse result = timelineService.getTimelineEntries(
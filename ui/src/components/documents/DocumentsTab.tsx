@@ -19,6 +19,8 @@ interface DocumentsTabProps {
 export function DocumentsTab({ passportId, onAddEmail }: DocumentsTabProps) {
   const [documents, setDocuments] = useState<Document[]>([]);
   const [isLoading, setIsLoading] = useState(true);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
   const [showUploadModal, setShowUploadModal] = useState(false);
   const [storageInfo, setStorageInfo] = useState<{ used: number; quota: number } | null>(null);
 
@@ -31,6 +33,7 @@ export function DocumentsTab({ passportId, onAddEmail }: DocumentsTabProps) {
     try {
       const response = await documentApi.list(passportId);
       setDocuments(response.documents);
+      setNextCursor(response.nextCursor);
       setStorageInfo({
         used: response.totalStorageBytes,
         quota: response.storageQuotaBytes,
@@ -42,6 +45,20 @@ export function DocumentsTab({ passportId, onAddEmail }: DocumentsTabProps) {
     }
   };
 
+  const loadMore = async () => {
+    if (!nextCursor) return;
+    setIsLoadingMore(true);
+    try {
+      const response = await documentApi.list(passportId, { cursor: nextCursor });
+      setDocuments(prev => [...prev, ...response.documents]);
+      setNextCursor(response.nextCursor);
+    } catch (err) {
+      toast.error('Failed to load more documents');
+    } finally {
+      setIsLoadingMore(false);
+    }
+  };
+
   const handleUpload = async (file: File) => {
     try {
       const doc = await documentApi.upload(passportId, file);
@@ -232,6 +249,14 @@ export function DocumentsTab({ passportId, onAddEmail }: DocumentsTabProps) {
         </div>
       )}
 
+      {!isLoading && nextCursor && (
+        <div className="mt-4 text-center">
+          <Button variant="secondary" onClick={loadMore} disabled={isLoadingMore}>
+            {isLoadingMore ? 'Loading...' : 'Load more'}
+          </Button>
+        </div>
+      )}
+
       {/* Upload Modal */}
       {showUploadModal && (
         <UploadDocumentModal
@@ -375,8 +375,26 @@ export const timelineApi = {
 
 // Document API
 export const documentApi = {
-  async list(passportId: string) {
-    return apiRequest<DocumentListResponse>(`/api/v1/passports/${passportId}/documents`);
+  async list(passportId: string, params?: {
+    cursor?: string;
+    size?: number;
+    sort?: 'uploadedAt' | 'name' | 'size';
+    direction?: 'asc' | 'desc';
+    mimeType?: string;
+    timelineEntryId?: string;
+  }) {
+    const p = params || {};
+    const qs = new URLSearchParams();
+    if (p.cursor) qs.set('cursor', p.cursor);
+    if (p.size) qs.set('size', String(p.size));
+    if (p.sort) qs.set('sort', p.sort);
+    if (p.direction) qs.set('direction', p.direction);
+    if (p.mimeType) qs.set('mimeType', p.mimeType);
+    if (p.timelineEntryId) qs.set('timelineEntryId', p.timelineEntryId);
+    const query = qs.toString();
+    return apiRequest<DocumentListResponse>(
+      `/api/v1/passports/${passportId}/documents${query ? `?${query}` : ''}`
+    );
   },
 
   async upload(passportId: string, file: File, timelineEntryId?: string) {
@@ -741,6 +759,8 @@ export interface DocumentListResponse {
   documents: Document[];
   totalStorageBytes: number;
   storageQuotaBytes: number;
+  nextCursor: string | null;
+  hasMore: boolean;
 }
 
 export interface ShareLink {
@@ -1024,7 +1044,8 @@ export type NotificationType =
   | 'REACTION_ON_YOUR_ENTRY'
   | 'PERMISSION_GRANTED'
   | 'PERMISSION_REVOKED'
-  | 'DOCUMENT_OCR_COMPLETE';
+  | 'DOCUMENT_OCR_COMPLETE'
+  | 'EXPORT_READY';
 
 export interface Notification {
   id: string;
@@ -67,7 +67,8 @@ export type NotificationType =
   | 'REACTION_ON_YOUR_ENTRY'
   | 'PERMISSION_GRANTED'
   | 'PERMISSION_REVOKED'
-  | 'DOCUMENT_OCR_COMPLETE';
+  | 'DOCUMENT_OCR_COMPLETE'
+  | 'EXPORT_READY';
 
 export interface Notification {
   id: string;